@@ -2,6 +2,7 @@ package edu.hm.dako.chat.benchmarking;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Locale;
 import java.util.Vector;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -10,10 +11,14 @@ import java.util.concurrent.TimeUnit;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import edu.hm.dako.chat.benchmarking.UserInterfaceInputParameters.LoadMode;
 import edu.hm.dako.chat.client.ClientUserInterface;
+import edu.hm.dako.chat.common.BenchmarkPhase;
 import edu.hm.dako.chat.common.CpuUtilisationWatch;
 import edu.hm.dako.chat.common.DistributionMetrics;
+import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.common.SharedClientStatistics;
+import edu.hm.dako.chat.connection.ConnectionFactory;
 import edu.hm.dako.chat.server.ChatServerGuiInterface;
 
 /**
@@ -59,6 +64,15 @@ public class BenchmarkingClientCoordinator extends Thread
 	// Thread zur Zeitzaehlung fuer die Dauer des Tests
 	BenchmarkingTimeCounterThread timeCounterThread;
 
+	// Thread zur Meldung des Fortschritts
+	BenchmarkingProgressReporterThread progressReporterThread;
+
+	// Ergebnisse des letzten Testlaufs
+	UserInterfaceResultData resultData;
+
+	// Verbindungsphase des letzten Testlaufs
+	BenchmarkingConnectPhase connectPhase;
+
 	/**
 	 * Methode liefert die aktuelle Zeit als String
 	 *
@@ -77,9 +91,25 @@ public class BenchmarkingClientCoordinator extends Thread
 		this.parm = parm;
 		this.clientGui = clientGui;
 
+		String loadInfo = "";
+		if (parm.getLoadMode() == LoadMode.OpenLoop) {
+			loadInfo = " (" + parm.mapLoadModeToString(parm.getLoadMode()) + ", "
+					+ parm.getTargetRate() + " Nachrichten/s, " + parm.getArrivalProcess() + ")";
+		}
+		if (parm.getPipelineWindow() > 1) {
+			loadInfo += " (Pipelining mit " + parm.getPipelineWindow()
+					+ " offenen Requests je Client)";
+		}
+		if (parm.getConfirmBatchSize() > 1) {
+			loadInfo += " (bis zu " + parm.getConfirmBatchSize() + " Confirms je PDU, max. "
+					+ parm.getConfirmBatchDelay() + " us Wartezeit)";
+		}
+		if (parm.getNumberOfRooms() > 1) {
+			loadInfo += " (" + parm.getNumberOfRooms() + " Chat-Raeume)";
+		}
 		clientGui
 				.setMessageLine(parm.mapImplementationTypeToString(parm.getImplementationType())
-						+ ": Benchmark gestartet");
+						+ ": Benchmark gestartet" + loadInfo);
 
 		// Anzahl aller erwarteten Requests ermitteln
 
@@ -88,6 +118,13 @@ public class BenchmarkingClientCoordinator extends Thread
 		// Gemeinsamen Datenbereich fuer alle Threads anlegen
 		sharedData = new SharedClientStatistics(parm.getNumberOfClients(),
 				parm.getNumberOfMessages(), parm.getClientThinkTime(), this.clientGui);
+		sharedData.setPhases(parm.getWarmUpMessages(), parm.getCoolDownMessages(),
+				parm.getWarmUpTime(), parm.getSteadyStateTime());
+		if (parm.getWarmUpMessages() + parm.getCoolDownMessages() >= parm
+				.getNumberOfMessages()) {
+			clientGui.setMessageLine("Einschwing- und Ausklingphase umfassen alle "
+					+ parm.getNumberOfMessages() + " Nachrichten, keine Messphase");
+		}
 
 		// Berechnung aller Messages fuer Progress-Bar
 		if (clientGui.getProgressBar() != null) {
@@ -110,6 +147,12 @@ public class BenchmarkingClientCoordinator extends Thread
 		timeCounterThread = new BenchmarkingTimeCounterThread(clientGui);
 		timeCounterThread.start();
 
+		/**
+		 * Fortschritts-Thread erzeugen
+		 */
+		progressReporterThread = new BenchmarkingProgressReporterThread(sharedData);
+		progressReporterThread.start();
+
 		cpuUtilisationWatch = new CpuUtilisationWatch();
 
 		start();
@@ -131,9 +174,32 @@ public class BenchmarkingClientCoordinator extends Thread
 		ExecutorService executorService = Executors
 				.newFixedThreadPool(parm.getNumberOfClients());
 
+		// Verbindungen aller Clients vorab aufbauen, damit die Logins nicht vom
+		// Verbindungsaufbau der uebrigen Clients abhaengen
+		ConnectionFactory[] connectionFactories = new ConnectionFactory[parm
+				.getNumberOfClients()];
 		for (int i = 0; i < parm.getNumberOfClients(); i++) {
-			executorService
-					.submit(BenchmarkingClientFactory.getClient(this, parm, i, sharedData));
+			connectionFactories[i] = BenchmarkingClientFactory.getConnectionFactory(parm, i,
+					sharedData);
+		}
+		connectPhase = new BenchmarkingConnectPhase(parm, connectionFactories);
+		try {
+			connectPhase.connectAll();
+		} catch (InterruptedException e) {
+			ExceptionHandler.logException(e);
+		}
+		DistributionMetrics connectTimes = connectPhase.getConnectTimeMetrics();
+		clientGui.setMessageLine(String.format(Locale.ROOT,
+				"Verbindungsphase: %d Verbindungen in %.0f ms, Aufbauzeit P50 %.3f ms, "
+						+ "P99 %.3f ms, Max %.3f ms, gescheitert: %d, Heartbeats: %d",
+				parm.getNumberOfClients() - connectPhase.getNumberOfFailures(),
+				connectPhase.getDuration(), connectTimes.getPercentile50(),
+				connectTimes.getPercentile99(), connectTimes.getMaximum(),
+				connectPhase.getNumberOfFailures(), connectPhase.getNumberOfKeepAlives()));
+
+		for (int i = 0; i < parm.getNumberOfClients(); i++) {
+			executorService.submit(BenchmarkingClientFactory.getClient(this, parm, i,
+					sharedData, connectionFactories[i], connectPhase.getConnection(i)));
 		}
 
 		// Startwerte anzeigen
@@ -142,8 +208,15 @@ public class BenchmarkingClientCoordinator extends Thread
 		startData.setStartTime(getCurrentTime(cal));
 
 		// Maximal moegliche Events = ChatMessage-Events + Login-Events +
-		// Logout-Events
-		long numberOfPlannedEventMessages = (numberOfAllRequests * parm.getNumberOfClients())
+		// Logout-Events. Chat-Events erhalten nur die Mitglieder des Raums des
+		// Senders, je Raum also Nachrichten * Mitglieder * Mitglieder.
+		long numberOfChatEvents = 0;
+		int rooms = Math.max(1, parm.getNumberOfRooms());
+		for (int room = 0; room < rooms; room++) {
+			long members = (parm.getNumberOfClients() + rooms - 1 - room) / rooms;
+			numberOfChatEvents += parm.getNumberOfMessages() * members * members;
+		}
+		long numberOfPlannedEventMessages = numberOfChatEvents
 				+ (parm.getNumberOfClients() * parm.getNumberOfClients())
 				+ (parm.getNumberOfClients() * parm.getNumberOfClients());
 
@@ -168,14 +241,22 @@ public class BenchmarkingClientCoordinator extends Thread
 		// Laufzeitzaehler-Thread beenden
 		timeCounterThread.stopThread();
 
+		// Fortschritts-Thread beenden, meldet den restlichen Fortschritt
+		progressReporterThread.stopThread();
+
 		// Analyse der Ergebnisse durchfuehren, Statistikdaten berechnen und
 		// ausgeben
 		// sharedData.printStatistic();
 
 		// Testergebnisse ausgeben
 		clientGui.setMessageLine("Alle Clients-Threads beendet");
+		if (sharedData.hasPhases()) {
+			clientGui.setMessageLine(getPhaseInfo(BenchmarkPhase.WarmUp, "Einschwingphase")
+					+ ", " + getPhaseInfo(BenchmarkPhase.SteadyState, "Messphase") + ", "
+					+ getPhaseInfo(BenchmarkPhase.CoolDown, "Ausklingphase"));
+		}
 
-		UserInterfaceResultData resultData = getResultData(parm, startTime);
+		resultData = getResultData(parm, startTime);
 
 		clientGui.showResultData(resultData);
 		clientGui
@@ -188,7 +269,8 @@ public class BenchmarkingClientCoordinator extends Thread
 
 		// Datensatz fuer Benchmark-Lauf auf Protokolldatei schreiben
 		sharedData.writeStatisticSet("Benchmarking-ChatApp-Protokolldatei",
-				parm.mapImplementationTypeToString(parm.getImplementationType()),
+				parm.mapImplementationTypeToString(parm.getImplementationType()) + " ("
+						+ parm.mapCodecTypeToString(parm.getCodecType()) + ")",
 				parm.mapMeasurementTypeToString(parm.getMeasurementType()), startTimeAsString,
 				resultData.getEndTime(), cpuUtilisationWatch.getAverageCpuUtilisation());
 
@@ -196,6 +278,53 @@ public class BenchmarkingClientCoordinator extends Thread
 		running = false;
 	}
 
+	/**
+	 * Kurzbeschreibung einer Phase des beendeten Testlaufs fuer die Meldezeile
+	 *
+	 * @param phase
+	 *          Phase des Laufs
+	 * @param name
+	 *          Bezeichnung der Phase
+	 * @return Anzahl Responses, RTT-P50 und Durchsatz der Phase
+	 */
+	private String getPhaseInfo(BenchmarkPhase phase, String name) {
+		return String.format(Locale.ROOT, "%s: %d Responses, RTT-P50 %.3f ms, %.1f/s",
+				name, sharedData.getNumberOfReceivedResponses(phase),
+				sharedData.calculateMetrics(phase).getPercentile50(),
+				sharedData.getThroughput(phase));
+	}
+
+	/**
+	 * Schreibt die Ergebnisse des beendeten Testlaufs zusaetzlich als
+	 * strukturierte Zeile in eine Datei (siehe
+	 * {@link SharedClientStatistics#writeStatisticRecord})
+	 *
+	 * @param fileName
+	 *          Dateiname
+	 * @param parameterHeader
+	 *          Namen der Parameterspalten
+	 * @param parameterValues
+	 *          Werte der Parameterspalten
+	 */
+	public void writeStatisticRecord(String fileName, String parameterHeader,
+			String parameterValues) {
+		if (resultData == null) {
+			//log.error("Kein abgeschlossener Testlauf vorhanden");
+			return;
+		}
+		sharedData.writeStatisticRecord(fileName, parameterHeader, parameterValues,
+				startTimeAsString, resultData.getEndTime(),
+				cpuUtilisationWatch.getAverageCpuUtilisation());
+	}
+
+	/**
+	 * @return Verbindungsphase des letzten Testlaufs (Dauer der
+	 *         Verbindungsaufbauten), null: noch kein Testlauf
+	 */
+	public BenchmarkingConnectPhase getConnectPhase() {
+		return connectPhase;
+	}
+
 	@Override
 	// Wird nicht genutzt, nur fuer ChatClientGUI relevant
 	public synchronized void setUserList(Vector<String> names) {
@@ -322,6 +451,9 @@ public class BenchmarkingClientCoordinator extends Thread
 		resultData.setPercentile50(distributionMetrics.getPercentile50());
 		resultData.setPercentile75(distributionMetrics.getPercentile75());
 		resultData.setPercentile90(distributionMetrics.getPercentile90());
+		resultData.setPercentile99(distributionMetrics.getPercentile99());
+		resultData.setPercentile999(distributionMetrics.getPercentile999());
+		resultData.setCorrectedRttMetrics(sharedData.calculateCorrectedMetrics());
 		resultData.setStandardDeviation(distributionMetrics.getStandardDeviation());
 		resultData.setRange(distributionMetrics.getRange());
 		resultData.setInterquartilRange(distributionMetrics.getInterquartilRange());
@@ -335,6 +467,7 @@ public class BenchmarkingClientCoordinator extends Thread
 
 		long elapsedTimeInSeconds = (cal.getTimeInMillis() - startTime) / 1000;
 		resultData.setElapsedTime(elapsedTimeInSeconds);
+		resultData.setThroughput(sharedData.getThroughput());
 
 		resultData.setMaxCpuUsage(cpuUtilisationWatch.getAverageCpuUtilisation());
 
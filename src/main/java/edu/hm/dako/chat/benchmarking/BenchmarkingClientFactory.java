@@ -1,10 +1,19 @@
 package edu.hm.dako.chat.benchmarking;
 
+import edu.hm.dako.chat.benchmarking.UserInterfaceInputParameters.LoadMode;
 import edu.hm.dako.chat.client.ClientUserInterface;
+import edu.hm.dako.chat.common.CodecType;
+import edu.hm.dako.chat.common.ImplementationType;
 import edu.hm.dako.chat.common.SharedClientStatistics;
+import edu.hm.dako.chat.common.TransportType;
+import edu.hm.dako.chat.connection.Connection;
 import edu.hm.dako.chat.connection.ConnectionFactory;
 import edu.hm.dako.chat.connection.DecoratingConnectionFactory;
+import edu.hm.dako.chat.connection.PduCodecFactory;
+import edu.hm.dako.chat.loopback.LoopbackConnectionFactory;
+import edu.hm.dako.chat.tcp.FramedTcpConnectionFactory;
 import edu.hm.dako.chat.tcp.TcpConnectionFactory;
+import edu.hm.dako.chat.udp.UdpConnectionFactory;
 
 /**
  * Uebernimmt die Konfiguration und die Erzeugung bestimmter Client-Typen fuer
@@ -21,25 +30,50 @@ public final class BenchmarkingClientFactory {
 	public static Runnable getClient(ClientUserInterface userInterface,
 			UserInterfaceInputParameters param, int numberOfClient,
 			SharedClientStatistics sharedData) {
+		return getClient(userInterface, param, numberOfClient, sharedData,
+				getConnectionFactory(param, numberOfClient, sharedData), null);
+	}
+
+	/**
+	 * Erzeugt einen Client, dessen Verbindung bereits aufgebaut ist
+	 *
+	 * @param connectionFactory
+	 *          Factory des Clients (siehe
+	 *          {@link #getConnectionFactory(UserInterfaceInputParameters, int, SharedClientStatistics)})
+	 * @param connection
+	 *          Verbindung des Clients zum Server, null: der Client baut sie selbst
+	 *          auf
+	 * @return Client
+	 */
+	public static Runnable getClient(ClientUserInterface userInterface,
+			UserInterfaceInputParameters param, int numberOfClient,
+			SharedClientStatistics sharedData, ConnectionFactory connectionFactory,
+			Connection connection) {
 		try {
 
 			switch (param.getImplementationType()) {
 
 			case TCPSimpleImplementation:
 			case TCPAdvancedImplementation:
+			case TCPNioImplementation:
+			case UDPAdvancedImplementation:
 
 				BenchmarkingClientImpl impl = new BenchmarkingClientImpl(userInterface,
 						param.getImplementationType(), param.getRemoteServerPort(),
 						param.getRemoteServerAddress(), numberOfClient, param.getMessageLength(),
 						param.getNumberOfMessages(), param.getClientThinkTime(),
 						param.getNumberOfRetries(), param.getResponseTimeout(), sharedData,
-						getDecoratedFactory(new TcpConnectionFactory()));
+						connectionFactory, connection);
+				if (param.getLoadMode() == LoadMode.OpenLoop) {
+					impl.configureOpenLoop(param.getArrivalProcess(),
+							param.getTargetRate() / param.getNumberOfClients(),
+							param.getNumberOfClients());
+				}
+				impl.setPipelineWindow(param.getPipelineWindow());
+				impl.setBenchmarkRoom(param.getRoomOfClient(numberOfClient));
+				impl.setConfirmBatching(param.getConfirmBatchSize(), param.getConfirmBatchDelay());
 				return impl;
 
-			case UDPAdvancedImplementation:
-
-				System.out.println("UDP noch nicht implementiert");
-
 			default:
 				throw new RuntimeException(
 						"Unbekannter Implementierungstyp: " + param.getImplementationType());
@@ -49,6 +83,71 @@ public final class BenchmarkingClientFactory {
 		}
 	}
 
+	/**
+	 * Liefert die ConnectionFactory eines Clients passend zu Implementierung und
+	 * Transport, dekoriert mit Logging
+	 *
+	 * @param param
+	 *          Konfigurationsparameter des Lasttests
+	 * @param numberOfClient
+	 *          Nummer des Clients
+	 * @param sharedData
+	 *          Statistikdaten (fuer die Zaehlung der UDP-Wiederholungen)
+	 * @return ConnectionFactory
+	 */
+	public static ConnectionFactory getConnectionFactory(UserInterfaceInputParameters param,
+			final int numberOfClient, final SharedClientStatistics sharedData) {
+		ConnectionFactory connectionFactory;
+		if (param.getImplementationType() == ImplementationType.UDPAdvancedImplementation) {
+			UdpConnectionFactory udpFactory = new UdpConnectionFactory(
+					PduCodecFactory.getCodec(param.getCodecType()), param.getResponseTimeout(),
+					param.getNumberOfRetries());
+			// Wiederholte Datagramme zaehlen als Uebertragungswiederholungen
+			udpFactory.setRetransmissionListener(new Runnable() {
+				@Override
+				public void run() {
+					sharedData.incrNumberOfRetries(numberOfClient);
+				}
+			});
+			udpFactory.setSimulatedLossRate(param.getSimulatedLossRate());
+			connectionFactory = udpFactory;
+		} else if (param.getTransportType() != TransportType.Socket) {
+			// Server im selben Prozess, die Kodierung legt dessen Socket fest
+			connectionFactory = new LoopbackConnectionFactory();
+		} else {
+			connectionFactory = getTcpConnectionFactory(param);
+		}
+		return getDecoratedFactory(connectionFactory);
+	}
+
+	/**
+	 * Liefert die zum Server passende TCP-ConnectionFactory: Der NIO-Server und alle
+	 * Codecs ausser der Java-Serialisierung erwarten rahmenbasierte Verbindungen. Das
+	 * Sendeverhalten, das Zuruecksetzen der Objektstroeme und die Wiederholung
+	 * des Verbindungsaufbaus werden aus den Parametern uebernommen.
+	 * 
+	 * @param param
+	 *          Konfigurationsparameter des Lasttests
+	 * @return ConnectionFactory
+	 */
+	private static ConnectionFactory getTcpConnectionFactory(
+			UserInterfaceInputParameters param) {
+		TcpConnectionFactory factory;
+		if ((param.getImplementationType() == ImplementationType.TCPNioImplementation)
+				|| (param.getCodecType() != CodecType.JavaSerialization)) {
+			factory = new FramedTcpConnectionFactory(
+					PduCodecFactory.getCodec(param.getCodecType()));
+		} else {
+			factory = new TcpConnectionFactory();
+		}
+		factory.setWriteOptions(param.isTcpNoDelay(), param.getFlushPolicy(),
+				param.getFlushThreshold());
+		factory.setResetPolicy(param.getStreamResetObjects(), param.getStreamResetBytes());
+		factory.setConnectRetryPolicy(param.getConnectAttempts(), param.getConnectRetryDelay(),
+				param.getConnectMaxRetryDelay());
+		return factory;
+	}
+
 	public static ConnectionFactory getDecoratedFactory(
 			ConnectionFactory connectionFactory) {
 		return new DecoratingConnectionFactory(connectionFactory);
@@ -78,13 +78,17 @@ public class BenchmarkingClientGuiFx2 extends Application
 
 	// Auswahl fuer Comboboxen
 	ObservableList<String> implTypeOptions = FXCollections.observableArrayList(
-			SystemConstants.IMPL_TCP_SIMPLE, SystemConstants.IMPL_TCP_ADVANCED);
+			SystemConstants.IMPL_TCP_SIMPLE, SystemConstants.IMPL_TCP_ADVANCED,
+			SystemConstants.IMPL_TCP_NIO);
+	ObservableList<String> codecTypeOptions = FXCollections.observableArrayList(
+			SystemConstants.CODEC_SERIALIZATION, SystemConstants.CODEC_BINARY);
 	ObservableList<String> measureTypeOptions = FXCollections
 			.observableArrayList("Variable Threads", "Variable Length");
 
 	// Comboboxen
 	private ComboBox<String> optionListImplType;
 	private ComboBox<String> optionListMeasureType;
+	private ComboBox<String> optionListCodecType;
 
 	// Eingabefelder
 	private TextField textFieldNumberOfClientThreads;
@@ -247,6 +251,8 @@ public class BenchmarkingClientGuiFx2 extends Application
 		optionListMeasureType = createCombobox(measureTypeOptions);
 		optionListImplType.setValue(SystemConstants.IMPL_TCP_SIMPLE);
 		optionListMeasureType.setValue("Variable Threads");
+		optionListCodecType = createCombobox(codecTypeOptions);
+		optionListCodecType.setValue(SystemConstants.CODEC_SERIALIZATION);
 
 		// Comboboxen zum Pane hinzufuegen und Labels ergaenzen
 		implType = createLabel("Implementierungstyp");
@@ -254,6 +260,8 @@ public class BenchmarkingClientGuiFx2 extends Application
 		inputPane.add(optionListImplType, 3, 1);
 		inputPane.add(createLabel("Art der Messung"), 5, 1);
 		inputPane.add(optionListMeasureType, 7, 1);
+		inputPane.add(createLabel("Kodierung"), 9, 1);
+		inputPane.add(optionListCodecType, 11, 1);
 
 		// Textfelder zum Pane hinzufuegen und Labels ergaenzen
 		numberOfClientThreads = createLabel("Anzahl Client-Threads");
@@ -947,15 +955,24 @@ public class BenchmarkingClientGuiFx2 extends Application
 			iParam.setImplementationType(
 					edu.hm.dako.chat.common.ImplementationType.TCPSimpleImplementation);
 			implType.setTextFill(Color.web(SystemConstants.BLACK_COLOR));
+		} else if (item.equals(SystemConstants.IMPL_TCP_NIO)) {
+			iParam.setImplementationType(
+					edu.hm.dako.chat.common.ImplementationType.TCPNioImplementation);
+			implType.setTextFill(Color.web(SystemConstants.BLACK_COLOR));
 		} else if (item.equals(SystemConstants.IMPL_UDP_ADVANCED)) {
-			setAlert("Der Typ UDPAdvanced wurde noch nicht Implementiert");
-			startable = false;
-			implType.setTextFill(Color.web(SystemConstants.RED_COLOR));
+			iParam.setImplementationType(
+					edu.hm.dako.chat.common.ImplementationType.UDPAdvancedImplementation);
+			implType.setTextFill(Color.web(SystemConstants.BLACK_COLOR));
 		} else {
 			setAlert("Kein Implementierungstyp ausgew\u00c4hlt!");
 			startable = false;
 			implType.setTextFill(Color.web(SystemConstants.RED_COLOR));
 		}
+		if (optionListCodecType.getValue().equals(SystemConstants.CODEC_BINARY)) {
+			iParam.setCodecType(edu.hm.dako.chat.common.CodecType.Binary);
+		} else {
+			iParam.setCodecType(edu.hm.dako.chat.common.CodecType.JavaSerialization);
+		}
 		String item1 = new String(optionListMeasureType.getValue().toString());
 		if (item1.equals("Variable Threads")) {
 			iParam.setMeasurementType(UserInterfaceInputParameters.MeasurementType.VarThreads);
@@ -56,6 +56,7 @@ public class BenchmarkingClientGuiSwing extends JPanel implements
   public static final String IMPL_TCP_ADVANCED = "TCPAdvanced";
   public static final String IMPL_UDP_ADVANCED = "UDPAdvanced";
   public static final String IMPL_TCP_SIMPLE = "TCPSimple";
+  public static final String IMPL_TCP_NIO = "TCPNio";
 
   // Zeitzaehler fuer Testlaufzeit
   private long timeCounter = 0;
@@ -138,7 +139,7 @@ public class BenchmarkingClientGuiSwing extends JPanel implements
      * Erzeugen der GUI-Komponenten
      */
     String[] optionStrings = { IMPL_TCP_ADVANCED, IMPL_TCP_SIMPLE,
-	  IMPL_UDP_ADVANCED };
+	  IMPL_TCP_NIO, IMPL_UDP_ADVANCED };
     optionListImplType = new JComboBox(optionStrings);
 
     String[] optionStrings1 = { "Variable Threads", "Variable Length" };
@@ -652,6 +653,8 @@ public class BenchmarkingClientGuiSwing extends JPanel implements
 	iParm.setImplementationType(ImplementationType.TCPAdvancedImplementation);
     if (item1.equals(IMPL_TCP_SIMPLE))
 	iParm.setImplementationType(ImplementationType.TCPSimpleImplementation);
+    if (item1.equals(IMPL_TCP_NIO))
+	iParm.setImplementationType(ImplementationType.TCPNioImplementation);
     if (item1.equals(IMPL_UDP_ADVANCED))
 	iParm.setImplementationType(ImplementationType.UDPAdvancedImplementation);
 
@@ -1,6 +1,7 @@
 package edu.hm.dako.chat.benchmarking;
 
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -11,6 +12,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * @author Mandl
  */
 
+import edu.hm.dako.chat.benchmarking.UserInterfaceInputParameters.ArrivalProcess;
 import edu.hm.dako.chat.client.*;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -19,13 +21,18 @@ import edu.hm.dako.chat.common.ClientConversationStatus;
 import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.common.ImplementationType;
 import edu.hm.dako.chat.common.SharedClientStatistics;
+import edu.hm.dako.chat.connection.Connection;
 import edu.hm.dako.chat.connection.ConnectionFactory;
 
 public class BenchmarkingClientImpl extends AbstractChatClient
-		implements Runnable, ClientUserInterface {
+		implements Runnable, ClientUserInterface, PendingRequests.ResponseHandler {
 
 	private static Log log = LogFactory.getLog(ClientImpl.class);
 
+	// Intervall in ms, in dem beim Warten auf Responses ein Testabbruch
+	// geprueft wird. Die Response selbst weckt den Client-Thread sofort.
+	private static final long responseWaitInterval = 100;
+
 	/*
 	 * Parameter fuer den Benchmarking-Lauf
 	 */
@@ -39,8 +46,20 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 
 	protected ImplementationType implementationType;
 
-	// Kennzeichen, ob zuletzt erwartete Chat-Response-PDU des Clients
-	// angekommen ist
+	/*
+	 * Parameter fuer die Lasterzeugung mit offener Schleife, ohne Aufruf von
+	 * configureOpenLoop arbeitet der Client mit geschlossener Schleife
+	 */
+	protected boolean openLoop;
+	protected ArrivalProcess arrivalProcess;
+	protected double ratePerClient;
+	protected int numberOfClients;
+
+	// Chat-Raum, in den der Client seine Nachrichten sendet, null: Standardraum
+	protected String benchmarkRoom;
+
+	// Sperre fuer die Eingabe (nur fuer die Schnittstelle ClientUserInterface
+	// gefuehrt, gewartet wird ueber die offenen Requests)
 	private AtomicBoolean chatResponseReceived = new AtomicBoolean();
 
 	// Serverzeit des letzten Chat-Message-Requests
@@ -91,8 +110,25 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 			int numberOfClient, int messageLength, int numberOfMessages, int clientThinkTime,
 			int numberOfRetries, int responseTimeout, SharedClientStatistics sharedStatistics,
 			ConnectionFactory connectionFactory) {
+		this(userInterface, implementationType, serverPort, remoteServerAddress,
+				numberOfClient, messageLength, numberOfMessages, clientThinkTime, numberOfRetries,
+				responseTimeout, sharedStatistics, connectionFactory, null);
+	}
+
+	/**
+	 * Client mit bereits aufgebauter Verbindung zum Server
+	 *
+	 * @param connection
+	 *          Verbindung aus der Verbindungsphase, null: Verbindung im
+	 *          Konstruktor aufbauen
+	 */
+	public BenchmarkingClientImpl(ClientUserInterface userInterface,
+			ImplementationType implementationType, int serverPort, String remoteServerAddress,
+			int numberOfClient, int messageLength, int numberOfMessages, int clientThinkTime,
+			int numberOfRetries, int responseTimeout, SharedClientStatistics sharedStatistics,
+			ConnectionFactory connectionFactory, Connection connection) {
 
-		super(userInterface, serverPort, remoteServerAddress);
+		super(userInterface, serverPort, remoteServerAddress, connectionFactory, connection);
 
 		this.implementationType = implementationType;
 		this.clientNumber = numberOfClient;
@@ -102,9 +138,44 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 		this.nrOfRetries = numberOfRetries;
 		this.responseTimeout = responseTimeout;
 		this.sharedStatistics = sharedStatistics;
+
+		// Responses werden im Message-Listener-Thread ueber die Sequenznummer
+		// zugeordnet und sofort in die Statistik aufgenommen
+		sharedClientData.pendingRequests.setResponseHandler(this);
 		startMessageListenerThread();
 	}
 
+	/**
+	 * Stellt den Client auf Lasterzeugung mit offener Schleife um: Die
+	 * Nachrichten werden nach einem Sendeplan statt nach Antwort und Denkzeit
+	 * gesendet
+	 *
+	 * @param arrivalProcess
+	 *          Verteilung der Sendezeitpunkte
+	 * @param ratePerClient
+	 *          Nachrichten pro Sekunde fuer diesen Client
+	 * @param numberOfClients
+	 *          Anzahl aller Clients des Tests
+	 */
+	public void configureOpenLoop(ArrivalProcess arrivalProcess, double ratePerClient,
+			int numberOfClients) {
+		this.openLoop = true;
+		this.arrivalProcess = arrivalProcess;
+		this.ratePerClient = ratePerClient;
+		this.numberOfClients = numberOfClients;
+	}
+
+	/**
+	 * Stellt den Chat-Raum ein, dem der Client nach dem Login beitritt und in den
+	 * er seine Nachrichten sendet
+	 *
+	 * @param room
+	 *          Name des Raums, null: Standardraum
+	 */
+	public void setBenchmarkRoom(String room) {
+		this.benchmarkRoom = room;
+	}
+
 	/**
 	 * Start des Message-Listener-Threads zur Bearbeitung von empfangenen
 	 * Server-Nachrichten
@@ -124,6 +195,8 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 			break;
 
 		case TCPAdvancedImplementation:
+		case TCPNioImplementation:
+		case UDPAdvancedImplementation:
 			try {
 				messageListenerThread = new AdvancedMessageListenerThreadImpl(this, connection,
 						sharedClientData);
@@ -156,14 +229,22 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 			// Login ausfuehren und warten, bis Server bestaetigt
 			this.login(threadName);
 
-			while (sharedClientData.status != ClientConversationStatus.REGISTERED) {
+			if (sharedClientData.loginResult.get() != ClientConversationStatus.REGISTERED) {
+				// Fehlermeldung vom Server beim Login-Vorgang
+				//log.debug("User " + userName + " schon im Server angemeldet");
+				return;
+			}
 
-				Thread.sleep(1);
-				if (sharedClientData.status == ClientConversationStatus.UNREGISTERED) {
-					// Fehlermeldung vom Server beim Login-Vorgang
-					//log.debug("User " + userName + " schon im Server angemeldet");
+			// Ggf. dem Chat-Raum des Clients beitreten und warten, bis der Server
+			// bestaetigt, damit alle Raeume vor dem Senden vollstaendig sind
+			if (benchmarkRoom != null) {
+				sharedClientData.roomResult = new CompletableFuture<Boolean>();
+				joinRoom(benchmarkRoom);
+				if (!sharedClientData.roomResult.get()) {
+					//log.debug("User " + userName + " konnte Raum " + benchmarkRoom + " nicht beitreten");
 					return;
 				}
+				setChatRoom(benchmarkRoom);
 			}
 
 			sharedStatistics.incrNumberOfLoggedInClients();
@@ -174,21 +255,29 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 			waitForLoggedInClients();
 
 			// Alle Chat-Nachrichten senden
-			int i = 0;
-			while ((i < numberOfMessagesToSend) && (!userInterface.isTestAborted())) {
-
-				sendMessageAndWaitForAck(i);
-				try {
-					// Zufaellige Zeit, aber maximal die angegebene Denkzeit
-					// warten
-					int randomThinkTime = (int) (Math.random() * clientThinkTime) + 1;
-					Thread.sleep(randomThinkTime);
-				} catch (Exception e) {
-					ExceptionHandler.logException(e);
+			if (getPipelineWindow() > 1) {
+				sendMessagesPipelined();
+			} else if (openLoop) {
+				sendMessagesOpenLoop();
+			} else {
+				int i = 0;
+				while ((i < numberOfMessagesToSend) && (!userInterface.isTestAborted())) {
+
+					sendMessageAndWaitForAck(i, 0);
+					if (clientThinkTime > 0) {
+						try {
+							// Zufaellige Zeit, aber maximal die angegebene Denkzeit
+							// warten
+							int randomThinkTime = (int) (Math.random() * clientThinkTime) + 1;
+							Thread.sleep(randomThinkTime);
+						} catch (Exception e) {
+							ExceptionHandler.logException(e);
+						}
+					}
+
+					i++;
+					//log.debug("Gesendete Chat-Nachrichten von " + userName + ": " + i);
 				}
-
-				i++;
-				//log.debug("Gesendete Chat-Nachrichten von " + userName + ": " + i);
 			}
 
 			// Warten, bis alle Clients bereit zum Ausloggen sind (alle Clients
@@ -197,9 +286,7 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 
 			// Logout ausfuehren und warten, bis Server bestaetigt
 			this.logout(threadName);
-			while (sharedClientData.status != ClientConversationStatus.UNREGISTERED) {
-				Thread.sleep(1);
-			}
+			sharedClientData.logoutResult.get();
 
 			sharedStatistics.incrNumberOfLoggedOutClients();
 
@@ -222,23 +309,119 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 	}
 
 	/**
-	 * Warten, bis Server einen Chat-Response als Antwort auf den letzten
-	 * Chat-Request gesendet hat (nur fuer Benchmarking)
+	 * Warten, bis der Server alle offenen Chat-Requests mit einer Chat-Response
+	 * beantwortet hat (nur fuer Benchmarking). Der Message-Listener-Thread weckt
+	 * den Client-Thread mit der letzten Response, die RTT wird bereits beim
+	 * Empfang gemessen.
+	 * 
+	 * @throws InterruptedException
+	 *           falls das Warten unterbrochen wurde
+	 */
+	private void waitUntilChatResponseReceived() throws InterruptedException {
+
+		while (!sharedClientData.pendingRequests.awaitEmpty(responseWaitInterval)) {
+			//log.debug(userName + " wartet auf Chat-Message-Response-PDU");
+			if (userInterface.isTestAborted()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Alle Chat-Nachrichten nach dem Sendeplan senden (offene Schleife). Liegt
+	 * der geplante Zeitpunkt schon zurueck, weil die letzte Antwort laenger
+	 * gedauert hat, wird sofort gesendet.
+	 */
+	private void sendMessagesOpenLoop() {
+
+		OpenLoopSchedule schedule = new OpenLoopSchedule(ratePerClient, arrivalProcess,
+				clientNumber, numberOfClients);
+
+		int i = 0;
+		while ((i < numberOfMessagesToSend) && (!userInterface.isTestAborted())) {
+			long intendedSendTime = schedule.next();
+			try {
+				OpenLoopSchedule.waitUntil(intendedSendTime);
+				sendMessageAndWaitForAck(i, intendedSendTime);
+			} catch (InterruptedException e) {
+				ExceptionHandler.logException(e);
+				return;
+			} catch (Exception e) {
+				ExceptionHandler.logException(e);
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Alle Chat-Nachrichten mit Pipelining senden: Der Client wartet erst, wenn
+	 * so viele Requests offen sind, wie das Fenster zulaesst. Die Responses
+	 * werden im Message-Listener-Thread ueber die Sequenznummer ihrem Request
+	 * zugeordnet und in die Statistik aufgenommen (siehe responseReceived). Bei
+	 * offener Schleife wird zusaetzlich nach dem Sendeplan gesendet, sonst ohne
+	 * Pause bzw. nach der Denkzeit, falls eine angegeben ist.
 	 */
-	private void waitUntilChatResponseReceived() {
+	private void sendMessagesPipelined() {
+
+		OpenLoopSchedule schedule = null;
+		if (openLoop) {
+			schedule = new OpenLoopSchedule(ratePerClient, arrivalProcess, clientNumber,
+					numberOfClients);
+		}
+
+		String chatMessage = createChatMessage();
 
-		setLock(true);
 		try {
-			while (getLock() == true) {
-				//log.debug(userName + " wartet auf Chat-Message-Response-PDU");
-				Thread.sleep(1);
-				// Durch den Sleep wird die RTT beim Benchmark ein wenig verfaelscht
+			int i = 0;
+			while ((i < numberOfMessagesToSend) && (!userInterface.isTestAborted())) {
+				long intendedSendTime = 0;
+				if (schedule != null) {
+					intendedSendTime = schedule.next();
+					OpenLoopSchedule.waitUntil(intendedSendTime);
+				}
+
+				// Warten, bis im Fenster wieder Platz ist
+				sharedClientData.pendingRequests.awaitSlot();
+
+				sharedStatistics.incrSentMsgCounter(clientNumber);
+				tell(userName, chatMessage, intendedSendTime);
+
+				if ((schedule == null) && (clientThinkTime > 0)) {
+					Thread.sleep((int) (Math.random() * clientThinkTime) + 1);
+				}
+				i++;
 			}
+
+			// Auf die Responses der noch offenen Requests warten
+			waitUntilChatResponseReceived();
 		} catch (Exception e) {
 			ExceptionHandler.logException(e);
 		}
+	}
 
-		return;
+	/**
+	 * Response in die Statistik aufnehmen (Aufruf im Message-Listener-Thread)
+	 */
+	@Override
+	public void responseReceived(PendingRequests.Request request, long serverTime,
+			long receiveTime) {
+		postReceive((int) request.getSequenceNumber(), serverTime,
+				receiveTime - request.getSendTime(),
+				receiveTime - request.getIntendedSendTime());
+	}
+
+	/**
+	 * Dummy-Nachricht in der eingestellten Laenge zusammenbauen
+	 * 
+	 * @return Chat-Nachricht
+	 */
+	private String createChatMessage() {
+
+		StringBuilder chatMessage = new StringBuilder(messageLength);
+		for (int j = 0; j < messageLength; j++) {
+			chatMessage.append('+');
+		}
+		return chatMessage.toString();
 	}
 
 	/**
@@ -247,33 +430,32 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 	 * 
 	 * @param i
 	 *          Nummer des Clients
+	 * @param intendedSendTime
+	 *          Geplanter Sendezeitpunkt (System.nanoTime) bei offener Schleife,
+	 *          sonst 0
 	 * @throws Exception
 	 */
-	private void sendMessageAndWaitForAck(int i) throws Exception {
+	private void sendMessageAndWaitForAck(int i, long intendedSendTime) throws Exception {
 
 		// Dummy-Nachricht zusammenbauen
-		String chatMessage = "";
-		for (int j = 0; j < messageLength; j++) {
-			chatMessage += "+";
-		}
+		String chatMessage = createChatMessage();
 
 		// Senden der Nachricht und warten, bis Bestaetigung vom Server da ist
 		try {
 
 			sharedStatistics.incrSentMsgCounter(clientNumber);
 
-			// RTT-Startzeit ermitteln
-			long rttStartTime = System.nanoTime();
-			tell(userName, chatMessage);
+			// Request wird vor dem Senden mit der RTT-Startzeit als offen
+			// eingetragen, die Response kann daher nicht verloren gehen. RTT und
+			// Serverzeit werden beim Empfang erfasst (siehe responseReceived),
+			// bei offener Schleife zusaetzlich die RTT ab dem geplanten
+			// Sendezeitpunkt.
+			tell(userName, chatMessage, intendedSendTime);
 
 			// Warten, bis Chat-Response empfangen wurde, dann erst naechsten
 			// Chat Request senden
 			waitUntilChatResponseReceived();
 
-			// Response in Statistik aufnehmen
-			long rtt = System.nanoTime() - rttStartTime;
-			postReceive(i, getLastServerTime(), rtt);
-
 		} catch (Exception e) {
 			ExceptionHandler.logException(e);
 		}
@@ -314,11 +496,15 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 	 *          Chat-Message-Requests benoetigt
 	 * @param rtt
 	 *          Round Trip Time fuer den Request
+	 * @param correctedRtt
+	 *          Round Trip Time ab dem geplanten Sendezeitpunkt
 	 */
-	private void postReceive(int messageNumber, long serverTime, long rtt) {
+	private void postReceive(int messageNumber, long serverTime, long rtt,
+			long correctedRtt) {
 
 		// Response-Zaehler und Serverbearbeitungszeit erhoehen
-		sharedStatistics.incrReceivedMsgCounter(clientNumber, rtt, serverTime);
+		sharedStatistics.incrReceivedMsgCounter(clientNumber, rtt, correctedRtt,
+				serverTime);
 
 		if (rtt <= serverTime) {
 			// Test, ob Messung plausibel ist, rtt muss groesser als serverTime sein
@@ -375,30 +561,13 @@ public class BenchmarkingClientImpl extends AbstractChatClient
 	}
 
 	@Override
-	public synchronized void setLock(boolean lock) {
-		chatResponseReceived.getAndSet(lock);
-		if (chatResponseReceived.get() == false) {
-			//log.debug(Thread.currentThread().getName() + " sendet notify");
-			// Antwort auf letzten Request erhalten, naechster Request kann gesendet
-			// werden
-			notifyAll();
-		}
+	public void setLock(boolean lock) {
+		chatResponseReceived.set(lock);
 	}
 
 	@Override
-	public synchronized boolean getLock() {
-		if (chatResponseReceived.get() == true) {
-			//log.debug(Thread.currentThread().getName() + " wartet auf notify");
-			try {
-				wait();
-				return false;
-			} catch (Exception e) {
-				return false;
-			}
-		} else {
-			//log.error(Thread.currentThread().getName() + " muss nicht auf notify warten, Lock frei");
-			return false;
-		}
+	public boolean getLock() {
+		return chatResponseReceived.get();
 	}
 
 	@Override
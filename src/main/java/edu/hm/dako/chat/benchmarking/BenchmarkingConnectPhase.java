@@ -0,0 +1,224 @@
+package edu.hm.dako.chat.benchmarking;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.client.AbstractChatClient;
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.DistributionMetrics;
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.common.LatencyHistogram;
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.ConnectionFactory;
+
+/**
+ * Verbindungsphase eines Benchmarks: Baut die Verbindungen aller Clients auf,
+ * bevor die Client-Threads starten. Die Verbindungen werden von mehreren
+ * Threads gleichzeitig aufgebaut, auf Wunsch mit begrenzter Rate (neue
+ * Verbindungen je Sekunde). Abgewiesene Verbindungsaufbauten wiederholt die
+ * ConnectionFactory mit wachsender Wartezeit. Die Dauer jedes
+ * Verbindungsaufbaus (einschliesslich Wiederholungen) wird erfasst und als
+ * eigene Verteilung ausgewertet.
+ * <p/>
+ * Bereits aufgebaute Verbindungen erhalten bis zum Ende der Phase im Abstand
+ * der Client-Heartbeats eine Heartbeat-PDU. Sonst baut der Server die ersten
+ * Verbindungen ab, wenn die Phase bei begrenzter Rate laenger als seine
+ * Leerlaufzeit dauert.
+ *
+ * @author Mandl
+ */
+public class BenchmarkingConnectPhase {
+
+	private static Log log = LogFactory.getLog(BenchmarkingConnectPhase.class);
+
+	private final UserInterfaceInputParameters parm;
+	private final ConnectionFactory[] connectionFactories;
+	private final Connection[] connections;
+
+	// Dauer der Verbindungsaufbauten in ns
+	private final LatencyHistogram connectTimes = new LatencyHistogram();
+
+	private final AtomicInteger failures = new AtomicInteger(0);
+
+	// Dauer der gesamten Phase in ns
+	private long duration;
+
+	// Abstand der Heartbeats auf bereits aufgebauten Verbindungen in ns
+	private final long keepAliveNanos = TimeUnit.MILLISECONDS
+			.toNanos(AbstractChatClient.DEFAULT_HEARTBEAT_INTERVAL);
+
+	// Anzahl der waehrend der Phase gesendeten Heartbeats
+	private int keepAlives;
+
+	/**
+	 * @param parm
+	 *          Parameter des Benchmarks
+	 * @param connectionFactories
+	 *          ConnectionFactory je Client
+	 */
+	public BenchmarkingConnectPhase(UserInterfaceInputParameters parm,
+			ConnectionFactory[] connectionFactories) {
+		this.parm = parm;
+		this.connectionFactories = connectionFactories;
+		this.connections = new Connection[connectionFactories.length];
+	}
+
+	/**
+	 * Baut alle Verbindungen auf und wartet, bis jeder Verbindungsaufbau
+	 * gelungen oder endgueltig gescheitert ist
+	 *
+	 * @throws InterruptedException
+	 */
+	public void connectAll() throws InterruptedException {
+		final AtomicInteger threadCounter = new AtomicInteger(0);
+		ExecutorService connectors = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(parm.getConnectConcurrency(), connections.length)),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Connector-" + threadCounter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		final long startTime = System.nanoTime();
+		double rate = parm.getConnectRate();
+		for (int i = 0; i < connections.length; i++) {
+			// Geplanter Zeitpunkt des Verbindungsaufbaus bei begrenzter Rate
+			final long dueTime = (rate > 0) ? startTime + (long) (i * 1000000000.0 / rate)
+					: startTime;
+			final int client = i;
+			connectors.execute(new Runnable() {
+				@Override
+				public void run() {
+					connect(client, dueTime);
+				}
+			});
+		}
+		connectors.shutdown();
+		long nextKeepAlive = startTime + keepAliveNanos;
+		while (!connectors.awaitTermination(1, TimeUnit.SECONDS)) {
+			//log.debug("Verbindungsphase laeuft noch");
+			if (System.nanoTime() - nextKeepAlive >= 0) {
+				keepAlive();
+				nextKeepAlive += keepAliveNanos;
+			}
+		}
+		duration = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Heartbeat auf allen bereits aufgebauten Verbindungen senden
+	 */
+	private void keepAlive() {
+		synchronized (connections) {
+			for (int i = 0; i < connections.length; i++) {
+				if (connections[i] == null) {
+					continue;
+				}
+				try {
+					connections[i].send(ChatPDU.createHeartbeatPdu(null, null));
+					keepAlives++;
+				} catch (Exception e) {
+					ExceptionHandler.logException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verbindung eines Clients zum geplanten Zeitpunkt aufbauen
+	 */
+	private void connect(int client, long dueTime) {
+		long delay = dueTime - System.nanoTime();
+		if (delay > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+
+		long connectStart = System.nanoTime();
+		try {
+			Connection connection = connectionFactories[client].connectToServer(
+					parm.getRemoteServerAddress(), parm.getRemoteServerPort(), 0,
+					AbstractChatClient.DEFAULT_BUFFER_SIZE, AbstractChatClient.DEFAULT_BUFFER_SIZE);
+			synchronized (connections) {
+				connections[client] = connection;
+			}
+			synchronized (connectTimes) {
+				connectTimes.recordValue(System.nanoTime() - connectStart);
+			}
+		} catch (Exception e) {
+			failures.incrementAndGet();
+			ExceptionHandler.logException(e);
+		}
+	}
+
+	/**
+	 * @param client
+	 *          Nummer des Clients
+	 * @return Verbindung des Clients, null: Verbindungsaufbau gescheitert
+	 */
+	public Connection getConnection(int client) {
+		return connections[client];
+	}
+
+	/**
+	 * @return Verteilung der Dauer der gelungenen Verbindungsaufbauten in ms
+	 */
+	public DistributionMetrics getConnectTimeMetrics() {
+		DistributionMetrics metrics = new DistributionMetrics();
+		synchronized (connectTimes) {
+			if (connectTimes.getTotalCount() == 0) {
+				return metrics;
+			}
+			metrics.setPercentile10(connectTimes.getPercentile(10) / 1000000.0);
+			metrics.setPercentile25(connectTimes.getPercentile(25) / 1000000.0);
+			metrics.setPercentile50(connectTimes.getPercentile(50) / 1000000.0);
+			metrics.setPercentile75(connectTimes.getPercentile(75) / 1000000.0);
+			metrics.setPercentile90(connectTimes.getPercentile(90) / 1000000.0);
+			metrics.setPercentile99(connectTimes.getPercentile(99) / 1000000.0);
+			metrics.setPercentile999(connectTimes.getPercentile(99.9) / 1000000.0);
+			metrics.setMinimum(connectTimes.getMin() / 1000000.0);
+			metrics.setMaximum(connectTimes.getMax() / 1000000.0);
+			metrics.setMean(connectTimes.getMean() / 1000000.0);
+			metrics.setStandardDeviation(connectTimes.getStandardDeviation() / 1000000.0);
+		}
+		metrics.setInterquartilRange(metrics.getPercentile75() - metrics.getPercentile25());
+		metrics.setRange(metrics.getMaximum() - metrics.getMinimum());
+		return metrics;
+	}
+
+	/**
+	 * @return Anzahl der waehrend der Phase gesendeten Heartbeats
+	 */
+	public int getNumberOfKeepAlives() {
+		synchronized (connections) {
+			return keepAlives;
+		}
+	}
+
+	/**
+	 * @return Anzahl gescheiterter Verbindungsaufbauten
+	 */
+	public int getNumberOfFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * @return Dauer der Verbindungsphase in ms
+	 */
+	public double getDuration() {
+		return duration / 1000000.0;
+	}
+}
@@ -0,0 +1,60 @@
+package edu.hm.dako.chat.benchmarking;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.common.SharedClientStatistics;
+
+/**
+ * Thread meldet zyklisch den Fortschritt eines Benchmarks an die GUI und ermittelt
+ * die Heap-Belegung, damit die Client-Threads dies nicht bei jeder Response tun
+ * muessen
+ *
+ * @author mandl
+ *
+ */
+public class BenchmarkingProgressReporterThread extends Thread {
+
+  private static Log log = LogFactory.getLog(BenchmarkingProgressReporterThread.class);
+
+  private static final int reportIntervalMillis = 100;
+
+  private SharedClientStatistics sharedData = null;
+
+  private volatile boolean running = true;
+
+  public BenchmarkingProgressReporterThread(SharedClientStatistics sharedData) {
+    setName("ProgressReporterThread");
+    setDaemon(true);
+    this.sharedData = sharedData;
+  }
+
+  /**
+   * Run-Methode fuer den Thread: Meldet alle n Millisekunden den Fortschritt
+   */
+  public void run() {
+    //log.debug(getName() + " gestartet");
+
+    while (running) {
+	try {
+	  TimeUnit.MILLISECONDS.sleep(reportIntervalMillis);
+	} catch (InterruptedException e) {
+	  //log.debug("Sleep unterbrochen");
+	}
+
+	sharedData.reportProgress();
+    }
+  }
+
+  /**
+   * Beenden des Threads, der restliche Fortschritt wird sofort gemeldet
+   */
+  public void stopThread() {
+    running = false;
+    interrupt();
+    sharedData.reportProgress();
+    //log.debug(getName() + " gestoppt");
+  }
+}
@@ -0,0 +1,414 @@
+package edu.hm.dako.chat.benchmarking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.PropertyConfigurator;
+
+import edu.hm.dako.chat.benchmarking.UserInterfaceInputParameters.ArrivalProcess;
+import edu.hm.dako.chat.benchmarking.UserInterfaceInputParameters.LoadMode;
+import edu.hm.dako.chat.benchmarking.UserInterfaceInputParameters.MeasurementType;
+import edu.hm.dako.chat.common.CodecType;
+import edu.hm.dako.chat.common.CommandLineParameters;
+import edu.hm.dako.chat.common.DistributionMetrics;
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.common.ImplementationType;
+import edu.hm.dako.chat.common.TransportType;
+import edu.hm.dako.chat.connection.FlushPolicy;
+import edu.hm.dako.chat.server.ChatServerInterface;
+import edu.hm.dako.chat.server.CountingServerGui;
+import edu.hm.dako.chat.server.ServerConfiguration;
+import edu.hm.dako.chat.server.ServerFactory;
+import edu.hm.dako.chat.tcp.ObjectStreamStatistics;
+import edu.hm.dako.chat.tcp.TcpConnection;
+import edu.hm.dako.chat.tcp.TcpWriteStatistics;
+
+/**
+ * Fuehrt eine Parameterreihe von Benchmarks ohne Benutzeroberflaeche aus. Fuer
+ * jede Kombination der angegebenen Parameterwerte wird ein Lauf mit dem
+ * {@link BenchmarkingClientCoordinator} ausgefuehrt, auf Wunsch jeweils gegen
+ * einen eigens dafuer gestarteten lokalen Server. Jeder Lauf wird zusaetzlich
+ * zum Benchmarking-Protokoll als strukturierte Zeile in die Ergebnisdatei
+ * geschrieben.
+ *
+ * Aufruf: BenchmarkingSweepRunner [Konfigurationsdatei] [Parameter=Wert ...]
+ *
+ * Parameter (Listen durch Komma getrennt). Alle Parameter mit eigener Spalte in
+ * der Ergebnisdatei sowie numberOfClients spannen als Dimensionen den
+ * Parameterraum auf, ausgefuehrt wird jede Kombination ihrer Werte:
+ *
+ * <pre>
+ * implementationTypes  Implementierungen, z.B. TCPAdvancedImplementation,TCPNioImplementation
+ * codecTypes           Kodierungen, z.B. JavaSerialization,Binary
+ * numberOfClients      Anzahl Clients, z.B. 1,2,4,8
+ * messageLengths       Nachrichtenlaengen in Byte
+ * thinkTimes           Denkzeiten in ms (nur geschlossene Schleife)
+ * loadMode             ClosedLoop oder OpenLoop (Senden nach Plan mit Zielrate)
+ * arrivalProcess       Constant oder Poisson (nur offene Schleife)
+ * targetRates          Zielraten in Nachrichten/s ueber alle Clients (nur offene Schleife)
+ * pipelineWindows      Anzahl gleichzeitig offener Requests je Client, z.B. 1,2,4,8
+ * roomCounts           Anzahl Chat-Raeume, auf die die Clients verteilt werden, z.B. 1,4
+ * confirmBatchSizes    Maximale Anzahl Event-Confirms je PDU, 1 = keine Buendelung, z.B. 1,8
+ * confirmBatchDelay    Maximale Wartezeit eines gebuendelten Confirms in Mikrosekunden
+ * flushPolicies        Flush-Strategien fuer Client und Server, z.B. Immediate,OnIdle,OnDrain
+ * flushThreshold       Puffergroesse in Byte, ab der unabhaengig von der Strategie gesendet wird
+ * tcpNoDelay           Socket-Option TCP_NODELAY fuer Client und Server
+ * transportTypes       Transport, z.B. Socket,LoopbackReference,LoopbackSerialized (Loopback nur
+ *                      mit lokalem Server und TCPSimple- bzw. TCPAdvancedImplementation,
+ *                      andere Kombinationen werden uebersprungen)
+ * streamResetObjects   Referenztabelle des Objektstroms nach so vielen Objekten zuruecksetzen
+ *                      (nur JavaSerialization, 0 = nie)
+ * streamResetBytes     Referenztabelle des Objektstroms nach so vielen Byte zuruecksetzen (0 = nie)
+ * connectConcurrency   Anzahl gleichzeitiger Verbindungsaufbauten in der Verbindungsphase
+ * connectRate          Neue Verbindungen je Sekunde in der Verbindungsphase (0 = unbegrenzt)
+ * connectAttempts      Maximale Anzahl Versuche je Verbindungsaufbau (nur TCP)
+ * connectRetryDelay    Wartezeit in ms vor dem zweiten Versuch, verdoppelt je Versuch (nur TCP)
+ * connectMaxRetryDelay Obergrenze der Wartezeit zwischen zwei Versuchen in ms (nur TCP)
+ * warmUpMessages       Einschwingphase: erste Responses je Client, die nicht gemessen werden
+ * coolDownMessages     Ausklingphase: letzte Responses je Client, die nicht gemessen werden
+ * warmUpTime           Einschwingphase in ms ab dem ersten Request (0 = keine)
+ * steadyStateTime      Messphase in ms nach der Einschwingphase (0 = bis zum Ende des Laufs)
+ * responseTimeout      Wartezeit in ms bis zur ersten Sendewiederholung (nur UDP)
+ * numberOfRetries      Maximale Anzahl Sendewiederholungen je Datagramm (nur UDP)
+ * simulatedLossRate    Simulierte Verlustrate empfangener Datagramme, z.B. 0.05 (nur UDP)
+ * numberOfMessages     Nachrichten je Client
+ * repetitions          Wiederholungen je Parameterkombination
+ * localServer          true: Server fuer jeden Lauf lokal starten
+ * serverAddress        Adresse des Servers (ohne lokalen Server)
+ * serverPort           Port des Servers
+ * resultFile           Ergebnisdatei
+ * pause                Pause zwischen zwei Laeufen in ms
+ * soakInterval         Dauertest: Abstand der Speichermessungen in s (0 = kein Dauertest)
+ * soakFile             Dauertest: Ergebnisdatei der Speichermessungen
+ * </pre>
+ *
+ * @author Mandl
+ */
+public class BenchmarkingSweepRunner {
+
+	private static Log log = LogFactory.getLog(BenchmarkingSweepRunner.class);
+
+	// Standard-Konfigurationsdatei
+	private static final String DEFAULT_CONFIG_FILE = "benchmark-sweep.properties";
+
+	// Namen der zusaetzlichen Messwerte in der Ergebnisdatei, die Namen der
+	// Parameterspalten liefert der Parameterraum
+	private static final String RESULT_HEADER = ";Schreibaufrufe;Byte je Schreibaufruf;"
+			+ "Resets;Verbindungsaufbau-P50;Verbindungsaufbau-P99;Verbindungsaufbau-Max;"
+			+ "Verbindungsphase (ms);Gescheiterte Verbindungen;Heartbeats Verbindungsphase";
+
+	private final Properties props;
+
+	BenchmarkingSweepRunner(Properties props) {
+		this.props = props;
+	}
+
+	public static void main(String[] args) {
+		PropertyConfigurator.configureAndWatch("log4j.client.properties", 60 * 1000);
+
+		Properties props = new Properties();
+		try {
+			CommandLineParameters.read(args, DEFAULT_CONFIG_FILE, props);
+			new BenchmarkingSweepRunner(props).runSweep();
+		} catch (IllegalArgumentException e) {
+			System.out.println("Ungueltiger Parameter: " + e.getMessage());
+			System.exit(1);
+		} catch (Exception e) {
+			ExceptionHandler.logException(e);
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Fuehrt alle Laeufe der Parameterreihe nacheinander aus
+	 *
+	 * @throws Exception
+	 *           Fehler beim Starten eines lokalen Servers
+	 */
+	void runSweep() throws Exception {
+
+		LoadMode loadMode = LoadMode.valueOf(read("loadMode", "ClosedLoop"));
+		ArrivalProcess arrivalProcess = ArrivalProcess.valueOf(read("arrivalProcess",
+				"Constant"));
+		int confirmBatchDelay = readInt("confirmBatchDelay", "200");
+		int flushThreshold = readInt("flushThreshold", "0");
+		int connectAttempts = readInt("connectAttempts", "50");
+		int connectRetryDelay = readInt("connectRetryDelay", "100");
+		int connectMaxRetryDelay = readInt("connectMaxRetryDelay", "2000");
+		int responseTimeout = readInt("responseTimeout", "200");
+		int numberOfRetries = readInt("numberOfRetries", "5");
+		double simulatedLossRate = Double.parseDouble(read("simulatedLossRate", "0"));
+		int numberOfMessages = readInt("numberOfMessages", "100");
+		boolean localServer = Boolean.parseBoolean(read("localServer", "true"));
+		String serverAddress = read("serverAddress", "127.0.0.1");
+		int serverPort = readInt("serverPort", "50000");
+		String resultFile = read("resultFile", "Benchmarking-ChatApp-Ergebnisse.csv");
+		int pause = readInt("pause", "1000");
+		int soakInterval = readInt("soakInterval", "0");
+		String soakFile = read("soakFile", "Benchmarking-ChatApp-Dauertest.csv");
+
+		ParameterGrid grid = createGrid(loadMode, localServer);
+		String parameterNames = grid.getColumnNames();
+		String parameterHeader = parameterNames + RESULT_HEADER;
+		int runs = grid.size();
+		int run = 0;
+		if (runs == 0) {
+			throw new IllegalArgumentException("transportTypes: Keine Kombination mit "
+					+ "unterstuetztem Transport");
+		}
+		System.out.println("Parameterreihe mit " + runs + " Laeufen gestartet, Ergebnisse in "
+				+ resultFile);
+		if (runs < grid.fullSize()) {
+			System.out.println((grid.fullSize() - runs) + " Kombinationen mit nicht "
+					+ "unterstuetztem Transport werden uebersprungen");
+		}
+
+		for (ParameterGrid.Combination combination : grid) {
+			UserInterfaceInputParameters parm = new UserInterfaceInputParameters();
+			parm.setNumberOfMessages(numberOfMessages);
+			parm.setRemoteServerAddress(serverAddress);
+			parm.setRemoteServerPort(serverPort);
+			parm.setMeasurementType(MeasurementType.Sweep);
+			parm.setArrivalProcess(arrivalProcess);
+			parm.setConfirmBatchDelay(confirmBatchDelay);
+			parm.setFlushThreshold(flushThreshold);
+			parm.setResponseTimeout(responseTimeout);
+			parm.setNumberOfRetries(numberOfRetries);
+			parm.setSimulatedLossRate(simulatedLossRate);
+			parm.setConnectAttempts(connectAttempts);
+			parm.setConnectRetryDelay(connectRetryDelay);
+			parm.setConnectMaxRetryDelay(connectMaxRetryDelay);
+			combination.applyTo(parm);
+
+			run++;
+			System.out.println("Lauf " + run + " von " + runs + ": " + combination.describe());
+
+			String parameterValues = combination.getColumnValues();
+			SoakMonitor soakMonitor = (soakInterval > 0) ? new SoakMonitor(soakFile,
+					parameterNames, parameterValues, soakInterval) : null;
+			runSingle(parm, localServer, resultFile, parameterHeader, parameterValues,
+					soakMonitor);
+			Thread.sleep(pause);
+		}
+		System.out.println("Parameterreihe beendet");
+	}
+
+	/**
+	 * Legt den Parameterraum an. Die Reihenfolge der Dimensionen bestimmt die
+	 * Spalten der Ergebnisdatei und die Schachtelung der Laeufe: Die letzte
+	 * Dimension (Wiederholung) aendert sich am schnellsten.
+	 *
+	 * @param loadMode
+	 *          Lastmodell, die Zielraten gelten nur fuer die offene Schleife
+	 * @param localServer
+	 *          true: Server wird fuer jeden Lauf lokal gestartet
+	 * @return Parameterraum
+	 */
+	private ParameterGrid createGrid(LoadMode loadMode, final boolean localServer) {
+
+		ParameterGrid grid = new ParameterGrid();
+		List<ImplementationType> implTypes = new ArrayList<ImplementationType>();
+		for (String s : readList("implementationTypes", "TCPAdvancedImplementation")) {
+			implTypes.add(ImplementationType.valueOf(s));
+		}
+		grid.addDimension("implementationTypes", "Implementierung", implTypes,
+				(p, v) -> p.setImplementationType((ImplementationType) v));
+		List<CodecType> codecTypes = new ArrayList<CodecType>();
+		for (String s : readList("codecTypes", "JavaSerialization")) {
+			codecTypes.add(CodecType.valueOf(s));
+		}
+		grid.addDimension("codecTypes", "Kodierung", codecTypes,
+				(p, v) -> p.setCodecType((CodecType) v));
+		// Die Anzahl der Clients schreibt der Koordinator selbst in die Ergebniszeile
+		grid.addDimension("numberOfClients", null, readIntList("numberOfClients", "1"),
+				(p, v) -> p.setNumberOfClients((Integer) v));
+		grid.addDimension("messageLengths", "Nachrichtenlaenge",
+				readIntList("messageLengths", "100"), (p, v) -> p.setMessageLength((Integer) v));
+		grid.addDimension("thinkTimes", "Denkzeit", readIntList("thinkTimes", "0"),
+				(p, v) -> p.setClientThinkTime((Integer) v));
+		grid.addDimension("loadMode", "Lastmodell", Collections.singletonList(loadMode),
+				(p, v) -> p.setLoadMode((LoadMode) v));
+		// Zielrate wird bei geschlossener Schleife nicht verwendet
+		grid.addDimension("targetRates", "Zielrate",
+				(loadMode == LoadMode.OpenLoop) ? readDoubleList("targetRates", "100")
+						: Collections.singletonList(0.0),
+				(p, v) -> p.setTargetRate((Double) v));
+		grid.addDimension("pipelineWindows", "Fenster", readIntList("pipelineWindows", "1"),
+				(p, v) -> p.setPipelineWindow((Integer) v));
+		grid.addDimension("roomCounts", "Raeume", readIntList("roomCounts", "1"),
+				(p, v) -> p.setNumberOfRooms((Integer) v));
+		grid.addDimension("confirmBatchSizes", "Confirm-Buendel",
+				readIntList("confirmBatchSizes", "1"),
+				(p, v) -> p.setConfirmBatchSize((Integer) v));
+		List<FlushPolicy> flushPolicies = new ArrayList<FlushPolicy>();
+		for (String s : readList("flushPolicies", "Immediate")) {
+			flushPolicies.add(FlushPolicy.valueOf(s));
+		}
+		grid.addDimension("flushPolicies", "Flush-Strategie", flushPolicies,
+				(p, v) -> p.setFlushPolicy((FlushPolicy) v));
+		List<Boolean> tcpNoDelay = new ArrayList<Boolean>();
+		for (String s : readList("tcpNoDelay", "true")) {
+			tcpNoDelay.add(Boolean.valueOf(s));
+		}
+		grid.addDimension("tcpNoDelay", "TCP_NODELAY", tcpNoDelay,
+				(p, v) -> p.setTcpNoDelay((Boolean) v));
+		List<TransportType> transportTypes = new ArrayList<TransportType>();
+		for (String s : readList("transportTypes", "Socket")) {
+			transportTypes.add(TransportType.valueOf(s));
+		}
+		grid.addDimension("transportTypes", "Transport", transportTypes,
+				(p, v) -> p.setTransportType((TransportType) v));
+		// Loopback-Transporte gibt es nur im selben Prozess und nur fuer die
+		// Thread-basierten TCP-Server
+		grid.addConstraint(c -> (c.get("transportTypes") == TransportType.Socket)
+				|| (localServer && isStreamServer((ImplementationType) c
+						.get("implementationTypes"))));
+		grid.addDimension("streamResetObjects", "Reset nach Objekten",
+				readIntList("streamResetObjects",
+						String.valueOf(TcpConnection.DEFAULT_RESET_OBJECTS)),
+				(p, v) -> p.setStreamResetObjects((Integer) v));
+		grid.addDimension("streamResetBytes", "Reset nach Byte",
+				readLongList("streamResetBytes", "0"),
+				(p, v) -> p.setStreamResetBytes((Long) v));
+		grid.addDimension("connectConcurrency", "Parallele Verbindungsaufbauten",
+				readIntList("connectConcurrency", "8"),
+				(p, v) -> p.setConnectConcurrency((Integer) v));
+		grid.addDimension("connectRate", "Verbindungsrate", readDoubleList("connectRate", "0"),
+				(p, v) -> p.setConnectRate((Double) v));
+		grid.addDimension("warmUpMessages", "Einschwingen (Nachrichten)",
+				readIntList("warmUpMessages", "0"), (p, v) -> p.setWarmUpMessages((Integer) v));
+		grid.addDimension("coolDownMessages", "Ausklingen (Nachrichten)",
+				readIntList("coolDownMessages", "0"),
+				(p, v) -> p.setCoolDownMessages((Integer) v));
+		grid.addDimension("warmUpTime", "Einschwingen (ms)", readIntList("warmUpTime", "0"),
+				(p, v) -> p.setWarmUpTime((Integer) v));
+		grid.addDimension("steadyStateTime", "Messphase (ms)",
+				readIntList("steadyStateTime", "0"), (p, v) -> p.setSteadyStateTime((Integer) v));
+		List<Integer> repetitions = new ArrayList<Integer>();
+		for (int repetition = 1; repetition <= readInt("repetitions", "1"); repetition++) {
+			repetitions.add(repetition);
+		}
+		grid.addDimension("repetitions", "Wiederholung", repetitions, null);
+		return grid;
+	}
+
+	private static boolean isStreamServer(ImplementationType implType) {
+		return (implType == ImplementationType.TCPSimpleImplementation)
+				|| (implType == ImplementationType.TCPAdvancedImplementation);
+	}
+
+	/**
+	 * Fuehrt einen einzelnen Lauf aus und wartet auf dessen Ende
+	 */
+	private void runSingle(UserInterfaceInputParameters parm, boolean localServer,
+			String resultFile, String parameterHeader, String parameterValues,
+			SoakMonitor soakMonitor)
+			throws Exception {
+
+		// Ausgangswert der Heap-Belegung vor dem Start des Servers messen
+		if (soakMonitor != null) {
+			soakMonitor.start();
+		}
+
+		ChatServerInterface server = null;
+		if (localServer) {
+			ServerConfiguration config = new ServerConfiguration();
+			config.applyProperties(props);
+			config.setImplementationType(parm.getImplementationType());
+			config.setCodecType(parm.getCodecType());
+			config.setServerPort(parm.getRemoteServerPort());
+			config.setTcpNoDelay(parm.isTcpNoDelay());
+			config.setFlushPolicy(parm.getFlushPolicy());
+			config.setFlushThreshold(parm.getFlushThreshold());
+			config.setTransportType(parm.getTransportType());
+			config.setStreamResetObjects(parm.getStreamResetObjects());
+			config.setStreamResetBytes(parm.getStreamResetBytes());
+			server = ServerFactory.getServer(config, new CountingServerGui());
+			server.start();
+		}
+
+		try {
+			// Die Schreibaufrufe werden prozessweit gezaehlt, bei lokalem Server
+			// also fuer Clients und Server zusammen
+			TcpWriteStatistics.reset();
+			ObjectStreamStatistics.reset();
+			BenchmarkingClientCoordinator coordinator = new BenchmarkingClientCoordinator();
+			coordinator.executeTest(parm, new BenchmarkingUserInterfaceSimulation());
+			coordinator.join();
+			long writes = TcpWriteStatistics.getNumberOfWrites();
+			long bytesPerWrite = (writes == 0) ? 0 : TcpWriteStatistics.getNumberOfBytes()
+					/ writes;
+			BenchmarkingConnectPhase connectPhase = coordinator.getConnectPhase();
+			DistributionMetrics connectTimes = connectPhase.getConnectTimeMetrics();
+			coordinator.writeStatisticRecord(resultFile, parameterHeader, parameterValues
+					+ ";" + writes + ";" + bytesPerWrite + ";"
+					+ ObjectStreamStatistics.getNumberOfResets() + ";"
+					+ String.format(Locale.ROOT, "%.3f;%.3f;%.3f;%.1f;%d;%d",
+							connectTimes.getPercentile50(), connectTimes.getPercentile99(),
+							connectTimes.getMaximum(), connectPhase.getDuration(),
+							connectPhase.getNumberOfFailures(),
+							connectPhase.getNumberOfKeepAlives()));
+		} finally {
+			if (soakMonitor != null) {
+				soakMonitor.stop();
+			}
+			if (server != null) {
+				server.stop();
+				// stop() unterbricht den aufrufenden Thread (gedacht fuer den
+				// Listener-Thread), die Parameterreihe laeuft aber weiter
+				Thread.interrupted();
+			}
+		}
+	}
+
+	private String read(String key, String defaultValue) {
+		return props.getProperty(key, defaultValue).trim();
+	}
+
+	private int readInt(String key, String defaultValue) {
+		return Integer.parseInt(read(key, defaultValue));
+	}
+
+	private List<String> readList(String key, String defaultValue) {
+		List<String> values = new ArrayList<String>();
+		for (String s : read(key, defaultValue).split(",")) {
+			if (!s.trim().isEmpty()) {
+				values.add(s.trim());
+			}
+		}
+		if (values.isEmpty()) {
+			throw new IllegalArgumentException(key + " ohne Werte");
+		}
+		return values;
+	}
+
+	private List<Integer> readIntList(String key, String defaultValue) {
+		List<Integer> values = new ArrayList<Integer>();
+		for (String s : readList(key, defaultValue)) {
+			values.add(Integer.valueOf(s));
+		}
+		return values;
+	}
+
+	private List<Long> readLongList(String key, String defaultValue) {
+		List<Long> values = new ArrayList<Long>();
+		for (String s : readList(key, defaultValue)) {
+			values.add(Long.valueOf(s));
+		}
+		return values;
+	}
+
+	private List<Double> readDoubleList(String key, String defaultValue) {
+		List<Double> values = new ArrayList<Double>();
+		for (String s : readList(key, defaultValue)) {
+			values.add(Double.valueOf(s));
+		}
+		return values;
+	}
+}
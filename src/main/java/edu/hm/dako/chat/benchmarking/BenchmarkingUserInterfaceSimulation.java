@@ -6,6 +6,7 @@ import javax.swing.JProgressBar;
 
 import org.apache.log4j.PropertyConfigurator;
 
+import edu.hm.dako.chat.common.DistributionMetrics;
 import edu.hm.dako.chat.server.ChatServerGuiInterface;
 import edu.hm.dako.chat.server.ServerStartData;
 
@@ -38,10 +39,24 @@ public class BenchmarkingUserInterfaceSimulation implements
     System.out.println("Anzahl Responses: " + data.getNumberOfResponses());
     System.out.println("Anzahl verlorener Responses: "
 	  + data.getNumberOfLostResponses());
+    System.out.printf("Durchsatz in Nachrichten/s: %.1f%n", data.getThroughput());
 
     System.out.println("Mittlere RTT in ms: " + data.getMean());
     System.out.println("Maximale RTT in ms: " + data.getMaximum());
     System.out.println("Minimale RTT in ms: " + data.getMinimum());
+    System.out.println("RTT-Median in ms: " + data.getPercentile50());
+    System.out.println("99%-Percentile der RTT in ms: " + data.getPercentile99());
+    System.out.println("99,9%-Percentile der RTT in ms: "
+	  + data.getPercentile999());
+
+    // RTT ab geplantem Sendezeitpunkt, weicht nur bei offener Schleife ab
+    DistributionMetrics corrected = data.getCorrectedRttMetrics();
+    if (corrected != null) {
+      System.out.println("Korrigierte RTT (ab geplantem Sendezeitpunkt) in ms: Median "
+	  + corrected.getPercentile50() + ", 99%-Percentile " + corrected.getPercentile99()
+	  + ", 99,9%-Percentile " + corrected.getPercentile999() + ", Maximum "
+	  + corrected.getMaximum());
+    }
     System.out.println("Mittlere Serverbearbeitungszeit in ms: "
 	  + data.getAvgServerTime());
 
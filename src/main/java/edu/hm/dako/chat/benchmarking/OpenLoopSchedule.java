@@ -0,0 +1,93 @@
+package edu.hm.dako.chat.benchmarking;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.hm.dako.chat.benchmarking.UserInterfaceInputParameters.ArrivalProcess;
+
+/**
+ * Sendeplan eines Clients fuer die Lasterzeugung mit offener Schleife: Die
+ * Sendezeitpunkte werden unabhaengig von den Antworten des Servers aus der
+ * Zielrate berechnet. Ein Client, der wegen einer langsamen Antwort in Verzug
+ * geraet, sendet danach ohne Pause, bis er den Plan wieder eingeholt hat. Die
+ * RTT wird zusaetzlich ab dem geplanten Sendezeitpunkt gemessen, so dass
+ * Wartezeiten durch Verzoegerungen des Servers nicht aus der Messung
+ * herausfallen (Korrektur der "Coordinated Omission").
+ *
+ * @author Mandl
+ */
+public class OpenLoopSchedule {
+
+	// Geplanter Zeitpunkt der naechsten Nachricht in ns (System.nanoTime)
+	private long nextSendTime;
+
+	// Mittlerer Abstand zweier Nachrichten in ns
+	private final double intervalNanos;
+
+	private final ArrivalProcess arrivalProcess;
+
+	private final Random random;
+
+	/**
+	 * @param ratePerClient
+	 *          Nachrichten pro Sekunde fuer diesen Client
+	 * @param arrivalProcess
+	 *          Konstante Abstaende oder Poisson-Prozess
+	 * @param clientNumber
+	 *          Nummer des Clients, verteilt die Startzeitpunkte bei konstanten
+	 *          Abstaenden
+	 * @param numberOfClients
+	 *          Anzahl aller Clients
+	 */
+	public OpenLoopSchedule(double ratePerClient, ArrivalProcess arrivalProcess,
+			int clientNumber, int numberOfClients) {
+		if (ratePerClient <= 0) {
+			throw new IllegalArgumentException("Ungueltige Senderate: " + ratePerClient);
+		}
+		this.intervalNanos = 1000000000.0 / ratePerClient;
+		this.arrivalProcess = arrivalProcess;
+		this.random = new Random(31L * clientNumber + System.nanoTime());
+
+		// Clients gleichmaessig ueber das erste Intervall verteilen, damit nicht
+		// alle gleichzeitig senden
+		long offset = (long) (intervalNanos * clientNumber / numberOfClients);
+		this.nextSendTime = System.nanoTime() + offset;
+	}
+
+	/**
+	 * Liefert den geplanten Zeitpunkt der naechsten Nachricht und schaltet den
+	 * Plan weiter
+	 *
+	 * @return Geplanter Sendezeitpunkt in ns (System.nanoTime)
+	 */
+	public long next() {
+		long sendTime = nextSendTime;
+		if (arrivalProcess == ArrivalProcess.Poisson) {
+			// Exponentialverteilte Abstaende
+			nextSendTime += (long) (-Math.log(1.0 - random.nextDouble()) * intervalNanos);
+		} else {
+			nextSendTime += (long) intervalNanos;
+		}
+		return sendTime;
+	}
+
+	/**
+	 * Wartet bis zum angegebenen Zeitpunkt, kehrt sofort zurueck, wenn er
+	 * bereits vorbei ist
+	 *
+	 * @param sendTime
+	 *          Zeitpunkt in ns (System.nanoTime)
+	 * @throws InterruptedException
+	 *           falls das Warten unterbrochen wurde
+	 */
+	public static void waitUntil(long sendTime) throws InterruptedException {
+		long remaining;
+		while ((remaining = sendTime - System.nanoTime()) > 0) {
+			// Thread.sleep rundet auf Millisekunden, parkNanos ist genauer
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package edu.hm.dako.chat.benchmarking;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Parameterraum einer Benchmark-Reihe: Jede Dimension hat einen Namen, eine
+ * Liste von Werten und optional eine Spalte in der Ergebnisdatei sowie einen
+ * Setter fuer die Eingabeparameter eines Laufs. Der Iterator liefert das
+ * kartesische Produkt aller Dimensionen, die zuletzt angelegte Dimension
+ * aendert sich am schnellsten. Kombinationen, die eine Randbedingung verletzen
+ * (z.B. ein Transport, den die Implementierung nicht unterstuetzt), werden
+ * uebersprungen.
+ *
+ * @author Mandl
+ */
+class ParameterGrid implements Iterable<ParameterGrid.Combination> {
+
+	/**
+	 * Eine Dimension des Parameterraums
+	 */
+	private static class Dimension {
+
+		final String name;
+
+		// Spaltenname in der Ergebnisdatei, null: keine eigene Spalte
+		final String column;
+
+		final List<Object> values;
+
+		// Uebernahme in die Eingabeparameter, null: nur in der Ergebnisdatei
+		final BiConsumer<UserInterfaceInputParameters, Object> setter;
+
+		Dimension(String name, String column, List<Object> values,
+				BiConsumer<UserInterfaceInputParameters, Object> setter) {
+			this.name = name;
+			this.column = column;
+			this.values = values;
+			this.setter = setter;
+		}
+	}
+
+	private final List<Dimension> dimensions = new ArrayList<Dimension>();
+
+	// Randbedingungen, die jede gelieferte Kombination erfuellt
+	private final List<Predicate<Combination>> constraints = new ArrayList<Predicate<Combination>>();
+
+	/**
+	 * Fuegt eine Dimension hinzu
+	 *
+	 * @param name
+	 *          Name der Dimension (Parametername der Konfiguration)
+	 * @param column
+	 *          Spaltenname in der Ergebnisdatei, null: keine eigene Spalte
+	 * @param values
+	 *          Werte der Dimension, mindestens einer
+	 * @param setter
+	 *          Uebernahme eines Wertes in die Eingabeparameter, null: keine
+	 */
+	void addDimension(String name, String column, List<?> values,
+			BiConsumer<UserInterfaceInputParameters, Object> setter) {
+		if (values.isEmpty()) {
+			throw new IllegalArgumentException(name + " ohne Werte");
+		}
+		dimensions.add(new Dimension(name, column, new ArrayList<Object>(values), setter));
+	}
+
+	/**
+	 * Fuegt eine Randbedingung hinzu
+	 *
+	 * @param constraint
+	 *          true fuer zulaessige Kombinationen
+	 */
+	void addConstraint(Predicate<Combination> constraint) {
+		constraints.add(constraint);
+	}
+
+	/**
+	 * @return Anzahl aller Kombinationen ohne Beruecksichtigung der
+	 *         Randbedingungen
+	 */
+	int fullSize() {
+		int size = 1;
+		for (Dimension dimension : dimensions) {
+			size *= dimension.values.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return Anzahl der zulaessigen Kombinationen
+	 */
+	int size() {
+		int size = 0;
+		for (Iterator<Combination> i = iterator(); i.hasNext(); i.next()) {
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * @return Spaltennamen der Dimensionen mit eigener Spalte, durch Semikolon
+	 *         getrennt
+	 */
+	String getColumnNames() {
+		StringBuilder names = new StringBuilder();
+		for (Dimension dimension : dimensions) {
+			if (dimension.column != null) {
+				names.append((names.length() == 0) ? "" : ";").append(dimension.column);
+			}
+		}
+		return names.toString();
+	}
+
+	@Override
+	public Iterator<Combination> iterator() {
+		return new Iterator<Combination>() {
+
+			// Wertindex je Dimension, null nach der letzten Kombination
+			private int[] indexes = new int[dimensions.size()];
+
+			// Naechste zulaessige Kombination, null am Ende
+			private Combination next = advance();
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Combination next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				Combination combination = next;
+				next = advance();
+				return combination;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			/**
+			 * Sucht die naechste Kombination, die alle Randbedingungen erfuellt
+			 */
+			private Combination advance() {
+				while (indexes != null) {
+					Combination combination = new Combination(indexes.clone());
+
+					// Wie ein Zaehlwerk weiterschalten, hinten beginnend
+					int d = indexes.length - 1;
+					while ((d >= 0) && (++indexes[d] == dimensions.get(d).values.size())) {
+						indexes[d] = 0;
+						d--;
+					}
+					if (d < 0) {
+						indexes = null;
+					}
+					if (isAllowed(combination)) {
+						return combination;
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+	private boolean isAllowed(Combination combination) {
+		for (Predicate<Combination> constraint : constraints) {
+			if (!constraint.test(combination)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Eine Kombination von Werten, je Dimension genau einer
+	 */
+	class Combination {
+
+		private final int[] indexes;
+
+		private Combination(int[] indexes) {
+			this.indexes = indexes;
+		}
+
+		/**
+		 * @param name
+		 *          Name der Dimension
+		 * @return Wert der Dimension in dieser Kombination
+		 */
+		Object get(String name) {
+			for (int d = 0; d < indexes.length; d++) {
+				if (dimensions.get(d).name.equals(name)) {
+					return dimensions.get(d).values.get(indexes[d]);
+				}
+			}
+			throw new IllegalArgumentException("Unbekannte Dimension " + name);
+		}
+
+		/**
+		 * Uebernimmt alle Werte mit Setter in die Eingabeparameter
+		 *
+		 * @param parm
+		 *          Eingabeparameter des Laufs
+		 */
+		void applyTo(UserInterfaceInputParameters parm) {
+			for (int d = 0; d < indexes.length; d++) {
+				Dimension dimension = dimensions.get(d);
+				if (dimension.setter != null) {
+					dimension.setter.accept(parm, dimension.values.get(indexes[d]));
+				}
+			}
+		}
+
+		/**
+		 * @return Werte der Dimensionen mit eigener Spalte, durch Semikolon
+		 *         getrennt, passend zu {@link ParameterGrid#getColumnNames()}
+		 */
+		String getColumnValues() {
+			StringBuilder values = new StringBuilder();
+			for (int d = 0; d < indexes.length; d++) {
+				Dimension dimension = dimensions.get(d);
+				if (dimension.column != null) {
+					values.append((values.length() == 0) ? "" : ";").append(
+							dimension.values.get(indexes[d]));
+				}
+			}
+			return values.toString();
+		}
+
+		/**
+		 * @return Kurzbeschreibung fuer die Fortschrittsausgabe: die Werte aller
+		 *         Dimensionen mit mehr als einem Wert
+		 */
+		String describe() {
+			StringBuilder text = new StringBuilder();
+			for (int d = 0; d < indexes.length; d++) {
+				Dimension dimension = dimensions.get(d);
+				if (dimension.values.size() > 1) {
+					text.append((text.length() == 0) ? "" : ", ").append(dimension.name)
+							.append('=').append(dimension.values.get(indexes[d]));
+				}
+			}
+			return text.toString();
+		}
+	}
+}
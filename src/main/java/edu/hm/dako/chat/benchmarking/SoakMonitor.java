@@ -0,0 +1,178 @@
+package edu.hm.dako.chat.benchmarking;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.tcp.ObjectStreamStatistics;
+
+/**
+ * Dauertest: Erfasst waehrend eines Benchmark-Laufs in festen Abstaenden den
+ * Speicherbedarf der offenen Verbindungen und schreibt je Messung eine Zeile in
+ * eine eigene Ergebnisdatei. Gemessen werden die seit dem letzten Zuruecksetzen
+ * der Objektstroeme gesendeten Objekte und Byte (nur Verbindungen mit
+ * durchgehender Java-Serialisierung) sowie die Heap-Belegung nach der letzten
+ * Garbage Collection im Vergleich zum Beginn des Laufs. Waechst der Heap je
+ * Verbindung mit der Laufzeit, haelt eine Verbindung Objekte fest.
+ * <p/>
+ * Eine Garbage Collection wird nur beim Start und bei der abschliessenden
+ * Messung in stop() erzwungen. Die periodischen Messungen lesen die Belegung
+ * der Heap-Bereiche nach der letzten Garbage Collection der JVM (siehe
+ * MemoryPoolMXBean.getCollectionUsage), damit die Messung den Lauf nicht
+ * selbst anhaelt.
+ *
+ * @author Mandl
+ */
+public class SoakMonitor {
+
+	private static Log log = LogFactory.getLog(SoakMonitor.class);
+
+	private final String fileName;
+	private final String parameterHeader;
+	private final String parameterValues;
+	private final int interval;
+
+	private ScheduledExecutorService timer;
+	private long startTime;
+	private long baselineHeap;
+
+	/**
+	 * @param fileName
+	 *          Ergebnisdatei des Dauertests
+	 * @param parameterHeader
+	 *          Namen der Parameterspalten
+	 * @param parameterValues
+	 *          Werte der Parameterspalten
+	 * @param interval
+	 *          Abstand der Messungen in Sekunden
+	 */
+	public SoakMonitor(String fileName, String parameterHeader, String parameterValues,
+			int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Ungueltiges Messintervall: " + interval);
+		}
+		this.fileName = fileName;
+		this.parameterHeader = parameterHeader;
+		this.parameterValues = parameterValues;
+		this.interval = interval;
+	}
+
+	/**
+	 * Ausgangswert der Heap-Belegung messen und periodische Messung starten, vor
+	 * dem Aufbau der Verbindungen aufzurufen
+	 */
+	public synchronized void start() {
+		baselineHeap = usedHeapAfterGc(true);
+		startTime = System.nanoTime();
+		timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "SoakMonitor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				sample(false);
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Periodische Messung beenden und abschliessend nach einer Garbage
+	 * Collection messen
+	 */
+	public synchronized void stop() {
+		if (timer != null) {
+			timer.shutdownNow();
+			timer = null;
+			sample(true);
+		}
+	}
+
+	/**
+	 * Eine Messung durchfuehren und in die Ergebnisdatei schreiben
+	 *
+	 * @param forceGc
+	 *          true: vor der Messung eine Garbage Collection erzwingen
+	 */
+	private synchronized void sample(boolean forceGc) {
+		long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+		int connections = ObjectStreamStatistics.getNumberOfConnections();
+		long retainedObjects = ObjectStreamStatistics.getRetainedObjects();
+		long maxRetainedObjects = ObjectStreamStatistics.getMaxRetainedObjects();
+		long retainedBytes = ObjectStreamStatistics.getRetainedBytes();
+		long resets = ObjectStreamStatistics.getNumberOfResets();
+		long usedHeap = usedHeapAfterGc(forceGc);
+		double heapPerConnection = (connections == 0) ? 0
+				: (usedHeap - baselineHeap) / 1024.0 / connections;
+
+		System.out.println("Dauertest nach " + elapsed + " s: " + connections
+				+ " Verbindungen, " + retainedObjects + " Objekte seit Reset, Heap "
+				+ usedHeap / (1024 * 1024) + " MiB");
+
+		File file = new File(fileName);
+		try {
+			boolean created = file.createNewFile();
+			BufferedWriter out = new BufferedWriter(new FileWriter(fileName, true));
+			Formatter formatter = new Formatter(Locale.ROOT);
+			if (created) {
+				formatter.format("%s;Laufzeit (s);Verbindungen;Objekte seit Reset;"
+						+ "Max. Objekte seit Reset je Verbindung;Byte seit Reset;Resets;"
+						+ "Heap (MiB);Heap-Zuwachs je Verbindung (KiB)%n", parameterHeader);
+			}
+			formatter.format("%s;%d;%d;%d;%d;%d;%d;%.1f;%.1f%n", parameterValues, elapsed,
+					connections, retainedObjects, maxRetainedObjects, retainedBytes, resets,
+					usedHeap / (1024.0 * 1024.0), heapPerConnection);
+			out.append(formatter.toString());
+			formatter.close();
+			out.flush();
+			out.close();
+		} catch (IOException e) {
+			ExceptionHandler.logException(e);
+		}
+	}
+
+	/**
+	 * Heap-Belegung nach der letzten Garbage Collection ermitteln
+	 *
+	 * @param forceGc
+	 *          true: vorher eine Garbage Collection erzwingen
+	 * @return Belegung in Byte, ohne bisherige Garbage Collection die aktuelle
+	 *         Belegung
+	 */
+	private static long usedHeapAfterGc(boolean forceGc) {
+		if (forceGc) {
+			System.gc();
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if ((pool.getType() == MemoryType.HEAP) && (usage != null)) {
+				used += usage.getUsed();
+			}
+		}
+		if (used == 0) {
+			// Noch keine Garbage Collection gelaufen
+			used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		}
+		return used;
+	}
+}
@@ -1,6 +1,10 @@
 package edu.hm.dako.chat.benchmarking;
 
+import edu.hm.dako.chat.common.CodecType;
 import edu.hm.dako.chat.common.ImplementationType;
+import edu.hm.dako.chat.common.TransportType;
+import edu.hm.dako.chat.connection.FlushPolicy;
+import edu.hm.dako.chat.tcp.TcpConnection;
 
 /**
  * Konfigurationsparameter fuer Lasttest
@@ -25,11 +29,61 @@ public class UserInterfaceInputParameters {
   // bei verbindungslosen Protokollen
   // Typ der Implementierung
   private int responseTimoeut;
+  // Anteil verlorener ausgehender Datagramme, nur zum Test der UDP-Verbindungen
+  private double simulatedLossRate;
 
   private ImplementationType implementationType;
 
+  // Kodierung der PDUs (muss zum Server passen)
+  private CodecType codecType;
+
   // Typ der Messung fuer das Messprotokoll
   private MeasurementType measurementType;
+
+  // Lastmodell: geschlossene Schleife (Senden nach Antwort und Denkzeit) oder
+  // offene Schleife (Senden nach Plan mit Zielrate)
+  private LoadMode loadMode;
+  // Verteilung der Sendezeitpunkte bei offener Schleife
+  private ArrivalProcess arrivalProcess;
+  // Zielrate bei offener Schleife in Nachrichten pro Sekunde ueber alle Clients
+  private double targetRate;
+  // Maximale Anzahl gleichzeitig offener Chat-Requests je Client (Pipelining),
+  // 1 = Senden erst nach Empfang der Response
+  private int pipelineWindow;
+  // Anzahl Chat-Raeume, auf die die Clients reihum verteilt werden,
+  // 1 = alle Clients im Standardraum
+  private int numberOfRooms;
+  // Buendelung der Event-Confirms: Maximale Anzahl Confirms je Sammel-Confirm
+  // (1 = jedes Event einzeln bestaetigen) und maximale Wartezeit in Mikrosekunden
+  private int confirmBatchSize;
+  private int confirmBatchDelay;
+  // Sendeverhalten der Verbindungen: Socket-Option TCP_NODELAY, Zeitpunkt des
+  // Schreibens gepufferter Nachrichten und Puffergroesse in Byte (0 = Standardwert)
+  private boolean tcpNoDelay;
+  private FlushPolicy flushPolicy;
+  private int flushThreshold;
+  // Java-Serialisierung: Referenztabelle des Objektstroms nach so vielen
+  // Objekten bzw. Byte zuruecksetzen (0 = nie)
+  private int streamResetObjects;
+  private long streamResetBytes;
+  // Verbindungsphase: Anzahl gleichzeitiger Verbindungsaufbauten, Rate neuer
+  // Verbindungen je Sekunde (0 = unbegrenzt) und Wiederholung abgewiesener
+  // Verbindungsaufbauten (Versuche, Wartezeit in ms, verdoppelt bis Obergrenze)
+  private int connectConcurrency;
+  private double connectRate;
+  private int connectAttempts;
+  private int connectRetryDelay;
+  private int connectMaxRetryDelay;
+  // Phasen eines Laufs: Einschwing- und Ausklingphase in Responses je Client,
+  // Einschwing- und Messphase in ms ab dem ersten Request (0 = nicht begrenzt).
+  // Nur die Responses der Messphase gehen in RTT und Durchsatz ein.
+  private int warmUpMessages;
+  private int coolDownMessages;
+  private int warmUpTime;
+  private int steadyStateTime;
+  // Transport zwischen Clients und Server: Sockets oder Warteschlangen im
+  // selben Prozess (Server muss im Benchmark-Prozess laufen)
+  private TransportType transportType;
   private int remoteServerPort; // UDP- oder TCP-Port des Servers, Default: 50000
   private String remoteServerAddress; // Server-IP-Adresse, Default: "127.0.0.1"
 
@@ -44,7 +98,33 @@ public class UserInterfaceInputParameters {
     remoteServerPort = 50000;
     remoteServerAddress = "127.0.0.1";
     implementationType = ImplementationType.TCPSimpleImplementation;
+    codecType = CodecType.JavaSerialization;
     measurementType = MeasurementType.VarThreads;
+    loadMode = LoadMode.ClosedLoop;
+    arrivalProcess = ArrivalProcess.Constant;
+    targetRate = 100;
+    pipelineWindow = 1;
+    numberOfRooms = 1;
+    confirmBatchSize = 1;
+    confirmBatchDelay = 200;
+    tcpNoDelay = true;
+    flushPolicy = FlushPolicy.Immediate;
+    flushThreshold = 0;
+    streamResetObjects = TcpConnection.DEFAULT_RESET_OBJECTS;
+    streamResetBytes = 0;
+    transportType = TransportType.Socket;
+    connectConcurrency = 8;
+    connectRate = 0;
+    connectAttempts = 50;
+    connectRetryDelay = 100;
+    connectMaxRetryDelay = 2000;
+    warmUpMessages = 0;
+    coolDownMessages = 0;
+    warmUpTime = 0;
+    steadyStateTime = 0;
+    numberOfRetries = 5;
+    responseTimoeut = 200;
+    simulatedLossRate = 0;
   }
 
   /**
@@ -64,6 +144,9 @@ public class UserInterfaceInputParameters {
     case TCPSimpleImplementation:
 	returnString = "TCPSimple-Implementation";
 	break;
+    case TCPNioImplementation:
+	returnString = "TCPNio-Implementation";
+	break;
     case UDPAdvancedImplementation:
 	returnString = "UDPAdvanced-Implementation";
 	break;
@@ -74,6 +157,30 @@ public class UserInterfaceInputParameters {
     return returnString;
   }
 
+  /**
+   * Abbildung der Kodierungstypen auf Strings
+   *
+   * @param type
+   *          Kodierungstyp
+   * @return Passender String fuer Kodierungstyp
+   */
+  public String mapCodecTypeToString(CodecType type) {
+    String returnString = null;
+
+    switch (type) {
+    case JavaSerialization:
+	returnString = "Java-Serialisierung";
+	break;
+    case Binary:
+	returnString = "Binaerkodierung";
+	break;
+    default:
+	break;
+    }
+
+    return returnString;
+  }
+
   /**
    * Typen von unterstuetzten Messungen: Nur fuer die Unterscheidung der Messung im
    * Benchmarking-Protokoll
@@ -84,7 +191,57 @@ public class UserInterfaceInputParameters {
     // Variation der Threadanzahl
     VarThreads,
     // Variation der Nachrichtenlaenge
-    VarMsgLength
+    VarMsgLength,
+    // Automatische Parameterreihe (mehrere Parameter variiert)
+    Sweep
+  }
+
+  /**
+   * Lastmodelle des Benchmarks
+   *
+   * @author Mandl
+   */
+  public enum LoadMode {
+    // Naechster Request erst nach Response und Denkzeit
+    ClosedLoop,
+    // Requests nach Sendeplan mit Zielrate, RTT auch ab geplantem Sendezeitpunkt
+    OpenLoop
+  }
+
+  /**
+   * Verteilung der Sendezeitpunkte bei offener Schleife
+   *
+   * @author Mandl
+   */
+  public enum ArrivalProcess {
+    // Konstante Abstaende
+    Constant,
+    // Exponentialverteilte Abstaende
+    Poisson
+  }
+
+  /**
+   * Abbildung der Lastmodelle auf Strings
+   *
+   * @param mode
+   *          Lastmodell
+   * @return Passender String fuer Lastmodell
+   */
+  public String mapLoadModeToString(LoadMode mode) {
+    String returnString = null;
+
+    switch (mode) {
+    case ClosedLoop:
+	returnString = "Geschlossene Schleife";
+	break;
+    case OpenLoop:
+	returnString = "Offene Schleife";
+	break;
+    default:
+	break;
+    }
+
+    return returnString;
   }
 
   /**
@@ -104,6 +261,9 @@ public class UserInterfaceInputParameters {
     case VarMsgLength:
 	returnString = "VariationNachrichtenlaenge";
 	break;
+    case Sweep:
+	returnString = "Parameterreihe";
+	break;
     default:
 	break;
     }
@@ -159,6 +319,14 @@ public class UserInterfaceInputParameters {
     this.implementationType = implementationType;
   }
 
+  public CodecType getCodecType() {
+    return codecType;
+  }
+
+  public void setCodecType(CodecType codecType) {
+    this.codecType = codecType;
+  }
+
   public MeasurementType getMeasurementType() {
     return measurementType;
   }
@@ -167,6 +335,204 @@ public class UserInterfaceInputParameters {
     this.measurementType = measurementType;
   }
 
+  public LoadMode getLoadMode() {
+    return loadMode;
+  }
+
+  public void setLoadMode(LoadMode loadMode) {
+    this.loadMode = loadMode;
+  }
+
+  public ArrivalProcess getArrivalProcess() {
+    return arrivalProcess;
+  }
+
+  public void setArrivalProcess(ArrivalProcess arrivalProcess) {
+    this.arrivalProcess = arrivalProcess;
+  }
+
+  public double getTargetRate() {
+    return targetRate;
+  }
+
+  public void setTargetRate(double targetRate) {
+    this.targetRate = targetRate;
+  }
+
+  public int getPipelineWindow() {
+    return pipelineWindow;
+  }
+
+  public void setPipelineWindow(int pipelineWindow) {
+    this.pipelineWindow = pipelineWindow;
+  }
+
+  public int getNumberOfRooms() {
+    return numberOfRooms;
+  }
+
+  public void setNumberOfRooms(int numberOfRooms) {
+    this.numberOfRooms = numberOfRooms;
+  }
+
+  public int getConfirmBatchSize() {
+    return confirmBatchSize;
+  }
+
+  public void setConfirmBatchSize(int confirmBatchSize) {
+    this.confirmBatchSize = confirmBatchSize;
+  }
+
+  public int getConfirmBatchDelay() {
+    return confirmBatchDelay;
+  }
+
+  public void setConfirmBatchDelay(int confirmBatchDelay) {
+    this.confirmBatchDelay = confirmBatchDelay;
+  }
+
+  public boolean isTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  public void setTcpNoDelay(boolean tcpNoDelay) {
+    this.tcpNoDelay = tcpNoDelay;
+  }
+
+  public FlushPolicy getFlushPolicy() {
+    return flushPolicy;
+  }
+
+  public void setFlushPolicy(FlushPolicy flushPolicy) {
+    this.flushPolicy = flushPolicy;
+  }
+
+  public int getFlushThreshold() {
+    return flushThreshold;
+  }
+
+  public void setFlushThreshold(int flushThreshold) {
+    this.flushThreshold = flushThreshold;
+  }
+
+  public int getStreamResetObjects() {
+    return streamResetObjects;
+  }
+
+  public void setStreamResetObjects(int streamResetObjects) {
+    this.streamResetObjects = streamResetObjects;
+  }
+
+  public long getStreamResetBytes() {
+    return streamResetBytes;
+  }
+
+  public void setStreamResetBytes(long streamResetBytes) {
+    this.streamResetBytes = streamResetBytes;
+  }
+
+  public int getConnectConcurrency() {
+    return connectConcurrency;
+  }
+
+  public void setConnectConcurrency(int connectConcurrency) {
+    this.connectConcurrency = connectConcurrency;
+  }
+
+  public double getConnectRate() {
+    return connectRate;
+  }
+
+  public void setConnectRate(double connectRate) {
+    this.connectRate = connectRate;
+  }
+
+  public int getConnectAttempts() {
+    return connectAttempts;
+  }
+
+  public void setConnectAttempts(int connectAttempts) {
+    this.connectAttempts = connectAttempts;
+  }
+
+  public int getConnectRetryDelay() {
+    return connectRetryDelay;
+  }
+
+  public void setConnectRetryDelay(int connectRetryDelay) {
+    this.connectRetryDelay = connectRetryDelay;
+  }
+
+  public int getConnectMaxRetryDelay() {
+    return connectMaxRetryDelay;
+  }
+
+  public void setConnectMaxRetryDelay(int connectMaxRetryDelay) {
+    this.connectMaxRetryDelay = connectMaxRetryDelay;
+  }
+
+  public int getWarmUpMessages() {
+    return warmUpMessages;
+  }
+
+  public void setWarmUpMessages(int warmUpMessages) {
+    this.warmUpMessages = warmUpMessages;
+  }
+
+  public int getCoolDownMessages() {
+    return coolDownMessages;
+  }
+
+  public void setCoolDownMessages(int coolDownMessages) {
+    this.coolDownMessages = coolDownMessages;
+  }
+
+  public int getWarmUpTime() {
+    return warmUpTime;
+  }
+
+  public void setWarmUpTime(int warmUpTime) {
+    this.warmUpTime = warmUpTime;
+  }
+
+  public int getSteadyStateTime() {
+    return steadyStateTime;
+  }
+
+  public void setSteadyStateTime(int steadyStateTime) {
+    this.steadyStateTime = steadyStateTime;
+  }
+
+  public TransportType getTransportType() {
+    return transportType;
+  }
+
+  public void setTransportType(TransportType transportType) {
+    this.transportType = transportType;
+  }
+
+  public double getSimulatedLossRate() {
+    return simulatedLossRate;
+  }
+
+  public void setSimulatedLossRate(double simulatedLossRate) {
+    this.simulatedLossRate = simulatedLossRate;
+  }
+
+  /**
+   * Chat-Raum eines Clients: Die Clients werden reihum auf die Raeume verteilt
+   *
+   * @param clientNumber
+   *          Nummer des Clients ab 0
+   * @return Name des Raums, null bei nur einem Raum (Standardraum)
+   */
+  public String getRoomOfClient(int clientNumber) {
+    if (numberOfRooms <= 1) {
+      return null;
+    }
+    return "Raum-" + (clientNumber % numberOfRooms);
+  }
+
   public int getRemoteServerPort() {
     return remoteServerPort;
   }
@@ -1,5 +1,7 @@
 package edu.hm.dako.chat.benchmarking;
 
+import edu.hm.dako.chat.common.DistributionMetrics;
+
 public class UserInterfaceResultData {
 
   // Anzahl gesendeter Requests
@@ -20,6 +22,9 @@ public class UserInterfaceResultData {
   // Testdauer in Sekunden
   private long elapsedTime;
 
+  // Durchsatz in Nachrichten pro Sekunde (erster Request bis letzte Response)
+  private double throughput;
+
   // Anzahl gesendeter Event-Nachrichten im Server
   private long numberOfSentEventMessages;
 
@@ -63,6 +68,12 @@ public class UserInterfaceResultData {
   // 90 % Percentile
   private double percentile90;
 
+  // 99 % Percentile
+  private double percentile99;
+
+  // 99,9 % Percentile
+  private double percentile999;
+
   // Stannweite (zwischen Minimum und Maximum)
   private double range;
 
@@ -75,6 +86,9 @@ public class UserInterfaceResultData {
   // Standardabweichung
   double standardDeviation;
 
+  // Verteilung der RTTs ab dem geplanten Sendezeitpunkt (offene Schleife)
+  private DistributionMetrics correctedRttMetrics;
+
   public long getNumberOfSentRequests() {
     return numberOfSentRequests;
   }
@@ -115,6 +129,14 @@ public class UserInterfaceResultData {
     this.elapsedTime = elapsedTime;
   }
 
+  public double getThroughput() {
+    return throughput;
+  }
+
+  public void setThroughput(double throughput) {
+    this.throughput = throughput;
+  }
+
   public String getEndTime() {
     return endTime;
   }
@@ -208,6 +230,22 @@ public class UserInterfaceResultData {
     return percentile90;
   }
 
+  public DistributionMetrics getCorrectedRttMetrics() {
+    return correctedRttMetrics;
+  }
+
+  public void setCorrectedRttMetrics(DistributionMetrics correctedRttMetrics) {
+    this.correctedRttMetrics = correctedRttMetrics;
+  }
+
+  public double getPercentile99() {
+    return percentile99;
+  }
+
+  public double getPercentile999() {
+    return percentile999;
+  }
+
   public double getInterquartilRange() {
     return interquartilRange;
   }
@@ -252,6 +290,14 @@ public class UserInterfaceResultData {
     this.percentile90 = percentile90;
   }
 
+  public void setPercentile99(double percentile99) {
+    this.percentile99 = percentile99;
+  }
+
+  public void setPercentile999(double percentile999) {
+    this.percentile999 = percentile999;
+  }
+
   public void setInterquartilRange(double interquartilRange) {
     this.interquartilRange = interquartilRange;
   }
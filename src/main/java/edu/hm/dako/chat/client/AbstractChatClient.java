@@ -1,6 +1,12 @@
 package edu.hm.dako.chat.client;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
@@ -25,6 +31,16 @@ public abstract class AbstractChatClient implements ClientCommunication {
 
 	private static Log log = LogFactory.getLog(AbstractChatClient.class);
 
+	// Standardabstand der Heartbeats in ms, deutlich kleiner als die
+	// Leerlaufzeit des Servers
+	public static final int DEFAULT_HEARTBEAT_INTERVAL = 10000;
+
+	// Groesse des Sende- und Empfangspuffers der Verbindung zum Server in Byte
+	public static final int DEFAULT_BUFFER_SIZE = 20000;
+
+	// Ein Timer-Thread fuer die Heartbeats aller Clients einer JVM
+	private static ScheduledExecutorService heartbeatTimer;
+
 	// Username (Login-Kennung) des Clients
 	protected String userName;
 
@@ -47,6 +63,18 @@ public abstract class AbstractChatClient implements ClientCommunication {
 	// Thread, der die ankommenden Nachrichten fuer den Client verarbeitet
 	protected Thread messageListenerThread;
 
+	// Abstand der Heartbeats in ms, 0: keine Heartbeats
+	private int heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+
+	// Zeitpunkt des letzten vom Client-Thread gesendeten Requests
+	// (System.nanoTime)
+	private volatile long lastSendTime;
+
+	private ScheduledFuture<?> heartbeat;
+
+	// Chat-Raum, in den Chat-Nachrichten gesendet werden, null: Standardraum
+	private volatile String chatRoom;
+
 	/**
 	 * @param userInterface
 	 *          GUI-Interface
@@ -58,20 +86,58 @@ public abstract class AbstractChatClient implements ClientCommunication {
 
 	public AbstractChatClient(ClientUserInterface userInterface, int serverPort,
 			String remoteServerAddress) {
+		this(userInterface, serverPort, remoteServerAddress,
+				getDecoratedFactory(new TcpConnectionFactory()));
+	}
+
+	/**
+	 * @param userInterface
+	 *          GUI-Interface
+	 * @param serverPort
+	 *          Port des Servers
+	 * @param remoteServerAddress
+	 *          Adresse des Servers
+	 * @param connectionFactory
+	 *          Factory fuer den Verbindungsaufbau zum Server
+	 */
+	public AbstractChatClient(ClientUserInterface userInterface, int serverPort,
+			String remoteServerAddress, ConnectionFactory connectionFactory) {
+		this(userInterface, serverPort, remoteServerAddress, connectionFactory, null);
+	}
+
+	/**
+	 * @param userInterface
+	 *          GUI-Interface
+	 * @param serverPort
+	 *          Port des Servers
+	 * @param remoteServerAddress
+	 *          Adresse des Servers
+	 * @param connectionFactory
+	 *          Factory fuer den Verbindungsaufbau zum Server
+	 * @param connection
+	 *          Bereits aufgebaute Verbindung zum Server (z.B. aus der
+	 *          Verbindungsphase eines Benchmarks), null: Verbindung hier aufbauen
+	 */
+	public AbstractChatClient(ClientUserInterface userInterface, int serverPort,
+			String remoteServerAddress, ConnectionFactory connectionFactory,
+			Connection connection) {
 
 		this.userInterface = userInterface;
 		this.serverPort = serverPort;
 		this.remoteServerAddress = remoteServerAddress;
+		this.connectionFactory = connectionFactory;
+		this.connection = connection;
 
 		/*
 		 * Verbindung zum Server aufbauen
 		 */
-		try {
-			connectionFactory = getDecoratedFactory(new TcpConnectionFactory());
-			connection = connectionFactory.connectToServer(remoteServerAddress, serverPort,
-					localPort, 20000, 20000);
-		} catch (Exception e) {
-			ExceptionHandler.logException(e);
+		if (connection == null) {
+			try {
+				this.connection = connectionFactory.connectToServer(remoteServerAddress,
+						serverPort, localPort, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+			} catch (Exception e) {
+				ExceptionHandler.logException(e);
+			}
 		}
 
 		//log.debug("Verbindung zum Server steht");
@@ -85,6 +151,86 @@ public abstract class AbstractChatClient implements ClientCommunication {
 		sharedClientData.eventCounter = new AtomicInteger(0);
 		sharedClientData.confirmCounter = new AtomicInteger(0);
 		sharedClientData.messageCounter = new AtomicInteger(0);
+		sharedClientData.pendingRequests = new PendingRequests(1);
+
+		// Heartbeats ab Bestehen der Verbindung senden, nicht erst nach dem Login:
+		// Eine in der Verbindungsphase eines Benchmarks aufgebaute Verbindung
+		// wartet sonst bis zum Login ohne Aktivitaet und wird vom Server nach
+		// Ablauf der Leerlaufzeit abgebaut
+		if (this.connection != null) {
+			startHeartbeat();
+		}
+	}
+
+	/**
+	 * Stellt die Anzahl der Chat-Nachrichten ein, die ohne Response vom Server
+	 * gleichzeitig offen sein duerfen (Pipelining). Voreinstellung ist 1.
+	 * 
+	 * @param window
+	 *          Maximale Anzahl offener Chat-Requests
+	 */
+	public void setPipelineWindow(int window) {
+		sharedClientData.pendingRequests.setWindow(window);
+	}
+
+	public int getPipelineWindow() {
+		return sharedClientData.pendingRequests.getWindow();
+	}
+
+	/**
+	 * Stellt den Abstand ein, in dem der Client eine Heartbeat-PDU sendet, wenn
+	 * er sonst nichts sendet. Laufende Heartbeats werden mit dem neuen Abstand
+	 * fortgesetzt.
+	 * 
+	 * @param heartbeatInterval
+	 *          Abstand in ms, 0: keine Heartbeats
+	 */
+	public synchronized void setHeartbeatInterval(int heartbeatInterval) {
+		this.heartbeatInterval = heartbeatInterval;
+		if (heartbeat != null) {
+			stopHeartbeat();
+			startHeartbeat();
+		}
+	}
+
+	public int getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	/**
+	 * Stellt die Buendelung der Confirms fuer empfangene Chat-Events ein (nur
+	 * Advanced- und NIO-Server, der Simple-Server erwartet keine Confirms).
+	 * 
+	 * @param maxBatchSize
+	 *          Maximale Anzahl Confirms je Sammel-Confirm, 1: keine Buendelung
+	 * @param maxDelayMicros
+	 *          Maximale Wartezeit des ersten gesammelten Confirms in
+	 *          Mikrosekunden
+	 */
+	public void setConfirmBatching(int maxBatchSize, long maxDelayMicros) {
+		ConfirmBatcher old = sharedClientData.confirmBatcher;
+		sharedClientData.confirmBatcher = (maxBatchSize > 1)
+				? new ConfirmBatcher(connection, sharedClientData, maxBatchSize, maxDelayMicros)
+				: null;
+		if (old != null) {
+			old.flush();
+			old.close();
+		}
+	}
+
+	/**
+	 * Stellt den Chat-Raum ein, in den nachfolgende Chat-Nachrichten gesendet
+	 * werden. Der Client muss dem Raum nicht angehoeren.
+	 * 
+	 * @param chatRoom
+	 *          Name des Raums, null: Standardraum
+	 */
+	public void setChatRoom(String chatRoom) {
+		this.chatRoom = chatRoom;
+	}
+
+	public String getChatRoom() {
+		return chatRoom;
 	}
 
 	/**
@@ -105,6 +251,7 @@ public abstract class AbstractChatClient implements ClientCommunication {
 		userName = name;
 		sharedClientData.userName = name;
 		sharedClientData.status = ClientConversationStatus.REGISTERING;
+		sharedClientData.loginResult = new CompletableFuture<ClientConversationStatus>();
 		ChatPDU requestPdu = new ChatPDU();
 		requestPdu.setPduType(PduType.LOGIN_REQUEST);
 		requestPdu.setClientStatus(sharedClientData.status);
@@ -113,16 +260,25 @@ public abstract class AbstractChatClient implements ClientCommunication {
 		requestPdu.setUserName(userName);
 		try {
 			connection.send(requestPdu);
+			lastSendTime = System.nanoTime();
 			//log.debug("Login-Request-PDU fuer Client " + userName + " an Server gesendet");
 		} catch (Exception e) {
 			throw new IOException();
 		}
+		startHeartbeat();
 	}
 
 	@Override
 	public void logout(String name) throws IOException {
 
+		// Gesammelte Confirms vor dem Logout-Request senden
+		ConfirmBatcher batcher = sharedClientData.confirmBatcher;
+		if (batcher != null) {
+			batcher.flush();
+		}
+
 		sharedClientData.status = ClientConversationStatus.UNREGISTERING;
+		sharedClientData.logoutResult = new CompletableFuture<ClientConversationStatus>();
 		ChatPDU requestPdu = new ChatPDU();
 		requestPdu.setPduType(PduType.LOGOUT_REQUEST);
 		requestPdu.setClientStatus(sharedClientData.status);
@@ -130,6 +286,7 @@ public abstract class AbstractChatClient implements ClientCommunication {
 		requestPdu.setUserName(userName);
 		try {
 			connection.send(requestPdu);
+			lastSendTime = System.nanoTime();
 			sharedClientData.logoutCounter.getAndIncrement();
 			//log.debug("Logout-Request von " + requestPdu.getUserName()+ " gesendet, LogoutCount = " + sharedClientData.logoutCounter.get());
 
@@ -141,6 +298,26 @@ public abstract class AbstractChatClient implements ClientCommunication {
 
 	@Override
 	public void tell(String name, String text) throws IOException {
+		tell(name, text, 0);
+	}
+
+	/**
+	 * Sendet eine Chat-Nachricht und traegt sie als offenen Request ein. Die
+	 * Response wird ueber die Sequenznummer zugeordnet, es wird nicht auf sie
+	 * gewartet.
+	 * 
+	 * @param name
+	 *          Name des Clients
+	 * @param text
+	 *          Chat-Nachricht
+	 * @param intendedSendTime
+	 *          Geplanter Sendezeitpunkt bei offener Schleife (System.nanoTime),
+	 *          sonst 0
+	 * @throws IOException
+	 *           falls die Nachricht nicht gesendet werden konnte
+	 */
+	protected void tell(String name, String text, long intendedSendTime)
+			throws IOException {
 
 		ChatPDU requestPdu = new ChatPDU();
 		requestPdu.setPduType(PduType.CHAT_MESSAGE_REQUEST);
@@ -148,10 +325,14 @@ public abstract class AbstractChatClient implements ClientCommunication {
 		requestPdu.setClientThreadName(Thread.currentThread().getName());
 		requestPdu.setUserName(userName);
 		requestPdu.setMessage(text);
-		sharedClientData.messageCounter.getAndIncrement();
-		requestPdu.setSequenceNumber(sharedClientData.messageCounter.get());
+		requestPdu.setRoom(chatRoom);
+		long sequenceNumber = sharedClientData.messageCounter.incrementAndGet();
+		requestPdu.setSequenceNumber(sequenceNumber);
+		sharedClientData.pendingRequests.add(sequenceNumber, System.nanoTime(),
+				intendedSendTime);
 		try {
 			connection.send(requestPdu);
+			lastSendTime = System.nanoTime();
 			//log.debug("Chat-Message-Request-PDU fuer Client " + name+ " an Server gesendet, Inhalt: " + text);
 			//log.debug("MessageCounter: " + sharedClientData.messageCounter.get()+ ", SequenceNumber: " + requestPdu.getSequenceNumber());
 		} catch (Exception e) {
@@ -160,12 +341,114 @@ public abstract class AbstractChatClient implements ClientCommunication {
 		}
 	}
 
+	@Override
+	public void joinRoom(String room) throws IOException {
+		sendRoomRequest(PduType.ROOM_JOIN_REQUEST, room);
+	}
+
+	@Override
+	public void leaveRoom(String room) throws IOException {
+		sendRoomRequest(PduType.ROOM_LEAVE_REQUEST, room);
+	}
+
+	/**
+	 * Sendet einen Room-Join- bzw. Room-Leave-Request. Die Response wird vom
+	 * Message-Listener-Thread in den gemeinsamen Daten vermerkt.
+	 * 
+	 * @param pduType
+	 *          ROOM_JOIN_REQUEST oder ROOM_LEAVE_REQUEST
+	 * @param room
+	 *          Name des Chat-Raums
+	 * @throws IOException
+	 *           falls der Request nicht gesendet werden konnte
+	 */
+	private void sendRoomRequest(PduType pduType, String room) throws IOException {
+
+		ChatPDU requestPdu = new ChatPDU();
+		requestPdu.setPduType(pduType);
+		requestPdu.setClientStatus(sharedClientData.status);
+		requestPdu.setClientThreadName(Thread.currentThread().getName());
+		requestPdu.setUserName(userName);
+		requestPdu.setRoom(room);
+		try {
+			connection.send(requestPdu);
+			lastSendTime = System.nanoTime();
+			//log.debug(pduType + " fuer Raum " + room + " von " + userName + " gesendet");
+		} catch (Exception e) {
+			//log.debug("Senden des Room-Requests nicht moeglich");
+			throw new IOException();
+		}
+	}
+
 	@Override
 	public void cancelConnection() {
+		stopHeartbeat();
 		try {
 			connection.close();
 		} catch (Exception e) {
 			ExceptionHandler.logException(e);
 		}
 	}
+
+	/**
+	 * Heartbeats ab dem Verbindungsaufbau bzw. erneut beim Login starten. Der
+	 * Timer prueft im eingestellten Abstand, ob der Client seither etwas
+	 * gesendet hat, und sendet nur dann einen Heartbeat, wenn nicht.
+	 */
+	private synchronized void startHeartbeat() {
+		if (heartbeatInterval <= 0 || heartbeat != null) {
+			return;
+		}
+		heartbeat = getHeartbeatTimer().scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				sendHeartbeat();
+			}
+		}, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void stopHeartbeat() {
+		if (heartbeat != null) {
+			heartbeat.cancel(false);
+			heartbeat = null;
+		}
+	}
+
+	/**
+	 * Heartbeat-PDU senden, falls der Client laenger als den Heartbeat-Abstand
+	 * nichts gesendet hat. Nach Logout, abgelehntem Login oder Verbindungsabbau
+	 * werden die Heartbeats eingestellt.
+	 */
+	private void sendHeartbeat() {
+		if (sharedClientData.status == ClientConversationStatus.UNREGISTERED) {
+			stopHeartbeat();
+			return;
+		}
+		if (System.nanoTime() - lastSendTime < TimeUnit.MILLISECONDS
+				.toNanos(heartbeatInterval)) {
+			return;
+		}
+		try {
+			connection.send(ChatPDU.createHeartbeatPdu(userName, sharedClientData.status));
+			lastSendTime = System.nanoTime();
+			//log.debug("Heartbeat-PDU fuer Client " + userName + " gesendet");
+		} catch (Exception e) {
+			//log.debug("Senden der Heartbeat-PDU nicht moeglich, Verbindung vermutlich abgebaut");
+			stopHeartbeat();
+		}
+	}
+
+	private static synchronized ScheduledExecutorService getHeartbeatTimer() {
+		if (heartbeatTimer == null) {
+			heartbeatTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "HeartbeatTimer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return heartbeatTimer;
+	}
 }
\ No newline at end of file
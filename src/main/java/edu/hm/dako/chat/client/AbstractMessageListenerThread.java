@@ -5,6 +5,7 @@ import org.apache.commons.logging.LogFactory;
 
 import edu.hm.dako.chat.common.ChatPDU;
 import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.common.PduType;
 import edu.hm.dako.chat.connection.Connection;
 
 /**
@@ -39,18 +40,70 @@ public abstract class AbstractMessageListenerThread extends Thread {
   }
 
   /**
-   * Event vom Server zur Veraenderung der UserListe (eingeloggte Clients) verarbeiten
+   * Event vom Server zur Veraenderung der UserListe (eingeloggte Clients) verarbeiten.
+   * Das Event traegt nur den geaenderten User, die Liste wird im Client nachgefuehrt.
    * 
    * @param receivedPdu
    *          Empfangene PDU
    */
   protected void handleUserListEvent(ChatPDU receivedPdu) {
 
-    //log.debug("Login- oder Logout-Event-PDU fuer "+ receivedPdu.getUserName() + " empfangen");
+    //log.debug("Login- oder Logout-Event-PDU fuer "+ receivedPdu.getEventUserName() + " mit Stand " + receivedPdu.getUserListVersion() + " empfangen");
+
+    if (sharedClientData.userList.applyEvent(receivedPdu)) {
+	requestUserList();
+    }
 
     // Neue Userliste zur Darstellung an User Interface uebergeben
-    //log.debug("Empfangene Userliste: " + receivedPdu.getClients());
-    userInterface.setUserList(receivedPdu.getClients());
+    userInterface.setUserList(sharedClientData.userList.getUsers());
+  }
+
+  /**
+   * Vollstaendige Userliste aus einer Login- oder User-List-Response uebernehmen
+   * 
+   * @param receivedPdu
+   *          Empfangene PDU
+   */
+  protected void handleUserListSnapshot(ChatPDU receivedPdu) {
+
+    //log.debug("Vollstaendige Userliste mit Stand " + receivedPdu.getUserListVersion() + " empfangen: " + receivedPdu.getClients());
+    sharedClientData.userList.applySnapshot(receivedPdu.getUserListVersion(),
+	receivedPdu.getClients());
+    userInterface.setUserList(sharedClientData.userList.getUsers());
+  }
+
+  /**
+   * Vollstaendige Userliste beim Server anfordern, wenn in den Login- und
+   * Logout-Events eine Luecke bestehen bleibt
+   */
+  private void requestUserList() {
+    try {
+	connection.send(ChatPDU.createUserListRequestPdu(sharedClientData.userName,
+	    sharedClientData.status));
+    } catch (Exception e) {
+	ExceptionHandler.logException(e);
+    }
+  }
+
+  /**
+   * Room-Join- bzw. Room-Leave-Response verarbeiten: Bestaetigten Beitritt bzw.
+   * Austritt in den gemeinsamen Daten vermerken
+   * 
+   * @param receivedPdu
+   *          Empfangene PDU
+   */
+  protected void roomResponseAction(ChatPDU receivedPdu) {
+
+    //log.debug(receivedPdu.getPduType() + " fuer Raum " + receivedPdu.getRoom() + " empfangen, Fehlercode: " + receivedPdu.getErrorCode());
+    boolean done = (receivedPdu.getErrorCode() == ChatPDU.NO_ERROR);
+    if (done) {
+	if (receivedPdu.getPduType() == PduType.ROOM_JOIN_RESPONSE) {
+	  sharedClientData.rooms.add(receivedPdu.getRoom());
+	} else {
+	  sharedClientData.rooms.remove(receivedPdu.getRoom());
+	}
+    }
+    sharedClientData.roomResult.complete(done);
   }
 
   /**
@@ -58,15 +111,21 @@ public abstract class AbstractMessageListenerThread extends Thread {
    * 
    * @return Empfangene ChatPDU
    * @throws Exception
+   *           Verbindung abgebaut oder gestoert, der Thread muss sich beenden
    */
   protected ChatPDU receive() throws Exception {
     try {
 	ChatPDU receivedPdu = (ChatPDU) connection.receive();
+
+	// Luecke in den Login- und Logout-Events auch ohne weitere Events erkennen
+	if (sharedClientData.userList.checkGap()) {
+	  requestUserList();
+	}
 	return receivedPdu;
     } catch (Exception e) {
 	ExceptionHandler.logException(e);
+	throw e;
     }
-    return null;
   }
 
   /**
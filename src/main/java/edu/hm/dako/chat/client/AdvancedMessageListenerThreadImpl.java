@@ -44,7 +44,7 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
                     "Chat-Server", "Anmelden beim Server nicht erfolgreich, Benutzer "
                             + receivedPdu.getUserName() + " vermutlich schon angemeldet",
                     receivedPdu.getErrorCode());
-            sharedClientData.status = ClientConversationStatus.UNREGISTERED;
+            sharedClientData.loginCompleted(ClientConversationStatus.UNREGISTERED);
 
             // Verbindung wird gleich geschlossen
             try {
@@ -53,8 +53,9 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
             }
 
         } else {
-            // Login hat funktioniert
-            sharedClientData.status = ClientConversationStatus.REGISTERED;
+            // Login hat funktioniert, Response traegt die vollstaendige Userliste
+            handleUserListSnapshot(receivedPdu);
+            sharedClientData.loginCompleted(ClientConversationStatus.REGISTERED);
 
             userInterface.loginComplete();
 
@@ -96,11 +97,13 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
     protected void logoutResponseAction(ChatPDU receivedPdu) {
 
         //log.debug(sharedClientData.userName + " empfaengt Logout-Response-PDU fuer Client "+ receivedPdu.getUserName());
-        sharedClientData.status = ClientConversationStatus.UNREGISTERED;
-
         userInterface.setSessionStatisticsCounter(sharedClientData.eventCounter.longValue(),
                 sharedClientData.confirmCounter.longValue(), 0, 0, 0);
 
+        // Erst nach Uebergabe der Zaehler melden, da der Client-Thread sie danach
+        // auswertet
+        sharedClientData.logoutCompleted();
+
         //log.debug("Vom Client gesendete Chat-Nachrichten:  "+ sharedClientData.messageCounter.get());
 
         finished = true;
@@ -142,7 +145,10 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
 
         //log.debug(Thread.currentThread().getName()+ ", Benoetigte Serverzeit gleich nach Empfang der Response-Nachricht: "+ receivedPdu.getServerTime() + " ns = " + receivedPdu.getServerTime() / 1000000+ " ms");
 
-        if (receivedPdu.getSequenceNumber() == sharedClientData.messageCounter.get()) {
+        // Response ueber die Sequenznummer dem offenen Request zuordnen, beim
+        // Pipelining koennen mehrere Requests gleichzeitig offen sein
+        if (sharedClientData.pendingRequests.complete(receivedPdu.getSequenceNumber(),
+                receivedPdu.getServerTime())) {
 
             // Zuletzt gemessene Serverzeit fuer das Benchmarking
             // merken
@@ -175,6 +181,13 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
         userInterface.setMessageLine(receivedPdu.getEventUserName(),
                 (String) receivedPdu.getMessage());
 
+        // Confirm ggf. mit weiteren Confirms gebuendelt senden
+        ConfirmBatcher batcher = sharedClientData.confirmBatcher;
+        if (batcher != null) {
+            batcher.confirm(receivedPdu);
+            return;
+        }
+
         //Sende Confirm an Server zurück
         ChatPDU confirmPdu=ChatPDU.createChatMessageEventConfirm(sharedClientData.userName, receivedPdu);
         try {
@@ -202,6 +215,8 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
                 receivedPdu = receive();
                 //log.debug("Nach receive Aufruf, ankommende PDU mit PduType = "+ receivedPdu.getPduType());
             } catch (Exception e) {
+                // Verbindung abgebaut, PDU nicht erneut verarbeiten
+                receivedPdu = null;
                 finished = true;
             }
 
@@ -273,6 +288,18 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
 
                                 break;
 
+                            case ROOM_JOIN_RESPONSE:
+                            case ROOM_LEAVE_RESPONSE:
+                                // Server bestaetigt den Beitritt bzw. Austritt aus einem
+                                // Chat-Raum
+                                roomResponseAction(receivedPdu);
+                                break;
+
+                            case USER_LIST_RESPONSE:
+                                // Angeforderte vollstaendige Userliste
+                                handleUserListSnapshot(receivedPdu);
+                                break;
+
                             default:
                                 //log.debug("Ankommende PDU im Zustand " + sharedClientData.status+ " wird verworfen");
                         }
@@ -323,6 +350,9 @@ public class AdvancedMessageListenerThreadImpl extends AbstractMessageListenerTh
             }
         }
 
+        // Auf Login oder Logout wartende Threads freigeben
+        sharedClientData.connectionClosed();
+
         // Verbindung noch schliessen
         try {
             connection.close();
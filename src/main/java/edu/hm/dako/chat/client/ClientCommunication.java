@@ -38,6 +38,22 @@ public interface ClientCommunication {
 	 */
 	public void tell(String name, String text) throws IOException;
 
+	/**
+	 * Room-Join-Request an den Server senden
+	 * 
+	 * @param room
+	 *          Name des Chat-Raums
+	 */
+	public void joinRoom(String room) throws IOException;
+
+	/**
+	 * Room-Leave-Request an den Server senden
+	 * 
+	 * @param room
+	 *          Name des Chat-Raums
+	 */
+	public void leaveRoom(String room) throws IOException;
+
 	/**
 	 * Abbruch der Verbindung zum Server
 	 */
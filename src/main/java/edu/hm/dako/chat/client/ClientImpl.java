@@ -2,6 +2,10 @@ package edu.hm.dako.chat.client;
 
 import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.common.SystemConstants;
+import edu.hm.dako.chat.connection.ConnectionFactory;
+import edu.hm.dako.chat.tcp.FramedTcpConnectionFactory;
+import edu.hm.dako.chat.tcp.TcpConnectionFactory;
+import edu.hm.dako.chat.udp.UdpConnectionFactory;
 
 /**
  * <p/>
@@ -11,6 +15,11 @@ import edu.hm.dako.chat.common.SystemConstants;
  */
 public class ClientImpl extends AbstractChatClient {
 
+	// UDP: Wartezeit in ms auf eine Bestaetigung bis zur ersten Wiederholung und
+	// maximale Anzahl Wiederholungen je Datagramm
+	private static final int UDP_RESPONSE_TIMEOUT = 200;
+	private static final int UDP_NUMBER_OF_RETRIES = 5;
+
 	/**
 	 * Konstruktor
 	 * 
@@ -25,7 +34,8 @@ public class ClientImpl extends AbstractChatClient {
 	public ClientImpl(ClientUserInterface userInterface, int serverPort,
 			String remoteServerAddress, String serverType) {
 
-		super(userInterface, serverPort, remoteServerAddress);
+		super(userInterface, serverPort, remoteServerAddress,
+				createConnectionFactory(serverType));
 		this.serverPort = serverPort;
 		this.remoteServerAddress = remoteServerAddress;
 
@@ -34,7 +44,9 @@ public class ClientImpl extends AbstractChatClient {
 
 		try {
 
-			if (serverType.equals(SystemConstants.IMPL_TCP_ADVANCED)) {
+			if (serverType.equals(SystemConstants.IMPL_TCP_ADVANCED)
+					|| serverType.equals(SystemConstants.IMPL_TCP_NIO)
+					|| serverType.equals(SystemConstants.IMPL_UDP_ADVANCED)) {
 				// Advanced TCP Server erzeugen
 				messageListenerThread = new AdvancedMessageListenerThreadImpl(userInterface, connection, sharedClientData);
 
@@ -47,4 +59,23 @@ public class ClientImpl extends AbstractChatClient {
 			ExceptionHandler.logException(e);
 		}
 	}
+
+	/**
+	 * Liefert die zum Servertyp passende ConnectionFactory
+	 * 
+	 * @param serverType
+	 *          Implementierungstyp des Servers
+	 * @return Dekorierte ConnectionFactory
+	 */
+	private static ConnectionFactory createConnectionFactory(String serverType) {
+		if (serverType.equals(SystemConstants.IMPL_TCP_NIO)) {
+			// NIO-Server erwartet Nachrichten mit vorangestellter Laenge
+			return getDecoratedFactory(new FramedTcpConnectionFactory());
+		}
+		if (serverType.equals(SystemConstants.IMPL_UDP_ADVANCED)) {
+			return getDecoratedFactory(
+					new UdpConnectionFactory(UDP_RESPONSE_TIMEOUT, UDP_NUMBER_OF_RETRIES));
+		}
+		return getDecoratedFactory(new TcpConnectionFactory());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package edu.hm.dako.chat.client;
+
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.connection.Connection;
+
+/**
+ * Sammelt die Confirms fuer empfangene Chat-Message-Events und sendet sie
+ * gebuendelt in einer Sammel-Confirm-PDU an den Server.
+ * <p/>
+ * Ein Sammel-Confirm wird gesendet, sobald die eingestellte Anzahl Confirms
+ * erreicht ist oder das erste gesammelte Confirm die eingestellte Wartezeit
+ * (in Mikrosekunden) alt ist. Die Wartezeit begrenzt damit die zusaetzliche
+ * Verzoegerung der Chat-Response beim Sender des Events.
+ *
+ * @author Mandl
+ */
+public class ConfirmBatcher {
+
+	private static Log log = LogFactory.getLog(ConfirmBatcher.class);
+
+	// Gemeinsamer Timer aller Clients eines Prozesses
+	private static ScheduledExecutorService confirmTimer;
+
+	private final Connection connection;
+	private final SharedClientData sharedClientData;
+
+	// Maximale Anzahl Confirms je Sammel-Confirm
+	private final int maxBatchSize;
+
+	// Maximale Wartezeit des ersten gesammelten Confirms in Mikrosekunden
+	private final long maxDelayMicros;
+
+	// Gesammelte Confirms, Zugriff nur unter der Sperre des Objekts
+	private Vector<String> eventUserNames;
+	private long[] sequenceNumbers;
+	private int size;
+
+	// Geplantes Senden nach Ablauf der Wartezeit, null: keines geplant
+	private ScheduledFuture<?> flushTask;
+
+	private boolean closed;
+
+	/**
+	 * @param connection
+	 *          Verbindung zum Server
+	 * @param sharedClientData
+	 *          Gemeinsame Daten des Clients (fuer den User-Namen)
+	 * @param maxBatchSize
+	 *          Maximale Anzahl Confirms je Sammel-Confirm, mindestens 2
+	 * @param maxDelayMicros
+	 *          Maximale Wartezeit in Mikrosekunden
+	 */
+	public ConfirmBatcher(Connection connection, SharedClientData sharedClientData,
+			int maxBatchSize, long maxDelayMicros) {
+		if (maxBatchSize < 2) {
+			throw new IllegalArgumentException("Ungueltige Buendelgroesse: " + maxBatchSize);
+		}
+		this.connection = connection;
+		this.sharedClientData = sharedClientData;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayMicros = Math.max(0, maxDelayMicros);
+		newBatch();
+	}
+
+	/**
+	 * Confirm fuer ein empfangenes Chat-Event vormerken, wird im
+	 * Message-Listener-Thread aufgerufen
+	 *
+	 * @param eventPdu
+	 *          Empfangene Chat-Message-Event-PDU
+	 */
+	public synchronized void confirm(ChatPDU eventPdu) {
+		if (closed) {
+			return;
+		}
+		eventUserNames.add(eventPdu.getEventUserName());
+		sequenceNumbers[size++] = eventPdu.getSequenceNumber();
+
+		if (size >= maxBatchSize) {
+			flush();
+		} else if (flushTask == null) {
+			flushTask = getConfirmTimer().schedule(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, maxDelayMicros, TimeUnit.MICROSECONDS);
+		}
+	}
+
+	/**
+	 * Gesammelte Confirms sofort senden
+	 */
+	public synchronized void flush() {
+		if (flushTask != null) {
+			flushTask.cancel(false);
+			flushTask = null;
+		}
+		if (size == 0 || closed) {
+			return;
+		}
+
+		long[] confirmed = sequenceNumbers;
+		if (size < confirmed.length) {
+			confirmed = new long[size];
+			System.arraycopy(sequenceNumbers, 0, confirmed, 0, size);
+		}
+		ChatPDU confirmPdu = ChatPDU.createChatMessageEventConfirmBatch(
+				sharedClientData.userName, eventUserNames, confirmed);
+		newBatch();
+
+		try {
+			connection.send(confirmPdu);
+			//log.debug("Sammel-Confirm mit " + confirmed.length + " Confirms gesendet");
+		} catch (Exception e) {
+			ExceptionHandler.logException(e);
+		}
+	}
+
+	/**
+	 * Sammeln beenden, noch nicht gesendete Confirms werden verworfen
+	 */
+	public synchronized void close() {
+		closed = true;
+		if (flushTask != null) {
+			flushTask.cancel(false);
+			flushTask = null;
+		}
+	}
+
+	private void newBatch() {
+		eventUserNames = new Vector<String>(maxBatchSize);
+		sequenceNumbers = new long[maxBatchSize];
+		size = 0;
+	}
+
+	private static synchronized ScheduledExecutorService getConfirmTimer() {
+		if (confirmTimer == null) {
+			confirmTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "ConfirmTimer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return confirmTimer;
+	}
+}
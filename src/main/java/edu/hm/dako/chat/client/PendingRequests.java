@@ -0,0 +1,195 @@
+package edu.hm.dako.chat.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Offene Chat-Requests eines Clients, die der Server noch nicht mit einer
+ * Chat-Response beantwortet hat. Die Zuordnung einer Response zu ihrem Request
+ * erfolgt ueber die Sequenznummer der ChatPDU.
+ * <p/>
+ * Beim Pipelining darf ein Client bis zu einer einstellbaren Anzahl von
+ * Requests (Fenster) senden, ohne auf die Responses zu warten. Der sendende
+ * Thread wartet erst, wenn das Fenster voll ist. Der Message-Listener-Thread
+ * traegt eingehende Responses aus und gibt damit wieder einen Platz frei.
+ *
+ * @author Mandl
+ */
+public class PendingRequests {
+
+	/**
+	 * Verarbeitung einer Response, wird im Message-Listener-Thread aufgerufen
+	 */
+	public interface ResponseHandler {
+
+		/**
+		 * @param request
+		 *          Beantworteter Request
+		 * @param serverTime
+		 *          Bearbeitungszeit im Server in ns
+		 * @param receiveTime
+		 *          Empfangszeitpunkt der Response (System.nanoTime)
+		 */
+		public void responseReceived(Request request, long serverTime, long receiveTime);
+	}
+
+	/**
+	 * Ein offener Request
+	 */
+	public static class Request {
+
+		private final long sequenceNumber;
+
+		// Tatsaechlicher Sendezeitpunkt (System.nanoTime)
+		private final long sendTime;
+
+		// Geplanter Sendezeitpunkt bei offener Schleife, sonst gleich sendTime
+		private final long intendedSendTime;
+
+		Request(long sequenceNumber, long sendTime, long intendedSendTime) {
+			this.sequenceNumber = sequenceNumber;
+			this.sendTime = sendTime;
+			this.intendedSendTime = (intendedSendTime != 0) ? intendedSendTime : sendTime;
+		}
+
+		public long getSequenceNumber() {
+			return sequenceNumber;
+		}
+
+		public long getSendTime() {
+			return sendTime;
+		}
+
+		public long getIntendedSendTime() {
+			return intendedSendTime;
+		}
+	}
+
+	private final Map<Long, Request> requests = new HashMap<Long, Request>();
+
+	// Maximale Anzahl offener Requests (Fenstergroesse)
+	private int window;
+
+	private volatile ResponseHandler responseHandler;
+
+	/**
+	 * @param window
+	 *          Maximale Anzahl offener Requests, mindestens 1
+	 */
+	public PendingRequests(int window) {
+		this.window = checkWindow(window);
+	}
+
+	public synchronized void setWindow(int window) {
+		this.window = checkWindow(window);
+		notifyAll();
+	}
+
+	private static int checkWindow(int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("Ungueltige Fenstergroesse: " + window);
+		}
+		return window;
+	}
+
+	public synchronized int getWindow() {
+		return window;
+	}
+
+	public void setResponseHandler(ResponseHandler responseHandler) {
+		this.responseHandler = responseHandler;
+	}
+
+	/**
+	 * Wartet, bis im Fenster Platz fuer einen weiteren Request ist
+	 *
+	 * @throws InterruptedException
+	 *           falls das Warten unterbrochen wurde
+	 */
+	public synchronized void awaitSlot() throws InterruptedException {
+		while (requests.size() >= window) {
+			wait();
+		}
+	}
+
+	/**
+	 * Wartet, bis alle offenen Requests beantwortet sind
+	 *
+	 * @param timeoutMillis
+	 *          Maximale Wartezeit in ms
+	 * @return true, wenn keine Requests mehr offen sind
+	 * @throws InterruptedException
+	 *           falls das Warten unterbrochen wurde
+	 */
+	public synchronized boolean awaitEmpty(long timeoutMillis)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		long remaining;
+		while (!requests.isEmpty()
+				&& ((remaining = deadline - System.currentTimeMillis()) > 0)) {
+			wait(remaining);
+		}
+		return requests.isEmpty();
+	}
+
+	/**
+	 * Traegt einen Request vor dem Senden ein, damit eine sehr schnelle
+	 * Response nicht vor dem Eintrag ankommt
+	 *
+	 * @param sequenceNumber
+	 *          Sequenznummer des Requests
+	 * @param sendTime
+	 *          Sendezeitpunkt (System.nanoTime)
+	 * @param intendedSendTime
+	 *          Geplanter Sendezeitpunkt bei offener Schleife, sonst 0
+	 */
+	public synchronized void add(long sequenceNumber, long sendTime,
+			long intendedSendTime) {
+		requests.put(sequenceNumber,
+				new Request(sequenceNumber, sendTime, intendedSendTime));
+	}
+
+	/**
+	 * Uebergibt den zu einer Response gehoerenden Request ggf. an den
+	 * ResponseHandler und traegt ihn erst danach aus. Ein Thread, der in
+	 * awaitSlot oder awaitEmpty wartet, sieht damit alle Auswirkungen des
+	 * Handlers (z.B. die Zaehler der Statistik). Wird nur vom
+	 * Message-Listener-Thread aufgerufen, eine Response wird daher nicht
+	 * doppelt verarbeitet.
+	 *
+	 * @param sequenceNumber
+	 *          Sequenznummer aus der Response
+	 * @param serverTime
+	 *          Bearbeitungszeit im Server in ns
+	 * @return true, wenn ein offener Request mit der Sequenznummer vorhanden
+	 *         war
+	 */
+	public boolean complete(long sequenceNumber, long serverTime) {
+		long receiveTime = System.nanoTime();
+		Request request;
+		synchronized (this) {
+			request = requests.get(sequenceNumber);
+			if (request == null) {
+				return false;
+			}
+		}
+
+		ResponseHandler handler = responseHandler;
+		if (handler != null) {
+			handler.responseReceived(request, serverTime, receiveTime);
+		}
+
+		synchronized (this) {
+			requests.remove(sequenceNumber);
+			notifyAll();
+		}
+		return true;
+	}
+
+	/**
+	 * @return Anzahl offener Requests
+	 */
+	public synchronized int size() {
+		return requests.size();
+	}
+}
@@ -1,12 +1,21 @@
 package edu.hm.dako.chat.client;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import edu.hm.dako.chat.common.ChatPDU;
 import edu.hm.dako.chat.common.ClientConversationStatus;
 
 /**
  * Gemeinsame genutzte Daten, die sich der Chat-Client-Thread und die
  * Message-Processing-Threads teilen
+ * <p/>
+ * Das Ende eines Login- bzw. Logout-Vorgangs meldet der Message-Listener-Thread
+ * ueber ein Future, auf das der Client-Thread warten kann, ohne den Status
+ * zyklisch abzufragen. Auf Chat-Responses wird ueber die offenen Requests
+ * gewartet (siehe PendingRequests).
  * 
  * @author Peter Mandl
  *
@@ -17,14 +26,74 @@ public class SharedClientData {
 	public String userName;
 
 	// Aktueller Zustand des Clients
-	public ClientConversationStatus status;
+	public volatile ClientConversationStatus status;
+
+	// Ergebnis des laufenden Login- bzw. Logout-Vorgangs: Zustand des Clients
+	// nach Empfang der Response
+	public volatile CompletableFuture<ClientConversationStatus> loginResult = new CompletableFuture<ClientConversationStatus>();
+	public volatile CompletableFuture<ClientConversationStatus> logoutResult = new CompletableFuture<ClientConversationStatus>();
+
+	// Ergebnis des letzten Room-Join- bzw. Room-Leave-Requests: true bei Erfolg
+	public volatile CompletableFuture<Boolean> roomResult = new CompletableFuture<Boolean>();
+
+	// Aus Login- und Logout-Events nachgefuehrte Userliste
+	public final UserList userList = new UserList();
+
+	// Buendelung der Confirms fuer Chat-Events, null: jedes Event wird
+	// einzeln bestaetigt
+	public volatile ConfirmBatcher confirmBatcher;
+
+	// Chat-Raeume, deren Beitritt der Server bestaetigt hat
+	public final Set<String> rooms = ConcurrentHashMap.newKeySet();
 
 	// Zaehler fuer gesendete Chat-Nachrichten des Clients
 	public AtomicInteger messageCounter;
 
+	// Gesendete, noch nicht beantwortete Chat-Nachrichten des Clients
+	public PendingRequests pendingRequests;
+
 	// Zaehler fuer Logouts, empfangene Events und Confirms aller Clients fuer
 	// Testausgaben
 	public AtomicInteger logoutCounter;
 	public AtomicInteger eventCounter;
 	public AtomicInteger confirmCounter;
+
+	/**
+	 * Login abgeschlossen, wird vom Message-Listener-Thread aufgerufen
+	 * 
+	 * @param newStatus
+	 *          REGISTERED bei Erfolg, UNREGISTERED bei Login-Fehler
+	 */
+	public void loginCompleted(ClientConversationStatus newStatus) {
+		status = newStatus;
+		if (newStatus == ClientConversationStatus.REGISTERED) {
+			// Der Server traegt jeden neuen Client in den Standardraum ein
+			rooms.add(ChatPDU.DEFAULT_ROOM);
+		}
+		loginResult.complete(newStatus);
+	}
+
+	/**
+	 * Logout abgeschlossen, wird vom Message-Listener-Thread aufgerufen
+	 */
+	public void logoutCompleted() {
+		status = ClientConversationStatus.UNREGISTERED;
+		rooms.clear();
+		userList.clear();
+		logoutResult.complete(status);
+	}
+
+	/**
+	 * Verbindung zum Server beendet: Noch wartende Threads werden freigegeben,
+	 * ein ausstehender Login oder Logout gilt als nicht angemeldet
+	 */
+	public void connectionClosed() {
+		loginResult.complete(ClientConversationStatus.UNREGISTERED);
+		logoutResult.complete(ClientConversationStatus.UNREGISTERED);
+		roomResult.complete(false);
+		ConfirmBatcher batcher = confirmBatcher;
+		if (batcher != null) {
+			batcher.close();
+		}
+	}
 }
@@ -35,7 +35,7 @@ public class SimpleMessageListenerThreadImpl extends AbstractMessageListenerThre
 					"Chat-Server", "Anmelden beim Server nicht erfolgreich, Benutzer "
 							+ receivedPdu.getUserName() + " vermutlich schon angemeldet",
 					receivedPdu.getErrorCode());
-			sharedClientData.status = ClientConversationStatus.UNREGISTERED;
+			sharedClientData.loginCompleted(ClientConversationStatus.UNREGISTERED);
 
 			// Verbindung wird gleich geschlossen
 			try {
@@ -44,8 +44,9 @@ public class SimpleMessageListenerThreadImpl extends AbstractMessageListenerThre
 			}
 
 		} else {
-			// Login hat funktioniert
-			sharedClientData.status = ClientConversationStatus.REGISTERED;
+			// Login hat funktioniert, Response traegt die vollstaendige Userliste
+			handleUserListSnapshot(receivedPdu);
+			sharedClientData.loginCompleted(ClientConversationStatus.REGISTERED);
 
 			userInterface.loginComplete();
 
@@ -71,11 +72,13 @@ public class SimpleMessageListenerThreadImpl extends AbstractMessageListenerThre
 	protected void logoutResponseAction(ChatPDU receivedPdu) {
 
 		//log.debug(sharedClientData.userName + " empfaengt Logout-Response-PDU fuer Client "+ receivedPdu.getUserName());
-		sharedClientData.status = ClientConversationStatus.UNREGISTERED;
-
 		userInterface.setSessionStatisticsCounter(sharedClientData.eventCounter.longValue(),
 				sharedClientData.confirmCounter.longValue(), 0, 0, 0);
 
+		// Erst nach Uebergabe der Zaehler melden, da der Client-Thread sie danach
+		// auswertet
+		sharedClientData.logoutCompleted();
+
 		//log.debug("Vom Client gesendete Chat-Nachrichten:  "+ sharedClientData.messageCounter.get());
 
 		finished = true;
@@ -102,7 +105,10 @@ public class SimpleMessageListenerThreadImpl extends AbstractMessageListenerThre
 
 		//log.debug(Thread.currentThread().getName()+ ", Benoetigte Serverzeit gleich nach Empfang der Response-Nachricht: "+ receivedPdu.getServerTime() + " ns = " + receivedPdu.getServerTime() / 1000000+ " ms");
 
-		if (receivedPdu.getSequenceNumber() == sharedClientData.messageCounter.get()) {
+		// Response ueber die Sequenznummer dem offenen Request zuordnen, beim
+		// Pipelining koennen mehrere Requests gleichzeitig offen sein
+		if (sharedClientData.pendingRequests.complete(receivedPdu.getSequenceNumber(),
+				receivedPdu.getServerTime())) {
 
 			// Zuletzt gemessene Serverzeit fuer das Benchmarking
 			// merken
@@ -149,6 +155,8 @@ public class SimpleMessageListenerThreadImpl extends AbstractMessageListenerThre
 				receivedPdu = receive();
 				//log.debug("Nach receive Aufruf, ankommende PDU mit PduType = "+ receivedPdu.getPduType());
 			} catch (Exception e) {
+				// Verbindung abgebaut, PDU nicht erneut verarbeiten
+				receivedPdu = null;
 				finished = true;
 			}
 
@@ -220,6 +228,18 @@ public class SimpleMessageListenerThreadImpl extends AbstractMessageListenerThre
 
 						break;
 
+					case ROOM_JOIN_RESPONSE:
+					case ROOM_LEAVE_RESPONSE:
+						// Server bestaetigt den Beitritt bzw. Austritt aus einem
+						// Chat-Raum
+						roomResponseAction(receivedPdu);
+						break;
+
+					case USER_LIST_RESPONSE:
+						// Angeforderte vollstaendige Userliste
+						handleUserListSnapshot(receivedPdu);
+						break;
+
 					default:
 						//log.debug("Ankommende PDU im Zustand " + sharedClientData.status+ " wird verworfen");
 					}
@@ -270,6 +290,9 @@ public class SimpleMessageListenerThreadImpl extends AbstractMessageListenerThre
 			}
 		}
 
+		// Auf Login oder Logout wartende Threads freigeben
+		sharedClientData.connectionClosed();
+
 		// Verbindung noch schliessen
 		try {
 			connection.close();
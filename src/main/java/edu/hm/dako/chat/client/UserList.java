@@ -0,0 +1,189 @@
+package edu.hm.dako.chat.client;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.PduType;
+
+/**
+ * Clientseitige Userliste, die aus den Login- und Logout-Events nachgefuehrt
+ * wird. Ein Event traegt nur den hinzugekommenen bzw. abgemeldeten User und
+ * den Stand der Userliste im Server nach der Aenderung.
+ * <p/>
+ * Die Events verschiedener Clients werden im Server von verschiedenen
+ * Worker-Threads verteilt und koennen daher in anderer Reihenfolge ankommen,
+ * als sie erzeugt wurden. Events werden deshalb nach ihrem Stand geordnet
+ * zurueckgehalten, bis alle Vorgaenger angekommen sind. Bleibt eine Luecke
+ * bestehen (z.B. weil ein Event nicht zugestellt werden konnte), fordert der
+ * Client die vollstaendige Liste an: sobald zu viele spaetere Events
+ * zurueckgehalten werden oder die Luecke laenger als eine Wartezeit offen ist.
+ * Die Wartezeit wird bei jedem Event und ueber checkGap() bei jeder anderen
+ * empfangenen PDU geprueft. Bleibt die Antwort aus, wird die Liste nach
+ * derselben Wartezeit erneut angefordert. Ausgangspunkt ist die vollstaendige
+ * Liste aus der Login-Response.
+ *
+ * @author Mandl
+ */
+public class UserList {
+
+	// Anzahl zurueckgehaltener Events, ab der die vollstaendige Liste
+	// angefordert wird
+	private static final int GAP_LIMIT = 8;
+
+	// Wartezeit in ms, nach der eine bestehende Luecke bzw. eine unbeantwortete
+	// Anforderung zu einer (erneuten) Anforderung der vollstaendigen Liste fuehrt
+	private static final long GAP_TIMEOUT = 1000;
+
+	private final TreeSet<String> users = new TreeSet<String>();
+
+	// Stand der Liste, -1: noch keine vollstaendige Liste empfangen
+	private long version = -1;
+
+	// Zurueckgehaltene Events je Stand
+	private final TreeMap<Long, ChatPDU> pending = new TreeMap<Long, ChatPDU>();
+
+	private final long gapTimeout;
+
+	// Beginn der Luecke (System.currentTimeMillis), 0: keine Luecke
+	private long gapStartTime;
+
+	// Anforderung der vollstaendigen Liste (System.currentTimeMillis), 0: keine
+	// Anforderung offen
+	private long snapshotRequestTime;
+
+	public UserList() {
+		this(GAP_TIMEOUT);
+	}
+
+	/**
+	 * @param gapTimeout
+	 *          Wartezeit in ms bis zur Anforderung der vollstaendigen Liste
+	 */
+	UserList(long gapTimeout) {
+		this.gapTimeout = gapTimeout;
+	}
+
+	/**
+	 * Login- oder Logout-Event anwenden bzw. bis zum Eintreffen der Vorgaenger
+	 * zurueckhalten
+	 *
+	 * @param event
+	 *          Login- oder Logout-Event-PDU
+	 * @return true, wenn der Client die vollstaendige Liste anfordern soll
+	 */
+	public synchronized boolean applyEvent(ChatPDU event) {
+		long eventVersion = event.getUserListVersion();
+		if ((version >= 0) && (eventVersion <= version)) {
+			// Bereits in der vollstaendigen Liste enthalten
+			return false;
+		}
+		pending.put(eventVersion, event);
+		applyPending();
+		return isSnapshotNeeded();
+	}
+
+	/**
+	 * Prueft, ob eine Luecke schon laenger als die Wartezeit besteht. Wird fuer
+	 * jede empfangene PDU aufgerufen, damit eine Luecke auch dann auffaellt,
+	 * wenn keine weiteren Login- oder Logout-Events eintreffen.
+	 *
+	 * @return true, wenn der Client die vollstaendige Liste anfordern soll
+	 */
+	public synchronized boolean checkGap() {
+		return isSnapshotNeeded();
+	}
+
+	/**
+	 * Vollstaendige Liste aus einer Login- oder User-List-Response uebernehmen
+	 *
+	 * @param snapshotVersion
+	 *          Stand der Liste
+	 * @param snapshot
+	 *          Namen aller angemeldeten User
+	 */
+	public synchronized void applySnapshot(long snapshotVersion,
+			Collection<String> snapshot) {
+		snapshotRequestTime = 0;
+		if ((snapshot == null) || (snapshotVersion < version)) {
+			// Veraltet, die Liste ist bereits weiter nachgefuehrt
+			return;
+		}
+		users.clear();
+		users.addAll(snapshot);
+		version = snapshotVersion;
+		pending.headMap(snapshotVersion, true).clear();
+		applyPending();
+	}
+
+	/**
+	 * @return Kopie der aktuellen Userliste
+	 */
+	public synchronized Vector<String> getUsers() {
+		return new Vector<String>(users);
+	}
+
+	/**
+	 * Liste nach dem Logout verwerfen
+	 */
+	public synchronized void clear() {
+		users.clear();
+		pending.clear();
+		version = -1;
+		gapStartTime = 0;
+		snapshotRequestTime = 0;
+	}
+
+	/**
+	 * Entscheidet, ob die vollstaendige Liste angefordert werden soll: Die
+	 * Luecke besteht seit der Wartezeit oder es werden zu viele Events
+	 * zurueckgehalten, und es ist keine juengere Anforderung offen.
+	 */
+	private boolean isSnapshotNeeded() {
+		if ((version < 0) || pending.isEmpty()) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		if (gapStartTime == 0) {
+			gapStartTime = now;
+		}
+		if ((snapshotRequestTime != 0) && (now - snapshotRequestTime < gapTimeout)) {
+			// Antwort auf die letzte Anforderung steht noch aus
+			return false;
+		}
+		if ((pending.size() >= GAP_LIMIT) || (now - gapStartTime >= gapTimeout)) {
+			snapshotRequestTime = now;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Zurueckgehaltene Events anwenden, solange sie lueckenlos an den aktuellen
+	 * Stand anschliessen. Ein Fortschritt beendet die bisherige Luecke.
+	 */
+	private void applyPending() {
+		if (version < 0) {
+			return;
+		}
+		long oldVersion = version;
+		Map.Entry<Long, ChatPDU> next;
+		while (((next = pending.firstEntry()) != null)
+				&& (next.getKey() == version + 1)) {
+			pending.pollFirstEntry();
+			ChatPDU event = next.getValue();
+			if (event.getPduType() == PduType.LOGIN_EVENT) {
+				users.add(event.getEventUserName());
+			} else {
+				users.remove(event.getEventUserName());
+			}
+			version++;
+		}
+		if (pending.isEmpty() || (version != oldVersion)) {
+			gapStartTime = 0;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package edu.hm.dako.chat.common;
+
+/**
+ * Phasen eines Benchmark-Laufs, denen jede empfangene Response zugeordnet wird
+ *
+ * @author Mandl
+ */
+
+public enum BenchmarkPhase {
+  // Einschwingphase (JIT-Uebersetzung, Login-Welle), geht nicht in die
+  // Messergebnisse ein
+  WarmUp,
+  // Messphase, nur ihre Responses gehen in RTT und Durchsatz ein
+  SteadyState,
+  // Ausklingphase (Clients beenden ihre Laeufe nacheinander), geht nicht in
+  // die Messergebnisse ein
+  CoolDown,
+}
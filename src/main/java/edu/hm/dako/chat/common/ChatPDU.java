@@ -39,9 +39,25 @@ public class ChatPDU implements Serializable {
   // Nutzdaten (eigentliche Chat-Nachricht in Textform)
   private String message;
 
-  // Liste aller angemeldeten User
+  // Chat-Raum einer Chat-Nachricht bzw. eines Join- oder Leave-Requests,
+  // null steht fuer den allgemeinen Raum, in dem jeder Client nach dem Login ist
+  private String room;
+  public final static String DEFAULT_ROOM = "Allgemein";
+
+  // Liste aller angemeldeten User, nur in Login-Response und
+  // User-List-Response belegt
   private Vector<String> clients;
 
+  // Stand der Userliste im Server: Login- und Logout-Events tragen nur den
+  // hinzugekommenen bzw. abgemeldeten User (eventUserName) und den Stand nach
+  // der Aenderung, eine vollstaendige Liste traegt den Stand, zu dem sie gehoert
+  private long userListVersion;
+
+  // Bestaetigte Chat-Events eines Sammel-Confirms: Je Event der Name des
+  // Absenders und die Sequenznummer, beide Listen sind gleich lang
+  private Vector<String> confirmedEventUserNames;
+  private long[] confirmedSequenceNumbers;
+
   // Zeit in Nanosekunden, die der Server fuer die komplette Bearbeitung einer
   // Chat-Nachricht benoetigt (inkl. kompletter Verteilung an alle
   // angemeldeten User).
@@ -51,10 +67,11 @@ public class ChatPDU implements Serializable {
   // Conversation-Status aus Sicht des Servers
   private ClientConversationStatus clientStatus;
 
-  // Fehlercode, derzeit nur 1 Fehlercode definiert
+  // Fehlercode
   private int errorCode;
   public final static int NO_ERROR = 0;
   public final static int LOGIN_ERROR = 1;
+  public final static int ROOM_ERROR = 2;
 
   // Daten zur statistischen Auswertung, die mit der Logout-Response-PDU
   // mitgesendet werden:
@@ -84,8 +101,12 @@ public class ChatPDU implements Serializable {
     sequenceNumber = 0;
     errorCode = NO_ERROR;
     message = null;
+    room = null;
     serverTime = 0;
     clients = null;
+    userListVersion = 0;
+    confirmedEventUserNames = null;
+    confirmedSequenceNumbers = null;
     clientStatus = ClientConversationStatus.UNREGISTERED;
     numberOfReceivedChatMessages = 0;
     numberOfSentEvents = 0;
@@ -104,6 +125,34 @@ public class ChatPDU implements Serializable {
     this.message = message;
   }
 
+  /**
+   * Flache Kopie der PDU erzeugen (die Clientliste wird nicht kopiert)
+   * 
+   * @return Kopie der PDU
+   */
+  public ChatPDU copy() {
+    ChatPDU pdu = new ChatPDU(pduType, clients);
+    pdu.userName = userName;
+    pdu.eventUserName = eventUserName;
+    pdu.clientThreadName = clientThreadName;
+    pdu.serverThreadName = serverThreadName;
+    pdu.sequenceNumber = sequenceNumber;
+    pdu.message = message;
+    pdu.room = room;
+    pdu.userListVersion = userListVersion;
+    pdu.confirmedEventUserNames = confirmedEventUserNames;
+    pdu.confirmedSequenceNumbers = confirmedSequenceNumbers;
+    pdu.serverTime = serverTime;
+    pdu.clientStatus = clientStatus;
+    pdu.errorCode = errorCode;
+    pdu.numberOfReceivedChatMessages = numberOfReceivedChatMessages;
+    pdu.numberOfSentEvents = numberOfSentEvents;
+    pdu.numberOfReceivedConfirms = numberOfReceivedConfirms;
+    pdu.numberOfLostConfirms = numberOfLostConfirms;
+    pdu.numberOfRetries = numberOfRetries;
+    return pdu;
+  }
+
   public String toString() {
 
     return "\n"
@@ -162,6 +211,18 @@ public class ChatPDU implements Serializable {
 	  + this.clients
 	  + ", "
 	  + "\n"
+	  + "userListVersion: "
+	  + this.userListVersion
+	  + ", "
+	  + "\n"
+	  + "confirmedEventUserNames: "
+	  + this.confirmedEventUserNames
+	  + ", "
+	  + "\n"
+	  + "room: "
+	  + this.room
+	  + ", "
+	  + "\n"
 	  + "message: "
 	  + this.message
 	  + "\n"
@@ -178,6 +239,28 @@ public class ChatPDU implements Serializable {
     this.clients = clients;
   }
 
+  public void setUserListVersion(long userListVersion) {
+    this.userListVersion = userListVersion;
+  }
+
+  /**
+   * Bestaetigte Chat-Events eines Sammel-Confirms eintragen
+   * 
+   * @param eventUserNames
+   *          Absender der bestaetigten Events
+   * @param sequenceNumbers
+   *          Sequenznummern der bestaetigten Events, gleich lang wie
+   *          eventUserNames
+   */
+  public void setConfirmedEvents(Vector<String> eventUserNames,
+	long[] sequenceNumbers) {
+    if (eventUserNames.size() != sequenceNumbers.length) {
+      throw new IllegalArgumentException("Anzahl Absender und Sequenznummern verschieden");
+    }
+    this.confirmedEventUserNames = eventUserNames;
+    this.confirmedSequenceNumbers = sequenceNumbers;
+  }
+
   public void setPduType(PduType pduType) {
     this.pduType = pduType;
   }
@@ -202,6 +285,10 @@ public class ChatPDU implements Serializable {
     this.message = msg;
   }
 
+  public void setRoom(String room) {
+    this.room = room;
+  }
+
   public void setServerTime(long time) {
     this.serverTime = time;
   }
@@ -218,6 +305,25 @@ public class ChatPDU implements Serializable {
     return clients;
   }
 
+  public long getUserListVersion() {
+    return userListVersion;
+  }
+
+  /**
+   * @return Anzahl der in einem Sammel-Confirm bestaetigten Events
+   */
+  public int getNumberOfConfirmedEvents() {
+    return (confirmedSequenceNumbers == null) ? 0 : confirmedSequenceNumbers.length;
+  }
+
+  public String getConfirmedEventUserName(int index) {
+    return confirmedEventUserNames.get(index);
+  }
+
+  public long getConfirmedSequenceNumber(int index) {
+    return confirmedSequenceNumbers[index];
+  }
+
   public String getUserName() {
     return userName;
   }
@@ -238,6 +344,17 @@ public class ChatPDU implements Serializable {
     return (message);
   }
 
+  public String getRoom() {
+    return room;
+  }
+
+  /**
+   * @return Chat-Raum, bei nicht belegtem Raum der allgemeine Raum
+   */
+  public String getRoomOrDefault() {
+    return (room == null) ? DEFAULT_ROOM : room;
+  }
+
   public long getServerTime() {
     return (serverTime);
   }
@@ -359,10 +476,25 @@ public class ChatPDU implements Serializable {
   public static ChatPDU createLoginResponsePdu(String eventInitiator,
 	ChatPDU receivedPdu) {
 
+    return createLoginResponsePdu(eventInitiator, receivedPdu.getClientThreadName());
+  }
+
+  /**
+   * Erzeugen einer Login-Response-PDU
+   * 
+   * @param eventInitiator
+   *          Urspruenglicher Client, der Login-Request-PDU gesendet hat
+   * @param clientThreadName
+   *          Name des Client-Threads
+   * @return Erzeugte PDU
+   */
+  public static ChatPDU createLoginResponsePdu(String eventInitiator,
+	String clientThreadName) {
+
     ChatPDU pdu = new ChatPDU();
     pdu.setPduType(PduType.LOGIN_RESPONSE);
     pdu.setServerThreadName(Thread.currentThread().getName());
-    pdu.setClientThreadName(receivedPdu.getClientThreadName());
+    pdu.setClientThreadName(clientThreadName);
     pdu.setUserName(eventInitiator);
     pdu.setClientStatus(ClientConversationStatus.REGISTERED);
     return pdu;
@@ -389,6 +521,7 @@ public class ChatPDU implements Serializable {
     pdu.setSequenceNumber(receivedPdu.getSequenceNumber());
     pdu.setClientStatus(ClientConversationStatus.REGISTERED);
     pdu.setMessage(receivedPdu.getMessage());
+    pdu.setRoom(receivedPdu.getRoom());
     return pdu;
   }
 
@@ -502,6 +635,70 @@ public class ChatPDU implements Serializable {
     return pdu;
   }
 
+  /**
+   * Erzeugen einer User-List-Request-PDU, mit der ein Client nach einer Luecke
+   * in den Login- und Logout-Events die vollstaendige Userliste anfordert
+   * 
+   * @param userName
+   *          Name des Clients
+   * @param clientStatus
+   *          Aktueller Zustand des Clients
+   * @return Erzeugte PDU
+   */
+  public static ChatPDU createUserListRequestPdu(String userName,
+	ClientConversationStatus clientStatus) {
+
+    ChatPDU pdu = new ChatPDU();
+    pdu.setPduType(PduType.USER_LIST_REQUEST);
+    pdu.setClientThreadName(Thread.currentThread().getName());
+    pdu.setUserName(userName);
+    pdu.setClientStatus(clientStatus);
+    return pdu;
+  }
+
+  /**
+   * Erzeugen einer User-List-Response-PDU mit der vollstaendigen Userliste
+   * 
+   * @param receivedPdu
+   *          Empfangene PDU (User-List-Request-PDU)
+   * @return Erzeugte PDU, Userliste und Stand traegt der Aufrufer ein
+   */
+  public static ChatPDU createUserListResponsePdu(ChatPDU receivedPdu) {
+
+    ChatPDU pdu = new ChatPDU();
+    pdu.setPduType(PduType.USER_LIST_RESPONSE);
+    pdu.setServerThreadName(Thread.currentThread().getName());
+    pdu.setClientThreadName(receivedPdu.getClientThreadName());
+    pdu.setUserName(receivedPdu.getUserName());
+    pdu.setClientStatus(receivedPdu.getClientStatus());
+    return pdu;
+  }
+
+  /**
+   * Erzeugen einer Response-PDU auf einen Room-Join- oder Room-Leave-Request
+   * 
+   * @param receivedPdu
+   *          Empfangene PDU (Room-Join- bzw. Room-Leave-Request-PDU)
+   * @param errorCode
+   *          NO_ERROR oder ROOM_ERROR
+   * @return Erzeugte PDU
+   */
+  public static ChatPDU createRoomResponsePdu(ChatPDU receivedPdu,
+	int errorCode) {
+
+    ChatPDU pdu = new ChatPDU();
+    pdu.setPduType((receivedPdu.getPduType() == PduType.ROOM_JOIN_REQUEST)
+	? PduType.ROOM_JOIN_RESPONSE : PduType.ROOM_LEAVE_RESPONSE);
+    pdu.setServerThreadName(Thread.currentThread().getName());
+    pdu.setClientThreadName(receivedPdu.getClientThreadName());
+    pdu.setUserName(receivedPdu.getUserName());
+    pdu.setClientStatus(receivedPdu.getClientStatus());
+    pdu.setRoom(receivedPdu.getRoom());
+    pdu.setSequenceNumber(receivedPdu.getSequenceNumber());
+    pdu.setErrorCode(errorCode);
+    return pdu;
+  }
+
   /**
    * Erzeugen einer Login-Event-Confirm-PDU
    * 
@@ -564,6 +761,53 @@ public class ChatPDU implements Serializable {
     pdu.setServerThreadName(receivedPdu.getServerThreadName());
     pdu.setUserName(userName);
     pdu.setEventUserName(receivedPdu.getEventUserName());
+    // Sequenznummer ordnet das Confirm dem bestaetigten Event zu
+    pdu.setSequenceNumber(receivedPdu.getSequenceNumber());
+    return pdu;
+  }
+
+  /**
+   * Erzeugen einer Sammel-Confirm-PDU, die mehrere Chat-Message-Events auf
+   * einmal bestaetigt
+   * 
+   * @param userName
+   *          Name des Clients
+   * @param eventUserNames
+   *          Absender der bestaetigten Events
+   * @param sequenceNumbers
+   *          Sequenznummern der bestaetigten Events
+   * @return Erzeugte PDU
+   */
+  public static ChatPDU createChatMessageEventConfirmBatch(String userName,
+	Vector<String> eventUserNames, long[] sequenceNumbers) {
+
+    ChatPDU pdu = new ChatPDU();
+    pdu.setPduType(PduType.CHAT_MESSAGE_EVENT_CONFIRM_BATCH);
+    pdu.setClientStatus(ClientConversationStatus.REGISTERED);
+    pdu.setClientThreadName(Thread.currentThread().getName());
+    pdu.setUserName(userName);
+    pdu.setConfirmedEvents(eventUserNames, sequenceNumbers);
+    return pdu;
+  }
+
+  /**
+   * Erzeugen einer Heartbeat-PDU, die ein Client sendet, solange er sonst
+   * nichts sendet. Der Server beantwortet sie nicht.
+   * 
+   * @param userName
+   *          Name des Clients
+   * @param clientStatus
+   *          Aktueller Zustand des Clients
+   * @return Erzeugte PDU
+   */
+  public static ChatPDU createHeartbeatPdu(String userName,
+	ClientConversationStatus clientStatus) {
+
+    ChatPDU pdu = new ChatPDU();
+    pdu.setPduType(PduType.HEARTBEAT);
+    pdu.setClientStatus(clientStatus);
+    pdu.setClientThreadName(Thread.currentThread().getName());
+    pdu.setUserName(userName);
     return pdu;
   }
 }
\ No newline at end of file
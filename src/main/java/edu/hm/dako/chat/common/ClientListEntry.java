@@ -1,11 +1,14 @@
 package edu.hm.dako.chat.common;
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.MessageSender;
 
 /**
  * Eintrag in der serverseitigen Clientliste zur Verwaltung der angemeldeten
@@ -20,8 +23,9 @@ public class ClientListEntry {
 	// Login-Name des Clients
 	private String userName;
 
-	// Verbindungs-Handle fuer Transportverbindung zum Client
-	private Connection con;
+	// Verbindungs-Handle fuer Transportverbindung zum Client (nur zum Senden,
+	// empfangen wird im Worker-Thread bzw. Event-Loop des Clients)
+	private MessageSender con;
 
 	// Kennzeichen zum Beenden des Worker-Threads
 	boolean finished;
@@ -54,12 +58,20 @@ public class ClientListEntry {
 	// Anzahl an Nachrichtenwiederholungen (derzeit nicht genutzt)
 	private long numberOfRetries;
 
-	// Liste, die auf alle Clients verweist, die noch kein Event-Confirm fuer
-	// einen
-	// konkret laufenden Request gesendet haben
-	private Vector<String> waitList;
+	// Platz des Clients in den Wartelisten (Bitposition), wird von der
+	// Clientliste vergeben
+	private int slot;
 
-	public ClientListEntry(String userName, Connection con) {
+	// Wartelisten mit allen Clients, die noch kein Event-Confirm fuer einen
+	// laufenden Request gesendet haben, je Event-Kennung (Sequenznummer). Bei
+	// Pipelining koennen mehrere Requests eines Clients gleichzeitig offen sein.
+	private Map<Long, ConfirmWaitSet> waitLists;
+
+	// Anzahl der Wartelisten anderer Clients, in denen dieser Client noch
+	// eingetragen ist (Referenzzaehler fuer das Loeschen)
+	private int waitListReferences;
+
+	public ClientListEntry(String userName, MessageSender con) {
 		this.userName = userName;
 		this.con = con;
 		this.finished = false;
@@ -71,7 +83,9 @@ public class ClientListEntry {
 		this.numberOfReceivedEventConfirms = 0;
 		this.numberOfLostEventConfirms = 0;
 		this.numberOfRetries = 0;
-		this.waitList = new Vector<String>();
+		this.slot = -1;
+		this.waitLists = new HashMap<Long, ConfirmWaitSet>();
+		this.waitListReferences = 0;
 	}
 
 	@Override
@@ -100,11 +114,11 @@ public class ClientListEntry {
 		return userName;
 	}
 
-	public synchronized void setConnection(Connection con) {
+	public synchronized void setConnection(MessageSender con) {
 		this.con = con;
 	}
 
-	public synchronized Connection getConnection() {
+	public synchronized MessageSender getConnection() {
 		return (con);
 	}
 
@@ -200,21 +214,87 @@ public class ClientListEntry {
 		this.numberOfRetries++;
 	}
 
-	public synchronized void setWaitList(Vector<String> list) {
-		this.waitList = list;
-		//log.debug("Warteliste von " + this.userName + ": " + waitList);
+	public synchronized void setSlot(int slot) {
+		this.slot = slot;
+	}
+
+	public synchronized int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Traegt eine Warteliste ein und ersetzt eine vorhandene Warteliste mit
+	 * derselben Event-Kennung
+	 * 
+	 * @param list
+	 *          Neue Warteliste
+	 * @return Ersetzte Warteliste oder ConfirmWaitSet.EMPTY
+	 */
+	public synchronized ConfirmWaitSet setWaitList(ConfirmWaitSet list) {
+		ConfirmWaitSet oldList = waitLists.put(list.getEventId(), list);
+		//log.debug("Warteliste von " + this.userName + ": " + list.size() + " Eintraege");
+		return (oldList == null) ? ConfirmWaitSet.EMPTY : oldList;
+	}
+
+	/**
+	 * @param eventId
+	 *          Event-Kennung
+	 * @return Warteliste zu dem Event oder ConfirmWaitSet.EMPTY
+	 */
+	public synchronized ConfirmWaitSet getWaitList(long eventId) {
+		ConfirmWaitSet list = waitLists.get(eventId);
+		return (list == null) ? ConfirmWaitSet.EMPTY : list;
+	}
+
+	/**
+	 * Entfernt eine abgeschlossene Warteliste, sofern sie nicht inzwischen
+	 * ersetzt wurde
+	 * 
+	 * @param list
+	 *          Warteliste
+	 */
+	public synchronized void removeWaitList(ConfirmWaitSet list) {
+		waitLists.remove(list.getEventId(), list);
+	}
+
+	/**
+	 * @return Kopie aller Wartelisten des Clients
+	 */
+	public synchronized List<ConfirmWaitSet> getWaitLists() {
+		return new ArrayList<ConfirmWaitSet>(waitLists.values());
+	}
+
+	/**
+	 * @return Summe der ausstehenden Bestaetigungen ueber alle Wartelisten
+	 */
+	public synchronized int getWaitListSize() {
+		int size = 0;
+		for (ConfirmWaitSet list : waitLists.values()) {
+			size += list.size();
+		}
+		return size;
+	}
+
+	public synchronized int incrWaitListReferences() {
+		return ++waitListReferences;
 	}
 
-	public synchronized void addWaitListEntry(String userName) {
-		this.waitList.add(userName);
-		//log.debug("Warteliste von " + this.userName + " ergaenzt um " + userName);
+	public synchronized int decrWaitListReferences() {
+		return --waitListReferences;
 	}
 
-	public synchronized Vector<String> getWaitList() {
-		return waitList;
+	public synchronized int getWaitListReferences() {
+		return waitListReferences;
 	}
 
-	public synchronized void clearWaitList() {
-		waitList.clear();
+	/**
+	 * Entfernt alle Wartelisten
+	 * 
+	 * @return Entfernte Wartelisten
+	 */
+	public synchronized List<ConfirmWaitSet> clearWaitLists() {
+		List<ConfirmWaitSet> oldLists = new ArrayList<ConfirmWaitSet>(waitLists.values());
+		waitLists.clear();
+		return oldLists;
 	}
 }
@@ -0,0 +1,11 @@
+package edu.hm.dako.chat.common;
+
+/**
+ * Kodierungsvarianten fuer die Uebertragung der Chat-PDUs
+ *
+ * @author Mandl
+ */
+
+public enum CodecType {
+  JavaSerialization, Binary,
+}
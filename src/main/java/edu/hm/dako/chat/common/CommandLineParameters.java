@@ -0,0 +1,59 @@
+package edu.hm.dako.chat.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Parameter der Kommandozeilenprogramme (Server und Benchmark-Reihe): Optional
+ * als erstes Argument eine Konfigurationsdatei, danach Parameter der Form
+ * name=wert, die Werte aus der Datei ueberschreiben. Ohne angegebene Datei wird
+ * die Standarddatei gelesen, falls sie existiert.
+ *
+ * @author Mandl
+ */
+public class CommandLineParameters {
+
+	/**
+	 * Liest die Konfigurationsdatei und die Parameter der Kommandozeile ein
+	 *
+	 * @param args
+	 *          Kommandozeilenargumente
+	 * @param defaultConfigFile
+	 *          Konfigurationsdatei, falls im ersten Argument keine angegeben ist
+	 * @param props
+	 *          Ergebnis
+	 * @throws Exception
+	 *           Konfigurationsdatei nicht lesbar oder Parameter fehlerhaft
+	 */
+	public static void read(String[] args, String defaultConfigFile, Properties props)
+			throws Exception {
+		int first = 0;
+		String configFile = null;
+		if ((args.length > 0) && !args[0].contains("=")) {
+			configFile = args[0];
+			first = 1;
+		} else if (new File(defaultConfigFile).exists()) {
+			configFile = defaultConfigFile;
+		}
+
+		if (configFile != null) {
+			InputStream in = new FileInputStream(configFile);
+			try {
+				props.load(in);
+			} finally {
+				in.close();
+			}
+			//log.debug("Konfiguration gelesen aus " + configFile);
+		}
+
+		for (int i = first; i < args.length; i++) {
+			int separator = args[i].indexOf('=');
+			if (separator <= 0) {
+				throw new IllegalArgumentException(args[i]);
+			}
+			props.setProperty(args[i].substring(0, separator), args[i].substring(separator + 1));
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package edu.hm.dako.chat.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Menge der Clients, die ein bestimmtes Event noch bestaetigen muessen. Jeder
+ * Client belegt in der Clientliste einen festen Platz (Slot), die Menge wird als
+ * Bitmenge ueber diese Slots gefuehrt. Zusaetzlich wird die Anzahl noch
+ * ausstehender Bestaetigungen atomar gezaehlt, so dass Eintragen, Austragen und
+ * die Pruefung auf Vollstaendigkeit unabhaengig von der Anzahl der Clients in
+ * konstanter Zeit erfolgen.
+ *
+ * Die Menge ist einer Event-Kennung (Sequenznummer des ausloesenden Requests)
+ * zugeordnet. Bestaetigungen fuer andere Kennungen gehoeren zu einem frueheren
+ * Event und werden ignoriert. Bei Pipelining fuehrt ein Client je offenem
+ * Request eine eigene Menge.
+ *
+ * @author Peter Mandl
+ *
+ */
+public class ConfirmWaitSet {
+
+	// Leere Menge als Anfangswert fuer neue Clients
+	public static final ConfirmWaitSet EMPTY = new ConfirmWaitSet(0, 0);
+
+	// Kennung des Events, auf dessen Bestaetigungen gewartet wird
+	private final long eventId;
+
+	// Ankunftszeit des ausloesenden Requests fuer die Serverzeit-Messung
+	private final long requestStartTime;
+
+	// Ein Bit je Slot, gesetzt = Bestaetigung ausstehend
+	private final AtomicLongArray bits;
+
+	// Anzahl ausstehender Bestaetigungen
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	/**
+	 * @param eventId
+	 *          Kennung des Events
+	 * @param slotLimit
+	 *          Anzahl der Slots, die in die Menge aufgenommen werden koennen
+	 */
+	public ConfirmWaitSet(long eventId, int slotLimit) {
+		this(eventId, slotLimit, 0);
+	}
+
+	/**
+	 * @param eventId
+	 *          Kennung des Events
+	 * @param slotLimit
+	 *          Anzahl der Slots, die in die Menge aufgenommen werden koennen
+	 * @param requestStartTime
+	 *          Ankunftszeit des ausloesenden Requests (System.nanoTime)
+	 */
+	public ConfirmWaitSet(long eventId, int slotLimit, long requestStartTime) {
+		this.eventId = eventId;
+		this.requestStartTime = requestStartTime;
+		this.bits = new AtomicLongArray((slotLimit + 63) >>> 6);
+	}
+
+	public long getEventId() {
+		return eventId;
+	}
+
+	public long getRequestStartTime() {
+		return requestStartTime;
+	}
+
+	/**
+	 * Traegt einen Slot in die Menge ein
+	 *
+	 * @param slot
+	 *          Slot des Clients
+	 * @return true, wenn der Slot neu eingetragen wurde
+	 */
+	public boolean add(int slot) {
+
+		if (!inRange(slot)) {
+			return false;
+		}
+		int index = slot >>> 6;
+		long mask = 1L << slot;
+		while (true) {
+			long word = bits.get(index);
+			if ((word & mask) != 0) {
+				return false;
+			}
+			if (bits.compareAndSet(index, word, word | mask)) {
+				outstanding.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Traegt einen Slot aus der Menge aus
+	 *
+	 * @param slot
+	 *          Slot des Clients
+	 * @return Anzahl danach noch ausstehender Bestaetigungen (0 = mit diesem
+	 *         Aufruf vollstaendig) oder -1, wenn der Slot nicht enthalten war
+	 */
+	public int remove(int slot) {
+
+		if (!inRange(slot)) {
+			return -1;
+		}
+		int index = slot >>> 6;
+		long mask = 1L << slot;
+		while (true) {
+			long word = bits.get(index);
+			if ((word & mask) == 0) {
+				// Nicht (mehr) enthalten, z.B. doppelte Bestaetigung
+				return -1;
+			}
+			if (bits.compareAndSet(index, word, word & ~mask)) {
+				return outstanding.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Prueft, ob fuer einen Slot noch eine Bestaetigung aussteht
+	 *
+	 * @param slot
+	 *          Slot des Clients
+	 * @return true, wenn der Slot in der Menge ist
+	 */
+	public boolean contains(int slot) {
+
+		if (!inRange(slot)) {
+			return false;
+		}
+		return (bits.get(slot >>> 6) & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Sucht den naechsten Slot, fuer den noch eine Bestaetigung aussteht
+	 *
+	 * @param fromSlot
+	 *          Slot, ab dem gesucht wird
+	 * @return Gefundener Slot oder -1, wenn keiner mehr enthalten ist
+	 */
+	public int nextSlot(int fromSlot) {
+
+		if (fromSlot < 0) {
+			fromSlot = 0;
+		}
+		int index = fromSlot >>> 6;
+		if (index >= bits.length()) {
+			return -1;
+		}
+		long word = bits.get(index) & (-1L << fromSlot);
+		while (true) {
+			if (word != 0) {
+				return (index << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++index >= bits.length()) {
+				return -1;
+			}
+			word = bits.get(index);
+		}
+	}
+
+	/**
+	 * @return Anzahl ausstehender Bestaetigungen
+	 */
+	public int size() {
+		return outstanding.get();
+	}
+
+	private boolean inRange(int slot) {
+		return (slot >= 0) && ((slot >>> 6) < bits.length());
+	}
+}
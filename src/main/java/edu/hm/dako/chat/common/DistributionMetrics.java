@@ -28,6 +28,12 @@ public class DistributionMetrics {
 	// 90 % Percentile
 	double percentile90;
 
+	// 99 % Percentile
+	double percentile99;
+
+	// 99,9 % Percentile
+	double percentile999;
+
 	// Stannweite (zwischen Minimum und Maximum)
 	double range;
 
@@ -52,6 +58,8 @@ public class DistributionMetrics {
 		percentile50 = 0;
 		percentile75 = 0;
 		percentile90 = 0;
+		percentile99 = 0;
+		percentile999 = 0;
 		interquartilRange = 0;
 		range = 0;
 		mean = 0;
@@ -87,6 +95,14 @@ public class DistributionMetrics {
 		return percentile90;
 	}
 
+	public double getPercentile99() {
+		return percentile99;
+	}
+
+	public double getPercentile999() {
+		return percentile999;
+	}
+
 	public double getInterquartilRange() {
 		return interquartilRange;
 	}
@@ -135,6 +151,14 @@ public class DistributionMetrics {
 		this.percentile90 = percentile90;
 	}
 
+	public void setPercentile99(double percentile99) {
+		this.percentile99 = percentile99;
+	}
+
+	public void setPercentile999(double percentile999) {
+		this.percentile999 = percentile999;
+	}
+
 	public void setInterquartilRange(double interquartilRange) {
 		this.interquartilRange = interquartilRange;
 	}
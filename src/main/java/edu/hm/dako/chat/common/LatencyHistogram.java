@@ -0,0 +1,255 @@
+package edu.hm.dako.chat.common;
+
+import java.util.Arrays;
+
+/**
+ * Histogramm fuer Latenzen (z.B. RTTs in ns) mit logarithmisch gestaffelten
+ * Buckets und festem Speicherbedarf.
+ * <p/>
+ * Jede Zweierpotenz wird in 2^(precisionBits-1) gleich breite Buckets
+ * unterteilt, Werte unter 2^precisionBits werden exakt gezaehlt. Der relative
+ * Fehler eines ermittelten Percentils ist damit hoechstens 2^-precisionBits
+ * (bei 7 Bit also unter 1 %). Minimum, Maximum, Mittelwert und Varianz werden
+ * exakt mitgefuehrt.
+ * <p/>
+ * Das Aufzeichnen eines Wertes erzeugt keine Objekte. Histogramme gleicher
+ * Konfiguration koennen addiert werden, z.B. um die Histogramme aller Clients
+ * eines Benchmarks zusammenzufassen. Die Klasse ist nicht thread-sicher.
+ *
+ * @author Mandl
+ */
+public class LatencyHistogram {
+
+	// Voreinstellung fuer die Genauigkeit in Bit (relativer Fehler < 1 %)
+	public static final int DEFAULT_PRECISION_BITS = 7;
+
+	// Voreinstellung fuer den groessten unterscheidbaren Wert: eine Stunde in ns
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3600L * 1000000000L;
+
+	private final int precisionBits;
+
+	private final long highestTrackableValue;
+
+	// Anzahl der exakt gezaehlten Werte am Anfang (2^precisionBits)
+	private final int subBucketCount;
+
+	// Buckets je Zweierpotenz oberhalb der exakten Werte
+	private final int subBucketHalfCount;
+
+	private final long[] counts;
+
+	private long totalCount;
+
+	private long minValue;
+
+	private long maxValue;
+
+	// Mittelwert und Summe der quadrierten Abweichungen (Welford)
+	private double mean;
+
+	private double m2;
+
+	public LatencyHistogram() {
+		this(DEFAULT_PRECISION_BITS, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+	}
+
+	/**
+	 * @param precisionBits
+	 *          Genauigkeit in Bit (1 bis 20)
+	 * @param highestTrackableValue
+	 *          Groesster unterscheidbarer Wert, groessere Werte landen im
+	 *          letzten Bucket (Maximum wird trotzdem exakt gefuehrt)
+	 */
+	public LatencyHistogram(int precisionBits, long highestTrackableValue) {
+		if ((precisionBits < 1) || (precisionBits > 20)) {
+			throw new IllegalArgumentException("Ungueltige Genauigkeit: " + precisionBits);
+		}
+		if (highestTrackableValue < 1) {
+			throw new IllegalArgumentException(
+					"Ungueltiger Wertebereich: " + highestTrackableValue);
+		}
+		this.precisionBits = precisionBits;
+		this.highestTrackableValue = highestTrackableValue;
+		this.subBucketCount = 1 << precisionBits;
+		this.subBucketHalfCount = subBucketCount >> 1;
+		this.counts = new long[bucketIndex(highestTrackableValue) + 1];
+		clear();
+	}
+
+	/**
+	 * Loescht alle aufgezeichneten Werte
+	 */
+	public void reset() {
+		clear();
+	}
+
+	/**
+	 * Setzt Zaehler und Kennzahlen zurueck, auch aus dem Konstruktor aufgerufen
+	 * und daher nicht ueberschreibbar
+	 */
+	private void clear() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		minValue = Long.MAX_VALUE;
+		maxValue = 0;
+		mean = 0;
+		m2 = 0;
+	}
+
+	/**
+	 * Zeichnet einen Wert auf, negative Werte werden als 0 gezaehlt
+	 *
+	 * @param value
+	 *          Messwert, z.B. RTT in ns
+	 */
+	public void recordValue(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[bucketIndex(Math.min(value, highestTrackableValue))]++;
+		totalCount++;
+		minValue = Math.min(minValue, value);
+		maxValue = Math.max(maxValue, value);
+
+		double delta = value - mean;
+		mean += delta / totalCount;
+		m2 += delta * (value - mean);
+	}
+
+	/**
+	 * Addiert die Werte eines anderen Histogramms gleicher Konfiguration
+	 *
+	 * @param other
+	 *          Zu addierendes Histogramm
+	 */
+	public void add(LatencyHistogram other) {
+		if ((other.precisionBits != precisionBits)
+				|| (other.highestTrackableValue != highestTrackableValue)) {
+			throw new IllegalArgumentException(
+					"Histogramme mit unterschiedlicher Konfiguration");
+		}
+		if (other.totalCount == 0) {
+			return;
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+
+		// Zusammenfassen von Mittelwert und Abweichungsquadraten nach Chan
+		long n = totalCount + other.totalCount;
+		double delta = other.mean - mean;
+		m2 += other.m2 + delta * delta * ((double) totalCount * other.totalCount / n);
+		mean += delta * other.totalCount / n;
+		totalCount = n;
+		minValue = Math.min(minValue, other.minValue);
+		maxValue = Math.max(maxValue, other.maxValue);
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMin() {
+		return (totalCount == 0) ? 0 : minValue;
+	}
+
+	public long getMax() {
+		return maxValue;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return Stichprobenvarianz (Division durch n-1), 0 bei weniger als zwei
+	 *         Werten
+	 */
+	public double getVariance() {
+		return (totalCount < 2) ? 0 : m2 / (totalCount - 1);
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * Ermittelt ein Percentil nach demselben Schaetzverfahren wie
+	 * commons-math (Position p * (n + 1) / 100 mit linearer Interpolation),
+	 * allerdings auf den Bucket-Werten
+	 *
+	 * @param p
+	 *          Percentil in Prozent (0 < p <= 100)
+	 * @return Percentil, 0 falls keine Werte aufgezeichnet wurden
+	 */
+	public double getPercentile(double p) {
+		if ((p <= 0) || (p > 100)) {
+			throw new IllegalArgumentException("Ungueltiges Percentil: " + p);
+		}
+		if (totalCount == 0) {
+			return 0;
+		}
+		double position = p * (totalCount + 1) / 100;
+		if (position < 1) {
+			return valueAtRank(1);
+		}
+		if (position >= totalCount) {
+			return valueAtRank(totalCount);
+		}
+		long lowerRank = (long) Math.floor(position);
+		double lower = valueAtRank(lowerRank);
+		double upper = valueAtRank(lowerRank + 1);
+		return lower + (position - lowerRank) * (upper - lower);
+	}
+
+	/**
+	 * Liefert den Wert mit dem angegebenen Rang (1 = kleinster Wert) als Mitte
+	 * seines Buckets, begrenzt auf das exakte Minimum und Maximum
+	 */
+	private double valueAtRank(long rank) {
+		if (rank <= 1) {
+			return minValue;
+		}
+		if (rank >= totalCount) {
+			return maxValue;
+		}
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				double value = bucketLowValue(i) + (bucketWidth(i) - 1) / 2.0;
+				return Math.max(minValue, Math.min(maxValue, value));
+			}
+		}
+		return maxValue;
+	}
+
+	/**
+	 * Bucket-Index eines Wertes: Werte unter 2^precisionBits direkt, darueber
+	 * die obersten precisionBits Bits des Wertes je Zweierpotenz
+	 */
+	private int bucketIndex(long value) {
+		if (value < subBucketCount) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (precisionBits - 1);
+		return subBucketCount + (shift - 1) * subBucketHalfCount
+				+ (int) ((value >>> shift) - subBucketHalfCount);
+	}
+
+	private long bucketLowValue(int index) {
+		if (index < subBucketCount) {
+			return index;
+		}
+		int shift = (index - subBucketCount) / subBucketHalfCount + 1;
+		long subBucket = (index - subBucketCount) % subBucketHalfCount + subBucketHalfCount;
+		return subBucket << shift;
+	}
+
+	private long bucketWidth(int index) {
+		if (index < subBucketCount) {
+			return 1;
+		}
+		return 1L << ((index - subBucketCount) / subBucketHalfCount + 1);
+	}
+}
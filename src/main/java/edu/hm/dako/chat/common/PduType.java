@@ -18,7 +18,15 @@ public enum PduType {
     LOGOUT_EVENT(9, "Logout-Event"),
     CHAT_MESSAGE_EVENT_CONFIRM(10, "Chat-Message-Event-Confirm"),
     LOGIN_EVENT_CONFIRM(11, "Login-Event-Confirm"),
-    LOGOUT_EVENT_CONFIRM(12, "Logout-Event-Confirm");
+    LOGOUT_EVENT_CONFIRM(12, "Logout-Event-Confirm"),
+    HEARTBEAT(13, "Heartbeat"),
+    ROOM_JOIN_REQUEST(14, "Room-Join-Request"),
+    ROOM_JOIN_RESPONSE(15, "Room-Join-Response"),
+    ROOM_LEAVE_REQUEST(16, "Room-Leave-Request"),
+    ROOM_LEAVE_RESPONSE(17, "Room-Leave-Response"),
+    USER_LIST_REQUEST(18, "User-List-Request"),
+    USER_LIST_RESPONSE(19, "User-List-Response"),
+    CHAT_MESSAGE_EVENT_CONFIRM_BATCH(20, "Chat-Message-Event-Confirm-Batch");
 
     private final int id;
     private final String description;
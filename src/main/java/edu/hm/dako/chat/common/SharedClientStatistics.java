@@ -5,20 +5,13 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Formatter;
+import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.commons.math3.exception.MathIllegalArgumentException;
-import org.apache.commons.math3.stat.descriptive.moment.Mean;
-import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
-import org.apache.commons.math3.stat.descriptive.moment.Variance;
-import org.apache.commons.math3.stat.descriptive.rank.Max;
-import org.apache.commons.math3.stat.descriptive.rank.Min;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 
 import edu.hm.dako.chat.benchmarking.BenchmarkingClientUserInterface;
 
@@ -30,6 +23,37 @@ import edu.hm.dako.chat.benchmarking.BenchmarkingClientUserInterface;
  * Die Daten werden in einem Array gesammelt, das einen Eintrag fuer jeden
  * Client enthaelt. Jeder Client erhaelt eine Nummer, die als Zugriffsindex auf
  * das Array verwendet wird.
+ * <p/>
+ * Die Aufzeichnungsmethoden kommen ohne Sperren aus, so dass die Messung
+ * selbst keine Synchronisation zwischen den Client-Threads verursacht. Jedes
+ * Feld eines Eintrags hat dafuer genau einen schreibenden Thread:
+ * <ul>
+ * <li>incrSentMsgCounter (gesendete Requests, firstSendTime) und die
+ * setNumberOf...-Methoden nach dem Logout: Client-Thread</li>
+ * <li>incrReceivedMsgCounter (Responses, RTTs, Serverzeiten): der
+ * Message-Listener-Thread des Clients ueber den ResponseHandler der
+ * PendingRequests</li>
+ * <li>incrNumberOfRetries: der gemeinsame Wiederholungs-Timer der
+ * UDP-Verbindungen (UdpRetransmitTimer)</li>
+ * </ul>
+ * Der Message-Listener-Thread liest firstSendTime des Client-Threads. Dieser
+ * schreibt es vor dem Eintrag des Requests in die PendingRequests, der
+ * Listener liest es nach dem Zugriff auf denselben Monitor in complete(). Die
+ * Auswertungsmethoden (getSumOfAll..., calculateMetrics usw.) werden nach dem
+ * Ende aller Client-Threads aufgerufen. Ein Client-Thread endet erst, nachdem
+ * awaitEmpty() der PendingRequests alle Responses gesehen hat, und complete()
+ * gibt den Request erst nach dem ResponseHandler frei. Die Eintraege des
+ * Listeners sind damit ueber den Client-Thread sichtbar. Der
+ * Wiederholungs-Timer hat keine solche Kette zu den Client-Threads, der
+ * Wiederholungszaehler ist daher volatile, ebenso die Anzahl der empfangenen
+ * Responses, die reportProgress() (ueber einen Reporter-Thread) waehrend des
+ * Laufs liest.
+ * <p/>
+ * Jede Response wird einer Phase des Laufs zugeordnet (siehe setPhases):
+ * Einschwingphase, Messphase und Ausklingphase. RTT-Verteilung, Durchsatz und
+ * Serverzeit werden nur aus den Responses der Messphase ermittelt, fuer die
+ * beiden anderen Phasen werden Anzahl, RTT-Verteilung und Durchsatz getrennt
+ * gefuehrt. Ohne eingestellte Phasen gehoeren alle Responses zur Messphase.
  *
  * @author Mandl
  */
@@ -70,17 +94,51 @@ public class SharedClientStatistics {
 	// Client-GUI fuer die Bearbeitung des Ladebalken
 	private BenchmarkingClientUserInterface clientGui;
 
+	// Einschwing- und Ausklingphase in Responses je Client sowie Einschwing-
+	// und Messphase in ms ab dem ersten Request des Laufs (0 = nicht begrenzt)
+	private int warmUpMessages;
+	private int coolDownMessages;
+	private long warmUpTime;
+	private long steadyStateTime;
+
+	// Zeitpunkt des ersten Requests aller Clients (System.nanoTime), 0: noch
+	// kein Request gesendet
+	private final AtomicLong runStartTime = new AtomicLong();
+
+	// Statistikdaten eines Clients in der Einschwing- bzw. Ausklingphase
+	private static class PhaseStatistics {
+		// Anzahl empfangener Antworten in der Phase
+		int responses;
+		// Histogramm der RTTs in der Phase
+		LatencyHistogram rttHistogram = new LatencyHistogram();
+		// Sendezeitpunkt des ersten Requests der Phase (System.nanoTime)
+		long firstSendTime;
+		// Zeitpunkt der letzten empfangenen Response der Phase (System.nanoTime)
+		long lastReceiveTime;
+
+		void record(long rtt, long receiveTime) {
+			if (responses == 0) {
+				firstSendTime = receiveTime - rtt;
+			} else {
+				firstSendTime = Math.min(firstSendTime, receiveTime - rtt);
+			}
+			responses++;
+			rttHistogram.recordValue(rtt);
+			lastReceiveTime = receiveTime;
+		}
+	}
+
 	// Statistikdaten eines Clients
 	private class ClientStatistics {
 		// Anzahl gesendeter Nachrichten
 		int sentRequests;
-		// Anzahl empfangener Antworten
-		int receivedResponses;
+		// Anzahl empfangener Antworten (wird vom Reporter-Thread gelesen)
+		volatile int receivedResponses;
+		// Anzahl empfangener Antworten der Messphase
+		int measuredResponses;
 		// Anzahl an Uebertragungswiederholungen (fuer unzuverlaessige
-		// Verbindungen wie UDP)
-		int numberOfRetries;
-		// Counter zum setzten des Fortschritts
-		private int progressCounter = 0;
+		// Verbindungen wie UDP), wird nur vom Wiederholungs-Timer geschrieben
+		volatile int numberOfRetries;
 		// Anzahl gesendeter Events fuer den Client
 		long numberOfSentEventMessages;
 		// Anzahl empfangener Responses fuer den Client
@@ -90,7 +148,8 @@ public class SharedClientStatistics {
 		// Anzahl von wiederholten Events fuer den Client
 		// (fuer unzuverlaessige Verbindungen wie UDP)
 		long numberOfRetriedEvents;
-		// Durchschnittliche Round Trip Time in ns
+		// Durchschnittliche Round Trip Time in ns (RTT-Werte und Serverzeiten
+		// nur aus der Messphase)
 		long averageRTT;
 		// Maximale Round Trip Time in ns
 		long maxRTT;
@@ -98,20 +157,36 @@ public class SharedClientStatistics {
 		long minRTT;
 		// Summe aller RTTs in ns
 		long sumRTT;
-		// Alle RTTs werden hier fuer die Quartilsermittlung gesammelt
-		ArrayList<Long> rttList;
+		// Histogramm aller RTTs fuer die Ermittlung der Percentile
+		LatencyHistogram rttHistogram;
+		// Histogramm der RTTs ab dem geplanten Sendezeitpunkt (offene Schleife)
+		LatencyHistogram correctedRttHistogram;
 		// Zeit, die der Server insgesamt fuer alle Requests benoetigt
 		// in ns
 		long sumServerTime;
 		// Zeit, die der Server im Durchschnitt fuer einen Request benoetigt
 		// in ns
 		long avgServerTime;
-		// Maximale Heap-Groesse in Bytes waehrend eines Testlaufs
-		long maxHeapSize;
+		// Zeitpunkt des ersten gesendeten Requests (System.nanoTime)
+		long firstSendTime;
+		// Zeitpunkt der letzten empfangenen Response (System.nanoTime)
+		long lastReceiveTime;
+		// Sendezeitpunkt des ersten Requests der Messphase (System.nanoTime)
+		long measuredStartTime;
+		// Responses der Einschwing- und Ausklingphase
+		PhaseStatistics warmUp = new PhaseStatistics();
+		PhaseStatistics coolDown = new PhaseStatistics();
 	}
 
 	private ClientStatistics clientStatistics[];
 
+	// Bereits an die GUI gemeldeter Fortschritt
+	private int reportedProgress;
+
+	// Maximale Heap-Groesse in Bytes waehrend eines Testlaufs, wird vom
+	// Reporter-Thread ermittelt
+	private volatile long maxHeapSize;
+
 	/**
 	 * Test, ob Client-Id im gueltigen Bereich ist
 	 *
@@ -156,9 +231,66 @@ public class SharedClientStatistics {
 			clientStatistics[i].minRTT = 0;
 			clientStatistics[i].sumRTT = 0;
 			clientStatistics[i].sumServerTime = 0;
-			clientStatistics[i].maxHeapSize = 0;
-			clientStatistics[i].rttList = new ArrayList<Long>();
+			clientStatistics[i].rttHistogram = new LatencyHistogram();
+			clientStatistics[i].correctedRttHistogram = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Phasen des Laufs einstellen. Eine Response gehoert zur Einschwingphase,
+	 * wenn sie zu den ersten warmUpMessages Responses ihres Clients gehoert oder
+	 * ihr Request in den ersten warmUpTime ms des Laufs gesendet wurde. Sie
+	 * gehoert zur Ausklingphase, wenn sie zu den letzten coolDownMessages
+	 * Responses ihres Clients gehoert oder ihr Request nach Ablauf der Messphase
+	 * (steadyStateTime ms nach der Einschwingphase) gesendet wurde. Alle
+	 * uebrigen Responses gehoeren zur Messphase. Muss vor dem Start der Clients
+	 * aufgerufen werden.
+	 *
+	 * @param warmUpMessages
+	 *          Responses je Client in der Einschwingphase
+	 * @param coolDownMessages
+	 *          Responses je Client in der Ausklingphase
+	 * @param warmUpTime
+	 *          Dauer der Einschwingphase in ms ab dem ersten Request
+	 * @param steadyStateTime
+	 *          Dauer der Messphase in ms, 0: bis zum Ende des Laufs
+	 */
+	public void setPhases(int warmUpMessages, int coolDownMessages, long warmUpTime,
+			long steadyStateTime) {
+		this.warmUpMessages = Math.max(0, warmUpMessages);
+		this.coolDownMessages = Math.max(0, coolDownMessages);
+		this.warmUpTime = Math.max(0, warmUpTime);
+		this.steadyStateTime = Math.max(0, steadyStateTime);
+	}
+
+	/**
+	 * @return true, wenn Einschwing- oder Ausklingphase eingestellt sind
+	 */
+	public boolean hasPhases() {
+		return (warmUpMessages > 0) || (coolDownMessages > 0) || (warmUpTime > 0)
+				|| (steadyStateTime > 0);
+	}
+
+	/**
+	 * Phase einer Response ermitteln
+	 *
+	 * @param index
+	 *          Nummer der Response des Clients, ab 0
+	 * @param sendTime
+	 *          Sendezeitpunkt des Requests (System.nanoTime)
+	 * @return Phase der Response
+	 */
+	private BenchmarkPhase getPhase(int index, long sendTime) {
+		long elapsed = sendTime - runStartTime.get();
+		if ((index < warmUpMessages)
+				|| ((warmUpTime > 0) && (elapsed < warmUpTime * 1000000L))) {
+			return BenchmarkPhase.WarmUp;
 		}
+		if ((index >= numberOfMessages - coolDownMessages) || ((steadyStateTime > 0)
+				&& (elapsed >= (warmUpTime + steadyStateTime) * 1000000L))) {
+			return BenchmarkPhase.CoolDown;
+		}
+		return BenchmarkPhase.SteadyState;
 	}
 
 	public CountDownLatch getLoginSignal() {
@@ -175,7 +307,6 @@ public class SharedClientStatistics {
 	public synchronized void incrNumberOfLoggedInClients() {
 
 		numberOfLoggedInClients++;
-		clientGui.countUpProgressTask();
 
 		if (numberOfLoggedInClients == numberOfClients) {
 			//log.debug("Alle " + numberOfClients + " Test-Clients angemeldet");
@@ -188,7 +319,6 @@ public class SharedClientStatistics {
 	public synchronized void incrNumberOfLoggedOutClients() {
 
 		numberOfLoggedOutClients++;
-		clientGui.countUpProgressTask();
 		if (numberOfLoggedOutClients == numberOfClients) {
 			//log.debug("Alle " + numberOfClients + " Test-Clients abgemeldet");
 		}
@@ -200,16 +330,20 @@ public class SharedClientStatistics {
 	 * @param i
 	 *          Client-Id
 	 */
-	public synchronized void incrSentMsgCounter(int i) {
+	public void incrSentMsgCounter(int i) {
 		if (!inRange(i))
 			return;
+		if (clientStatistics[i].sentRequests == 0) {
+			clientStatistics[i].firstSendTime = System.nanoTime();
+			runStartTime.compareAndSet(0, clientStatistics[i].firstSendTime);
+		}
 		clientStatistics[i].sentRequests++;
 	}
 
 	/**
 	 * Anzahl der gesendeten Events setzen
 	 */
-	public synchronized void setNumberOfSentEventMessages(int i, long nr) {
+	public void setNumberOfSentEventMessages(int i, long nr) {
 		if (!inRange(i))
 			return;
 		clientStatistics[i].numberOfSentEventMessages = nr;
@@ -227,7 +361,7 @@ public class SharedClientStatistics {
 	/**
 	 * Anzahl der verlorenen Event-Bestaetigungen setzen
 	 */
-	public synchronized void setNumberOfLostConfirmEvents(int i, long nr) {
+	public void setNumberOfLostConfirmEvents(int i, long nr) {
 		if (!inRange(i))
 			return;
 		clientStatistics[i].numberOfLostConfirmEvents = nr;
@@ -245,7 +379,7 @@ public class SharedClientStatistics {
 	/**
 	 * Anzahl der empfangenen Event-Bestaetigungen setzen
 	 */
-	public synchronized void setNumberOfReceivedConfirmEvents(int i, long nr) {
+	public void setNumberOfReceivedConfirmEvents(int i, long nr) {
 		if (!inRange(i))
 			return;
 		clientStatistics[i].numberOfReceivedConfirmEvents = nr;
@@ -263,7 +397,7 @@ public class SharedClientStatistics {
 	/**
 	 * Anzahl der Event-Wiederholungen setzen
 	 */
-	public synchronized void setNumberOfRetriedEvents(int i, long nr) {
+	public void setNumberOfRetriedEvents(int i, long nr) {
 		if (!inRange(i))
 			return;
 		clientStatistics[i].numberOfRetriedEvents = nr;
@@ -281,7 +415,7 @@ public class SharedClientStatistics {
 	/**
 	 * Anzahl der Uebrtragungswiederholungen erhoehen
 	 */
-	public synchronized void incrNumberOfRetries(int i) {
+	public void incrNumberOfRetries(int i) {
 		if (!inRange(i))
 			return;
 		clientStatistics[i].numberOfRetries++;
@@ -297,34 +431,88 @@ public class SharedClientStatistics {
 	 * @param serverTime
 	 *          Die Zeit, die der Server benoetigt hat
 	 */
-	public synchronized void incrReceivedMsgCounter(int i, long rtt, long serverTime) {
+	public void incrReceivedMsgCounter(int i, long rtt, long serverTime) {
+		incrReceivedMsgCounter(i, rtt, rtt, serverTime);
+	}
+
+	/**
+	 * Anzahl der empfangenen Nachrichten eines Clients erhoehen, mit RTT ab dem
+	 * geplanten Sendezeitpunkt (offene Schleife)
+	 *
+	 * @param i
+	 *          Client-Id
+	 * @param rtt
+	 *          RoundTrip Time ab dem tatsaechlichen Senden
+	 * @param correctedRtt
+	 *          RoundTrip Time ab dem geplanten Sendezeitpunkt
+	 * @param serverTime
+	 *          Die Zeit, die der Server benoetigt hat
+	 */
+	public void incrReceivedMsgCounter(int i, long rtt, long correctedRtt,
+			long serverTime) {
 
 		if (!inRange(i))
 			return;
 
-		clientGui.countUpProgressTask();
-		clientStatistics[i].receivedResponses++;
+		ClientStatistics statistics = clientStatistics[i];
 
-		if (clientStatistics[i].receivedResponses > 1) {
-			clientStatistics[i].minRTT = Math.min(rtt, clientStatistics[i].minRTT);
-			clientStatistics[i].maxRTT = Math.max(rtt, clientStatistics[i].maxRTT);
+		// Responses eines Clients schreibt nur sein Message-Listener-Thread,
+		// daher genuegt ein einfaches Lesen und Schreiben des volatile-Zaehlers
+		int receivedResponses = statistics.receivedResponses + 1;
+		long now = System.nanoTime();
+
+		BenchmarkPhase phase = getPhase(statistics.receivedResponses, now - rtt);
+		if (phase == BenchmarkPhase.WarmUp) {
+			statistics.warmUp.record(rtt, now);
+		} else if (phase == BenchmarkPhase.CoolDown) {
+			statistics.coolDown.record(rtt, now);
 		} else {
-			clientStatistics[i].minRTT = rtt;
-			clientStatistics[i].maxRTT = rtt;
+			int measuredResponses = statistics.measuredResponses + 1;
+
+			if (measuredResponses > 1) {
+				statistics.minRTT = Math.min(rtt, statistics.minRTT);
+				statistics.maxRTT = Math.max(rtt, statistics.maxRTT);
+			} else {
+				statistics.minRTT = rtt;
+				statistics.maxRTT = rtt;
+				// Ohne Einschwingphase beginnt die Messung mit dem ersten Request
+				statistics.measuredStartTime = hasPhases() ? now - rtt
+						: statistics.firstSendTime;
+			}
+
+			statistics.sumRTT = statistics.sumRTT + rtt;
+			statistics.averageRTT = statistics.sumRTT / measuredResponses;
+			statistics.sumServerTime = statistics.sumServerTime + serverTime;
+			statistics.avgServerTime = statistics.sumServerTime / measuredResponses;
+			statistics.rttHistogram.recordValue(rtt);
+			statistics.correctedRttHistogram.recordValue(correctedRtt);
+			statistics.lastReceiveTime = now;
+			statistics.measuredResponses = measuredResponses;
 		}
 
-		clientStatistics[i].sumRTT = clientStatistics[i].sumRTT + rtt;
-		clientStatistics[i].averageRTT = clientStatistics[i].sumRTT
-				/ clientStatistics[i].receivedResponses;
-		clientStatistics[i].sumServerTime = clientStatistics[i].sumServerTime + serverTime;
+		// Zaehler zuletzt schreiben, damit der Reporter-Thread einen
+		// vollstaendigen Eintrag sieht
+		statistics.receivedResponses = receivedResponses;
+	}
+
+	/**
+	 * Meldet den Fortschritt seit dem letzten Aufruf an die GUI (angemeldete und
+	 * abgemeldete Clients sowie empfangene Responses) und ermittelt die aktuelle
+	 * Heap-Belegung. Wird zyklisch vom Reporter-Thread und einmal nach dem Ende
+	 * aller Client-Threads aufgerufen, nicht von den Client-Threads selbst.
+	 */
+	public synchronized void reportProgress() {
 
-		clientStatistics[i].avgServerTime = clientStatistics[i].sumServerTime
-				/ clientStatistics[i].receivedResponses;
+		int progress = numberOfLoggedInClients + numberOfLoggedOutClients;
+		for (int i = 0; i < numberOfClients; i++) {
+			progress += clientStatistics[i].receivedResponses;
+		}
 
-		clientStatistics[i].rttList.add((Long) rtt);
-		if (clientStatistics[i].maxHeapSize < usedMemory()) {
-			clientStatistics[i].maxHeapSize = usedMemory();
+		for (; reportedProgress < progress; reportedProgress++) {
+			clientGui.countUpProgressTask();
 		}
+
+		maxHeapSize = Math.max(maxHeapSize, usedMemory());
 	}
 
 	/**
@@ -453,7 +641,7 @@ public class SharedClientStatistics {
 		for (int i = 0; i < numberOfClients; i++) {
 			// Nur Threads, die mindestens eine Antwort bekommen haben,
 			// verwenden
-			if (clientStatistics[i].receivedResponses > 0) {
+			if (clientStatistics[i].measuredResponses > 0) {
 				sum = sum + clientStatistics[i].averageRTT;
 				nrClients++;
 			}
@@ -480,7 +668,7 @@ public class SharedClientStatistics {
 		for (int i = 0; i < numberOfClients; i++) {
 			// Nur Threads, die mindestens eine Antwort bekommen haben,
 			// verwenden
-			if (clientStatistics[i].receivedResponses > 0) {
+			if (clientStatistics[i].measuredResponses > 0) {
 				min = Math.min(clientStatistics[i].minRTT, min);
 			}
 		}
@@ -503,7 +691,7 @@ public class SharedClientStatistics {
 		for (int i = 0; i < numberOfClients; i++) {
 			// Nur Threads, die mindestens eine Antwort bekommen haben,
 			// verwenden
-			if (clientStatistics[i].receivedResponses > 0) {
+			if (clientStatistics[i].measuredResponses > 0) {
 				max = Math.max(clientStatistics[i].maxRTT, max);
 			}
 		}
@@ -650,76 +838,73 @@ public class SharedClientStatistics {
 	}
 
 	/**
-	 * Gesamtliste ueber alle RTTs bilden
+	 * Verteilungsmetriken ueber die RTTs aller Clients ermitteln. Die
+	 * Histogramme der Clients werden dazu addiert, die Percentile ergeben sich
+	 * mit der Genauigkeit des Histogramms (siehe LatencyHistogram).
 	 *
-	 * @return ArrayList
+	 * @return Verteilungsmetriken in ms
 	 */
 	public synchronized DistributionMetrics calculateMetrics() {
+		return calculateMetrics(false);
+	}
 
-		ArrayList<Long> completeList = new ArrayList<Long>();
-		DistributionMetrics distributionMetrics = new DistributionMetrics();
-
-		// RTT-Listen aller Clients zusammenfuegen
-		for (int i = 0; i < numberOfClients; i++) {
-			completeList.addAll(clientStatistics[i].rttList);
-		}
-
-		// Sortieren der gesamten RTT-Liste
-		Collections.sort(completeList);
+	/**
+	 * Verteilungsmetriken ueber die ab dem geplanten Sendezeitpunkt gemessenen
+	 * RTTs aller Clients ermitteln. Bei geschlossener Schleife stimmen sie mit
+	 * calculateMetrics() ueberein.
+	 *
+	 * @return Verteilungsmetriken in ms
+	 */
+	public synchronized DistributionMetrics calculateCorrectedMetrics() {
+		return calculateMetrics(true);
+	}
 
-		double[] doubleList = new double[completeList.size()];
+	private DistributionMetrics calculateMetrics(boolean corrected) {
 
-		try {
+		LatencyHistogram histogram = new LatencyHistogram();
 
-			// RTT-Werte konvertieren zu double-Werten
-			for (int i = 0; i < completeList.size(); i++) {
-				doubleList[i] = completeList.get(i).doubleValue();
-			}
+		// RTT-Histogramme aller Clients zusammenfuegen
+		for (int i = 0; i < numberOfClients; i++) {
+			histogram.add(corrected ? clientStatistics[i].correctedRttHistogram
+					: clientStatistics[i].rttHistogram);
+		}
 
-			// Percentile berechnen
-			Percentile percentile = new Percentile();
-			percentile.setData(doubleList);
-			distributionMetrics.setPercentile10(percentile.evaluate(10) / 1000000.0);
-			distributionMetrics.setPercentile25(percentile.evaluate(25) / 1000000.0);
-			distributionMetrics.setPercentile50(percentile.evaluate(50) / 1000000.0);
-			distributionMetrics.setPercentile75(percentile.evaluate(75) / 1000000.0);
-			distributionMetrics.setPercentile90(percentile.evaluate(90) / 1000000.0);
+		return calculateMetrics(histogram);
+	}
 
-			distributionMetrics.setInterquartilRange(
-					distributionMetrics.percentile75 - distributionMetrics.percentile25);
+	private static DistributionMetrics calculateMetrics(LatencyHistogram histogram) {
 
-			// Maximum berechnen
-			Max max = new Max();
-			max.setData(doubleList);
-			distributionMetrics.setMaximum(max.evaluate() / 1000000.0);
+		DistributionMetrics distributionMetrics = new DistributionMetrics();
 
-			// Minimum berechnen
-			Min min = new Min();
-			min.setData(doubleList);
-			distributionMetrics.setMinimum(min.evaluate() / 1000000.0);
+		if (histogram.getTotalCount() == 0) {
+			return distributionMetrics;
+		}
 
-			// Spannweite und IQR berechnen
-			distributionMetrics
-					.setRange(distributionMetrics.maximum - distributionMetrics.minimum);
+		// Percentile berechnen
+		distributionMetrics.setPercentile10(histogram.getPercentile(10) / 1000000.0);
+		distributionMetrics.setPercentile25(histogram.getPercentile(25) / 1000000.0);
+		distributionMetrics.setPercentile50(histogram.getPercentile(50) / 1000000.0);
+		distributionMetrics.setPercentile75(histogram.getPercentile(75) / 1000000.0);
+		distributionMetrics.setPercentile90(histogram.getPercentile(90) / 1000000.0);
+		distributionMetrics.setPercentile99(histogram.getPercentile(99) / 1000000.0);
+		distributionMetrics.setPercentile999(histogram.getPercentile(99.9) / 1000000.0);
 
-			// Artihmetisches Mittel berechnen
-			Mean mean = new Mean();
-			mean.setData(doubleList);
-			distributionMetrics.setMean(mean.evaluate() / 1000000.0);
+		distributionMetrics.setInterquartilRange(
+				distributionMetrics.percentile75 - distributionMetrics.percentile25);
 
-			// Varianz berechnen
-			Variance variance = new Variance();
-			variance.setData(doubleList);
-			distributionMetrics.setVariance(variance.evaluate() / 1000000.0);
+		// Maximum und Minimum werden exakt gefuehrt
+		distributionMetrics.setMaximum(histogram.getMax() / 1000000.0);
+		distributionMetrics.setMinimum(histogram.getMin() / 1000000.0);
 
-			// Standardabweichung berechnen
-			StandardDeviation standardDeviation = new StandardDeviation();
-			standardDeviation.setData(doubleList);
-			distributionMetrics.setStandardDeviation(standardDeviation.evaluate() / 1000000.0);
+		// Spannweite berechnen
+		distributionMetrics
+				.setRange(distributionMetrics.maximum - distributionMetrics.minimum);
 
-		} catch (MathIllegalArgumentException e) {
-			//log.error("Fehler bei der Berechnung der Verteilungsmetriken");
-		}
+		// Artihmetisches Mittel, Varianz und Standardabweichung
+		distributionMetrics.setMean(histogram.getMean() / 1000000.0);
+		distributionMetrics.setVariance(histogram.getVariance() / 1000000.0);
+		distributionMetrics
+				.setStandardDeviation(histogram.getStandardDeviation() / 1000000.0);
 
 		return distributionMetrics;
 	}
@@ -739,6 +924,106 @@ public class SharedClientStatistics {
 		return sum;
 	}
 
+	/**
+	 * Durchsatz ueber alle Clients ermitteln: Empfangene Responses der
+	 * Messphase bezogen auf die Zeit vom ersten Request bis zur letzten
+	 * Response der Messphase. Login und Logout gehen damit nicht in die Messung
+	 * ein.
+	 *
+	 * @return Durchsatz in Nachrichten pro Sekunde, 0 ohne Responses
+	 */
+	public synchronized double getThroughput() {
+		long received = 0;
+		long start = Long.MAX_VALUE;
+		long end = Long.MIN_VALUE;
+
+		for (int i = 0; i < numberOfClients; i++) {
+			if (clientStatistics[i].measuredResponses > 0) {
+				received += clientStatistics[i].measuredResponses;
+				start = Math.min(start, clientStatistics[i].measuredStartTime);
+				end = Math.max(end, clientStatistics[i].lastReceiveTime);
+			}
+		}
+
+		return getThroughput(received, start, end);
+	}
+
+	/**
+	 * Durchsatz in einer Phase ueber alle Clients ermitteln
+	 *
+	 * @param phase
+	 *          Phase des Laufs
+	 * @return Durchsatz in Nachrichten pro Sekunde, 0 ohne Responses
+	 */
+	public synchronized double getThroughput(BenchmarkPhase phase) {
+		if (phase == BenchmarkPhase.SteadyState) {
+			return getThroughput();
+		}
+		long received = 0;
+		long start = Long.MAX_VALUE;
+		long end = Long.MIN_VALUE;
+
+		for (int i = 0; i < numberOfClients; i++) {
+			PhaseStatistics statistics = getPhaseStatistics(i, phase);
+			if (statistics.responses > 0) {
+				received += statistics.responses;
+				start = Math.min(start, statistics.firstSendTime);
+				end = Math.max(end, statistics.lastReceiveTime);
+			}
+		}
+
+		return getThroughput(received, start, end);
+	}
+
+	private static double getThroughput(long received, long start, long end) {
+		if ((received == 0) || (end <= start)) {
+			return 0;
+		}
+		return received * 1000000000.0 / (end - start);
+	}
+
+	/**
+	 * Anzahl der empfangenen Responses einer Phase ueber alle Clients
+	 *
+	 * @param phase
+	 *          Phase des Laufs
+	 * @return Anzahl Responses
+	 */
+	public synchronized int getNumberOfReceivedResponses(BenchmarkPhase phase) {
+		int sum = 0;
+		for (int i = 0; i < numberOfClients; i++) {
+			if (phase == BenchmarkPhase.SteadyState) {
+				sum += clientStatistics[i].measuredResponses;
+			} else {
+				sum += getPhaseStatistics(i, phase).responses;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Verteilungsmetriken ueber die RTTs einer Phase ermitteln
+	 *
+	 * @param phase
+	 *          Phase des Laufs
+	 * @return Verteilungsmetriken in ms
+	 */
+	public synchronized DistributionMetrics calculateMetrics(BenchmarkPhase phase) {
+		if (phase == BenchmarkPhase.SteadyState) {
+			return calculateMetrics(false);
+		}
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < numberOfClients; i++) {
+			histogram.add(getPhaseStatistics(i, phase).rttHistogram);
+		}
+		return calculateMetrics(histogram);
+	}
+
+	private PhaseStatistics getPhaseStatistics(int i, BenchmarkPhase phase) {
+		return (phase == BenchmarkPhase.WarmUp) ? clientStatistics[i].warmUp
+				: clientStatistics[i].coolDown;
+	}
+
 	/**
 	 * Durchschnittliche Serverbearbeitungszeit ermitteln
 	 *
@@ -751,7 +1036,7 @@ public class SharedClientStatistics {
 		for (int i = 0; i < numberOfClients; i++) {
 			// Nur Threads, die mindestens eine Antwort bekommen haben,
 			// verwenden
-			if (clientStatistics[i].receivedResponses > 0) {
+			if (clientStatistics[i].measuredResponses > 0) {
 				sum = sum + clientStatistics[i].avgServerTime;
 				nrClients++;
 			}
@@ -764,24 +1049,12 @@ public class SharedClientStatistics {
 	}
 
 	/**
-	 * Maximale Heap-Groesse ueber alle Clients ermitteln
+	 * Maximale Heap-Groesse waehrend des Tests ermitteln
 	 *
 	 * @return Maximale Heap-Groesse
 	 */
-	public synchronized long getMaxHeapSize() {
-		long max = -1;
-
-		for (int i = 0; i < numberOfClients; i++) {
-			// Nur Threads, die mindestens eine Antwort bekommen haben,
-			// verwenden
-			if (clientStatistics[i].receivedResponses > 0) {
-				if (clientStatistics[i].maxHeapSize > max) {
-					max = clientStatistics[i].maxHeapSize;
-				}
-			}
-		}
-
-		return max;
+	public long getMaxHeapSize() {
+		return maxHeapSize;
 	}
 
 	/**
@@ -1002,6 +1275,96 @@ public class SharedClientStatistics {
 		}
 	}
 
+	/**
+	 * Schreibt die Ergebnisse eines Benchmark-Laufs als strukturierte Zeile
+	 * (Felder durch Semikolon getrennt, Dezimalpunkt) in eine Datei, z.B. zur
+	 * Auswertung einer Parameterreihe in einer Tabellenkalkulation. Beim
+	 * Anlegen der Datei wird eine Kopfzeile geschrieben.
+	 *
+	 * @param fileName
+	 *          Dateiname
+	 * @param parameterHeader
+	 *          Namen der Parameterspalten, durch Semikolon getrennt
+	 * @param parameterValues
+	 *          Werte der Parameterspalten, durch Semikolon getrennt
+	 * @param startTime
+	 *          Startzeit des Laufs
+	 * @param endTime
+	 *          Endezeit des Laufs
+	 * @param averageCpuTime
+	 *          Durchschnittliche CPU-Auslastung
+	 */
+	public synchronized void writeStatisticRecord(String fileName,
+			String parameterHeader, String parameterValues, String startTime,
+			String endTime, float averageCpuTime) {
+
+		File file = new File(fileName);
+
+		// Verteilungsmetriken berechnen
+		DistributionMetrics distr = calculateMetrics();
+		DistributionMetrics corrected = calculateCorrectedMetrics();
+		DistributionMetrics warmUp = calculateMetrics(BenchmarkPhase.WarmUp);
+		DistributionMetrics coolDown = calculateMetrics(BenchmarkPhase.CoolDown);
+
+		try {
+			boolean created = file.createNewFile();
+
+			BufferedWriter out = new BufferedWriter(new FileWriter(fileName, true));
+			Formatter formatter = new Formatter(Locale.ROOT);
+
+			if (created) {
+				formatter.format("%s;Clients;Nachrichten;RTT-P10;RTT-P25;RTT-P50;RTT-P75;"
+						+ "RTT-P90;RTT-P99;RTT-P99.9;RTT-Spannweite;RTT-IQR;RTT-Min;RTT-Max;RTT-Mittel;"
+						+ "RTT-Standardabweichung;RTT-korr-P50;RTT-korr-P90;RTT-korr-P99;"
+						+ "RTT-korr-P99.9;RTT-korr-Max;Serverzeit-Mittel;Durchsatz;"
+						+ "Erwartete Responses;"
+						+ "Gesendete Requests;Empfangene Responses;Verlorene Responses;"
+						+ "Wiederholungen;Gesendete Events;Empfangene Confirms;"
+						+ "Verlorene Confirms;Wiederholte Events;Max. Heap (MiB);CPU (%%);"
+						+ "Gemessene Responses;Einschwingen-Responses;Einschwingen-RTT-P50;"
+						+ "Einschwingen-RTT-P99;Einschwingen-Durchsatz;Ausklingen-Responses;"
+						+ "Ausklingen-RTT-P50;Ausklingen-RTT-P99;Ausklingen-Durchsatz;"
+						+ "Start;Ende%n", parameterHeader);
+			}
+
+			formatter.format(
+					"%s;%d;%d;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;"
+							+ "%.3f;%.3f;%.3f;%.3f;%.3f;%.3f;%.1f;%d;%d;%d;%d;%d;%d;%d;%d;%d;%d;%.2f;"
+							+ "%d;%d;%.3f;%.3f;%.1f;%d;%.3f;%.3f;%.1f;%s;%s%n",
+					parameterValues, numberOfClients, numberOfMessages,
+					distr.getPercentile10(), distr.getPercentile25(), distr.getPercentile50(),
+					distr.getPercentile75(), distr.getPercentile90(), distr.getPercentile99(),
+					distr.getPercentile999(), distr.getRange(),
+					distr.getInterquartilRange(), distr.getMinimum(), distr.getMaximum(),
+					distr.getMean(), distr.getStandardDeviation(), corrected.getPercentile50(),
+					corrected.getPercentile90(), corrected.getPercentile99(),
+					corrected.getPercentile999(), corrected.getMaximum(),
+					this.getAverageServerTime() / 1000000.0, this.getThroughput(),
+					this.numberOfAllMessages,
+					this.getNumberOfSentRequests(), this.getNumberOfReceivedResponses(),
+					this.getNumberOfLostResponses(), this.getSumOfAllRetries(),
+					this.getSumOfAllSentEventMessages(), this.getSumOfAllReceivedConfirmEvents(),
+					this.getSumOfAllLostConfirmEvents(), this.getSumOfAllRetriedEvents(),
+					this.getMaxHeapSize() / (1024 * 1024), (double) (averageCpuTime * 100),
+					this.getNumberOfReceivedResponses(BenchmarkPhase.SteadyState),
+					this.getNumberOfReceivedResponses(BenchmarkPhase.WarmUp),
+					warmUp.getPercentile50(), warmUp.getPercentile99(),
+					this.getThroughput(BenchmarkPhase.WarmUp),
+					this.getNumberOfReceivedResponses(BenchmarkPhase.CoolDown),
+					coolDown.getPercentile50(), coolDown.getPercentile99(),
+					this.getThroughput(BenchmarkPhase.CoolDown), startTime, endTime);
+
+			out.append(formatter.toString());
+			formatter.close();
+			out.flush();
+			out.close();
+
+		} catch (IOException e) {
+			//log.error("Fehler beim Schreiben des Auswertungssatzes in Datei " + fileName);
+			ExceptionHandler.logException(e);
+		}
+	}
+
 	/**
 	 * Berechnet den tatsaechlich benutzten Heap-Speicher Heap-Groesse in MiB
 	 */
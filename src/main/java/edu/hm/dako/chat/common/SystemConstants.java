@@ -6,6 +6,13 @@ public class SystemConstants {
 	public static final String IMPL_TCP_ADVANCED = "TCPAdvanced";
 	public static final String IMPL_UDP_ADVANCED = "UDPAdvanced";
 	public static final String IMPL_TCP_SIMPLE = "TCPSimple";
+	public static final String IMPL_TCP_NIO = "TCPNio";
+
+	// Bezeichnungen der verschiedenen PDU-Kodierungen
+	public static final String CODEC_SERIALIZATION = "Java-Serialisierung";
+	public static final String CODEC_BINARY = "Binaer";
+	public static final String WORKER_PLATFORM_THREADS = "Plattform-Threads";
+	public static final String WORKER_VIRTUAL_THREADS = "Virtuelle Threads";
 
 	// Farben fuer GUI:
 	// Rot fuer die Darstellung falsch eingegebener Werte
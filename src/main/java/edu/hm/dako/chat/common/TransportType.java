@@ -0,0 +1,18 @@
+package edu.hm.dako.chat.common;
+
+/**
+ * Transportvarianten der Thread-basierten Server und ihrer Clients
+ *
+ * @author Mandl
+ */
+
+public enum TransportType {
+  // Verbindungen ueber Sockets des Betriebssystems
+  Socket,
+  // Verbindungen ueber Warteschlangen im selben Prozess, die PDUs werden als
+  // Objektreferenz uebergeben
+  LoopbackReference,
+  // Verbindungen ueber Warteschlangen im selben Prozess, die PDUs werden mit
+  // dem eingestellten Codec kodiert und dekodiert
+  LoopbackSerialized,
+}
@@ -0,0 +1,326 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Vector;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.ClientConversationStatus;
+import edu.hm.dako.chat.common.PduType;
+
+/**
+ * Kompakte Binaerkodierung fuer {@link ChatPDU}. Aufbau einer kodierten PDU:
+ *
+ * <pre>
+ * PDU-Typ (1 Byte, PduType.getId())
+ * Client-Status (1 Byte, 0 = nicht belegt, sonst Ordinalzahl + 1)
+ * Belegungsmaske (Varint, ein Bit je optionalem Feld)
+ * belegte Felder in der Reihenfolge der Maskenbits
+ * </pre>
+ *
+ * Zeichenketten werden als Varint-Laenge und UTF-8-Bytes, Zaehler und Zeiten als
+ * Varints uebertragen. Nicht belegte Felder (null bzw. 0) werden weggelassen, so dass
+ * z.B. ein Chat-Event nur Typ, Namen und Nachricht enthaelt.
+ */
+public class BinaryPduCodec implements PduCodec {
+
+  // Bits der Belegungsmaske
+  private static final int USER_NAME = 1;
+  private static final int EVENT_USER_NAME = 1 << 1;
+  private static final int CLIENT_THREAD_NAME = 1 << 2;
+  private static final int SERVER_THREAD_NAME = 1 << 3;
+  private static final int MESSAGE = 1 << 4;
+  private static final int CLIENTS = 1 << 5;
+  private static final int SEQUENCE_NUMBER = 1 << 6;
+  private static final int SERVER_TIME = 1 << 7;
+  private static final int ERROR_CODE = 1 << 8;
+  private static final int RECEIVED_CHAT_MESSAGES = 1 << 9;
+  private static final int SENT_EVENTS = 1 << 10;
+  private static final int RECEIVED_CONFIRMS = 1 << 11;
+  private static final int LOST_CONFIRMS = 1 << 12;
+  private static final int RETRIES = 1 << 13;
+  private static final int ROOM = 1 << 14;
+  private static final int USER_LIST_VERSION = 1 << 15;
+  private static final int CONFIRMED_EVENTS = 1 << 16;
+
+  private static final ClientConversationStatus[] STATUS_VALUES = ClientConversationStatus
+	.values();
+
+  @Override
+  public byte[] encode(Serializable message) throws IOException {
+    if (!(message instanceof ChatPDU)) {
+      throw new IOException("Binaerkodierung nur fuer ChatPDU moeglich: " + message);
+    }
+    ChatPDU pdu = (ChatPDU) message;
+
+    int mask = 0;
+    mask |= (pdu.getUserName() != null) ? USER_NAME : 0;
+    mask |= (pdu.getEventUserName() != null) ? EVENT_USER_NAME : 0;
+    mask |= (pdu.getClientThreadName() != null) ? CLIENT_THREAD_NAME : 0;
+    mask |= (pdu.getServerThreadName() != null) ? SERVER_THREAD_NAME : 0;
+    mask |= (pdu.getMessage() != null) ? MESSAGE : 0;
+    mask |= (pdu.getClients() != null) ? CLIENTS : 0;
+    mask |= (pdu.getSequenceNumber() != 0) ? SEQUENCE_NUMBER : 0;
+    mask |= (pdu.getServerTime() != 0) ? SERVER_TIME : 0;
+    mask |= (pdu.getErrorCode() != 0) ? ERROR_CODE : 0;
+    mask |= (pdu.getNumberOfReceivedChatMessages() != 0) ? RECEIVED_CHAT_MESSAGES : 0;
+    mask |= (pdu.getNumberOfSentEvents() != 0) ? SENT_EVENTS : 0;
+    mask |= (pdu.getNumberOfReceivedConfirms() != 0) ? RECEIVED_CONFIRMS : 0;
+    mask |= (pdu.getNumberOfLostConfirms() != 0) ? LOST_CONFIRMS : 0;
+    mask |= (pdu.getNumberOfRetries() != 0) ? RETRIES : 0;
+    mask |= (pdu.getRoom() != null) ? ROOM : 0;
+    mask |= (pdu.getUserListVersion() != 0) ? USER_LIST_VERSION : 0;
+    mask |= (pdu.getNumberOfConfirmedEvents() != 0) ? CONFIRMED_EVENTS : 0;
+
+    Writer out = new Writer(64);
+    out.writeByte((pdu.getPduType() == null) ? 0 : pdu.getPduType().getId());
+    out.writeByte((pdu.getClientStatus() == null) ? 0 : pdu.getClientStatus().ordinal() + 1);
+    out.writeVarLong(mask);
+
+    if ((mask & USER_NAME) != 0) {
+      out.writeString(pdu.getUserName());
+    }
+    if ((mask & EVENT_USER_NAME) != 0) {
+      out.writeString(pdu.getEventUserName());
+    }
+    if ((mask & CLIENT_THREAD_NAME) != 0) {
+      out.writeString(pdu.getClientThreadName());
+    }
+    if ((mask & SERVER_THREAD_NAME) != 0) {
+      out.writeString(pdu.getServerThreadName());
+    }
+    if ((mask & MESSAGE) != 0) {
+      out.writeString(pdu.getMessage());
+    }
+    if ((mask & CLIENTS) != 0) {
+      Vector<String> clients = pdu.getClients();
+      synchronized (clients) {
+	out.writeVarLong(clients.size());
+	for (String name : clients) {
+	  out.writeString(name);
+	}
+      }
+    }
+    if ((mask & SEQUENCE_NUMBER) != 0) {
+      out.writeVarLong(pdu.getSequenceNumber());
+    }
+    if ((mask & SERVER_TIME) != 0) {
+      out.writeVarLong(pdu.getServerTime());
+    }
+    if ((mask & ERROR_CODE) != 0) {
+      out.writeVarLong(pdu.getErrorCode());
+    }
+    if ((mask & RECEIVED_CHAT_MESSAGES) != 0) {
+      out.writeVarLong(pdu.getNumberOfReceivedChatMessages());
+    }
+    if ((mask & SENT_EVENTS) != 0) {
+      out.writeVarLong(pdu.getNumberOfSentEvents());
+    }
+    if ((mask & RECEIVED_CONFIRMS) != 0) {
+      out.writeVarLong(pdu.getNumberOfReceivedConfirms());
+    }
+    if ((mask & LOST_CONFIRMS) != 0) {
+      out.writeVarLong(pdu.getNumberOfLostConfirms());
+    }
+    if ((mask & RETRIES) != 0) {
+      out.writeVarLong(pdu.getNumberOfRetries());
+    }
+    if ((mask & ROOM) != 0) {
+      out.writeString(pdu.getRoom());
+    }
+    if ((mask & USER_LIST_VERSION) != 0) {
+      out.writeVarLong(pdu.getUserListVersion());
+    }
+    if ((mask & CONFIRMED_EVENTS) != 0) {
+      int size = pdu.getNumberOfConfirmedEvents();
+      out.writeVarLong(size);
+      for (int i = 0; i < size; i++) {
+	out.writeString(pdu.getConfirmedEventUserName(i));
+	out.writeVarLong(pdu.getConfirmedSequenceNumber(i));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Override
+  public Serializable decode(byte[] data, int offset, int length) throws IOException {
+    Reader in = new Reader(data, offset, length);
+    ChatPDU pdu = new ChatPDU();
+
+    int typeId = in.readByte();
+    PduType pduType = PduType.getId(typeId);
+    if (pduType == null) {
+      throw new IOException("Unbekannter PDU-Typ: " + typeId);
+    }
+    pdu.setPduType(pduType);
+
+    int status = in.readByte();
+    if (status > STATUS_VALUES.length) {
+      throw new IOException("Unbekannter Client-Status: " + status);
+    }
+    pdu.setClientStatus((status == 0) ? null : STATUS_VALUES[status - 1]);
+
+    long mask = in.readVarLong();
+    if ((mask & USER_NAME) != 0) {
+      pdu.setUserName(in.readString());
+    }
+    if ((mask & EVENT_USER_NAME) != 0) {
+      pdu.setEventUserName(in.readString());
+    }
+    if ((mask & CLIENT_THREAD_NAME) != 0) {
+      pdu.setClientThreadName(in.readString());
+    }
+    if ((mask & SERVER_THREAD_NAME) != 0) {
+      pdu.setServerThreadName(in.readString());
+    }
+    if ((mask & MESSAGE) != 0) {
+      pdu.setMessage(in.readString());
+    }
+    if ((mask & CLIENTS) != 0) {
+      int size = in.readLength();
+      Vector<String> clients = new Vector<String>(size);
+      for (int i = 0; i < size; i++) {
+	clients.add(in.readString());
+      }
+      pdu.setClients(clients);
+    }
+    if ((mask & SEQUENCE_NUMBER) != 0) {
+      pdu.setSequenceNumber(in.readVarLong());
+    }
+    if ((mask & SERVER_TIME) != 0) {
+      pdu.setServerTime(in.readVarLong());
+    }
+    if ((mask & ERROR_CODE) != 0) {
+      pdu.setErrorCode((int) in.readVarLong());
+    }
+    if ((mask & RECEIVED_CHAT_MESSAGES) != 0) {
+      pdu.setNumberOfReceivedChatMessages(in.readVarLong());
+    }
+    if ((mask & SENT_EVENTS) != 0) {
+      pdu.setNumberOfSentEvents(in.readVarLong());
+    }
+    if ((mask & RECEIVED_CONFIRMS) != 0) {
+      pdu.setNumberOfReceivedEventConfirms(in.readVarLong());
+    }
+    if ((mask & LOST_CONFIRMS) != 0) {
+      pdu.setNumberOfLostEventConfirms(in.readVarLong());
+    }
+    if ((mask & RETRIES) != 0) {
+      pdu.setNumberOfRetries(in.readVarLong());
+    }
+    if ((mask & ROOM) != 0) {
+      pdu.setRoom(in.readString());
+    }
+    if ((mask & USER_LIST_VERSION) != 0) {
+      pdu.setUserListVersion(in.readVarLong());
+    }
+    if ((mask & CONFIRMED_EVENTS) != 0) {
+      int size = in.readLength();
+      Vector<String> eventUserNames = new Vector<String>(size);
+      long[] sequenceNumbers = new long[size];
+      for (int i = 0; i < size; i++) {
+	eventUserNames.add(in.readString());
+	sequenceNumbers[i] = in.readVarLong();
+      }
+      pdu.setConfirmedEvents(eventUserNames, sequenceNumbers);
+    }
+    return pdu;
+  }
+
+  /**
+   * Wachsender Schreibpuffer
+   */
+  private static final class Writer {
+
+    private byte[] buffer;
+    private int count;
+
+    Writer(int initialSize) {
+      buffer = new byte[initialSize];
+    }
+
+    void writeByte(int b) {
+      ensureCapacity(1);
+      buffer[count++] = (byte) b;
+    }
+
+    void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+	buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+	value >>>= 7;
+      }
+      buffer[count++] = (byte) value;
+    }
+
+    void writeString(String s) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, count, bytes.length);
+      count += bytes.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, count);
+    }
+
+    private void ensureCapacity(int additional) {
+      if (count + additional > buffer.length) {
+	buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + additional));
+      }
+    }
+  }
+
+  /**
+   * Lesezeiger auf einem Puffer mit Bereichspruefung
+   */
+  private static final class Reader {
+
+    private final byte[] data;
+    private int position;
+    private final int limit;
+
+    Reader(byte[] data, int offset, int length) {
+      this.data = data;
+      this.position = offset;
+      this.limit = offset + length;
+    }
+
+    int readByte() throws IOException {
+      if (position >= limit) {
+	throw new IOException("Unerwartetes Ende der PDU");
+      }
+      return data[position++] & 0xFF;
+    }
+
+    long readVarLong() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+	int b = readByte();
+	value |= (long) (b & 0x7F) << shift;
+	if ((b & 0x80) == 0) {
+	  return value;
+	}
+      }
+      throw new IOException("Fehlerhafter Varint in PDU");
+    }
+
+    int readLength() throws IOException {
+      long length = readVarLong();
+      if ((length < 0) || (length > limit - position)) {
+	throw new IOException("Ungueltige Laengenangabe in PDU: " + length);
+      }
+      return (int) length;
+    }
+
+    String readString() throws IOException {
+      int length = readLength();
+      String s = new String(data, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return s;
+    }
+  }
+}
@@ -3,9 +3,17 @@ package edu.hm.dako.chat.connection;
 import java.io.Serializable;
 
 /**
- * Wird vom Client und vom Server zur Kommunikation verwendet.
+ * Wird vom Client und vom Server zur Kommunikation verwendet. Zum Senden siehe
+ * {@link MessageSender}.
+ * <p/>
+ * Eine Connection wird mit blockierendem Empfang betrieben: Ein Thread je
+ * Verbindung ruft receive auf. Ereignisgesteuerte Transporte (NIO) implementieren
+ * diese Schnittstelle nicht, sondern nur {@link MessageSender}, und stellen die
+ * empfangenen Nachrichten ueber einen {@link MessageHandler} zu. Ein Aufruf von
+ * receive auf einer solchen Verbindung ist damit schon beim Uebersetzen
+ * ausgeschlossen.
  */
-public interface Connection {
+public interface Connection extends MessageSender {
 
   /**
    * Blockiert maximal eine angegebene Zeit in ms bis eine serialisierte Nachricht als
@@ -26,20 +34,4 @@ public interface Connection {
    * @throws Exception
    */
   public Serializable receive() throws Exception;
-
-  /**
-   * Sendet eine Nachricht an den Kommunikationspartner.
-   *
-   * @param message
-   *          Die zu sendende Nachricht.
-   * @throws Exception
-   */
-  public void send(Serializable message) throws Exception;
-
-  /**
-   * Baut die Verbindung zum Kommunikationspartner ab.
-   *
-   * @throws Exception
-   */
-  public void close() throws Exception;
 }
@@ -0,0 +1,19 @@
+package edu.hm.dako.chat.connection;
+
+/**
+ * Wird von einer Verbindung mit begrenzter Ausgangswarteschlange aufgerufen, wenn
+ * sie bei {@link OverflowPolicy#DropOldest} ein Event verwirft. Der Empfaenger
+ * bestaetigt ein verworfenes Event nie, die Anwendung muss ihn daher selbst aus
+ * der Warteliste des Events austragen. Responses werden nie verworfen.
+ */
+public interface DroppedPduHandler {
+
+  /**
+   * Verarbeitet ein verworfenes Event. Wird im Thread des Senders aufgerufen,
+   * nachdem die Warteschlange wieder freigegeben ist.
+   *
+   * @param pdu
+   *          Verworfenes Event
+   */
+  public void pduDropped(EncodedPdu pdu);
+}
@@ -0,0 +1,66 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.IOException;
+
+import edu.hm.dako.chat.common.ChatPDU;
+
+/**
+ * PDU, die an mehrere Empfaenger verteilt wird (z.B. Chat-Event). Der gemeinsame Rumpf
+ * wird je Codec nur einmal kodiert und dann fuer alle Empfaenger wiederverwendet;
+ * rahmenbasierte Verbindungen stellen nur noch den Empfaengernamen voran.
+ *
+ * Die uebergebene PDU darf nach dem Erzeugen nicht mehr veraendert werden.
+ */
+public final class EncodedPdu {
+
+  private final ChatPDU pdu;
+
+  // Zuletzt verwendeter Codec und damit kodierter Rumpf
+  private PduCodec codec;
+  private byte[] body;
+
+  public EncodedPdu(ChatPDU pdu) {
+    this.pdu = pdu;
+  }
+
+  /**
+   * @return Gemeinsame PDU (nicht veraendern)
+   */
+  public ChatPDU getPdu() {
+    return pdu;
+  }
+
+  /**
+   * Liefert den kodierten Rumpf, kodiert wird nur beim ersten Aufruf je Codec.
+   *
+   * @param codec
+   *          Kodierung der Verbindung
+   * @return Kodierter Rumpf (nicht veraendern)
+   * @throws IOException
+   *           PDU nicht kodierbar
+   */
+  public synchronized byte[] getBody(PduCodec codec) throws IOException {
+    if (this.codec != codec) {
+      body = codec.encode(pdu);
+      this.codec = codec;
+    }
+    return body;
+  }
+
+  /**
+   * Liefert die PDU fuer einen Empfaenger als eigenes Objekt, fuer Verbindungen, die
+   * jede Nachricht einzeln serialisieren.
+   *
+   * @param recipient
+   *          Name des Empfaengers, null: User-Name der PDU unveraendert
+   * @return PDU fuer den Empfaenger
+   */
+  public ChatPDU toPdu(String recipient) {
+    if (recipient == null) {
+      return pdu;
+    }
+    ChatPDU copy = pdu.copy();
+    copy.setUserName(recipient);
+    return copy;
+  }
+}
@@ -0,0 +1,16 @@
+package edu.hm.dako.chat.connection;
+
+/**
+ * Legt fest, wann eine Verbindung gepufferte Nachrichten auf das Socket schreibt.
+ * Unabhaengig von der Strategie wird geschrieben, sobald der Sendepuffer der
+ * Verbindung (Schwelle in Byte) voll ist.
+ */
+public enum FlushPolicy {
+  // Jede Nachricht sofort schreiben
+  Immediate,
+  // Schreiben, sobald kein weiterer Sender auf die Verbindung wartet
+  OnIdle,
+  // Schreiben, sobald die Ausgangswarteschlange leer ist (ohne Warteschlange
+  // wie OnIdle)
+  OnDrain
+}
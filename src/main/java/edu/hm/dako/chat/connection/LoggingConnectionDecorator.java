@@ -12,9 +12,11 @@ import edu.hm.dako.chat.common.ChatPDU;
  * beliebige Connection-Instanz und bietet dieselbe Schnittstelle an. Beim Aufruf einer
  * Methode wird zunaechst eine Log-Ausgabe getaetigt und danach die Methode der
  * umschlossenen Connection aufgerufen. Anschliessend erfolgt eine weitere Log-Ausgabe.
+ * Das Senden uebernimmt {@link LoggingMessageSenderDecorator}.
  *
  */
-public class LoggingConnectionDecorator implements Connection {
+public class LoggingConnectionDecorator extends LoggingMessageSenderDecorator
+	implements Connection {
 
   private static Log log = LogFactory
 	.getLog(LoggingConnectionDecorator.class);
@@ -22,18 +24,10 @@ public class LoggingConnectionDecorator implements Connection {
   private Connection wrappedConnection;
 
   public LoggingConnectionDecorator(Connection wrappedConnection) {
+    super(wrappedConnection);
     this.wrappedConnection = wrappedConnection;
   }
 
-  @Override
-  public synchronized void send(Serializable message) throws Exception {
-    ChatPDU pdu = (ChatPDU) message;
-    //log.debug("Sende Nachricht, Chat-Inhalt: " + pdu.getMessage()+ ", Chat-User: " + pdu.getUserName());
-    wrappedConnection.send(message);
-    log.trace(pdu);
-    //log.debug("Nachricht gesendet");
-  }
-
   @Override
   public Serializable receive() throws Exception {
     //log.debug("Empfange Nachricht...");
@@ -55,11 +49,4 @@ public class LoggingConnectionDecorator implements Connection {
     }
     return pdu;
   }
-
-  @Override
-  public void close() throws Exception {
-    //log.debug("Schliesse Connection...");
-    wrappedConnection.close();
-    //log.debug("Connection geschlossen!");
-  }
 }
@@ -0,0 +1,59 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.Serializable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.common.ChatPDU;
+
+/**
+ * Stattet einen {@link MessageSender} mit automatischem Logging aus, z.B. die
+ * Verbindungen eines ereignisgesteuerten Servers. Verbindungen mit blockierendem
+ * Empfang werden mit {@link LoggingConnectionDecorator} umschlossen.
+ *
+ */
+public class LoggingMessageSenderDecorator implements MessageSender {
+
+  private static Log log = LogFactory
+	.getLog(LoggingMessageSenderDecorator.class);
+
+  private final MessageSender wrappedSender;
+
+  public LoggingMessageSenderDecorator(MessageSender wrappedSender) {
+    this.wrappedSender = wrappedSender;
+  }
+
+  // Die Sends sind nicht synchronisiert: Die umschlossene Verbindung sperrt
+  // selbst und muss wartende Sender fuer das Zusammenfassen der Schreibaufrufe
+  // sehen koennen (FlushPolicy.OnIdle)
+
+  @Override
+  public void send(Serializable message) throws Exception {
+    ChatPDU pdu = (ChatPDU) message;
+    //log.debug("Sende Nachricht, Chat-Inhalt: " + pdu.getMessage()+ ", Chat-User: " + pdu.getUserName());
+    wrappedSender.send(message);
+    log.trace(pdu);
+    //log.debug("Nachricht gesendet");
+  }
+
+  @Override
+  public void send(EncodedPdu pdu, String recipient) throws Exception {
+    //log.debug("Sende gemeinsam kodierte Nachricht an " + recipient + ", Chat-Inhalt: " + pdu.getPdu().getMessage());
+    wrappedSender.send(pdu, recipient);
+    log.trace(pdu.getPdu());
+    //log.debug("Nachricht gesendet");
+  }
+
+  @Override
+  public void flush() throws Exception {
+    wrappedSender.flush();
+  }
+
+  @Override
+  public void close() throws Exception {
+    //log.debug("Schliesse Connection...");
+    wrappedSender.close();
+    //log.debug("Connection geschlossen!");
+  }
+}
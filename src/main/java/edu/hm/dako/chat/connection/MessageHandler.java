@@ -0,0 +1,27 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.Serializable;
+
+/**
+ * Ereignisgesteuerte Verarbeitung der Nachrichten einer Verbindung. Wird von
+ * Transportimplementierungen genutzt, die nicht mit einem blockierenden
+ * {@link Connection#receive()} pro Verbindung arbeiten (z.B. NIO mit Selector), sondern
+ * ankommende Nachrichten selbst empfangen und dann an die Anwendung weiterreichen.
+ */
+public interface MessageHandler {
+
+  /**
+   * Verarbeitet eine vollstaendig empfangene Nachricht.
+   *
+   * @param message
+   *          Die erhaltene Nachricht des Kommunikationspartners.
+   * @throws Exception
+   */
+  public void handleMessage(Serializable message) throws Exception;
+
+  /**
+   * Wird genau einmal aufgerufen, wenn die Verbindung vom Partner oder wegen eines
+   * Fehlers abgebaut wurde.
+   */
+  public void connectionClosed();
+}
@@ -0,0 +1,17 @@
+package edu.hm.dako.chat.connection;
+
+/**
+ * Erstellt fuer jede neu angenommene Verbindung einen {@link MessageHandler}.
+ */
+public interface MessageHandlerFactory {
+
+  /**
+   * Erzeugt den Handler fuer eine neue Verbindung.
+   *
+   * @param connection
+   *          Neu aufgebaute Verbindung zum Client, nur zum Senden (empfangen wird
+   *          ueber den Handler)
+   * @return Handler, der alle Nachrichten dieser Verbindung verarbeitet
+   */
+  public MessageHandler createHandler(MessageSender connection);
+}
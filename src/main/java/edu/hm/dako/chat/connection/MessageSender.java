@@ -0,0 +1,50 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.Serializable;
+
+/**
+ * Sendende Sicht auf eine Verbindung. Ereignisgesteuerte Transporte (z.B. NIO mit
+ * Selector) empfangen selbst und reichen die Nachrichten an einen
+ * {@link MessageHandler} weiter; sie bieten daher nur diese Schnittstelle an und
+ * keine {@link Connection} mit blockierendem Empfang.
+ */
+public interface MessageSender {
+
+  /**
+   * Sendet eine Nachricht an den Kommunikationspartner.
+   *
+   * @param message
+   *          Die zu sendende Nachricht.
+   * @throws Exception
+   */
+  public void send(Serializable message) throws Exception;
+
+  /**
+   * Sendet eine an mehrere Empfaenger verteilte PDU. Der gemeinsame Rumpf wird nur
+   * einmal kodiert, sofern die Verbindung dies unterstuetzt.
+   *
+   * @param pdu
+   *          Gemeinsam kodierte PDU.
+   * @param recipient
+   *          Name des Empfaengers, der als User-Name in die PDU eingetragen wird, null:
+   *          PDU unveraendert senden.
+   * @throws Exception
+   */
+  public void send(EncodedPdu pdu, String recipient) throws Exception;
+
+  /**
+   * Schreibt alle gepufferten, noch nicht gesendeten Nachrichten auf das Socket.
+   * Nur bei Verbindungen mit {@link FlushPolicy#OnDrain} erforderlich, sonst ohne
+   * Wirkung.
+   *
+   * @throws Exception
+   */
+  public void flush() throws Exception;
+
+  /**
+   * Baut die Verbindung zum Kommunikationspartner ab.
+   *
+   * @throws Exception
+   */
+  public void close() throws Exception;
+}
@@ -0,0 +1,293 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Entkoppelt das Senden vom Aufrufer: Nachrichten werden in eine begrenzte
+ * Ausgangswarteschlange gestellt und von einem Writer-Thread aus einem gemeinsamen Pool
+ * auf die umschlossene Verbindung geschrieben. Je Verbindung ist hoechstens ein
+ * Writer-Thread aktiv, die Reihenfolge der Nachrichten bleibt damit erhalten.
+ *
+ * Ein langsamer Empfaenger blockiert so nicht mehr den Worker-Thread, der ein Event an
+ * alle Clients verteilt. Was bei voller Warteschlange geschieht, legt die
+ * {@link OverflowPolicy} fest.
+ *
+ * Bei {@link OverflowPolicy#DropOldest} werden nur Events verworfen, nie Responses;
+ * verworfene Events werden dem {@link DroppedPduHandler} gemeldet. Ist die Warteschlange
+ * voll mit Responses, wartet der Sender. Die Anzahl offener Responses ist durch das
+ * Fenster des Clients begrenzt, dies tritt daher nur bei sehr kleiner Kapazitaet ein.
+ *
+ * Ist die Warteschlange leer, leert der Writer-Thread die umschlossene Verbindung. Mit
+ * {@link FlushPolicy#OnDrain} werden so alle waehrend eines Durchlaufs gesendeten
+ * Nachrichten in moeglichst wenigen Schreibaufrufen uebertragen.
+ */
+public class OutboundQueueConnection implements Connection {
+
+  private static Log log = LogFactory.getLog(OutboundQueueConnection.class);
+
+  private final Connection wrappedConnection;
+  private final Executor writerPool;
+  private final OverflowPolicy overflowPolicy;
+  private final ArrayBlockingQueue<Outbound> queue;
+
+  // Kennzeichen, ob ein Writer-Thread fuer diese Verbindung eingeplant ist
+  private final AtomicBoolean draining = new AtomicBoolean(false);
+
+  private volatile boolean closed = false;
+  private final AtomicBoolean wrappedClosed = new AtomicBoolean(false);
+
+  // Anzahl wegen voller Warteschlange verworfener Nachrichten
+  private final AtomicLong droppedMessages = new AtomicLong(0);
+
+  // Empfaenger der Meldungen ueber verworfene Events, null: keine Meldung
+  private volatile DroppedPduHandler droppedPduHandler;
+
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  /**
+   * @param wrappedConnection
+   *          Verbindung, auf die geschrieben wird
+   * @param writerPool
+   *          Gemeinsamer Pool fuer die Writer-Threads
+   * @param capacity
+   *          Maximale Anzahl wartender Nachrichten
+   * @param overflowPolicy
+   *          Verhalten bei voller Warteschlange
+   */
+  public OutboundQueueConnection(Connection wrappedConnection, Executor writerPool,
+	int capacity, OverflowPolicy overflowPolicy) {
+    this.wrappedConnection = wrappedConnection;
+    this.writerPool = writerPool;
+    this.overflowPolicy = overflowPolicy;
+    this.queue = new ArrayBlockingQueue<Outbound>(capacity);
+  }
+
+  @Override
+  public void send(Serializable message) throws Exception {
+    enqueue(new Outbound(message, null, null));
+  }
+
+  @Override
+  public void send(EncodedPdu pdu, String recipient) throws Exception {
+    enqueue(new Outbound(null, pdu, recipient));
+  }
+
+  /**
+   * Ohne Wirkung, der Writer-Thread leert die Verbindung, sobald die Warteschlange
+   * leer ist
+   */
+  @Override
+  public void flush() throws Exception {
+  }
+
+  @Override
+  public Serializable receive(int timeout) throws Exception {
+    return wrappedConnection.receive(timeout);
+  }
+
+  @Override
+  public Serializable receive() throws Exception {
+    return wrappedConnection.receive();
+  }
+
+  /**
+   * Schliesst die Verbindung, nachdem alle bereits eingereihten Nachrichten gesendet
+   * wurden. Das eigentliche Schliessen erledigt der Writer-Thread.
+   */
+  @Override
+  public void close() throws Exception {
+    closed = true;
+    scheduleDrain();
+  }
+
+  /**
+   * @param handler
+   *          Empfaenger der Meldungen ueber verworfene Events, null: keine Meldung
+   */
+  public void setDroppedPduHandler(DroppedPduHandler handler) {
+    this.droppedPduHandler = handler;
+  }
+
+  /**
+   * @return Anzahl der wegen voller Warteschlange verworfenen Nachrichten
+   */
+  public long getNumberOfDroppedMessages() {
+    return droppedMessages.get();
+  }
+
+  private void enqueue(Outbound item) throws Exception {
+    if (closed) {
+      throw new IOException();
+    }
+
+    switch (overflowPolicy) {
+
+    case Block:
+      queue.put(item);
+      break;
+
+    case DropOldest:
+      Outbound dropped = null;
+      while ((dropped == null) && !queue.offer(item)) {
+	dropped = removeOldestEvent();
+	if (dropped == null) {
+	  if (item.pdu == null) {
+	    // Nur Responses in der Warteschlange, Response nie verwerfen
+	    queue.put(item);
+	    break;
+	  }
+	  // Kein aelteres Event vorhanden, das neue Event verwerfen
+	  dropped = item;
+	} else if (!queue.offer(item)) {
+	  // Platz bereits von einem anderen Sender belegt
+	  notifyDropped(dropped);
+	  dropped = null;
+	}
+      }
+      if (dropped != null) {
+	notifyDropped(dropped);
+	if (dropped == item) {
+	  return;
+	}
+      }
+      break;
+
+    case Disconnect:
+      if (!queue.offer(item)) {
+	//log.debug("Ausgangswarteschlange voll, Verbindung wird abgebaut");
+	droppedMessages.incrementAndGet();
+	closed = true;
+	queue.clear();
+	// Schliessen kann blockieren, solange der Writer-Thread im Senden haengt,
+	// daher nicht im Thread des Senders
+	writerPool.execute(new Runnable() {
+	  @Override
+	  public void run() {
+	    closeWrapped();
+	  }
+	});
+	throw new IOException("Ausgangswarteschlange voll, Verbindung abgebaut");
+      }
+      break;
+    }
+    scheduleDrain();
+  }
+
+  /**
+   * Aeltestes noch nicht gesendetes Event aus der Warteschlange entfernen
+   *
+   * @return Entferntes Event, null: nur Responses in der Warteschlange
+   */
+  private Outbound removeOldestEvent() {
+    for (;;) {
+      Outbound oldest = null;
+      for (Outbound candidate : queue) {
+	if (candidate.pdu != null) {
+	  oldest = candidate;
+	  break;
+	}
+      }
+      if ((oldest == null) || queue.remove(oldest)) {
+	return oldest;
+      }
+      // Inzwischen gesendet oder von einem anderen Sender verworfen
+    }
+  }
+
+  private void notifyDropped(Outbound dropped) {
+    droppedMessages.incrementAndGet();
+    DroppedPduHandler handler = droppedPduHandler;
+    if (handler != null) {
+      handler.pduDropped(dropped.pdu);
+    }
+  }
+
+  private void scheduleDrain() {
+    if (draining.compareAndSet(false, true)) {
+      writerPool.execute(drainTask);
+    }
+  }
+
+  /**
+   * Sendet alle wartenden Nachrichten, laeuft in einem Writer-Thread
+   */
+  private void drain() {
+    try {
+      Outbound item;
+      while ((item = queue.poll()) != null) {
+	try {
+	  item.sendTo(wrappedConnection);
+	} catch (Exception e) {
+	  //log.debug("Senden fehlgeschlagen, Verbindung wird abgebaut: " + e);
+	  closed = true;
+	  queue.clear();
+	}
+      }
+      if (!closed) {
+	try {
+	  wrappedConnection.flush();
+	} catch (Exception e) {
+	  //log.debug("Flush fehlgeschlagen, Verbindung wird abgebaut: " + e);
+	  closed = true;
+	}
+      }
+      if (closed) {
+	closeWrapped();
+      }
+    } finally {
+      draining.set(false);
+    }
+
+    // Waehrend des Beendens eingereihte Nachrichten nicht liegen lassen
+    if (!queue.isEmpty() || (closed && !wrappedClosed.get())) {
+      scheduleDrain();
+    }
+  }
+
+  private void closeWrapped() {
+    if (wrappedClosed.compareAndSet(false, true)) {
+      try {
+	wrappedConnection.close();
+      } catch (Exception e) {
+	// Ignorieren
+      }
+    }
+  }
+
+  /**
+   * Eintrag der Ausgangswarteschlange
+   */
+  private static final class Outbound {
+
+    private final Serializable message;
+    private final EncodedPdu pdu;
+    private final String recipient;
+
+    Outbound(Serializable message, EncodedPdu pdu, String recipient) {
+      this.message = message;
+      this.pdu = pdu;
+      this.recipient = recipient;
+    }
+
+    void sendTo(Connection connection) throws Exception {
+      if (pdu != null) {
+	connection.send(pdu, recipient);
+      } else {
+	connection.send(message);
+      }
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package edu.hm.dako.chat.connection;
+
+/**
+ * Verhalten einer {@link OutboundQueueConnection}, wenn die Ausgangswarteschlange voll
+ * ist
+ */
+public enum OverflowPolicy {
+  // Sender wartet, bis wieder Platz in der Warteschlange ist
+  Block,
+  // Aelteste noch nicht gesendete Nachricht wird verworfen
+  DropOldest,
+  // Verbindung zum langsamen Empfaenger wird abgebaut
+  Disconnect
+}
@@ -0,0 +1,38 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Kodierung von Nachrichten fuer rahmenbasierte Verbindungen. Eine Implementierung
+ * wandelt genau eine Nachricht in ein Byte-Array um und umgekehrt; die Rahmenbildung
+ * (Laengenangabe) uebernimmt die jeweilige Verbindung.
+ */
+public interface PduCodec {
+
+  /**
+   * Kodiert eine Nachricht.
+   *
+   * @param message
+   *          Zu kodierende Nachricht.
+   * @return Kodierte Nachricht.
+   * @throws IOException
+   *           Nachricht kann nicht kodiert werden.
+   */
+  public byte[] encode(Serializable message) throws IOException;
+
+  /**
+   * Dekodiert eine Nachricht.
+   *
+   * @param data
+   *          Puffer mit der kodierten Nachricht.
+   * @param offset
+   *          Beginn der Nachricht im Puffer.
+   * @param length
+   *          Laenge der Nachricht in Byte.
+   * @return Dekodierte Nachricht.
+   * @throws IOException
+   *           Daten sind nicht dekodierbar.
+   */
+  public Serializable decode(byte[] data, int offset, int length) throws IOException;
+}
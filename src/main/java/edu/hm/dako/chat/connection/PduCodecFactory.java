@@ -0,0 +1,33 @@
+package edu.hm.dako.chat.connection;
+
+import edu.hm.dako.chat.common.CodecType;
+
+/**
+ * Liefert die Codec-Implementierung zu einem Kodierungstyp
+ */
+public final class PduCodecFactory {
+
+  private PduCodecFactory() {
+  }
+
+  /**
+   * Erzeugt einen Codec
+   *
+   * @param codecType
+   *          Kodierungstyp
+   * @return Codec fuer den Kodierungstyp
+   */
+  public static PduCodec getCodec(CodecType codecType) {
+    switch (codecType) {
+
+    case JavaSerialization:
+      return new SerializationPduCodec();
+
+    case Binary:
+      return new BinaryPduCodec();
+
+    default:
+      throw new RuntimeException("Unbekannter Kodierungstyp: " + codecType);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package edu.hm.dako.chat.connection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Kodierung ueber die Java-Serialisierung. Jede Nachricht wird mit einem eigenen
+ * ObjectOutputStream serialisiert und ist damit fuer sich dekodierbar.
+ */
+public class SerializationPduCodec implements PduCodec {
+
+  @Override
+  public byte[] encode(Serializable message) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(message);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public Serializable decode(byte[] data, int offset, int length) throws IOException {
+    ObjectInputStream in = new ObjectInputStream(
+	  new ByteArrayInputStream(data, offset, length));
+    try {
+      return (Serializable) in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    } finally {
+      in.close();
+    }
+  }
+}
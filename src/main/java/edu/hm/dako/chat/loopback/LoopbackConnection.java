@@ -0,0 +1,155 @@
+package edu.hm.dako.chat.loopback;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.ConnectionTimeoutException;
+import edu.hm.dako.chat.connection.EncodedPdu;
+import edu.hm.dako.chat.connection.EndOfFileException;
+import edu.hm.dako.chat.connection.PduCodec;
+
+/**
+ * Verbindung zwischen Client und Server im selben Prozess ohne Sockets. Jede
+ * Seite besitzt eine begrenzte Eingangswarteschlange, in die der Partner
+ * sendet. Ist sie voll, blockiert der Sender wie bei einem vollen
+ * Socket-Puffer.
+ * <p/>
+ * Ohne Codec werden die Nachrichten als Objektreferenz uebergeben; der Sender
+ * darf eine Nachricht nach dem Senden dann nicht mehr veraendern. Mit Codec
+ * wird jede Nachricht beim Senden kodiert und beim Empfangen dekodiert, sodass
+ * die Kosten der Kodierung wie bei einer Socket-Verbindung anfallen.
+ *
+ * @author Mandl
+ */
+public class LoopbackConnection implements Connection {
+
+	private static Log log = LogFactory.getLog(LoopbackConnection.class);
+
+	// Markierung fuer das Verbindungsende in der Eingangswarteschlange
+	private static final Object END_OF_STREAM = new Object();
+
+	// Kodierung der Nachrichten, null: Uebergabe als Objektreferenz
+	private final PduCodec codec;
+
+	// Empfangene, noch nicht abgeholte Nachrichten (kodiert oder als Objekt)
+	private final LinkedBlockingQueue<Object> inbound = new LinkedBlockingQueue<Object>();
+
+	// Freie Plaetze in der Eingangswarteschlange, die Endemarkierung belegt
+	// keinen Platz
+	private final Semaphore space;
+	private final int capacity;
+
+	private LoopbackConnection peer;
+
+	private volatile boolean closed;
+
+	private LoopbackConnection(PduCodec codec, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Ungueltige Kapazitaet: " + capacity);
+		}
+		this.codec = codec;
+		this.capacity = capacity;
+		this.space = new Semaphore(capacity);
+	}
+
+	/**
+	 * Erzeugt zwei miteinander verbundene Verbindungsenden
+	 *
+	 * @param codec
+	 *          Kodierung der Nachrichten, null: Uebergabe als Objektreferenz
+	 * @param capacity
+	 *          Maximale Anzahl nicht abgeholter Nachrichten je Richtung
+	 * @return Verbindungsende des Clients (Index 0) und des Servers (Index 1)
+	 */
+	static LoopbackConnection[] createPair(PduCodec codec, int capacity) {
+		LoopbackConnection clientSide = new LoopbackConnection(codec, capacity);
+		LoopbackConnection serverSide = new LoopbackConnection(codec, capacity);
+		clientSide.peer = serverSide;
+		serverSide.peer = clientSide;
+		return new LoopbackConnection[] { clientSide, serverSide };
+	}
+
+	@Override
+	public Serializable receive(int timeout) throws Exception {
+		Object item = inbound.poll(timeout, TimeUnit.MILLISECONDS);
+		if (item == null) {
+			throw new ConnectionTimeoutException(new Exception());
+		}
+		return deliver(item);
+	}
+
+	@Override
+	public Serializable receive() throws Exception {
+		return deliver(inbound.take());
+	}
+
+	@Override
+	public void send(Serializable message) throws Exception {
+		if (closed) {
+			throw new IOException("Verbindung geschlossen");
+		}
+		peer.enqueue((codec == null) ? message : codec.encode(message));
+	}
+
+	/**
+	 * Die PDU wird je Empfaenger als eigenes Objekt uebergeben bzw. kodiert
+	 */
+	@Override
+	public void send(EncodedPdu pdu, String recipient) throws Exception {
+		send(pdu.toPdu(recipient));
+	}
+
+	/**
+	 * Ohne Puffer nicht erforderlich
+	 */
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		// Eigenen Empfaenger und beim Senden wartende Partner wecken
+		inbound.add(END_OF_STREAM);
+		space.release(capacity);
+		peer.inbound.add(END_OF_STREAM);
+		//log.debug("Loopback-Verbindung geschlossen");
+	}
+
+	/**
+	 * Nachricht des Partners eintragen, blockiert, solange die Warteschlange voll
+	 * ist
+	 */
+	private void enqueue(Object item) throws Exception {
+		space.acquire();
+		if (closed) {
+			space.release();
+			throw new IOException("Verbindung vom Partner geschlossen");
+		}
+		inbound.add(item);
+	}
+
+	private Serializable deliver(Object item) throws Exception {
+		if (item == END_OF_STREAM) {
+			// Auch weitere Empfangsversuche sollen das Verbindungsende sehen
+			inbound.add(END_OF_STREAM);
+			throw new EndOfFileException(new Exception());
+		}
+		space.release();
+		if (codec == null) {
+			return (Serializable) item;
+		}
+		byte[] data = (byte[]) item;
+		return codec.decode(data, 0, data.length);
+	}
+}
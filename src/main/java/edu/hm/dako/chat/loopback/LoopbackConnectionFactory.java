@@ -0,0 +1,23 @@
+package edu.hm.dako.chat.loopback;
+
+import java.net.ConnectException;
+
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.ConnectionFactory;
+
+/**
+ * Erzeugen von Verbindungen zu einem {@link LoopbackServerSocket} im selben
+ * Prozess. Adresse und Puffergroessen werden nicht benoetigt, die Kodierung
+ * legt das Server-Socket fest.
+ *
+ * @author Mandl
+ */
+public class LoopbackConnectionFactory implements ConnectionFactory {
+
+	@Override
+	public Connection connectToServer(String remoteServerAddress, int serverPort,
+			int localPort, int sendBufferSize, int receiveBufferSize)
+			throws ConnectException {
+		return LoopbackServerSocket.connect(serverPort);
+	}
+}
@@ -0,0 +1,134 @@
+package edu.hm.dako.chat.loopback;
+
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.PduCodec;
+import edu.hm.dako.chat.connection.ServerSocketInterface;
+
+/**
+ * Server-Socket fuer Verbindungen im selben Prozess. Das Socket meldet sich
+ * unter seiner Portnummer in einem prozessweiten Verzeichnis an, ueber das die
+ * {@link LoopbackConnectionFactory} Verbindungen aufbaut. Damit laesst sich
+ * der Server ohne Netzwerk-Stack des Betriebssystems messen.
+ *
+ * @author Mandl
+ */
+public class LoopbackServerSocket implements ServerSocketInterface {
+
+	private static Log log = LogFactory.getLog(LoopbackServerSocket.class);
+
+	// Maximale Anzahl nicht abgeholter Nachrichten je Verbindung und Richtung
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	// Intervall in ms, in dem accept prueft, ob das Socket geschlossen wurde
+	private static final int ACCEPT_POLL_INTERVAL = 100;
+
+	// Angemeldete Server-Sockets je Port
+	private static final ConcurrentHashMap<Integer, LoopbackServerSocket> serverSockets = new ConcurrentHashMap<Integer, LoopbackServerSocket>();
+
+	private final int port;
+	private final PduCodec codec;
+	private final int queueCapacity;
+
+	// Neue, noch nicht angenommene Verbindungen
+	private final LinkedBlockingQueue<LoopbackConnection> newConnections = new LinkedBlockingQueue<LoopbackConnection>();
+
+	private volatile boolean closed;
+
+	private LoopbackServerSocket(int port, PduCodec codec, int queueCapacity) {
+		this.port = port;
+		this.codec = codec;
+		this.queueCapacity = queueCapacity;
+	}
+
+	public static LoopbackServerSocket bind(int port, PduCodec codec) throws BindException {
+		return bind(port, codec, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Erzeugt ein Server-Socket und meldet es unter der Portnummer an. Die
+	 * Anmeldung erfolgt erst nach der Konstruktion, damit Clients kein
+	 * unvollstaendiges Objekt im Verzeichnis finden.
+	 *
+	 * @param port
+	 *          Portnummer, unter der Clients die Verbindung aufbauen
+	 * @param codec
+	 *          Kodierung der Nachrichten, null: Uebergabe als Objektreferenz
+	 * @param queueCapacity
+	 *          Maximale Anzahl nicht abgeholter Nachrichten je Verbindung und
+	 *          Richtung
+	 * @return angemeldetes Server-Socket
+	 * @exception BindException
+	 *              Port schon belegt
+	 */
+	public static LoopbackServerSocket bind(int port, PduCodec codec, int queueCapacity)
+			throws BindException {
+		LoopbackServerSocket serverSocket = new LoopbackServerSocket(port, codec,
+				queueCapacity);
+		if (serverSockets.putIfAbsent(port, serverSocket) != null) {
+			throw new BindException("Loopback-Port " + port + " bereits belegt");
+		}
+		return serverSocket;
+	}
+
+	@Override
+	public Connection accept() throws Exception {
+		while (!closed) {
+			LoopbackConnection connection = newConnections.poll(ACCEPT_POLL_INTERVAL,
+					TimeUnit.MILLISECONDS);
+			if (connection != null) {
+				return connection;
+			}
+		}
+		throw new SocketException("Socket geschlossen");
+	}
+
+	/**
+	 * Meldet das Socket ab, noch nicht angenommene Verbindungen werden
+	 * geschlossen
+	 */
+	@Override
+	public void close() {
+		//log.debug("Loopback-Serversocket wird geschlossen, Port: " + port);
+		closed = true;
+		serverSockets.remove(port, this);
+		LoopbackConnection connection;
+		while ((connection = newConnections.poll()) != null) {
+			connection.close();
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Baut eine Verbindung zum unter dem Port angemeldeten Server-Socket auf
+	 *
+	 * @param port
+	 *          Portnummer des Servers
+	 * @return Verbindungsende des Clients
+	 * @exception ConnectException
+	 *              Kein Server-Socket unter dem Port angemeldet
+	 */
+	static LoopbackConnection connect(int port) throws ConnectException {
+		LoopbackServerSocket serverSocket = serverSockets.get(port);
+		if ((serverSocket == null) || serverSocket.closed) {
+			throw new ConnectException("Kein Loopback-Server an Port " + port);
+		}
+		LoopbackConnection[] pair = LoopbackConnection.createPair(serverSocket.codec,
+				serverSocket.queueCapacity);
+		serverSocket.newConnections.add(pair[1]);
+		return pair[0];
+	}
+}
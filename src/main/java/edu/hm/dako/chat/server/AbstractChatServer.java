@@ -18,4 +18,43 @@ public abstract class AbstractChatServer implements ChatServerInterface {
 	// Referenz auf Server GUI fuer die Meldung von Ereignissen
 	protected ChatServerGuiInterface serverGuiInterface;
 
+	// Beendet Sessions ohne Aktivitaet, null: keine Ueberwachung
+	protected IdleSessionReaper idleSessionReaper;
+
+	/**
+	 * Stellt die Leerlaufzeit ein, nach der Sessions ohne empfangene PDU beendet
+	 * werden. Muss vor dem Start des Servers aufgerufen werden.
+	 * 
+	 * @param idleTimeout
+	 *          Leerlaufzeit in ms, 0: Sessions werden nicht ueberwacht
+	 */
+	public void setIdleTimeout(int idleTimeout) {
+		idleSessionReaper = (idleTimeout > 0) ? new IdleSessionReaper(idleTimeout) : null;
+	}
+
+	/**
+	 * Neue Session bei der Leerlaufueberwachung anmelden
+	 * 
+	 * @param session
+	 *          Session
+	 * @return die uebergebene Session
+	 */
+	protected <T extends AbstractWorkerThread> T watchIdleTime(T session) {
+		if (idleSessionReaper != null) {
+			idleSessionReaper.register(session);
+		}
+		return session;
+	}
+
+	protected void startIdleSessionReaper() {
+		if (idleSessionReaper != null) {
+			idleSessionReaper.start();
+		}
+	}
+
+	protected void stopIdleSessionReaper() {
+		if (idleSessionReaper != null) {
+			idleSessionReaper.stopThread();
+		}
+	}
 }
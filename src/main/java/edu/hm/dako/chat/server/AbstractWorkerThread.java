@@ -3,7 +3,10 @@ package edu.hm.dako.chat.server;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.common.PduType;
 import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.MessageSender;
 
 /**
  * Abstrakte Klasse mit Basisfunktionalitaet fuer serverseitige Worker-Threads
@@ -13,14 +16,20 @@ import edu.hm.dako.chat.connection.Connection;
  */
 public abstract class AbstractWorkerThread extends Thread {
 
-	// Verbindungs-Handle
-	protected Connection connection;
+	// Verbindungs-Handle zum Senden
+	protected MessageSender connection;
 
-	// Kennzeichen zum Beenden des Worker-Threads
-	protected boolean finished = false;
+	// Verbindungs-Handle zum Empfangen, null bei ereignisgesteuerten Sessions,
+	// die ihre PDUs von einem Event-Loop erhalten
+	protected Connection receiver;
 
-	// Username des durch den Worker-Thread bedienten Clients
-	protected String userName = null;
+	// Kennzeichen zum Beenden des Worker-Threads, wird auch vom
+	// IdleSessionReaper gelesen
+	protected volatile boolean finished = false;
+
+	// Username des durch den Worker-Thread bedienten Clients, wird auch von
+	// Sendern anderer Sessions gelesen (verworfene Events)
+	protected volatile String userName = null;
 
 	// Client-Threadname
 	protected String clientThreadName = null;
@@ -28,6 +37,10 @@ public abstract class AbstractWorkerThread extends Thread {
 	// Startzeit fuer die Serverbearbeitungszeit
 	protected long startTime;
 
+	// Zeitpunkt der letzten empfangenen PDU (System.nanoTime), wird vom
+	// IdleSessionReaper ausgewertet
+	protected volatile long lastActivity = System.nanoTime();
+
 	// Gemeinsam fuer alle Workerthreads verwaltete Liste aller eingeloggten
 	// Clients
 	protected SharedChatClientList clients;
@@ -41,7 +54,16 @@ public abstract class AbstractWorkerThread extends Thread {
 
 	public AbstractWorkerThread(Connection con, SharedChatClientList clients,
 			SharedServerCounter counter, ChatServerGuiInterface serverGuiInterface) {
-		this.connection = con;
+		this((MessageSender) con, clients, counter, serverGuiInterface);
+		this.receiver = con;
+	}
+
+	/**
+	 * Konstruktor fuer ereignisgesteuerte Sessions ohne eigenen Empfang
+	 */
+	protected AbstractWorkerThread(MessageSender sender, SharedChatClientList clients,
+			SharedServerCounter counter, ChatServerGuiInterface serverGuiInterface) {
+		this.connection = sender;
 		this.clients = clients;
 		this.logoutCounter = counter.logoutCounter;
 		this.eventCounter = counter.eventCounter;
@@ -84,6 +106,56 @@ public abstract class AbstractWorkerThread extends Thread {
 	 */
 	protected abstract void chatMessageRequestAction(ChatPDU receivedPdu);
 
+	/**
+	 * Aktion fuer die Behandlung ankommender Room-Join- und Room-Leave-Requests:
+	 * Mitgliedschaft des Clients im Chat-Raum aendern und Response senden.
+	 * Nachfolgende Chat-Nachrichten des Clients werden erst danach bearbeitet, ein
+	 * Warten auf die Response ist daher nicht noetig.
+	 * 
+	 * @param receivedPdu
+	 *          Empfangene PDU
+	 */
+	protected void roomRequestAction(ChatPDU receivedPdu) {
+
+		String room = receivedPdu.getRoom();
+		boolean done = false;
+		if ((userName != null) && (room != null)) {
+			if (receivedPdu.getPduType() == PduType.ROOM_JOIN_REQUEST) {
+				done = clients.joinRoom(userName, room);
+			} else {
+				done = clients.leaveRoom(userName, room);
+			}
+		}
+		//log.debug(receivedPdu.getPduType() + " von " + userName + " fuer Raum " + room + ", Ergebnis: " + done);
+
+		ChatPDU responsePdu = ChatPDU.createRoomResponsePdu(receivedPdu,
+				done ? ChatPDU.NO_ERROR : ChatPDU.ROOM_ERROR);
+		try {
+			connection.send(responsePdu);
+		} catch (Exception e) {
+			ExceptionHandler.logException(e);
+		}
+	}
+
+	/**
+	 * Aktion fuer die Behandlung ankommender User-List-Requests: Vollstaendige
+	 * Userliste mit ihrem Stand an den anfragenden Client senden
+	 * 
+	 * @param receivedPdu
+	 *          Empfangene PDU
+	 */
+	protected void userListRequestAction(ChatPDU receivedPdu) {
+
+		ChatPDU responsePdu = ChatPDU.createUserListResponsePdu(receivedPdu);
+		clients.setUserListSnapshot(responsePdu);
+		//log.debug("User-List-Response mit Stand " + responsePdu.getUserListVersion() + " an " + userName);
+		try {
+			connection.send(responsePdu);
+		} catch (Exception e) {
+			ExceptionHandler.logException(e);
+		}
+	}
+
 	/**
 	 * Aktion fuer die Behandlung ankommender ChatMessageConfirm-PDUs
 	 * 
@@ -97,4 +169,27 @@ public abstract class AbstractWorkerThread extends Thread {
 	 * @throws Exception
 	 */
 	protected abstract void handleIncomingMessage() throws Exception;
+
+	public long getLastActivity() {
+		return lastActivity;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Vom Client ist laenger als die Leerlaufzeit nichts angekommen: Verbindung
+	 * abbauen. Der im Empfang blockierte Worker-Thread erhaelt dadurch einen
+	 * Fehler, beendet sich und raeumt die Clientliste auf. Wird vom
+	 * IdleSessionReaper aufgerufen.
+	 */
+	void idleTimeout() {
+		//log.debug("Leerlaufzeit fuer " + userName + " abgelaufen, Verbindung wird abgebaut");
+		try {
+			connection.close();
+		} catch (Exception e) {
+			ExceptionHandler.logException(e);
+		}
+	}
 }
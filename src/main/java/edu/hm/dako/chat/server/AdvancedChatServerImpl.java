@@ -3,6 +3,7 @@ package edu.hm.dako.chat.server;
 import edu.hm.dako.chat.common.ClientListEntry;
 import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.OutboundQueueConnection;
 import edu.hm.dako.chat.connection.ServerSocketInterface;
 import javafx.concurrent.Task;
 import org.apache.commons.logging.Log;
@@ -64,6 +65,7 @@ public class AdvancedChatServerImpl extends AbstractChatServer {
             protected Void call() throws Exception {
                 // Clientliste erzeugen
                 clients = SharedChatClientList.getInstance();
+                startIdleSessionReaper();
 
                 while (!Thread.currentThread().isInterrupted() && !socket.isClosed()) {
                     try {
@@ -75,8 +77,13 @@ public class AdvancedChatServerImpl extends AbstractChatServer {
                         //log.debug("Neuer Verbindungsaufbauwunsch empfangen");
 
                         // Neuen Workerthread starten
-                        executorService.submit(new AdvancedChatWorkerThreadImpl(connection, clients,
-                                counter, serverGuiInterface));
+                        AdvancedChatWorkerThreadImpl worker = new AdvancedChatWorkerThreadImpl(
+                                connection, clients, counter, serverGuiInterface);
+                        if (connection instanceof OutboundQueueConnection) {
+                            // Verworfene Events traegt die Session aus den Wartelisten aus
+                            ((OutboundQueueConnection) connection).setDroppedPduHandler(worker);
+                        }
+                        executorService.submit(watchIdleTime(worker));
                     } catch (Exception e) {
                         if (socket.isClosed()) {
                             //log.debug("Socket wurde geschlossen");
@@ -117,6 +124,8 @@ public class AdvancedChatServerImpl extends AbstractChatServer {
             }
         }
 
+        stopIdleSessionReaper();
+
         // Loeschen der Userliste
         clients.deleteAll();
         Thread.currentThread().interrupt();
@@ -5,25 +5,39 @@ import edu.hm.dako.chat.common.ClientConversationStatus;
 import edu.hm.dako.chat.common.ClientListEntry;
 import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.connection.Connection;
-import edu.hm.dako.chat.connection.ConnectionTimeoutException;
+import edu.hm.dako.chat.connection.DroppedPduHandler;
+import edu.hm.dako.chat.connection.EncodedPdu;
 import edu.hm.dako.chat.connection.EndOfFileException;
+import edu.hm.dako.chat.connection.MessageSender;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.List;
 import java.util.Vector;
 
 /**
  * Worker-Thread zur serverseitigen Bedienung einer Session mit einem Client.
  * Jedem Chat-Client wird serverseitig ein Worker-Thread zugeordnet.
+ *
+ * Events, die der Client nie bestaetigen wird (von seiner Verbindung verworfen oder
+ * Client abgebaut), werden aus den Wartelisten ausgetragen wie ein Confirm, damit der
+ * Initiator seine Response erhaelt.
  * @author NONAME
  */
-public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
+public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread
+        implements DroppedPduHandler {
 
     /**
      * the log data contains the info about the protocoll for debug purpose
      */
     private static Log log = LogFactory.getLog(AdvancedChatWorkerThreadImpl.class);
 
+    /**
+     * true, wenn die Session nicht in einem eigenen Thread laeuft, sondern von einem
+     * Event-Loop mit empfangenen PDUs versorgt wird
+     */
+    private final boolean eventDriven;
+
     /**
      * contains important infos about the whole server infrastructure
      * @param con Connection
@@ -34,6 +48,21 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
     public AdvancedChatWorkerThreadImpl(Connection con, SharedChatClientList clients,
                                       SharedServerCounter counter, ChatServerGuiInterface serverGuiInterface) {
         super(con, clients, counter, serverGuiInterface);
+        this.eventDriven = false;
+    }
+
+    /**
+     * Ereignisgesteuerte Session: Die PDUs werden ueber processReceivedPdu zugestellt,
+     * die Verbindung wird nur zum Senden verwendet
+     * @param sender Verbindung zum Senden
+     * @param clients active Clients in the system
+     * @param counter Amount of Event/Confirms
+     * @param serverGuiInterface The GUI for the server
+     */
+    AdvancedChatWorkerThreadImpl(MessageSender sender, SharedChatClientList clients,
+                                 SharedServerCounter counter, ChatServerGuiInterface serverGuiInterface) {
+        super(sender, clients, counter, serverGuiInterface);
+        this.eventDriven = true;
     }
 
     /**
@@ -69,33 +98,15 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
         // Warten auf naechste Nachricht
         ChatPDU receivedPdu = null;
 
-        // Nach einer Minute wird geprueft, ob Client noch eingeloggt ist
-        final int RECEIVE_TIMEOUT = 60000;
-
+        // Ohne Timeout warten: Sendet der Client laenger als die Leerlaufzeit
+        // nichts (auch keinen Heartbeat), baut der IdleSessionReaper die
+        // Verbindung ab und der Empfang endet mit einem Fehler
         try {
-            receivedPdu = (ChatPDU) connection.receive(RECEIVE_TIMEOUT);
+            receivedPdu = (ChatPDU) receiver.receive();
             // Nachricht empfangen
             // Zeitmessung fuer Serverbearbeitungszeit starten
             startTime = System.nanoTime();
-
-        } catch (ConnectionTimeoutException e) {
-
-            // Wartezeit beim Empfang abgelaufen, pruefen, ob der Client
-            // ueberhaupt noch etwas sendet
-            //log.debug("Timeout beim Empfangen, " + RECEIVE_TIMEOUT + " ms ohne Nachricht vom Client");
-
-            if (clients.getClient(userName) != null) {
-                if (clients.getClient(userName)
-                        .getStatus() == ClientConversationStatus.UNREGISTERING) {
-                    // Worker-Thread wartet auf eine Nachricht vom Client, aber es
-                    // kommt nichts mehr an
-                    //log.error("Client ist im Zustand UNREGISTERING und bekommt aber keine Nachricht mehr");
-                    // Zur Sicherheit eine Logout-Response-PDU an Client senden und
-                    // dann Worker-Thread beenden
-                    finished = true;
-                }
-            }
-            return;
+            lastActivity = startTime;
 
         } catch (EndOfFileException e) {
             //log.debug("End of File beim Empfang, vermutlich Verbindungsabbau des Partners");
@@ -116,6 +127,49 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
 
 
         // Empfangene Nachricht bearbeiten
+        dispatch(receivedPdu);
+    }
+
+    /**
+     * Von einem Event-Loop empfangene PDU bearbeiten (ereignisgesteuerter Betrieb)
+     * @param receivedPdu empfangene PDU
+     * @return true, wenn die Session beendet werden kann
+     */
+    boolean processReceivedPdu(ChatPDU receivedPdu) {
+        // Zeitmessung fuer Serverbearbeitungszeit starten
+        startTime = System.nanoTime();
+        lastActivity = startTime;
+        dispatch(receivedPdu);
+        return finished || checkIfClientIsDeletable();
+    }
+
+    /**
+     * Leerlaufzeit abgelaufen. Im ereignisgesteuerten Betrieb wartet kein Thread im
+     * Empfang, die Session wird daher direkt aufgeraeumt. Der Event-Loop meldet
+     * fuer die hier geschlossene Verbindung keinen Verbindungsabbau mehr.
+     */
+    @Override
+    void idleTimeout() {
+        if (eventDriven) {
+            sessionClosed();
+        } else {
+            super.idleTimeout();
+        }
+    }
+
+    /**
+     * Session nach Verbindungsabbau im ereignisgesteuerten Betrieb aufraeumen
+     */
+    void sessionClosed() {
+        finished = true;
+        closeConnection();
+    }
+
+    /**
+     * Empfangene PDU abhaengig vom PDU-Typ bearbeiten
+     * @param receivedPdu empfangene PDU
+     */
+    private void dispatch(ChatPDU receivedPdu) {
         try {
             switch (receivedPdu.getPduType()) {
 
@@ -144,11 +198,31 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
                     chatMessageConfirmAction(receivedPdu);
                     break;
 
+                case CHAT_MESSAGE_EVENT_CONFIRM_BATCH:
+                    // Mehrere Chat Message-Confirms in einer PDU
+                    chatMessageConfirmBatchAction(receivedPdu);
+                    break;
+
                 case LOGOUT_EVENT_CONFIRM:
                     //Logout-Confirm angekommen, muss nun in Waitlist vermerkt werden
                     logoutConfirmAction(receivedPdu);
                     break;
 
+                case HEARTBEAT:
+                    // Client lebt noch, Aktivitaet ist bereits vermerkt
+                    break;
+
+                case ROOM_JOIN_REQUEST:
+                case ROOM_LEAVE_REQUEST:
+                    // Client tritt einem Chat-Raum bei oder verlaesst ihn
+                    roomRequestAction(receivedPdu);
+                    break;
+
+                case USER_LIST_REQUEST:
+                    // Client fordert nach einer Luecke die vollstaendige Userliste an
+                    userListRequestAction(receivedPdu);
+                    break;
+
                 default:
                     //log.debug("Falsche PDU empfangen von Client: " + receivedPdu.getUserName()+ ", PduType: " + receivedPdu.getPduType());
                     break;
@@ -166,12 +240,12 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
     @Override
     protected void sendLoginListUpdateEvent(ChatPDU pdu) {
 
-        // Liste der eingeloggten bzw. sich einloggenden User ermitteln
-        Vector<String> clientList = clients.getRegisteredClientNameList();
-
-        //log.debug("Aktuelle Clientliste, die an die Clients uebertragen wird: " + clientList);
+        // Nur der geaenderte User (eventUserName) und der neue Stand der Userliste
+        // werden uebertragen, die Clients fuehren ihre Liste selbst nach
+        pdu.setUserListVersion(clients.nextUserListVersion());
 
-        pdu.setClients(clientList);
+        // Event nur einmal kodieren und an alle Clients verteilen
+        EncodedPdu event = new EncodedPdu(pdu);
 
         Vector<String> clientList2 = clients.getClientNameList();
         for (String s : new Vector<String>(clientList2)) {
@@ -181,7 +255,7 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
             try {
                 if (client != null) {
 
-                    client.getConnection().send(pdu);
+                    client.getConnection().send(event, null);
                     //log.debug("Login- oder Logout-Event-PDU an " + client.getUserName() + " gesendet");
                     clients.incrNumberOfSentChatEvents(client.getUserName());
                     eventCounter.getAndIncrement();
@@ -208,6 +282,11 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
         // eintragen
         if (!clients.existsClient(receivedPdu.getUserName())) {
             //log.debug("User nicht in Clientliste: " + receivedPdu.getUserName());
+            // Name vor dem Eintragen setzen, ab dann kann die Verbindung Events
+            // verwerfen (siehe pduDropped)
+            userName = receivedPdu.getUserName();
+            clientThreadName = receivedPdu.getClientThreadName();
+
             ClientListEntry client = new ClientListEntry(receivedPdu.getUserName(), connection);
             client.setLoginTime(System.nanoTime());
             clients.createClient(receivedPdu.getUserName(), client);
@@ -215,9 +294,9 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
                     ClientConversationStatus.REGISTERING);
             //log.debug("User " + receivedPdu.getUserName() + " nun in Clientliste");
 
-            userName = receivedPdu.getUserName();
-            clientThreadName = receivedPdu.getClientThreadName();
-            Thread.currentThread().setName(receivedPdu.getUserName());
+            if (!eventDriven) {
+                Thread.currentThread().setName(receivedPdu.getUserName());
+            }
             //log.debug("Laenge der Clientliste: " + clients.size());
             serverGuiInterface.incrNumberOfLoggedInClients();
             clients.createWaitList(receivedPdu.getUserName());
@@ -236,7 +315,8 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
                 //log.debug("Login-Error-Response-PDU an " + receivedPdu.getUserName()+ " mit Fehlercode " + ChatPDU.LOGIN_ERROR + " gesendet");
             } catch (Exception e) {
                 //log.debug("Senden einer Login-Error-Response-PDU an " + receivedPdu.getUserName()+ " nicth moeglich");
-                ExceptionHandler.logExceptionAndTerminate(e);
+                ExceptionHandler.logException(e);
+                finished = true;
             }
         }
     }
@@ -287,20 +367,33 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
         if (!clients.existsClient(receivedPdu.getUserName())) {
             //log.debug("User nicht in Clientliste: " + receivedPdu.getUserName());
         } else {
-            clients.createWaitList(receivedPdu.getUserName());
+            // Betroffene Clients sind die Mitglieder des Chat-Raums der Nachricht
+            List<String> sendList = clients.getRoomMemberList(receivedPdu.getRoomOrDefault());
+
+            // Warteliste ueber die Sequenznummer dem Event zuordnen, die Confirms
+            // tragen dieselbe Sequenznummer
+            int recipients = clients.createWaitList(receivedPdu.getUserName(),
+                    receivedPdu.getSequenceNumber(), sendList);
+            if (recipients == 0) {
+                // Niemand im Raum, es kommen keine Confirms
+                sendChatMessageResponse(clients.getClient(receivedPdu.getUserName()),
+                        receivedPdu.getClientThreadName(), receivedPdu.getSequenceNumber(),
+                        startTime);
+                return;
+            }
 
-            // Liste der betroffenen Clients ermitteln
-            Vector<String> sendList = clients.getClientNameList();
             ChatPDU pdu = ChatPDU.createChatMessageEventPdu(userName, receivedPdu);
+            // Gemeinsamen Event-Rumpf nur einmal kodieren, je Empfaenger wird nur der
+            // User-Name vorangestellt
+            EncodedPdu event = new EncodedPdu(pdu);
 
-            // Event an Clients senden
-            for (String s : new Vector<String>(sendList)) {
+            // Event an Clients senden (die Mitgliederliste ist unveraenderlich)
+            for (String s : sendList) {
                 client = clients.getClient(s);
                 try {
                     if ((client != null)
                             && (client.getStatus() != ClientConversationStatus.UNREGISTERED)) {
-                        pdu.setUserName(client.getUserName());
-                        client.getConnection().send(pdu);
+                        client.getConnection().send(event, client.getUserName());
                         log.debug("Chat-Event-PDU an " + client.getUserName() + " gesendet");
                         clients.incrNumberOfSentChatEvents(client.getUserName());
                         eventCounter.getAndIncrement();
@@ -332,7 +425,9 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
         try {
             clients.deleteWaitListEntry(receivedPdu.getEventUserName(), receivedPdu.getUserName());
             //log.debug(receivedPdu.getUserName() + " aus der Warteschlange entfernt");
-            if (clients.getWaitListSize(receivedPdu.getEventUserName()) == 0) {
+            // Nur die Logout-Warteliste (Kennung 0) pruefen, Wartelisten noch
+            // offener Chat-Requests zaehlen nicht mit
+            if (clients.getWaitListSize(receivedPdu.getEventUserName(), 0) == 0) {
                 sendLogoutResponse(receivedPdu.getEventUserName());
                 // Worker-Thread des Clients, der den Logout-Request gesendet
                 // hat, auch gleich zum Beenden markieren
@@ -351,38 +446,168 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
      */
     private void chatMessageConfirmAction(ChatPDU receivedPdu) {
 
-        clients.incrNumberOfReceivedChatEventConfirms(receivedPdu.getEventUserName());
         confirmCounter.getAndIncrement();
         //log.debug("Chat Message Confirm PDU von " + receivedPdu.getEventUserName() + " für User " + receivedPdu.getUserName() + " empfangen.");
+        confirmChatMessageEvent(receivedPdu, receivedPdu.getEventUserName(),
+                receivedPdu.getSequenceNumber());
+    }
+
+    /**
+     * Ankommendes Sammel-Confirm verarbeiten: Alle bestaetigten Events werden wie
+     * einzelne Confirms ausgetragen, der Confirm-Zaehler nur einmal erhoeht
+     * @param receivedPdu Sammel-Confirm-PDU
+     */
+    private void chatMessageConfirmBatchAction(ChatPDU receivedPdu) {
+
+        int size = receivedPdu.getNumberOfConfirmedEvents();
+        confirmCounter.getAndAdd(size);
+        //log.debug("Sammel-Confirm mit " + size + " Confirms von " + receivedPdu.getUserName() + " empfangen.");
+        for (int i = 0; i < size; i++) {
+            confirmChatMessageEvent(receivedPdu, receivedPdu.getConfirmedEventUserName(i),
+                    receivedPdu.getConfirmedSequenceNumber(i));
+        }
+    }
+
+    /**
+     * Confirm eines Chat-Events aus der Warteliste austragen und ggf. Response senden
+     * @param receivedPdu Confirm- bzw. Sammel-Confirm-PDU
+     * @param eventUserName Absender des bestaetigten Events
+     * @param sequenceNumber Sequenznummer des bestaetigten Events
+     */
+    private void confirmChatMessageEvent(ChatPDU receivedPdu, String eventUserName,
+                                         long sequenceNumber) {
 
+        clients.incrNumberOfReceivedChatEventConfirms(eventUserName);
         try {
-            clients.deleteWaitListEntry(receivedPdu.getEventUserName(), receivedPdu.getUserName());
-            if (clients.getWaitListSize(receivedPdu.getEventUserName()) == 0) {
-                ClientListEntry cl = clients.getClient(receivedPdu.getEventUserName());
-                if (cl != null) {
-                    ChatPDU responsePdu = ChatPDU.createChatMessageResponsePdu(
-                            receivedPdu.getUserName(), 0, 0, 0, 0,
-                            cl.getNumberOfReceivedChatMessages(), receivedPdu.getClientThreadName(),
-                            (System.nanoTime() - cl.getStartTime()));
-
-                    if (responsePdu.getServerTime() / 1000000 > 100) {
-                        //log.debug(Thread.currentThread().getName()+ ", Benoetigte Serverzeit vor dem Senden der Response-Nachricht > 100 ms: "+ responsePdu.getServerTime() + " ns = "+ responsePdu.getServerTime() / 1000000 + " ms");
-                    }
+            // Ankunftszeit des Requests vor dem Austragen ermitteln, da die
+            // Warteliste mit dem letzten Confirm entfernt wird
+            long requestStartTime = clients.getRequestStartTime(eventUserName, sequenceNumber);
+
+            // Response nur fuer das Confirm senden, mit dem die Warteliste leer wird
+            if (clients.deleteWaitListEntry(eventUserName, sequenceNumber,
+                    receivedPdu.getUserName())) {
+                waitListCompleted(eventUserName, sequenceNumber, requestStartTime,
+                        receivedPdu.getClientThreadName());
+            }
+        } catch (Exception e) {
+            ExceptionHandler.logException(e);
+        }
+    }
 
-                    try {
-                        cl.getConnection().send(responsePdu);
-                        //log.debug("Chat-Message-Response-PDU an " + receivedPdu.getUserName() + " gesendet");
-                    } catch (Exception e) {
-                        //log.debug("Senden einer Chat-Message-Response-PDU an " + cl.getUserName()+ " nicht moeglich");
-                        ExceptionHandler.logExceptionAndTerminate(e);
-                    }
-                }
+    /**
+     * Von der Verbindung dieses Clients verworfenes Event wie ein Confirm des
+     * Clients austragen, der Client erhaelt und bestaetigt es nie. Laeuft im Thread
+     * des Senders.
+     * @param pdu verworfenes Event
+     */
+    @Override
+    public void pduDropped(EncodedPdu pdu) {
+
+        ChatPDU event = pdu.getPdu();
+        String recipient = userName;
+        long eventId;
+        switch (event.getPduType()) {
+            case CHAT_MESSAGE_EVENT:
+                eventId = event.getSequenceNumber();
+                break;
+            case LOGIN_EVENT:
+            case LOGOUT_EVENT:
+                eventId = 0;
+                break;
+            default:
+                return;
+        }
+        if (recipient == null) {
+            return;
+        }
+        //log.debug(event.getPduType() + " von " + event.getEventUserName() + " fuer " + recipient + " verworfen");
+        try {
+            long requestStartTime = clients.getRequestStartTime(event.getEventUserName(),
+                    eventId);
+            if (clients.deleteWaitListEntry(event.getEventUserName(), eventId, recipient)) {
+                waitListCompleted(event.getEventUserName(), eventId, requestStartTime,
+                        event.getClientThreadName());
             }
         } catch (Exception e) {
             ExceptionHandler.logException(e);
         }
     }
 
+    /**
+     * Warteliste eines Events ist vollstaendig: Response an den Initiator senden
+     * @param eventUserName Initiator des Events
+     * @param eventId Kennung des Events (Sequenznummer, 0: Login bzw. Logout)
+     * @param requestStartTime Ankunftszeit des Requests (System.nanoTime)
+     * @param clientThreadName Name des Client-Threads fuer die Response
+     */
+    private void waitListCompleted(String eventUserName, long eventId,
+                                   long requestStartTime, String clientThreadName) {
+
+        ClientListEntry client = clients.getClient(eventUserName);
+        if (client == null) {
+            return;
+        }
+        if (eventId != 0) {
+            sendChatMessageResponse(client, clientThreadName, eventId, requestStartTime);
+        } else if (client.getStatus() == ClientConversationStatus.REGISTERING) {
+            sendLoginResponse(client, clientThreadName);
+        } else if (client.getStatus() == ClientConversationStatus.UNREGISTERING) {
+            sendLogoutResponse(eventUserName);
+            clients.finish(eventUserName);
+        }
+    }
+
+    /**
+     * Chat-Message-Response an den Client senden, der die Chat-Nachricht gesendet hat
+     * @param cl Eintrag des Clients, null: Client nicht mehr angemeldet
+     * @param clientThreadName Name des Client-Threads fuer die Response
+     * @param sequenceNumber Sequenznummer des beantworteten Requests
+     * @param requestStartTime Ankunftszeit des Requests (System.nanoTime)
+     */
+    private void sendChatMessageResponse(ClientListEntry cl, String clientThreadName,
+                                         long sequenceNumber, long requestStartTime) {
+        if (cl == null) {
+            return;
+        }
+        ChatPDU responsePdu = ChatPDU.createChatMessageResponsePdu(
+                cl.getUserName(), 0, 0, 0, 0,
+                cl.getNumberOfReceivedChatMessages(), clientThreadName,
+                (System.nanoTime() - requestStartTime));
+
+        // Response ueber die Sequenznummer dem Request zuordnen, bei
+        // Pipelining sind mehrere Requests des Clients offen
+        responsePdu.setSequenceNumber(sequenceNumber);
+
+        if (responsePdu.getServerTime() / 1000000 > 100) {
+            //log.debug(Thread.currentThread().getName()+ ", Benoetigte Serverzeit vor dem Senden der Response-Nachricht > 100 ms: "+ responsePdu.getServerTime() + " ns = "+ responsePdu.getServerTime() / 1000000 + " ms");
+        }
+
+        try {
+            cl.getConnection().send(responsePdu);
+            //log.debug("Chat-Message-Response-PDU an " + receivedPdu.getUserName() + " gesendet");
+        } catch (Exception e) {
+            //log.debug("Senden einer Chat-Message-Response-PDU an " + cl.getUserName()+ " nicht moeglich");
+            ExceptionHandler.logException(e);
+            abortSession(cl);
+        }
+    }
+
+    /**
+     * Session eines Clients abbauen, an den nicht mehr gesendet werden kann (z.B.
+     * Verbindung wegen voller Ausgangswarteschlange abgebaut). Das Schliessen der
+     * Verbindung beendet den Empfang im Worker-Thread bzw. Event-Loop des Clients,
+     * der dann die Clientliste bereinigt. Die uebrigen Sessions laufen weiter.
+     * @param cl Eintrag des Clients
+     */
+    private void abortSession(ClientListEntry cl) {
+        //log.debug("Session von " + cl.getUserName() + " wird abgebaut");
+        try {
+            cl.getConnection().close();
+        } catch (Exception e) {
+            // Ignorieren, Verbindung ist bereits abgebaut
+        }
+    }
+
     /**
      * Ankommende Chat Message Confirm PDU verarbeiten und ggf. Response senden
      * @param receivedPdu the pdu of the eventinitiator
@@ -394,30 +619,44 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
         //log.debug("Login Confirm PDU von " + receivedPdu.getEventUserName() + " für User " + receivedPdu.getUserName() + " empfangen.");
 
         try {
-            clients.deleteWaitListEntry(receivedPdu.getEventUserName(), receivedPdu.getUserName());
+            boolean complete = clients.deleteWaitListEntry(receivedPdu.getEventUserName(),
+                    receivedPdu.getUserName());
             //log.debug(receivedPdu.getUserName() + " aus der Warteschlange entfernt");
-            if (clients.getClient(receivedPdu.getEventUserName()).getStatus() == ClientConversationStatus.REGISTERING) {
-                if (clients.getWaitListSize(receivedPdu.getEventUserName()) == 0) {
-                    ChatPDU responsePdu = ChatPDU.createLoginResponsePdu(receivedPdu.getEventUserName(), receivedPdu);
-
-                    try {
-                        clients.getClient(receivedPdu.getEventUserName()).getConnection().send(responsePdu);
-                    } catch (Exception e) {
-                        //log.debug("Senden einer Login-Response-PDU an " + receivedPdu.getEventUserName() + " fehlgeschlagen");
-                        //log.debug("Exception Message: " + e.getMessage());
-                    }
-
-                    //log.debug("Login-Response-PDU an Client " + receivedPdu.getEventUserName() + " gesendet");
-
-                    // Zustand des Clients aendern
-                    clients.changeClientStatus(receivedPdu.getEventUserName(), ClientConversationStatus.REGISTERED);
-                }
+            ClientListEntry client = clients.getClient(receivedPdu.getEventUserName());
+            if (complete && (client != null)
+                    && (client.getStatus() == ClientConversationStatus.REGISTERING)) {
+                sendLoginResponse(client, receivedPdu.getClientThreadName());
             }
         } catch (Exception e) {
             ExceptionHandler.logException(e);
         }
     }
 
+    /**
+     * Login-Response mit der vollstaendigen Userliste senden, nachdem alle Clients
+     * das Login-Event bestaetigt haben
+     * @param client Eintrag des angemeldeten Clients
+     * @param clientThreadName Name des Client-Threads fuer die Response
+     */
+    private void sendLoginResponse(ClientListEntry client, String clientThreadName) {
+
+        ChatPDU responsePdu = ChatPDU.createLoginResponsePdu(client.getUserName(),
+                clientThreadName);
+        clients.setUserListSnapshot(responsePdu);
+
+        try {
+            client.getConnection().send(responsePdu);
+        } catch (Exception e) {
+            //log.debug("Senden einer Login-Response-PDU an " + client.getUserName() + " fehlgeschlagen");
+            //log.debug("Exception Message: " + e.getMessage());
+        }
+
+        //log.debug("Login-Response-PDU an Client " + client.getUserName() + " gesendet");
+
+        // Zustand des Clients aendern
+        clients.changeClientStatus(client.getUserName(), ClientConversationStatus.REGISTERED);
+    }
+
     /**
      * Verbindung zu einem Client ordentlich abbauen
      */
@@ -430,8 +669,16 @@ public class AdvancedChatWorkerThreadImpl extends AbstractWorkerThread {
         if (clients.existsClient(userName)) {
             //log.debug("Close Connection fuer " + userName+ ", Laenge der Clientliste vor dem bedingungslosen Loeschen: "+ clients.size());
 
-            clients.deleteClientWithoutCondition(userName);
+            List<SharedChatClientList.CompletedWaitList> completed = clients
+                    .deleteClientWithoutCondition(userName);
             //log.debug("Laenge der Clientliste nach dem bedingungslosen Loeschen von " + userName+ ": " + clients.size());
+
+            // Der Client bestaetigt keine Events mehr, Initiatoren, die nur noch auf
+            // ihn gewartet haben, erhalten jetzt ihre Response
+            for (SharedChatClientList.CompletedWaitList waitList : completed) {
+                waitListCompleted(waitList.getUserName(), waitList.getEventId(),
+                        waitList.getRequestStartTime(), null);
+            }
         }
 
         try {
@@ -0,0 +1,102 @@
+package edu.hm.dako.chat.server;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.PropertyConfigurator;
+
+import edu.hm.dako.chat.common.CommandLineParameters;
+import edu.hm.dako.chat.common.ExceptionHandler;
+
+/**
+ * Start des Chat-Servers ohne grafische Oberflaeche, z.B. fuer Lasttests auf
+ * Rechnern ohne Bildschirm.
+ *
+ * Aufruf: ChatServerCLI [Konfigurationsdatei] [Parameter=Wert ...]
+ *
+ * Die Parameter werden zuerst aus der Konfigurationsdatei (Properties-Format,
+ * Standard: chatserver.properties, falls vorhanden) gelesen und koennen auf der
+ * Kommandozeile ueberschrieben werden. Die Schluessel entsprechen den Attributen
+ * von {@link ServerConfiguration}, zusaetzlich gibt statisticsInterval den
+ * Abstand der Statistikausgaben in Sekunden an (0 = keine Ausgabe).
+ *
+ * Der Server laeuft, bis der Prozess beendet wird (z.B. SIGTERM oder Strg-C),
+ * und wird dann ordentlich gestoppt.
+ *
+ * @author Peter Mandl
+ */
+public class ChatServerCLI {
+
+	private static Log log = LogFactory.getLog(ChatServerCLI.class);
+
+	// Standard-Konfigurationsdatei
+	private static final String DEFAULT_CONFIG_FILE = "chatserver.properties";
+
+	public static void main(String[] args) {
+		PropertyConfigurator.configureAndWatch("log4j.server.properties", 60 * 1000);
+
+		Properties props = new Properties();
+		try {
+			CommandLineParameters.read(args, DEFAULT_CONFIG_FILE, props);
+		} catch (Exception e) {
+			System.out.println("Fehler beim Lesen der Parameter: " + e.getMessage());
+			System.exit(1);
+		}
+
+		ServerConfiguration config = new ServerConfiguration();
+		int statisticsInterval;
+		try {
+			config.applyProperties(props);
+			statisticsInterval = Integer
+					.parseInt(props.getProperty("statisticsInterval", "0").trim());
+		} catch (IllegalArgumentException e) {
+			System.out.println("Ungueltiger Parameter: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		final CountingServerGui monitor = new CountingServerGui();
+		final ChatServerInterface chatServer;
+		try {
+			chatServer = ServerFactory.getServer(config, monitor);
+		} catch (Exception e) {
+			System.out.println(
+					"Der Server konnte nicht gestartet werden, evtl. laeuft ein anderer Server mit dem Port");
+			ExceptionHandler.logException(e);
+			System.exit(1);
+			return;
+		}
+
+		final CountDownLatch stopped = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread("ShutdownHook") {
+			@Override
+			public void run() {
+				try {
+					chatServer.stop();
+				} catch (Exception e) {
+					ExceptionHandler.logException(e);
+				}
+				System.out.println(monitor);
+				stopped.countDown();
+			}
+		});
+
+		System.out.println("ChatServer ohne GUI gestartet: " + config);
+		chatServer.start();
+
+		try {
+			if (statisticsInterval > 0) {
+				while (!stopped.await(statisticsInterval, TimeUnit.SECONDS)) {
+					System.out.println(monitor);
+				}
+			} else {
+				stopped.await();
+			}
+		} catch (InterruptedException e) {
+			// Prozess wird beendet
+		}
+	}
+}
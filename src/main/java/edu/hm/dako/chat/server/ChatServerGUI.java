@@ -2,12 +2,14 @@ package edu.hm.dako.chat.server;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.PropertyConfigurator;
 
+import edu.hm.dako.chat.common.CodecType;
 import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.common.ImplementationType;
 import edu.hm.dako.chat.common.SystemConstants;
@@ -74,6 +76,12 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 	// Combobox fuer Eingabe des Implementierungstyps
 	private ComboBox<String> comboBoxImplType;
 
+	// Combobox fuer Eingabe der PDU-Kodierung
+	private ComboBox<String> comboBoxCodecType;
+
+	// Combobox fuer Auswahl der Thread-Art fuer die Worker
+	private ComboBox<String> comboBoxWorkerThreads;
+
 	// Testfelder, Buttons und Labels der ServerGUI
 
 	private TextField startTimeField;
@@ -94,12 +102,27 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 	private static AtomicInteger loggedInClientCounter;
 	private static AtomicInteger requestCounter;
 
+	// Kennzeichen, dass eine Aktualisierung des jeweiligen Feldes bereits beim
+	// GUI-Thread angemeldet ist. Weitere Aenderungen bis zu deren Ausfuehrung
+	// werden damit zusammengefasst.
+	private final AtomicBoolean loggedInClientsUpdatePending = new AtomicBoolean(false);
+	private final AtomicBoolean requestsUpdatePending = new AtomicBoolean(false);
+
 	// Daten, die beim Start der GUI uebergeben werden
 	private ServerStartData data = new ServerStartData();
 
 	// Moegliche Belegungen des Implementierungsfeldes in der GUI
 	ObservableList<String> implTypeOptions = FXCollections.observableArrayList(
-			SystemConstants.IMPL_TCP_ADVANCED, SystemConstants.IMPL_TCP_SIMPLE);
+			SystemConstants.IMPL_TCP_ADVANCED, SystemConstants.IMPL_TCP_SIMPLE,
+			SystemConstants.IMPL_TCP_NIO, SystemConstants.IMPL_UDP_ADVANCED);
+
+	// Moegliche Belegungen des Kodierungsfeldes in der GUI
+	ObservableList<String> codecTypeOptions = FXCollections.observableArrayList(
+			SystemConstants.CODEC_SERIALIZATION, SystemConstants.CODEC_BINARY);
+
+	// Moegliche Belegungen des Feldes fuer die Worker-Threads in der GUI
+	ObservableList<String> workerThreadOptions = FXCollections.observableArrayList(
+			SystemConstants.WORKER_PLATFORM_THREADS, SystemConstants.WORKER_VIRTUAL_THREADS);
 
 	/**
 	 * Konstruktion der ServerGUI
@@ -122,7 +145,7 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 	public void start(final Stage stage) throws Exception {
 
 		stage.setTitle("ChatServerGUI");
-		stage.setScene(new Scene(pane, 335, 350));
+		stage.setScene(new Scene(pane, 335, 375));
 		stage.show();
 
 		pane.setStyle("-fx-background-color: cornsilk");
@@ -163,6 +186,8 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 		inputPane.setVgap(1);
 
 		comboBoxImplType = createComboBox(implTypeOptions);
+		comboBoxCodecType = createComboBox(codecTypeOptions);
+		comboBoxWorkerThreads = createComboBox(workerThreadOptions);
 		serverPort = createEditableTextfield(DEFAULT_SERVER_PORT);
 		sendBufferSize = createEditableTextfield(DEFAULT_SENDBUFFER_SIZE);
 		receiveBufferSize = createEditableTextfield(DEFAULT_RECEIVEBUFFER_SIZE);
@@ -175,6 +200,10 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 		inputPane.add(sendBufferSize, 3, 7);
 		inputPane.add(receiveBufferSizeLabel, 1, 9);
 		inputPane.add(receiveBufferSize, 3, 9);
+		inputPane.add(createLabel("Kodierung"), 1, 11);
+		inputPane.add(comboBoxCodecType, 3, 11);
+		inputPane.add(createLabel("Worker-Threads"), 1, 13);
+		inputPane.add(comboBoxWorkerThreads, 3, 13);
 
 		return inputPane;
 	}
@@ -413,6 +442,28 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 
 	}
 
+	/**
+	 * Kodierung aus GUI auslesen
+	 */
+	private CodecType readCodecComboBox() {
+
+		if (comboBoxCodecType.getValue().equals(SystemConstants.CODEC_BINARY)) {
+			return CodecType.Binary;
+		}
+		return CodecType.JavaSerialization;
+	}
+
+	/**
+	 * Thread-Art fuer die Worker aus GUI auslesen
+	 * 
+	 * @return true, wenn virtuelle Threads gewaehlt sind
+	 */
+	private boolean readWorkerThreadComboBox() {
+
+		return comboBoxWorkerThreads.getValue()
+				.equals(SystemConstants.WORKER_VIRTUAL_THREADS);
+	}
+
 	/**
 	 * Chat-Server starten
 	 * 
@@ -433,11 +484,22 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 			serverImpl = ImplementationType.TCPAdvancedImplementation;
 		} else if (implType.equals(SystemConstants.IMPL_TCP_SIMPLE)) {
 			serverImpl = ImplementationType.TCPSimpleImplementation;
+		} else if (implType.equals(SystemConstants.IMPL_TCP_NIO)) {
+			serverImpl = ImplementationType.TCPNioImplementation;
+		} else if (implType.equals(SystemConstants.IMPL_UDP_ADVANCED)) {
+			serverImpl = ImplementationType.UDPAdvancedImplementation;
 		}
 
+		ServerConfiguration config = new ServerConfiguration();
+		config.setImplementationType(serverImpl);
+		config.setServerPort(serverPort);
+		config.setSendBufferSize(sendBufferSize);
+		config.setReceiveBufferSize(receiveBufferSize);
+		config.setCodecType(readCodecComboBox());
+		config.setVirtualThreads(readWorkerThreadComboBox());
+
 		try {
-			chatServer = ServerFactory.getServer(serverImpl, serverPort, sendBufferSize,
-					receiveBufferSize, this);
+			chatServer = ServerFactory.getServer(config, this);
 		} catch (Exception e) {
 			//log.error("Fehler beim Starten des Chat-Servers: " + e.getMessage());
 			ExceptionHandler.logException(e);
@@ -535,6 +597,9 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 	 */
 	private void updateLoggedInClients() {
 
+		if (!loggedInClientsUpdatePending.compareAndSet(false, true)) {
+			return;
+		}
 		Platform.runLater(new Runnable() {
 
 			@Override
@@ -543,6 +608,7 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 				//log.debug("runLater: run-Methode wird ausgefuehrt");
 				//log.debug("runLater: Logged in Clients: "+ String.valueOf(loggedInClientCounter.get()));
 
+				loggedInClientsUpdatePending.set(false);
 				loggedInClients.setText(String.valueOf(loggedInClientCounter.get()));
 			}
 		});
@@ -554,6 +620,9 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 	 */
 	private void updateNumberOfRequests() {
 
+		if (!requestsUpdatePending.compareAndSet(false, true)) {
+			return;
+		}
 		Platform.runLater(new Runnable() {
 
 			@Override
@@ -562,6 +631,7 @@ public class ChatServerGUI extends Application implements ChatServerGuiInterface
 				//log.debug("runLater: run-Methode wird ausgefuehrt");
 				//log.debug("runLater: Received Requests: " + String.valueOf(requestCounter.get()));
 
+				requestsUpdatePending.set(false);
 				receivedRequests.setText(String.valueOf(requestCounter.get()));
 			}
 		});
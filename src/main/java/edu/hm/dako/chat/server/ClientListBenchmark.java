@@ -0,0 +1,268 @@
+package edu.hm.dako.chat.server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.hm.dako.chat.common.ClientConversationStatus;
+import edu.hm.dako.chat.common.ClientListEntry;
+
+/**
+ * Testklasse fuer einen Durchsatztest der Clientliste. Je Worker-Thread wird ein
+ * eigener Client angelegt, auf dem die bei Chat-Events und Confirms typischen
+ * Zugriffe (Lesen, Zaehler erhoehen, Warteliste pflegen) ausgefuehrt werden. Die
+ * Ausgabe zeigt den Durchsatz je Anzahl an Worker-Threads.
+ * <p/>
+ * Zum Vergleich wird jede Thread-Anzahl zusaetzlich mit einem globalen Monitor um
+ * jeden Zugriff gemessen, wie ihn die Clientliste frueher verwendet hat. Nur der
+ * Vergleich beider Varianten auf einem Rechner mit mindestens so vielen Kernen
+ * wie Threads zeigt, ob die sperrfreie Liste skaliert; bei weniger Kernen wird
+ * ein Hinweis ausgegeben.
+ * <p/>
+ * Wie bei JMH laufen je Messung zunaechst Aufwaermiterationen (JIT-Uebersetzung),
+ * deren Ergebnisse verworfen werden, danach die Messiterationen. Jede Messung
+ * laeuft standardmaessig in einer eigenen JVM (Fork), damit Profilinformationen
+ * des JIT-Compilers aus vorherigen Messungen das Ergebnis nicht beeinflussen.
+ * <p/>
+ * Aufruf: ClientListBenchmark [maxThreads] [Iterationsdauer in ms]
+ * [Aufwaermiterationen] [Messiterationen] [Forks, 0 = ohne eigene JVM]
+ *
+ * @author mandl
+ */
+public class ClientListBenchmark {
+
+	// Kennung fuer den Aufruf einer einzelnen Messung in einer eigenen JVM
+	private static final String SINGLE = "-single";
+
+	// Kennung der Ergebniszeilen einer einzelnen Messung
+	private static final String RESULT = "RESULT ";
+
+	public static void main(String[] args) throws Exception {
+
+		if ((args.length > 0) && SINGLE.equals(args[0])) {
+			runSingle(Integer.parseInt(args[1]), Boolean.parseBoolean(args[2]),
+					Long.parseLong(args[3]), Integer.parseInt(args[4]),
+					Integer.parseInt(args[5]));
+			return;
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : cores;
+		long iterationMillis = (args.length > 1) ? Long.parseLong(args[1]) : 1000;
+		int warmupIterations = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+		int measurementIterations = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+		int forks = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
+
+		System.out.println("Clientliste: " + cores + " Kerne, " + warmupIterations
+				+ " Aufwaermiterationen, " + measurementIterations + " Messiterationen zu "
+				+ iterationMillis + " ms, " + ((forks > 0) ? forks + " Forks" : "ohne Fork"));
+		if (maxThreads > cores) {
+			System.out.println("Hinweis: Mehr Threads als Kerne, ab " + (cores + 1)
+					+ " Threads ist keine Aussage zur Skalierung moeglich");
+		}
+		System.out.println("Threads;Variante;Operationen/s;Standardabweichung;Minimum;"
+				+ "Maximum;Beschleunigung;Sperrfrei/Global");
+
+		double lockFreeBase = 0;
+		double globalLockBase = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double[] lockFree = measure(threads, false, iterationMillis, warmupIterations,
+					measurementIterations, forks);
+			double[] globalLock = measure(threads, true, iterationMillis, warmupIterations,
+					measurementIterations, forks);
+			if (threads == 1) {
+				lockFreeBase = mean(lockFree);
+				globalLockBase = mean(globalLock);
+			}
+			print(threads, "sperrfrei", lockFree, lockFreeBase, mean(lockFree) / mean(globalLock));
+			print(threads, "global", globalLock, globalLockBase, Double.NaN);
+		}
+	}
+
+	/**
+	 * Eine Thread-Anzahl und Variante messen, je Fork in einer eigenen JVM
+	 *
+	 * @return Durchsatz aller Messiterationen in Operationen/s
+	 */
+	private static double[] measure(int threads, boolean globalLock, long iterationMillis,
+			int warmupIterations, int measurementIterations, int forks) throws Exception {
+
+		if (forks <= 0) {
+			return runIterations(threads, globalLock, iterationMillis, warmupIterations,
+					measurementIterations);
+		}
+
+		List<Double> results = new ArrayList<Double>();
+		for (int fork = 0; fork < forks; fork++) {
+			ProcessBuilder builder = new ProcessBuilder(
+					System.getProperty("java.home") + File.separator + "bin" + File.separator
+							+ "java",
+					"-cp", System.getProperty("java.class.path"),
+					ClientListBenchmark.class.getName(), SINGLE, String.valueOf(threads),
+					String.valueOf(globalLock), String.valueOf(iterationMillis),
+					String.valueOf(warmupIterations), String.valueOf(measurementIterations));
+			builder.redirectErrorStream(true);
+			Process process = builder.start();
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(process.getInputStream()));
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(RESULT)) {
+					results.add(Double.parseDouble(line.substring(RESULT.length())));
+				} else {
+					System.out.println(line);
+				}
+			}
+			in.close();
+			if (process.waitFor() != 0) {
+				throw new IllegalStateException("Fork mit Exit-Code " + process.exitValue()
+						+ " beendet");
+			}
+		}
+
+		double[] values = new double[results.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = results.get(i);
+		}
+		return values;
+	}
+
+	/**
+	 * Einzelne Messung in einer eigenen JVM, gibt je Messiteration eine
+	 * Ergebniszeile aus
+	 */
+	private static void runSingle(int threads, boolean globalLock, long iterationMillis,
+			int warmupIterations, int measurementIterations) throws Exception {
+		for (double result : runIterations(threads, globalLock, iterationMillis,
+				warmupIterations, measurementIterations)) {
+			System.out.println(RESULT + result);
+		}
+	}
+
+	/**
+	 * Clientliste anlegen, Aufwaermiterationen verwerfen und Messiterationen
+	 * ausfuehren
+	 *
+	 * @return Durchsatz je Messiteration in Operationen/s
+	 */
+	private static double[] runIterations(int threads, boolean globalLock,
+			long iterationMillis, int warmupIterations, int measurementIterations)
+			throws InterruptedException {
+
+		SharedChatClientList clients = SharedChatClientList.getInstance();
+		clients.deleteAll();
+		for (int i = 0; i < threads; i++) {
+			ClientListEntry entry = new ClientListEntry("user" + i, null);
+			entry.setStatus(ClientConversationStatus.REGISTERED);
+			clients.createClient("user" + i, entry);
+		}
+
+		// Aufwaermen, damit der JIT-Compiler die Zugriffe uebersetzt hat
+		for (int i = 0; i < warmupIterations; i++) {
+			run(clients, threads, globalLock, iterationMillis);
+		}
+
+		double[] results = new double[measurementIterations];
+		for (int i = 0; i < measurementIterations; i++) {
+			results[i] = run(clients, threads, globalLock, iterationMillis) * 1000.0
+					/ iterationMillis;
+		}
+		clients.deleteAll();
+		return results;
+	}
+
+	/**
+	 * Fuehrt die Zugriffe mit der angegebenen Anzahl an Threads fuer eine feste
+	 * Zeitdauer aus
+	 *
+	 * @param globalLock
+	 *          true: Jeden Zugriff unter einem gemeinsamen Monitor ausfuehren
+	 * @return Anzahl ausgefuehrter Operationen
+	 */
+	private static long run(final SharedChatClientList clients, int threads,
+			final boolean globalLock, final long durationMillis) throws InterruptedException {
+
+		final Object monitor = new Object();
+		final AtomicLong operations = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+
+		for (int i = 0; i < threads; i++) {
+			final String userName = "user" + i;
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long count = 0;
+					long end = System.nanoTime() + durationMillis * 1000000L;
+					while (System.nanoTime() < end) {
+						for (int j = 0; j < 100; j++) {
+							if (globalLock) {
+								synchronized (monitor) {
+									access(clients, userName, j);
+								}
+							} else {
+								access(clients, userName, j);
+							}
+						}
+						count += 100;
+					}
+					operations.addAndGet(count);
+					done.countDown();
+				}
+			});
+			t.start();
+		}
+		start.countDown();
+		done.await();
+		return operations.get();
+	}
+
+	/**
+	 * Zugriffe eines Chat-Events samt Confirm auf die Clientliste
+	 */
+	private static void access(SharedChatClientList clients, String userName, int j) {
+		if (clients.existsClient(userName)
+				&& clients.getClientStatus(userName) == ClientConversationStatus.REGISTERED) {
+			clients.incrNumberOfReceivedChatMessages(userName);
+			clients.incrNumberOfSentChatEvents(userName);
+			clients.createWaitList(userName, j);
+			clients.incrNumberOfReceivedChatEventConfirms(userName);
+			clients.deleteWaitListEntry(userName, j, userName);
+		}
+	}
+
+	private static void print(int threads, String variant, double[] values, double base,
+			double ratio) {
+		double mean = mean(values);
+		double min = Double.MAX_VALUE;
+		double max = 0;
+		double sumSquares = 0;
+		for (double value : values) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			sumSquares += (value - mean) * (value - mean);
+		}
+		double stddev = (values.length > 1) ? Math.sqrt(sumSquares / (values.length - 1)) : 0;
+		System.out.println(String.format(Locale.ROOT, "%d;%s;%.0f;%.0f;%.0f;%.0f;%.2f;%s",
+				threads, variant, mean, stddev, min, max, mean / base,
+				Double.isNaN(ratio) ? "" : String.format(Locale.ROOT, "%.2f", ratio)));
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0;
+		for (double value : values) {
+			sum += value;
+		}
+		return (values.length > 0) ? sum / values.length : 0;
+	}
+}
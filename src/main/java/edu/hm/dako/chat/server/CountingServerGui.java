@@ -0,0 +1,69 @@
+package edu.hm.dako.chat.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ersatz fuer die Server-GUI im Betrieb ohne Bildschirm. Die Aufrufe der
+ * Worker-Threads werden nur in Zaehlern aufsummiert, die bei Bedarf
+ * ausgegeben werden.
+ *
+ * @author Peter Mandl
+ */
+public class CountingServerGui implements ChatServerGuiInterface {
+
+	// Aktuell angemeldete Clients
+	private final AtomicInteger loggedInClients = new AtomicInteger(0);
+
+	// Insgesamt angemeldete Clients
+	private final AtomicLong logins = new AtomicLong(0);
+
+	// Empfangene Chat-Requests
+	private final AtomicLong requests = new AtomicLong(0);
+
+	// Startdaten des Servers
+	private volatile ServerStartData startData;
+
+	@Override
+	public void showStartData(ServerStartData data) {
+		startData = data;
+	}
+
+	@Override
+	public void incrNumberOfLoggedInClients() {
+		loggedInClients.incrementAndGet();
+		logins.incrementAndGet();
+	}
+
+	@Override
+	public void decrNumberOfLoggedInClients() {
+		loggedInClients.decrementAndGet();
+	}
+
+	@Override
+	public void incrNumberOfRequests() {
+		requests.incrementAndGet();
+	}
+
+	public int getNumberOfLoggedInClients() {
+		return loggedInClients.get();
+	}
+
+	public long getNumberOfLogins() {
+		return logins.get();
+	}
+
+	public long getNumberOfRequests() {
+		return requests.get();
+	}
+
+	public ServerStartData getStartData() {
+		return startData;
+	}
+
+	@Override
+	public String toString() {
+		return "Angemeldete Clients: " + loggedInClients.get() + ", Logins gesamt: "
+				+ logins.get() + ", empfangene Requests: " + requests.get();
+	}
+}
@@ -0,0 +1,186 @@
+package edu.hm.dako.chat.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.common.ExceptionHandler;
+
+/**
+ * Beendet Sessions, von deren Client laenger als die eingestellte Leerlaufzeit
+ * keine PDU (auch kein Heartbeat) angekommen ist.
+ * <p/>
+ * Die Sessions werden in einem Zeitrad verwaltet: Jedes Fach des Rads steht
+ * fuer einen Takt, eine Session liegt in dem Fach, in dem ihre Leerlaufzeit
+ * fruehestens ablaeuft. Der Reaper-Thread bearbeitet je Takt nur ein Fach. Der
+ * Empfang einer PDU setzt lediglich den Zeitpunkt der letzten Aktivitaet in der
+ * Session, erst beim Ablauf ihres Fachs wird die Session neu einsortiert oder,
+ * wenn sie seither still war, beendet.
+ * <p/>
+ * Der Reaper-Thread wird erst mit {@link #start()} erzeugt und gestartet, damit
+ * er kein unvollstaendig initialisiertes Objekt sieht.
+ *
+ * @author Mandl
+ */
+public class IdleSessionReaper implements Runnable {
+
+	private static Log log = LogFactory.getLog(IdleSessionReaper.class);
+
+	// Anzahl Takte, in die die Leerlaufzeit eingeteilt wird
+	private static final int TICKS_PER_TIMEOUT = 10;
+
+	// Leerlaufzeit und Taktdauer in ns
+	private final long idleTimeoutNanos;
+	private final long tickNanos;
+
+	// Faecher des Zeitrads, Zugriff nur unter der Sperre des Reapers
+	private final List<List<AbstractWorkerThread>> wheel;
+
+	// Nummer des naechsten zu bearbeitenden Takts
+	private long nextTick;
+
+	private volatile boolean running = true;
+
+	// Reaper-Thread, null bis zum Start
+	private Thread thread;
+
+	/**
+	 * @param idleTimeout
+	 *          Leerlaufzeit in ms, nach der eine stille Session beendet wird
+	 */
+	public IdleSessionReaper(int idleTimeout) {
+		if (idleTimeout <= 0) {
+			throw new IllegalArgumentException("Ungueltige Leerlaufzeit: " + idleTimeout);
+		}
+		idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		tickNanos = Math.max(1, idleTimeoutNanos / TICKS_PER_TIMEOUT);
+
+		// Ein Fach mehr als Takte je Leerlaufzeit, damit eine neu einsortierte
+		// Session nie im gerade bearbeiteten Fach landet
+		wheel = new ArrayList<List<AbstractWorkerThread>>(TICKS_PER_TIMEOUT + 2);
+		for (int i = 0; i < TICKS_PER_TIMEOUT + 2; i++) {
+			wheel.add(new ArrayList<AbstractWorkerThread>());
+		}
+		nextTick = Math.floorDiv(System.nanoTime(), tickNanos);
+	}
+
+	/**
+	 * Session zur Ueberwachung anmelden. Beendete Sessions werden beim naechsten
+	 * Durchlauf ihres Fachs entfernt, ein Abmelden ist nicht erforderlich.
+	 *
+	 * @param session
+	 *          Neue Session
+	 */
+	public void register(AbstractWorkerThread session) {
+		schedule(session, session.getLastActivity() + idleTimeoutNanos);
+	}
+
+	/**
+	 * Erzeugen und Starten des Reaper-Threads
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			throw new IllegalStateException("IdleSessionReaper bereits gestartet");
+		}
+		thread = new Thread(this, "IdleSessionReaper");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Beenden des Reaper-Threads
+	 */
+	public void stopThread() {
+		running = false;
+		Thread reaperThread;
+		synchronized (this) {
+			reaperThread = thread;
+		}
+		if (reaperThread != null) {
+			reaperThread.interrupt();
+		}
+	}
+
+	/**
+	 * Run-Methode fuer den Thread: Bearbeitet je Takt das faellige Fach
+	 */
+	@Override
+	public void run() {
+		//log.debug("IdleSessionReaper gestartet, Leerlaufzeit: " + idleTimeoutNanos + " ns");
+
+		while (running) {
+			long tick;
+			synchronized (this) {
+				tick = nextTick;
+			}
+			long sleepNanos = (tick + 1) * tickNanos - System.nanoTime();
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					//log.debug("Sleep unterbrochen");
+					continue;
+				}
+			}
+			expire(tick);
+		}
+	}
+
+	/**
+	 * Alle Sessions eines Fachs pruefen. Noch aktive Sessions werden fuer ihren
+	 * neuen Ablaufzeitpunkt einsortiert, stille Sessions werden ausserhalb der
+	 * Sperre beendet.
+	 *
+	 * @param tick
+	 *          Nummer des abgelaufenen Takts
+	 */
+	private void expire(long tick) {
+		List<AbstractWorkerThread> due;
+		synchronized (this) {
+			List<AbstractWorkerThread> slot = wheel.get(slotIndex(tick));
+			due = new ArrayList<AbstractWorkerThread>(slot);
+			slot.clear();
+			nextTick = tick + 1;
+		}
+
+		long now = System.nanoTime();
+		for (AbstractWorkerThread session : due) {
+			if (session.isFinished()) {
+				continue;
+			}
+			long deadline = session.getLastActivity() + idleTimeoutNanos;
+			if (deadline - now > 0) {
+				schedule(session, deadline);
+			} else {
+				//log.debug("Session ohne Aktivitaet seit " + (now - session.getLastActivity()) + " ns wird beendet");
+				try {
+					session.idleTimeout();
+				} catch (Exception e) {
+					ExceptionHandler.logException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Session in das Fach ihres Ablaufzeitpunkts einsortieren
+	 *
+	 * @param session
+	 *          Session
+	 * @param deadline
+	 *          Ablaufzeitpunkt (System.nanoTime)
+	 */
+	private synchronized void schedule(AbstractWorkerThread session, long deadline) {
+		// Nie vor dem naechsten zu bearbeitenden Takt einsortieren
+		long tick = Math.max(Math.floorDiv(deadline, tickNanos), nextTick);
+		wheel.get(slotIndex(tick)).add(session);
+	}
+
+	private int slotIndex(long tick) {
+		// System.nanoTime kann negativ sein
+		return (int) Math.floorMod(tick, (long) wheel.size());
+	}
+}
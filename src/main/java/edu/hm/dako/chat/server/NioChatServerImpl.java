@@ -0,0 +1,137 @@
+package edu.hm.dako.chat.server;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.ClientListEntry;
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.connection.LoggingMessageSenderDecorator;
+import edu.hm.dako.chat.connection.MessageHandler;
+import edu.hm.dako.chat.connection.MessageHandlerFactory;
+import edu.hm.dako.chat.connection.MessageSender;
+import edu.hm.dako.chat.tcp.NioTcpConnection;
+import edu.hm.dako.chat.tcp.NioTcpServerSocket;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Serializable;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chat-Server-Implementierung auf Basis von Java NIO. Statt eines Worker-Threads je
+ * Client bedient eine feste Anzahl von Event-Loops alle Verbindungen. Das Protokoll
+ * entspricht der Advanced-Variante; die Session-Logik des
+ * {@link AdvancedChatWorkerThreadImpl} wird ereignisgesteuert wiederverwendet.
+ * @author NONAME
+ */
+public class NioChatServerImpl extends AbstractChatServer {
+
+    /**
+     * the log data contains the info about the protocoll for debug purpose
+     */
+    private static Log log = LogFactory.getLog(NioChatServerImpl.class);
+
+    /**
+     * NIO-Socket samt Event-Loops
+     */
+    private final NioTcpServerSocket socket;
+
+    /**
+     * contains important infos about the whole server infrastructure
+     * @param socket NIO socket for listener and event loops
+     * @param serverGuiInterface The GUI for the server
+     */
+    public NioChatServerImpl(NioTcpServerSocket socket, ChatServerGuiInterface serverGuiInterface) {
+        //log.debug("NioChatServerImpl konstruiert");
+        this.socket = socket;
+        this.serverGuiInterface = serverGuiInterface;
+        counter = new SharedServerCounter();
+        counter.logoutCounter = new AtomicInteger(0);
+        counter.eventCounter = new AtomicInteger(0);
+        counter.confirmCounter = new AtomicInteger(0);
+    }
+
+    /**
+     * The method starts the server
+     */
+    @Override
+    public void start() {
+        // Clientliste erzeugen
+        clients = SharedChatClientList.getInstance();
+        startIdleSessionReaper();
+
+        System.out.println("NioChatServer wartet auf Verbindungsanfragen von Clients...");
+        socket.start(new MessageHandlerFactory() {
+            @Override
+            public MessageHandler createHandler(MessageSender connection) {
+                //log.debug("Neuer Verbindungsaufbauwunsch empfangen");
+                // Die Verbindung bietet kein receive an, die Session erhaelt ihre
+                // PDUs ausschliesslich ueber den SessionHandler
+                AdvancedChatWorkerThreadImpl session = new AdvancedChatWorkerThreadImpl(
+                        new LoggingMessageSenderDecorator(connection), clients, counter,
+                        serverGuiInterface);
+                if (connection instanceof NioTcpConnection) {
+                    // Verworfene Events traegt die Session aus den Wartelisten aus
+                    ((NioTcpConnection) connection).setDroppedPduHandler(session);
+                }
+                return new SessionHandler(watchIdleTime(session));
+            }
+        });
+    }
+
+    /**
+     *  the method shuts the server down
+     */
+    @Override
+    public void stop() throws Exception {
+
+        // Alle Verbindungen zu aktiven Clients abbauen
+        Vector<String> sendList = clients.getClientNameList();
+        for (String s : new Vector<String>(sendList)) {
+            ClientListEntry client = clients.getClient(s);
+            try {
+                if (client != null) {
+                    client.getConnection().close();
+                    //log.error("Verbindung zu Client " + client.getUserName() + " geschlossen");
+                }
+            } catch (Exception e) {
+                //log.debug("Fehler beim Schliessen der Verbindung zu Client " + client.getUserName());
+                ExceptionHandler.logException(e);
+            }
+        }
+
+        stopIdleSessionReaper();
+
+        // Loeschen der Userliste
+        clients.deleteAll();
+        socket.close();
+        //log.debug("NIO-Socket und Event-Loops geschlossen");
+
+        System.out.println("NioChatServer beendet sich");
+    }
+
+    /**
+     * Verbindet eine Verbindung des Event-Loops mit ihrer Session
+     */
+    private static class SessionHandler implements MessageHandler {
+
+        private final AdvancedChatWorkerThreadImpl session;
+
+        SessionHandler(AdvancedChatWorkerThreadImpl session) {
+            this.session = session;
+        }
+
+        @Override
+        public void handleMessage(Serializable message) throws Exception {
+            if (session.processReceivedPdu((ChatPDU) message)) {
+                //log.debug("Session beendet, Verbindung wird abgebaut");
+                session.sessionClosed();
+            }
+        }
+
+        @Override
+        public void connectionClosed() {
+            //log.debug("End of File beim Empfang, vermutlich Verbindungsabbau des Partners");
+            session.sessionClosed();
+        }
+    }
+}
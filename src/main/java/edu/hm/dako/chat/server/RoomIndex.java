@@ -0,0 +1,122 @@
+package edu.hm.dako.chat.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mitgliederverzeichnis der Chat-Raeume. Chat-Events werden nur an die
+ * Mitglieder des Raums verteilt, in den eine Nachricht gesendet wurde.
+ * <p/>
+ * Die Mitgliederliste eines Raums ist unveraenderlich und wird bei jedem Join
+ * bzw. Leave durch eine neue Liste ersetzt. Die Verteilung eines Chat-Events,
+ * die sehr viel haeufiger ist als ein Wechsel der Mitglieder, liest die Liste
+ * daher ohne Sperre und ohne Kopie. Aenderungen sperren ueber die
+ * ConcurrentHashMap nur den betroffenen Raum, Joins und Leaves verschiedener
+ * Raeume behindern sich nicht.
+ *
+ * @author Mandl
+ */
+public class RoomIndex {
+
+	private static final List<String> NO_MEMBERS = Collections.emptyList();
+
+	// Mitglieder je Raum
+	private final ConcurrentHashMap<String, List<String>> members = new ConcurrentHashMap<String, List<String>>();
+
+	// Raeume je Client, fuer das Austragen beim Loeschen des Clients
+	private final ConcurrentHashMap<String, Set<String>> roomsOfUser = new ConcurrentHashMap<String, Set<String>>();
+
+	/**
+	 * Client in einen Raum eintragen, der Raum wird bei Bedarf angelegt
+	 *
+	 * @param userName
+	 *          Name des Clients
+	 * @param room
+	 *          Name des Raums
+	 */
+	public void join(final String userName, String room) {
+		members.compute(room, (name, current) -> {
+			if (current != null && current.contains(userName)) {
+				return current;
+			}
+			List<String> updated = new ArrayList<String>(
+					(current == null) ? 1 : current.size() + 1);
+			if (current != null) {
+				updated.addAll(current);
+			}
+			updated.add(userName);
+			return Collections.unmodifiableList(updated);
+		});
+		roomsOfUser.computeIfAbsent(userName, name -> ConcurrentHashMap.<String> newKeySet())
+				.add(room);
+	}
+
+	/**
+	 * Client aus einem Raum austragen, ein leerer Raum wird entfernt
+	 *
+	 * @param userName
+	 *          Name des Clients
+	 * @param room
+	 *          Name des Raums
+	 */
+	public void leave(final String userName, String room) {
+		members.computeIfPresent(room, (name, current) -> {
+			if (!current.contains(userName)) {
+				return current;
+			}
+			if (current.size() == 1) {
+				return null;
+			}
+			List<String> updated = new ArrayList<String>(current);
+			updated.remove(userName);
+			return Collections.unmodifiableList(updated);
+		});
+		Set<String> rooms = roomsOfUser.get(userName);
+		if (rooms != null) {
+			rooms.remove(room);
+		}
+	}
+
+	/**
+	 * Client aus allen Raeumen austragen
+	 *
+	 * @param userName
+	 *          Name des Clients
+	 */
+	public void leaveAll(String userName) {
+		Set<String> rooms = roomsOfUser.remove(userName);
+		if (rooms != null) {
+			for (String room : rooms) {
+				leave(userName, room);
+			}
+		}
+	}
+
+	/**
+	 * @param room
+	 *          Name des Raums
+	 * @return Unveraenderliche Liste der Mitglieder, leer bei unbekanntem Raum
+	 */
+	public List<String> getMembers(String room) {
+		List<String> current = members.get(room);
+		return (current == null) ? NO_MEMBERS : current;
+	}
+
+	/**
+	 * @return Anzahl der Raeume mit mindestens einem Mitglied
+	 */
+	public int size() {
+		return members.size();
+	}
+
+	/**
+	 * Alle Raeume aufloesen
+	 */
+	public void clear() {
+		members.clear();
+		roomsOfUser.clear();
+	}
+}
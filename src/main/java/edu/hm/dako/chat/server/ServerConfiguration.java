@@ -0,0 +1,329 @@
+package edu.hm.dako.chat.server;
+
+import java.util.Properties;
+
+import edu.hm.dako.chat.common.CodecType;
+import edu.hm.dako.chat.common.ImplementationType;
+import edu.hm.dako.chat.common.TransportType;
+import edu.hm.dako.chat.connection.FlushPolicy;
+import edu.hm.dako.chat.connection.OverflowPolicy;
+import edu.hm.dako.chat.tcp.TcpConnection;
+
+/**
+ * Konfigurationsparameter fuer den Start eines Chat-Servers
+ *
+ * @author Peter Mandl
+ */
+public class ServerConfiguration {
+
+	// Implementierungstyp des Servers
+	private ImplementationType implementationType;
+
+	// Listen-Port
+	private int serverPort;
+
+	// Groesse des Sende- und Empfangspuffers in Byte
+	private int sendBufferSize;
+	private int receiveBufferSize;
+
+	// Kodierung der PDUs
+	private CodecType codecType;
+
+	// Transport der Thread-basierten Server: Sockets oder Warteschlangen im
+	// selben Prozess (nur fuer Benchmarks mit Clients im Server-Prozess)
+	private TransportType transportType;
+
+	// Maximale Anzahl noch nicht gesendeter Nachrichten je Verbindung,
+	// 0: ohne Ausgangswarteschlange direkt senden
+	private int outboundQueueCapacity;
+
+	// Verhalten bei voller Ausgangswarteschlange, standardmaessig Abbau der
+	// Verbindung, damit ein langsamer Client keinen Sender blockiert
+	private OverflowPolicy overflowPolicy;
+
+	// true: Worker der Thread-basierten Server laufen in virtuellen Threads
+	private boolean virtualThreads;
+
+	// Leerlaufzeit in ms, nach der eine Session ohne empfangene PDU beendet
+	// wird, 0: keine Ueberwachung
+	private int idleTimeout;
+
+	// Socket-Option TCP_NODELAY der Verbindungen
+	private boolean tcpNoDelay;
+
+	// Zeitpunkt des Schreibens gepufferter Nachrichten auf das Socket
+	private FlushPolicy flushPolicy;
+
+	// Puffergroesse in Byte, ab der unabhaengig von der Flush-Strategie
+	// geschrieben wird, 0: Standardwert
+	private int flushThreshold;
+
+	// Java-Serialisierung: Referenztabelle des Objektstroms einer Verbindung
+	// nach so vielen gesendeten Objekten bzw. Byte zuruecksetzen, 0: nie
+	private int streamResetObjects;
+	private long streamResetBytes;
+
+	// UDP: Wartezeit in ms auf eine Bestaetigung bis zur ersten Wiederholung,
+	// maximale Anzahl Wiederholungen je Datagramm und fuer Tests simulierter
+	// Anteil verlorener ausgehender Datagramme
+	private int responseTimeout;
+	private int numberOfRetries;
+	private double simulatedLossRate;
+
+	/**
+	 * Konstruktor Belegung der Parameter mit Standardwerten
+	 */
+	public ServerConfiguration() {
+		implementationType = ImplementationType.TCPAdvancedImplementation;
+		serverPort = 50000;
+		sendBufferSize = 300000;
+		receiveBufferSize = 300000;
+		codecType = CodecType.JavaSerialization;
+		transportType = TransportType.Socket;
+		outboundQueueCapacity = 1000;
+		overflowPolicy = OverflowPolicy.Disconnect;
+		virtualThreads = false;
+		idleTimeout = 30000;
+		tcpNoDelay = true;
+		flushPolicy = FlushPolicy.Immediate;
+		flushThreshold = 0;
+		streamResetObjects = TcpConnection.DEFAULT_RESET_OBJECTS;
+		streamResetBytes = 0;
+		responseTimeout = 200;
+		numberOfRetries = 5;
+		simulatedLossRate = 0;
+	}
+
+	/**
+	 * Uebernimmt die in den Properties gesetzten Parameter, nicht gesetzte
+	 * Parameter behalten ihren Wert. Schluessel sind die Namen der Attribute,
+	 * Aufzaehlungswerte werden mit ihrem Namen angegeben (z.B.
+	 * implementationType=TCPNioImplementation).
+	 * 
+	 * @param props
+	 *          Parameter
+	 * @throws IllegalArgumentException
+	 *           bei ungueltigen Werten
+	 */
+	public void applyProperties(Properties props) {
+		String value;
+		if ((value = read(props, "implementationType")) != null) {
+			implementationType = ImplementationType.valueOf(value);
+		}
+		if ((value = read(props, "serverPort")) != null) {
+			serverPort = Integer.parseInt(value);
+		}
+		if ((value = read(props, "sendBufferSize")) != null) {
+			sendBufferSize = Integer.parseInt(value);
+		}
+		if ((value = read(props, "receiveBufferSize")) != null) {
+			receiveBufferSize = Integer.parseInt(value);
+		}
+		if ((value = read(props, "codecType")) != null) {
+			codecType = CodecType.valueOf(value);
+		}
+		if ((value = read(props, "transportType")) != null) {
+			transportType = TransportType.valueOf(value);
+		}
+		if ((value = read(props, "outboundQueueCapacity")) != null) {
+			outboundQueueCapacity = Integer.parseInt(value);
+		}
+		if ((value = read(props, "overflowPolicy")) != null) {
+			overflowPolicy = OverflowPolicy.valueOf(value);
+		}
+		if ((value = read(props, "virtualThreads")) != null) {
+			virtualThreads = Boolean.parseBoolean(value);
+		}
+		if ((value = read(props, "idleTimeout")) != null) {
+			idleTimeout = Integer.parseInt(value);
+		}
+		if ((value = read(props, "tcpNoDelay")) != null) {
+			tcpNoDelay = Boolean.parseBoolean(value);
+		}
+		if ((value = read(props, "flushPolicy")) != null) {
+			flushPolicy = FlushPolicy.valueOf(value);
+		}
+		if ((value = read(props, "flushThreshold")) != null) {
+			flushThreshold = Integer.parseInt(value);
+		}
+		if ((value = read(props, "streamResetObjects")) != null) {
+			streamResetObjects = Integer.parseInt(value);
+		}
+		if ((value = read(props, "streamResetBytes")) != null) {
+			streamResetBytes = Long.parseLong(value);
+		}
+		if ((value = read(props, "responseTimeout")) != null) {
+			responseTimeout = Integer.parseInt(value);
+		}
+		if ((value = read(props, "numberOfRetries")) != null) {
+			numberOfRetries = Integer.parseInt(value);
+		}
+		if ((value = read(props, "simulatedLossRate")) != null) {
+			simulatedLossRate = Double.parseDouble(value);
+		}
+	}
+
+	private static String read(Properties props, String key) {
+		String value = props.getProperty(key);
+		return (value == null) ? null : value.trim();
+	}
+
+	@Override
+	public String toString() {
+		return "Implementierung: " + implementationType + ", Listen-Port: " + serverPort
+				+ ", Sendepuffer: " + sendBufferSize + ", Empfangspuffer: " + receiveBufferSize
+				+ ", Kodierung: " + codecType + ", Transport: " + transportType
+				+ ", Ausgangswarteschlange: "
+				+ outboundQueueCapacity + " (" + overflowPolicy + "), virtuelle Threads: "
+				+ virtualThreads + ", Leerlaufzeit: " + idleTimeout + " ms, TCP_NODELAY: "
+				+ tcpNoDelay + ", Flush: " + flushPolicy + " (" + flushThreshold + " Byte)"
+				+ ", Reset des Objektstroms: " + streamResetObjects + " Objekte/"
+				+ streamResetBytes + " Byte"
+				+ ", UDP-Antwortzeit: " + responseTimeout + " ms, UDP-Wiederholungen: "
+				+ numberOfRetries;
+	}
+
+	public ImplementationType getImplementationType() {
+		return implementationType;
+	}
+
+	public void setImplementationType(ImplementationType implementationType) {
+		this.implementationType = implementationType;
+	}
+
+	public int getServerPort() {
+		return serverPort;
+	}
+
+	public void setServerPort(int serverPort) {
+		this.serverPort = serverPort;
+	}
+
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	public void setSendBufferSize(int sendBufferSize) {
+		this.sendBufferSize = sendBufferSize;
+	}
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+
+	public CodecType getCodecType() {
+		return codecType;
+	}
+
+	public void setCodecType(CodecType codecType) {
+		this.codecType = codecType;
+	}
+
+	public TransportType getTransportType() {
+		return transportType;
+	}
+
+	public void setTransportType(TransportType transportType) {
+		this.transportType = transportType;
+	}
+
+	public int getOutboundQueueCapacity() {
+		return outboundQueueCapacity;
+	}
+
+	public void setOutboundQueueCapacity(int outboundQueueCapacity) {
+		this.outboundQueueCapacity = outboundQueueCapacity;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(int idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	public FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+
+	public void setFlushPolicy(FlushPolicy flushPolicy) {
+		this.flushPolicy = flushPolicy;
+	}
+
+	public int getFlushThreshold() {
+		return flushThreshold;
+	}
+
+	public void setFlushThreshold(int flushThreshold) {
+		this.flushThreshold = flushThreshold;
+	}
+
+	public int getStreamResetObjects() {
+		return streamResetObjects;
+	}
+
+	public void setStreamResetObjects(int streamResetObjects) {
+		this.streamResetObjects = streamResetObjects;
+	}
+
+	public long getStreamResetBytes() {
+		return streamResetBytes;
+	}
+
+	public void setStreamResetBytes(long streamResetBytes) {
+		this.streamResetBytes = streamResetBytes;
+	}
+
+	public int getResponseTimeout() {
+		return responseTimeout;
+	}
+
+	public void setResponseTimeout(int responseTimeout) {
+		this.responseTimeout = responseTimeout;
+	}
+
+	public int getNumberOfRetries() {
+		return numberOfRetries;
+	}
+
+	public void setNumberOfRetries(int numberOfRetries) {
+		this.numberOfRetries = numberOfRetries;
+	}
+
+	public double getSimulatedLossRate() {
+		return simulatedLossRate;
+	}
+
+	public void setSimulatedLossRate(double simulatedLossRate) {
+		this.simulatedLossRate = simulatedLossRate;
+	}
+}
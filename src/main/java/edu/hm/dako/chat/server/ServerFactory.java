@@ -1,15 +1,30 @@
 package edu.hm.dako.chat.server;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import edu.hm.dako.chat.common.CodecType;
+import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.common.ImplementationType;
+import edu.hm.dako.chat.common.TransportType;
 import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.FlushPolicy;
 import edu.hm.dako.chat.connection.LoggingConnectionDecorator;
+import edu.hm.dako.chat.connection.OutboundQueueConnection;
+import edu.hm.dako.chat.connection.OverflowPolicy;
+import edu.hm.dako.chat.connection.PduCodec;
+import edu.hm.dako.chat.connection.PduCodecFactory;
 import edu.hm.dako.chat.connection.ServerSocketInterface;
+import edu.hm.dako.chat.loopback.LoopbackServerSocket;
+import edu.hm.dako.chat.tcp.NioTcpServerSocket;
 import edu.hm.dako.chat.tcp.TcpServerSocket;
+import edu.hm.dako.chat.udp.UdpServerSocket;
 
 /**
  * Uebernimmt die Konfiguration und Erzeugung bestimmter Server-Typen. Siehe
@@ -24,6 +39,29 @@ public final class ServerFactory {
 	private ServerFactory() {
 	}
 
+	/**
+	 * Erzeugt einen Chat-Server, der die PDUs mit Java-Serialisierung uebertraegt
+	 * 
+	 * @param implType
+	 *          Implementierungytyp des Servers
+	 * @param serverPort
+	 *          Listenport
+	 * @param sendBufferSize
+	 *          Groesse des Sendepuffers in Byte
+	 * @param receiveBufferSize
+	 *          Groesse des Empfangspuffers in Byte
+	 * @param serverGuiInterface
+	 *          Referenz auf GUI fuer Callback
+	 * @return
+	 * @throws Exception
+	 */
+	public static ChatServerInterface getServer(ImplementationType implType, int serverPort,
+			int sendBufferSize, int receiveBufferSize,
+			ChatServerGuiInterface serverGuiInterface) throws Exception {
+		return getServer(implType, serverPort, sendBufferSize, receiveBufferSize,
+				serverGuiInterface, CodecType.JavaSerialization);
+	}
+
 	/**
 	 * Erzeugt einen Chat-Server
 	 * 
@@ -37,26 +75,63 @@ public final class ServerFactory {
 	 *          Groesse des Empfangspuffers in Byte
 	 * @param serverGuiInterface
 	 *          Referenz auf GUI fuer Callback
+	 * @param codecType
+	 *          Kodierung der PDUs
 	 * @return
 	 * @throws Exception
 	 */
 	public static ChatServerInterface getServer(ImplementationType implType, int serverPort,
 			int sendBufferSize, int receiveBufferSize,
+			ChatServerGuiInterface serverGuiInterface, CodecType codecType) throws Exception {
+		ServerConfiguration config = new ServerConfiguration();
+		config.setImplementationType(implType);
+		config.setServerPort(serverPort);
+		config.setSendBufferSize(sendBufferSize);
+		config.setReceiveBufferSize(receiveBufferSize);
+		config.setCodecType(codecType);
+		return getServer(config, serverGuiInterface);
+	}
+
+	/**
+	 * Erzeugt einen Chat-Server
+	 * 
+	 * @param config
+	 *          Konfigurationsparameter des Servers
+	 * @param serverGuiInterface
+	 *          Referenz auf GUI fuer Callback
+	 * @return
+	 * @throws Exception
+	 */
+	public static ChatServerInterface getServer(ServerConfiguration config,
 			ChatServerGuiInterface serverGuiInterface) throws Exception {
+		ImplementationType implType = config.getImplementationType();
+		int serverPort = config.getServerPort();
+		int sendBufferSize = config.getSendBufferSize();
+		int receiveBufferSize = config.getReceiveBufferSize();
+		CodecType codecType = config.getCodecType();
+
 		//log.debug("ChatServer (" + implType.toString() + ") wird gestartet, Serverport: "+ serverPort + ", Sendepuffer: " + sendBufferSize + ", Empfangspuffer: "+ receiveBufferSize);
 		System.out.println("ChatServer (" + implType.toString()
 				+ ") wird gestartet, Listen-Port: " + serverPort + ", Sendepuffer: "
-				+ sendBufferSize + ", Empfangspuffer: " + receiveBufferSize);
+				+ sendBufferSize + ", Empfangspuffer: " + receiveBufferSize + ", Kodierung: "
+				+ codecType + ", virtuelle Threads: " + config.isVirtualThreads()
+				+ ", Transport: " + config.getTransportType()
+				+ ", Leerlaufzeit: " + config.getIdleTimeout() + " ms, TCP_NODELAY: "
+				+ config.isTcpNoDelay() + ", Flush: " + config.getFlushPolicy());
+
+		// Bei Java-Serialisierung arbeiten die Thread-basierten Server mit einem
+		// durchgehenden ObjectStream, sonst rahmenweise mit dem gewaehlten Codec
+		PduCodec streamCodec = (codecType == CodecType.JavaSerialization) ? null
+				: PduCodecFactory.getCodec(codecType);
 
 		switch (implType) {
 
 		case TCPSimpleImplementation:
 
 			try {
-				TcpServerSocket tcpServerSocket = new TcpServerSocket(serverPort, sendBufferSize,
-						receiveBufferSize);
-				return new SimpleChatServerImpl(Executors.newCachedThreadPool(),
-						getDecoratedServerSocket(tcpServerSocket), serverGuiInterface);
+				return withIdleTimeout(new SimpleChatServerImpl(createWorkerPool(config),
+						getDecoratedServerSocket(createStreamServerSocket(config, streamCodec),
+								config), serverGuiInterface), config);
 			} catch (Exception e) {
 				throw new Exception(e);
 			}
@@ -64,27 +139,221 @@ public final class ServerFactory {
 		case TCPAdvancedImplementation:
 
 			try {
-				TcpServerSocket tcpServerSocket = new TcpServerSocket(serverPort, sendBufferSize,
-						receiveBufferSize);
-				return new AdvancedChatServerImpl(Executors.newCachedThreadPool(),
-						getDecoratedServerSocket(tcpServerSocket), serverGuiInterface);
+				return withIdleTimeout(new AdvancedChatServerImpl(createWorkerPool(config),
+						getDecoratedServerSocket(createStreamServerSocket(config, streamCodec),
+								config), serverGuiInterface), config);
+			} catch (Exception e) {
+				throw new Exception(e);
+			}
+
+		case TCPNioImplementation:
+
+			// Die NIO-Verbindungen senden nicht-blockierend und begrenzen ihre
+			// ausstehenden Rahmen selbst, ein Writer-Thread ist nicht erforderlich. Die
+			// Sessions laufen in den Event-Loops, die Einstellung fuer virtuelle
+			// Threads wird nicht benoetigt.
+			try {
+				requireSocketTransport(config);
+				NioTcpServerSocket nioServerSocket = new NioTcpServerSocket(serverPort,
+						sendBufferSize, receiveBufferSize, PduCodecFactory.getCodec(codecType));
+				nioServerSocket.setWriteOptions(config.isTcpNoDelay(), config.getFlushPolicy(),
+						config.getFlushThreshold());
+				nioServerSocket.setOutboundLimit(config.getOutboundQueueCapacity(),
+						config.getOverflowPolicy());
+				if ((config.getOutboundQueueCapacity() > 0)
+						&& (config.getOverflowPolicy() == OverflowPolicy.Block)) {
+					System.out.println("Overflow-Strategie Block ist im Event-Loop nicht "
+							+ "moeglich, volle Ausgangswarteschlangen bauen die Verbindung ab");
+				}
+				return withIdleTimeout(new NioChatServerImpl(nioServerSocket, serverGuiInterface),
+						config);
+			} catch (Exception e) {
+				throw new Exception(e);
+			}
+
+		case UDPAdvancedImplementation:
+
+			// Sessions wie beim Advanced-Server, die Verbindungen sichern die Zustellung
+			// mit Bestaetigungen und Wiederholungen selbst
+			try {
+				requireSocketTransport(config);
+				UdpServerSocket udpServerSocket = new UdpServerSocket(serverPort, sendBufferSize,
+						receiveBufferSize, PduCodecFactory.getCodec(codecType),
+						config.getResponseTimeout(), config.getNumberOfRetries());
+				udpServerSocket.setSimulatedLossRate(config.getSimulatedLossRate());
+				udpServerSocket.start();
+				return withIdleTimeout(new AdvancedChatServerImpl(createWorkerPool(config),
+						getDecoratedServerSocket(udpServerSocket, config), serverGuiInterface),
+						config);
 			} catch (Exception e) {
 				throw new Exception(e);
 			}
 
 		default:
-			System.out.println("Dezeit nur TCP implementiert!");
+			System.out.println("Unbekannter Implementierungstyp!");
 			throw new RuntimeException("Unknown type: " + implType);
 		}
 	}
 
+	/**
+	 * Server-Socket der Thread-basierten Server: TCP oder, fuer Benchmarks ohne
+	 * Netzwerk-Stack, Warteschlangen im selben Prozess
+	 * 
+	 * @param config
+	 *          Konfigurationsparameter des Servers
+	 * @param streamCodec
+	 *          Codec der TCP-Verbindungen, null: durchgehender ObjectStream
+	 * @return Server-Socket
+	 * @throws Exception
+	 */
+	private static ServerSocketInterface createStreamServerSocket(ServerConfiguration config,
+			PduCodec streamCodec) throws Exception {
+		switch (config.getTransportType()) {
+		case LoopbackReference:
+			return LoopbackServerSocket.bind(config.getServerPort(), null);
+		case LoopbackSerialized:
+			return LoopbackServerSocket.bind(config.getServerPort(),
+					PduCodecFactory.getCodec(config.getCodecType()));
+		default:
+			TcpServerSocket tcpServerSocket = new TcpServerSocket(config.getServerPort(),
+					config.getSendBufferSize(), config.getReceiveBufferSize(), streamCodec);
+			tcpServerSocket.setWriteOptions(config.isTcpNoDelay(),
+					getConnectionFlushPolicy(config), config.getFlushThreshold());
+			tcpServerSocket.setResetPolicy(config.getStreamResetObjects(),
+					config.getStreamResetBytes());
+			return tcpServerSocket;
+		}
+	}
+
+	/**
+	 * Der NIO- und der UDP-Server arbeiten nur mit ihren eigenen Sockets
+	 * 
+	 * @param config
+	 *          Konfigurationsparameter des Servers
+	 * @throws IllegalArgumentException
+	 *           Loopback-Transport eingestellt
+	 */
+	private static void requireSocketTransport(ServerConfiguration config) {
+		if (config.getTransportType() != TransportType.Socket) {
+			throw new IllegalArgumentException("Transport " + config.getTransportType()
+					+ " wird von " + config.getImplementationType() + " nicht unterstuetzt");
+		}
+	}
+
+	/**
+	 * Leerlaufueberwachung der Sessions einstellen
+	 * 
+	 * @param server
+	 *          Neu erzeugter Server
+	 * @param config
+	 *          Konfigurationsparameter des Servers
+	 * @return der uebergebene Server
+	 */
+	private static ChatServerInterface withIdleTimeout(AbstractChatServer server,
+			ServerConfiguration config) {
+		server.setIdleTimeout(config.getIdleTimeout());
+		return server;
+	}
+
+	/**
+	 * Flush-Strategie der Verbindungen der Thread-basierten Server. OnDrain setzt
+	 * die Ausgangswarteschlange voraus, die die Verbindung leert, sobald sie leer
+	 * ist. Ohne Warteschlange wird stattdessen OnIdle verwendet.
+	 * 
+	 * @param config
+	 *          Konfigurationsparameter des Servers
+	 * @return Flush-Strategie der Verbindungen
+	 */
+	private static FlushPolicy getConnectionFlushPolicy(ServerConfiguration config) {
+		if ((config.getFlushPolicy() == FlushPolicy.OnDrain)
+				&& (config.getOutboundQueueCapacity() <= 0)) {
+			return FlushPolicy.OnIdle;
+		}
+		return config.getFlushPolicy();
+	}
+
+	/**
+	 * Threadpool fuer die Worker-Threads der Thread-basierten Server. Mit
+	 * virtuellen Threads bleibt das blockierende Programmiermodell (receive je
+	 * Worker) erhalten, ohne dass je Client ein Betriebssystem-Thread
+	 * belegt wird.
+	 * 
+	 * @param config
+	 *          Konfigurationsparameter des Servers
+	 * @return Threadpool
+	 */
+	private static ExecutorService createWorkerPool(ServerConfiguration config) {
+		if (config.isVirtualThreads()) {
+			ExecutorService executor = createVirtualThreadExecutor();
+			if (executor != null) {
+				return executor;
+			}
+		}
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Executor, der je Auftrag einen virtuellen Thread startet
+	 * 
+	 * @return Executor oder null, wenn die Java-Version keine virtuellen Threads
+	 *         unterstuetzt
+	 */
+	private static ExecutorService createVirtualThreadExecutor() {
+		try {
+			// Zugriff per Reflection, da virtuelle Threads erst ab Java 21 zur
+			// Verfuegung stehen und der Server auch mit aelteren Versionen laufen soll
+			return (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			System.out.println("Virtuelle Threads werden von der Java-Version "
+					+ System.getProperty("java.version")
+					+ " nicht unterstuetzt, Plattform-Threads werden genutzt");
+		} catch (Exception e) {
+			ExceptionHandler.logException(e);
+		}
+		return null;
+	}
+
 	private static ServerSocketInterface getDecoratedServerSocket(
-			ServerSocketInterface serverSocket) {
-		return new DecoratingServerSocket(serverSocket);
+			ServerSocketInterface serverSocket, ServerConfiguration config) {
+		if (config.getOutboundQueueCapacity() <= 0) {
+			return new DecoratingServerSocket(serverSocket, null, 0, null);
+		}
+		return new DecoratingServerSocket(serverSocket, createWriterPool(config),
+				config.getOutboundQueueCapacity(), config.getOverflowPolicy());
 	}
 
 	/**
-	 * Dekoriert Server-Socket mit Logging-Funktionalitaet
+	 * Pool fuer die Writer-Threads der Ausgangswarteschlangen. Ein Thread ist nur so
+	 * lange einer Verbindung zugeordnet, wie deren Warteschlange nicht leer ist.
+	 * Mit virtuellen Worker-Threads werden auch die Writer als virtuelle Threads
+	 * gestartet.
+	 * 
+	 * @param config
+	 *          Konfigurationsparameter des Servers
+	 * @return Threadpool mit Daemon-Threads
+	 */
+	private static ExecutorService createWriterPool(ServerConfiguration config) {
+		if (config.isVirtualThreads()) {
+			ExecutorService executor = createVirtualThreadExecutor();
+			if (executor != null) {
+				return executor;
+			}
+		}
+		final AtomicInteger threadCounter = new AtomicInteger(0);
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Writer-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Dekoriert Server-Socket mit Logging-Funktionalitaet und optional mit einer
+	 * Ausgangswarteschlange je Verbindung
 	 * 
 	 * @author mandl
 	 *
@@ -92,14 +361,27 @@ public final class ServerFactory {
 	private static class DecoratingServerSocket implements ServerSocketInterface {
 
 		private final ServerSocketInterface wrappedServerSocket;
+		private final Executor writerPool;
+		private final int queueCapacity;
+		private final OverflowPolicy overflowPolicy;
 
-		DecoratingServerSocket(ServerSocketInterface wrappedServerSocket) {
+		DecoratingServerSocket(ServerSocketInterface wrappedServerSocket, Executor writerPool,
+				int queueCapacity, OverflowPolicy overflowPolicy) {
 			this.wrappedServerSocket = wrappedServerSocket;
+			this.writerPool = writerPool;
+			this.queueCapacity = queueCapacity;
+			this.overflowPolicy = overflowPolicy;
 		}
 
 		@Override
 		public Connection accept() throws Exception {
-			return new LoggingConnectionDecorator(wrappedServerSocket.accept());
+			Connection connection = new LoggingConnectionDecorator(
+					wrappedServerSocket.accept());
+			if (writerPool == null) {
+				return connection;
+			}
+			return new OutboundQueueConnection(connection, writerPool, queueCapacity,
+					overflowPolicy);
 		}
 
 		@Override
@@ -1,14 +1,23 @@
 package edu.hm.dako.chat.server;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import edu.hm.dako.chat.common.ChatPDU;
 import edu.hm.dako.chat.common.ClientConversationStatus;
 import edu.hm.dako.chat.common.ClientListEntry;
+import edu.hm.dako.chat.common.ConfirmWaitSet;
 
 /**
  * Liste aller angemeldeten Clients. Diese Liste wird im Server als Singleton
@@ -21,6 +30,38 @@ import edu.hm.dako.chat.common.ClientListEntry;
  * Genereller Hinweis: Zur Umgehung von ConcurrentModificationExceptions wird
  * bei der Iteration durch Listen generell eine Kopie der Liste angelegt.
  *
+ * Synchronisation: Lesende Zugriffe und Aenderungen an genau einem Client
+ * (Zaehler, Status, Eintraege der eigenen Warteliste) laufen ohne globale
+ * Sperre ueber die ConcurrentHashMap und die Sperre des jeweiligen
+ * ClientListEntry. Nur Operationen, die ueber alle Wartelisten hinweg pruefen
+ * oder aendern, werden ueber eine Lese-/Schreibsperre koordiniert: Das
+ * Erzeugen von Wartelisten nutzt die (gemeinsame) Lesesperre, das Loeschen von
+ * Clients die exklusive Schreibsperre. Damit kann kein Client entfernt werden,
+ * waehrend er gerade in eine neue Warteliste eingetragen wird.
+ *
+ * Wartelisten: Jeder Client erhaelt beim Anlegen einen Slot. Eine Warteliste
+ * ist eine Bitmenge ueber diese Slots mit einem Zaehler der ausstehenden
+ * Bestaetigungen (siehe ConfirmWaitSet), so dass ein Confirm in konstanter
+ * Zeit ausgetragen und die Vollstaendigkeit erkannt wird. Ein Client kann je
+ * offenem Request (Sequenznummer) eine eigene Warteliste haben, damit mehrere
+ * Chat-Requests eines Clients gleichzeitig bearbeitet werden koennen
+ * (Pipelining). Vollstaendige Wartelisten werden sofort entfernt.
+ *
+ * Loeschen: Jeder Client zaehlt, in wie vielen Wartelisten er noch eingetragen
+ * ist. Ein beendeter Client mit leeren eigenen Wartelisten und ohne
+ * Referenzen kann ohne Durchsuchen der anderen Wartelisten entfernt werden.
+ * Sobald eine dieser Bedingungen eintritt, wird der Client als Kandidat fuer
+ * den Garbage Collector vorgemerkt, der nur noch die Kandidaten prueft.
+ *
+ * Chat-Raeume: Jeder Client ist nach dem Login Mitglied des allgemeinen Raums
+ * und kann weiteren Raeumen beitreten. Chat-Events werden nur an die
+ * Mitglieder des Raums der Nachricht verteilt (siehe RoomIndex).
+ *
+ * Stand der Userliste: Jede Aenderung der Userliste, die per Login- oder
+ * Logout-Event gemeldet wird, erhoeht einen Versionszaehler. Die Events tragen
+ * nur den geaenderten User und den neuen Stand, die vollstaendige Liste wird
+ * nur mit der Login-Response und auf Anforderung eines Clients uebertragen.
+ *
  * @author Peter Mandl
  *
  */
@@ -32,6 +73,27 @@ public class SharedChatClientList {
 
 	private static SharedChatClientList instance;
 
+	// Sperre fuer listenuebergreifende Operationen auf den Wartelisten
+	private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+	// Wieder verwendbare Slots geloeschter Clients
+	private final ConcurrentLinkedQueue<Integer> freeSlots = new ConcurrentLinkedQueue<Integer>();
+
+	// Anzahl bisher vergebener Slots
+	private final AtomicInteger slotLimit = new AtomicInteger();
+
+	// Zuordnung der Slots zu den Clients
+	private final ConcurrentHashMap<Integer, ClientListEntry> slotOwners = new ConcurrentHashMap<Integer, ClientListEntry>();
+
+	// Clients, die moeglicherweise geloescht werden koennen
+	private final ConcurrentLinkedQueue<String> gcCandidates = new ConcurrentLinkedQueue<String>();
+
+	// Mitglieder der Chat-Raeume
+	private final RoomIndex rooms = new RoomIndex();
+
+	// Stand der Userliste, wird nie zurueckgesetzt
+	private final AtomicLong userListVersion = new AtomicLong();
+
 	private SharedChatClientList() {
 	}
 
@@ -55,6 +117,11 @@ public class SharedChatClientList {
 	public void deleteAll() {
 
 		clients.clear();
+		freeSlots.clear();
+		slotOwners.clear();
+		gcCandidates.clear();
+		rooms.clear();
+		slotLimit.set(0);
 	}
 
 	/**
@@ -65,7 +132,7 @@ public class SharedChatClientList {
 	 * @param newStatus
 	 *          Neuer Status
 	 */
-	public synchronized void changeClientStatus(String userName,
+	public void changeClientStatus(String userName,
 			ClientConversationStatus newStatus) {
 
 		ClientListEntry client = clients.get(userName);
@@ -81,7 +148,7 @@ public class SharedChatClientList {
 	 *          Name des Users (Clients)
 	 * @return Conversation-Status des Clients
 	 */
-	public synchronized ClientConversationStatus getClientStatus(String userName) {
+	public ClientConversationStatus getClientStatus(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
@@ -98,7 +165,7 @@ public class SharedChatClientList {
 	 *          Name des Clients
 	 * @return Referenz auf den gesuchten Client
 	 */
-	public synchronized ClientListEntry getClient(String userName) {
+	public ClientListEntry getClient(String userName) {
 
 		return clients.get(userName);
 	}
@@ -108,7 +175,7 @@ public class SharedChatClientList {
 	 * 
 	 * @return Vektor mit allen Namen der eingetragenen Clients
 	 */
-	public synchronized Vector<String> getClientNameList() {
+	public Vector<String> getClientNameList() {
 
 		Vector<String> clientNameList = new Vector<String>();
 		for (String s : new HashSet<String>(clients.keySet())) {
@@ -124,7 +191,7 @@ public class SharedChatClientList {
 	 * @return Vektor mit allen Namen der eingetragenen Clients, die registriert
 	 *         sind oder die sich gerade registrieren
 	 */
-	public synchronized Vector<String> getRegisteredClientNameList() {
+	public Vector<String> getRegisteredClientNameList() {
 
 		Vector<String> clientNameList = new Vector<String>();
 		for (String s : new HashSet<String>(clients.keySet())) {
@@ -138,6 +205,31 @@ public class SharedChatClientList {
 		return clientNameList;
 	}
 
+	/**
+	 * Vermerkt eine Aenderung der Userliste. Muss nach der Zustandsaenderung des
+	 * betroffenen Clients aufgerufen werden.
+	 * 
+	 * @return Neuer Stand der Userliste fuer das Login- bzw. Logout-Event
+	 */
+	public long nextUserListVersion() {
+		return userListVersion.incrementAndGet();
+	}
+
+	/**
+	 * Traegt die vollstaendige Userliste und ihren Stand in eine PDU ein. Der Stand
+	 * wird vor der Liste gelesen: Die Liste enthaelt damit mindestens alle
+	 * Aenderungen bis zu diesem Stand, ggf. auch spaetere, die der Client beim
+	 * Empfang der zugehoerigen Events ohne Wirkung erneut anwendet.
+	 * 
+	 * @param pdu
+	 *          Login-Response- oder User-List-Response-PDU
+	 */
+	public void setUserListSnapshot(ChatPDU pdu) {
+		long version = userListVersion.get();
+		pdu.setClients(getRegisteredClientNameList());
+		pdu.setUserListVersion(version);
+	}
+
 	/**
 	 * Prueft, ob ein Client in der Userliste ist
 	 * 
@@ -145,7 +237,7 @@ public class SharedChatClientList {
 	 *          Name des Clients
 	 * @return
 	 */
-	public synchronized boolean existsClient(String userName) {
+	public boolean existsClient(String userName) {
 
 		if (userName != null) {
 			if (!clients.containsKey(userName)) {
@@ -167,9 +259,61 @@ public class SharedChatClientList {
 	 * @param client
 	 *          Client-Daten
 	 */
-	public synchronized void createClient(String userName, ClientListEntry client) {
+	public void createClient(String userName, ClientListEntry client) {
 
+		client.setSlot(allocateSlot());
+		slotOwners.put(client.getSlot(), client);
 		clients.put(userName, client);
+		rooms.join(userName, ChatPDU.DEFAULT_ROOM);
+	}
+
+	/**
+	 * Angemeldeten Client in einen Chat-Raum eintragen
+	 * 
+	 * @param userName
+	 *          Name des Clients
+	 * @param room
+	 *          Name des Raums
+	 * @return true, wenn der Client angemeldet ist
+	 */
+	public boolean joinRoom(String userName, String room) {
+
+		if (!clients.containsKey(userName)) {
+			return false;
+		}
+		rooms.join(userName, room);
+		return true;
+	}
+
+	/**
+	 * Client aus einem Chat-Raum austragen
+	 * 
+	 * @param userName
+	 *          Name des Clients
+	 * @param room
+	 *          Name des Raums
+	 * @return true, wenn der Client angemeldet ist
+	 */
+	public boolean leaveRoom(String userName, String room) {
+
+		if (!clients.containsKey(userName)) {
+			return false;
+		}
+		rooms.leave(userName, room);
+		return true;
+	}
+
+	/**
+	 * Mitglieder eines Chat-Raums, an die ein Chat-Event verteilt wird. Die
+	 * Liste ist unveraenderlich und muss fuer die Iteration nicht kopiert werden.
+	 * 
+	 * @param room
+	 *          Name des Raums
+	 * @return Namen der Mitglieder
+	 */
+	public List<String> getRoomMemberList(String room) {
+
+		return rooms.getMembers(room);
 	}
 
 	/**
@@ -180,11 +324,13 @@ public class SharedChatClientList {
 	 * @param client
 	 *          Client-Daten
 	 */
-	public synchronized void updateClient(String userName, ClientListEntry client) {
+	public void updateClient(String userName, ClientListEntry client) {
 
 		ClientListEntry existingClient = (ClientListEntry) clients.get(userName);
 
 		if (existingClient != null) {
+			client.setSlot(existingClient.getSlot());
+			slotOwners.put(client.getSlot(), client);
 			clients.put(userName, client);
 		} else {
 			//log.debug("User nicht in Clientliste: " + userName);
@@ -200,38 +346,66 @@ public class SharedChatClientList {
 	 *          Name des Clients
 	 * @return true Loeschen moeglich, sonst false
 	 */
-	public synchronized boolean deletable(String userName) {
+	public boolean deletable(String userName) {
 
-		for (String s : new Vector<String>(clients.keySet())) {
-			ClientListEntry client = (ClientListEntry) clients.get(s);
-			if (client.getWaitList().contains(userName)) {
-				// Client noch in einer Warteliste
-				//log.debug("Loeschen nicht moeglich, da Client " + userName+ " noch in der Warteliste von " + client.getUserName() + " ist");
-				return false;
-			}
-		}
-		return true;
+		ClientListEntry client = clients.get(userName);
+		return (client == null) || (client.getWaitListReferences() == 0);
 	}
 
 	/**
 	 * Loescht einen Client zwangsweise inkl. aller Einträge in Wartelisten.
+	 * Wartelisten anderer Clients, die dadurch vollstaendig werden, werden
+	 * entfernt und zurueckgegeben. Der Aufrufer muss fuer sie die Response senden,
+	 * da der geloeschte Client sie nie mehr bestaetigt.
 	 * 
 	 * @param userName
 	 *          Name des Clients
+	 * @return Durch das Loeschen vollstaendig gewordene Wartelisten
 	 */
-	public synchronized void deleteClientWithoutCondition(String userName) {
+	public List<CompletedWaitList> deleteClientWithoutCondition(String userName) {
+
+		List<CompletedWaitList> completed = new ArrayList<CompletedWaitList>();
+		structureLock.writeLock().lock();
+		try {
+			//log.debug("Client  " + userName + " zwangsweise aus allen Listen entfernen");
+			ClientListEntry removeCandidateClient = clients.get(userName);
+			if (removeCandidateClient == null) {
+				return completed;
+			}
 
-		//log.debug("Client  " + userName + " zwangsweise aus allen Listen entfernen");
-		for (String s : new HashSet<String>(clients.keySet())) {
-			ClientListEntry client = (ClientListEntry) clients.get(s);
-			if (client.getWaitList().contains(userName)) {
-				client.getWaitList().remove(userName);
+			// Nur suchen, wenn der Client noch in fremden Wartelisten steht
+			if (removeCandidateClient.getWaitListReferences() > 0) {
+				int slot = removeCandidateClient.getSlot();
+				for (ClientListEntry client : clients.values()) {
+					for (ConfirmWaitSet waitList : client.getWaitLists()) {
+						int remaining = waitList.remove(slot);
+						if (remaining >= 0) {
+							removeCandidateClient.decrWaitListReferences();
+							if ((remaining == 0) && (client != removeCandidateClient)) {
+								client.removeWaitList(waitList);
+								markCandidate(client);
+								completed.add(new CompletedWaitList(client.getUserName(), waitList));
+							}
+						}
+					}
+				}
+			}
+
+			// Eigene Wartelisten aufloesen, damit die darin eingetragenen Clients
+			// geloescht werden koennen
+			for (ConfirmWaitSet waitList : removeCandidateClient.clearWaitLists()) {
+				releaseWaitList(waitList);
 			}
-		}
 
-		// Client kann nun entfernt werden
-		clients.remove(userName);
-		//log.debug("Client  " + userName + " vollstaendig aus allen Wartelisten entfernt");
+			// Client kann nun entfernt werden
+			clients.remove(userName);
+			rooms.leaveAll(userName);
+			releaseSlot(removeCandidateClient);
+			//log.debug("Client  " + userName + " vollstaendig aus allen Wartelisten entfernt");
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+		return completed;
 	}
 
 	/**
@@ -242,73 +416,46 @@ public class SharedChatClientList {
 	 *          Name des Clients
 	 * @return true bei erfolgreichem Loeschen, sonst false
 	 */
-	public synchronized boolean deleteClient(String userName) {
-
-		//log.debug("Clientliste vor dem Loeschen von " + userName + ": " + printClientList());
-		//log.debug("Logout fuer " + userName + ", Laenge der Clientliste vor dem Loeschen von: "+ userName + ": " + clients.size());
-
-		boolean deletedFlag = false;
-		ClientListEntry removeCandidateClient = (ClientListEntry) clients.get(userName);
-		if (removeCandidateClient != null) {
+	public boolean deleteClient(String userName) {
 
-			// Event-Warteliste des Clients leer?
-			//log.debug("Laenge der Clientliste " + userName + ": " + clients.size());
-			if ((removeCandidateClient.getWaitList().size() == 0)
-					&& (removeCandidateClient.isFinished())) {
+		// Vorpruefung ohne Sperre, im Normalfall ist der Client nicht loeschbar
+		if (!isRemovable(clients.get(userName))) {
+			return false;
+		}
 
-				// Warteliste leer, jetzt pruefen, ob er noch in anderen
-				// Wartelisten ist
-				//log.debug("Warteliste von Client " + removeCandidateClient.getUserName()+ " ist leer und Client ist zum Beenden vorgemerkt");
+		structureLock.writeLock().lock();
+		try {
+			ClientListEntry removeCandidateClient = (ClientListEntry) clients.get(userName);
 
-				for (String s : new HashSet<String>(clients.keySet())) {
-					ClientListEntry client = (ClientListEntry) clients.get(s);
-					if (client.getWaitList().contains(userName)) {
-						//log.debug("Loeschen nicht moeglich, da Client " + userName+ " noch in der Warteliste von " + s + " ist");
-						return deletedFlag;
-					}
-				}
-
-				// Client kann entfernt werden, sofern er auch zum Beenden
-				// vorgemerkt ist.
+			// Client kann entfernt werden, wenn er zum Beenden vorgemerkt ist, seine
+			// Warteliste leer ist und er in keiner anderen Warteliste mehr steht
+			if (isRemovable(removeCandidateClient)) {
 				clients.remove(userName);
-				deletedFlag = true;
+				rooms.leaveAll(userName);
+				releaseSlot(removeCandidateClient);
+				//log.debug("Laenge der Clientliste nach dem Loeschen von " + userName + ": "+ clients.size());
+				return true;
 			}
+			return false;
+		} finally {
+			structureLock.writeLock().unlock();
 		}
-
-		//log.debug("Laenge der Clientliste nach dem Loeschen von " + userName + ": "+ clients.size());
-		//log.debug("Clientliste nach dem Loeschen von " + userName + ": " + printClientList());
-		return deletedFlag;
 	}
 
 	/**
-	 * Garbage Collector der Clientliste bereinigt nicht mehr benoetigte Clients
+	 * Garbage Collector der Clientliste bereinigt nicht mehr benoetigte Clients.
+	 * Geprueft werden nur die seit dem letzten Aufruf vorgemerkten Kandidaten.
 	 *
 	 * @return Namensliste aller entfernten Clients
 	 */
-	public synchronized Vector<String> gcClientList() {
+	public Vector<String> gcClientList() {
 
 		Vector<String> deletedClients = new Vector<String>();
-
-		for (String s1 : new Vector<String>(clients.keySet())) {
-			boolean clientUsed = true;
-			ClientListEntry client1 = (ClientListEntry) clients.get(s1);
-			if ((client1.getWaitList().size() == 0) && (client1.isFinished())) {
-
-				// Eigene Warteliste leer, jetzt pruefen, ob auch alle anderen
-				// Wartelisten diesen Client nicht enthalten
-				clientUsed = false;
-				for (String s2 : new Vector<String>(clients.keySet())) {
-					ClientListEntry client2 = (ClientListEntry) clients.get(s2);
-					if (client2.getWaitList().contains(s1)) {
-						// Client noch in einer Warteliste
-						clientUsed = true;
-					}
-				}
-			}
-			if (!clientUsed) {
-				//log.debug("Garbace Collection: Client " + client1.getUserName()+ " wird aus ClientListe entfernt");
-				deletedClients.add(s1);
-				clients.remove(s1);
+		String candidate;
+		while ((candidate = gcCandidates.poll()) != null) {
+			if (deleteClient(candidate)) {
+				//log.debug("Garbace Collection: Client " + candidate + " wird aus ClientListe entfernt");
+				deletedClients.add(candidate);
 			}
 		}
 		return deletedClients;
@@ -319,7 +466,7 @@ public class SharedChatClientList {
 	 * 
 	 * @return Laenge der Liste
 	 */
-	public synchronized long size() {
+	public long size() {
 
 		return clients.size();
 	}
@@ -331,7 +478,7 @@ public class SharedChatClientList {
 	 * @param userName
 	 *          Name des Clients
 	 */
-	public synchronized void incrNumberOfReceivedChatEventConfirms(String userName) {
+	public void incrNumberOfReceivedChatEventConfirms(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
@@ -346,7 +493,7 @@ public class SharedChatClientList {
 	 * @param userName
 	 *          Name des Clients
 	 */
-	public synchronized void incrNumberOfSentChatEvents(String userName) {
+	public void incrNumberOfSentChatEvents(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
@@ -360,7 +507,7 @@ public class SharedChatClientList {
 	 * @param userName
 	 *          Name des Clients
 	 */
-	public synchronized void incrNumberOfReceivedChatMessages(String userName) {
+	public void incrNumberOfReceivedChatMessages(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
@@ -375,7 +522,7 @@ public class SharedChatClientList {
 	 *          Name des Clients
 	 */
 
-	public synchronized void setRequestStartTime(String userName, long startTime) {
+	public void setRequestStartTime(String userName, long startTime) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
@@ -393,7 +540,7 @@ public class SharedChatClientList {
 	 *          Name des Clients
 	 * @return Ankunftszeit des Requests in ns
 	 */
-	public synchronized long getRequestStartTime(String userName) {
+	public long getRequestStartTime(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
@@ -403,6 +550,28 @@ public class SharedChatClientList {
 		}
 	}
 
+	/**
+	 * Liefert die Ankunftszeit des Chat-Requests, zu dem die Warteliste mit der
+	 * angegebenen Kennung gehoert. Bei Pipelining ist die Ankunftszeit des
+	 * Clients bereits durch spaetere Requests ueberschrieben.
+	 *
+	 * @param userName
+	 *          Name des Clients
+	 * @param eventId
+	 *          Kennung des Events (Sequenznummer des Requests)
+	 * @return Ankunftszeit des Requests in ns, 0 wenn keine Warteliste mehr
+	 *         vorhanden ist
+	 */
+	public long getRequestStartTime(String userName, long eventId) {
+
+		ClientListEntry client = clients.get(userName);
+		if (client != null) {
+			return client.getWaitList(eventId).getRequestStartTime();
+		} else {
+			return 0;
+		}
+	}
+
 	/**
 	 * Erstellt eine Liste aller Clients, die noch ein Event bestaetigen muessen.
 	 * Es werden nur registrierte und sich in Registrierung befindliche Clients
@@ -411,41 +580,97 @@ public class SharedChatClientList {
 	 * @param userName
 	 *          Name des Clients, fuer den die Liste erstellt werden soll
 	 */
-	public synchronized void createWaitList(String userName) {
+	public void createWaitList(String userName) {
 
-		ClientListEntry client = clients.get(userName);
-		if (client != null) {
-			for (String s : new HashSet<String>(clients.keySet())) {
-				// Nur registrierte oder sich gerade registrierende Clients in
-				// die
-				// Warteliste aufnehmen
-				if ((client.getStatus() == ClientConversationStatus.REGISTERED)
-						|| (client.getStatus() == ClientConversationStatus.REGISTERING)) {
-					client.addWaitListEntry(s);
+		createWaitList(userName, 0);
+	}
+
+	/**
+	 * Erstellt eine Warteliste fuer ein Event mit der angegebenen Kennung. Eine
+	 * vorher vorhandene Warteliste des Clients mit derselben Kennung wird
+	 * ersetzt, Wartelisten anderer Events bleiben bestehen.
+	 * 
+	 * @param userName
+	 *          Name des Clients, fuer den die Liste erstellt werden soll
+	 * @param eventId
+	 *          Kennung des Events (Sequenznummer des Requests)
+	 */
+	public void createWaitList(String userName, long eventId) {
+
+		createWaitList(userName, eventId, null);
+	}
+
+	/**
+	 * Erzeugt eine Warteliste fuer ein Event, das nur an die angegebenen Clients
+	 * verteilt wird (z.B. die Mitglieder eines Chat-Raums)
+	 * 
+	 * @param userName
+	 *          Name des Clients, der das Event initiiert hat
+	 * @param eventId
+	 *          Kennung des Events
+	 * @param recipients
+	 *          Namen der Empfaenger, null: alle Clients
+	 * @return Anzahl der eingetragenen Empfaenger. Bei 0 wird keine Warteliste
+	 *         angelegt, es kommen keine Confirms.
+	 */
+	public int createWaitList(String userName, long eventId,
+			Collection<String> recipients) {
+
+		structureLock.readLock().lock();
+		try {
+			ClientListEntry client = clients.get(userName);
+			if (client != null) {
+				ConfirmWaitSet waitList = new ConfirmWaitSet(eventId, slotLimit.get(),
+						client.getStartTime());
+				for (ClientListEntry entry : recipientEntries(recipients)) {
+					// Nur registrierte oder sich gerade registrierende Clients in
+					// die
+					// Warteliste aufnehmen
+					if ((client.getStatus() == ClientConversationStatus.REGISTERED)
+							|| (client.getStatus() == ClientConversationStatus.REGISTERING)) {
+						if (waitList.add(entry.getSlot())) {
+							entry.incrWaitListReferences();
+						}
+					}
 				}
+
+				// Noch offene Eintraege der vorherigen Warteliste zum selben Event
+				// freigeben
+				releaseWaitList(client.setWaitList(waitList));
+				if (waitList.size() == 0) {
+					client.removeWaitList(waitList);
+				}
+				//log.debug("Warteliste fuer " + userName + " erzeugt");
+				return waitList.size();
+			} else {
+				//log.debug("Warteliste fuer " + userName + " konnte nicht erzeugt werden");
+				return 0;
 			}
-			//log.debug("Warteliste fuer " + userName + " erzeugt");
-		} else {
-			//log.debug("Warteliste fuer " + userName + " konnte nicht erzeugt werden");
+		} finally {
+			structureLock.readLock().unlock();
 		}
 	}
 
 	/**
-	 * Loescht eine Event-Warteliste fuer einen Client
+	 * Loescht alle Event-Wartelisten fuer einen Client
 	 * 
 	 * @param userName
-	 *          Name des Clients, fuer den die Liste geloesccht werden soll
+	 *          Name des Clients, fuer den die Listen geloescht werden sollen
 	 */
-	public synchronized void deleteWaitList(String userName) {
+	public void deleteWaitList(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
-			client.clearWaitList();
+			for (ConfirmWaitSet oldWaitList : client.clearWaitLists()) {
+				releaseWaitList(oldWaitList);
+			}
+			markCandidate(client);
 		}
 	}
 
 	/**
-	 * Loescht einen Eintrag aus der Event-Warteliste
+	 * Loescht einen Eintrag aus der Event-Warteliste fuer Login und Logout
+	 * (Event-Kennung 0)
 	 * 
 	 * @param userName
 	 *          Name des Clients, fuer den ein Listeneintrag aus seiner Warteliste
@@ -453,12 +678,33 @@ public class SharedChatClientList {
 	 * @param entryName
 	 *          name des Clients, der aus der Event-Warteliste geloescht werden
 	 *          soll
-	 * @return Anzahl der noch vorhandenen Eintraege in der Liste
-	 * @throws Exception
-	 *           Client mit UserName existiert nicht
+	 * @return true, wenn mit diesem Eintrag die letzte ausstehende Bestaetigung
+	 *         eingegangen ist
 	 */
 
-	public synchronized void deleteWaitListEntry(String userName, String entryName) {
+	public boolean deleteWaitListEntry(String userName, String entryName) {
+
+		return deleteWaitListEntry(userName, 0, entryName);
+	}
+
+	/**
+	 * Loescht einen Eintrag aus der Event-Warteliste des angegebenen Events.
+	 * Bestaetigungen fuer bereits abgeschlossene oder ersetzte Events werden
+	 * ignoriert. Eine vollstaendige Warteliste wird entfernt.
+	 * 
+	 * @param userName
+	 *          Name des Clients, fuer den ein Listeneintrag aus seiner Warteliste
+	 *          geloescht werden soll
+	 * @param eventId
+	 *          Kennung des bestaetigten Events
+	 * @param entryName
+	 *          name des Clients, der aus der Event-Warteliste geloescht werden
+	 *          soll
+	 * @return true, wenn mit diesem Eintrag die letzte ausstehende Bestaetigung
+	 *         eingegangen ist
+	 */
+	public boolean deleteWaitListEntry(String userName, long eventId,
+			String entryName) {
 
 		//log.debug("Client: " + userName + ", aus Warteliste von " + entryName + " loeschen ");
 
@@ -466,27 +712,64 @@ public class SharedChatClientList {
 
 		if (client == null) {
 			//log.debug("Kein Eintrag fuer " + userName + " in der Clientliste vorhanden");
-		} else if (client.getWaitList().size() == 0) {
-			//log.debug("Warteliste fuer " + userName + " war vorher schon leer");
-			return;
-		} else {
-			client.getWaitList().remove(entryName);
-			//log.debug("Eintrag fuer " + entryName + " aus der Warteliste von " + userName+ " geloescht");
+			return false;
+		}
+
+		ConfirmWaitSet waitList = client.getWaitList(eventId);
+		if (waitList == ConfirmWaitSet.EMPTY) {
+			//log.debug("Confirm fuer veraltetes Event " + eventId + " von " + entryName + " ignoriert");
+			return false;
+		}
+		ClientListEntry entry = clients.get(entryName);
+		if (entry == null) {
+			return false;
+		}
+		int remaining = waitList.remove(entry.getSlot());
+		if (remaining < 0) {
+			// Bereits ausgetragen
+			return false;
+		}
+		//log.debug("Eintrag fuer " + entryName + " aus der Warteliste von " + userName+ " geloescht");
+		decrWaitListReferences(entry);
+		if (remaining == 0) {
+			client.removeWaitList(waitList);
+			markCandidate(client);
+			return true;
 		}
+		return false;
 	}
 
 	/**
-	 * Liefert die Laenge der Event-Warteliste fuer einen Client
+	 * Liefert die Laenge aller Event-Wartelisten fuer einen Client
 	 * 
 	 * @param userName
 	 *          Name des Clients
-	 * @return Anzahl der noch vorhandenen Eintraege in der Liste
+	 * @return Anzahl der noch vorhandenen Eintraege in den Listen
 	 */
-	public synchronized int getWaitListSize(String userName) {
+	public int getWaitListSize(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
-			return client.getWaitList().size();
+			return client.getWaitListSize();
+		}
+		return 0;
+	}
+
+	/**
+	 * Liefert die Laenge der Event-Warteliste eines bestimmten Events
+	 * 
+	 * @param userName
+	 *          Name des Clients
+	 * @param eventId
+	 *          Kennung des Events
+	 * @return Anzahl der noch vorhandenen Eintraege, 0 wenn die Warteliste
+	 *         bereits vollstaendig ist
+	 */
+	public int getWaitListSize(String userName, long eventId) {
+
+		ClientListEntry client = clients.get(userName);
+		if (client != null) {
+			return client.getWaitList(eventId).size();
 		}
 		return 0;
 	}
@@ -497,11 +780,12 @@ public class SharedChatClientList {
 	 * @param userName
 	 *          Name des Clients
 	 */
-	public synchronized void finish(String userName) {
+	public void finish(String userName) {
 
 		ClientListEntry client = clients.get(userName);
 		if (client != null) {
 			client.setFinished(true);
+			markCandidate(client);
 			//log.debug("Finished-Kennzeichen gesetzt fuer: " + userName);
 		}
 	}
@@ -521,10 +805,166 @@ public class SharedChatClientList {
 			stringBuilder.append("\n");
 			for (String s : new HashSet<String>(clients.keySet())) {
 				ClientListEntry client = clients.get(s);
-				stringBuilder.append(client.getUserName() + ", ");
-				stringBuilder.append(client.getWaitList() + "\n");
+				stringBuilder.append(client.getUserName() + ",");
+				for (ConfirmWaitSet waitList : client.getWaitLists()) {
+					stringBuilder.append(" " + waitList.getEventId() + ": [");
+					for (ClientListEntry entry : clients.values()) {
+						if (waitList.contains(entry.getSlot())) {
+							stringBuilder.append(" " + entry.getUserName());
+						}
+					}
+					stringBuilder.append(" ]");
+				}
+				stringBuilder.append("\n");
 			}
 		}
 		return stringBuilder.toString();
 	}
+
+	/**
+	 * Eintraege der Empfaenger eines Events ermitteln
+	 * 
+	 * @param recipients
+	 *          Namen der Empfaenger, null: alle Clients
+	 * @return Eintraege der noch angemeldeten Empfaenger
+	 */
+	private Collection<ClientListEntry> recipientEntries(Collection<String> recipients) {
+		if (recipients == null) {
+			return clients.values();
+		}
+		List<ClientListEntry> entries = new ArrayList<ClientListEntry>(recipients.size());
+		for (String name : recipients) {
+			ClientListEntry entry = clients.get(name);
+			if (entry != null) {
+				entries.add(entry);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Prueft, ob ein Client ohne Verletzung offener Wartelisten geloescht werden
+	 * kann
+	 * 
+	 * @param client
+	 *          Client oder null
+	 * @return true, wenn der Client beendet ist, seine Wartelisten leer sind und er
+	 *         in keiner anderen Warteliste mehr steht
+	 */
+	private boolean isRemovable(ClientListEntry client) {
+
+		return (client != null) && client.isFinished()
+				&& (client.getWaitListSize() == 0)
+				&& (client.getWaitListReferences() == 0);
+	}
+
+	/**
+	 * Merkt einen Client fuer den Garbage Collector vor, wenn er geloescht
+	 * werden kann
+	 * 
+	 * @param client
+	 *          Client
+	 */
+	private void markCandidate(ClientListEntry client) {
+
+		if (isRemovable(client)) {
+			gcCandidates.offer(client.getUserName());
+		}
+	}
+
+	/**
+	 * Verringert den Referenzzaehler eines Clients, nachdem er aus einer
+	 * Warteliste ausgetragen wurde
+	 * 
+	 * @param client
+	 *          Ausgetragener Client
+	 */
+	private void decrWaitListReferences(ClientListEntry client) {
+
+		if (client.decrWaitListReferences() == 0) {
+			markCandidate(client);
+		}
+	}
+
+	/**
+	 * Traegt alle noch offenen Eintraege einer nicht mehr benoetigten
+	 * Warteliste aus
+	 * 
+	 * @param waitList
+	 *          Warteliste
+	 */
+	private void releaseWaitList(ConfirmWaitSet waitList) {
+
+		for (int slot = waitList.nextSlot(0); slot >= 0; slot = waitList
+				.nextSlot(slot + 1)) {
+			if (waitList.remove(slot) >= 0) {
+				ClientListEntry owner = slotOwners.get(slot);
+				if (owner != null) {
+					decrWaitListReferences(owner);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Vergibt einen freien Slot fuer einen neuen Client
+	 * 
+	 * @return Slot
+	 */
+	private int allocateSlot() {
+
+		Integer slot = freeSlots.poll();
+		return (slot != null) ? slot : slotLimit.getAndIncrement();
+	}
+
+	/**
+	 * Gibt den Slot eines entfernten Clients zur Wiederverwendung frei
+	 * 
+	 * @param client
+	 *          Entfernter Client oder null
+	 */
+	private void releaseSlot(ClientListEntry client) {
+
+		if ((client != null) && (client.getSlot() >= 0)) {
+			slotOwners.remove(client.getSlot(), client);
+			freeSlots.offer(client.getSlot());
+			client.setSlot(-1);
+		}
+	}
+
+	/**
+	 * Warteliste eines Clients, die durch das zwangsweise Loeschen eines anderen
+	 * Clients vollstaendig geworden ist
+	 */
+	public static final class CompletedWaitList {
+
+		private final String userName;
+		private final ConfirmWaitSet waitList;
+
+		CompletedWaitList(String userName, ConfirmWaitSet waitList) {
+			this.userName = userName;
+			this.waitList = waitList;
+		}
+
+		/**
+		 * @return Name des Clients, dem die Warteliste gehoert
+		 */
+		public String getUserName() {
+			return userName;
+		}
+
+		/**
+		 * @return Kennung des Events (Sequenznummer des Requests, 0: Login/Logout)
+		 */
+		public long getEventId() {
+			return waitList.getEventId();
+		}
+
+		/**
+		 * @return Ankunftszeit des Requests in ns
+		 */
+		public long getRequestStartTime() {
+			return waitList.getRequestStartTime();
+		}
+	}
 }
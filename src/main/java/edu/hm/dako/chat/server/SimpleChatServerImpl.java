@@ -56,6 +56,7 @@ public class SimpleChatServerImpl extends AbstractChatServer {
 			protected Void call() throws Exception {
 				// Clientliste erzeugen
 				clients = SharedChatClientList.getInstance();
+				startIdleSessionReaper();
 
 				while (!Thread.currentThread().isInterrupted() && !socket.isClosed()) {
 					try {
@@ -67,8 +68,8 @@ public class SimpleChatServerImpl extends AbstractChatServer {
 						//log.debug("Neuer Verbindungsaufbauwunsch empfangen");
 
 						// Neuen Workerthread starten
-						executorService.submit(new SimpleChatWorkerThreadImpl(connection, clients,
-								counter, serverGuiInterface));
+						executorService.submit(watchIdleTime(new SimpleChatWorkerThreadImpl(
+								connection, clients, counter, serverGuiInterface)));
 					} catch (Exception e) {
 						if (socket.isClosed()) {
 							//log.debug("Socket wurde geschlossen");
@@ -106,6 +107,8 @@ public class SimpleChatServerImpl extends AbstractChatServer {
 			}
 		}
 
+		stopIdleSessionReaper();
+
 		// Loeschen der Userliste
 		clients.deleteAll();
 		Thread.currentThread().interrupt();
@@ -1,5 +1,6 @@
 package edu.hm.dako.chat.server;
 
+import java.util.List;
 import java.util.Vector;
 
 import org.apache.commons.logging.Log;
@@ -10,7 +11,7 @@ import edu.hm.dako.chat.common.ClientConversationStatus;
 import edu.hm.dako.chat.common.ClientListEntry;
 import edu.hm.dako.chat.common.ExceptionHandler;
 import edu.hm.dako.chat.connection.Connection;
-import edu.hm.dako.chat.connection.ConnectionTimeoutException;
+import edu.hm.dako.chat.connection.EncodedPdu;
 import edu.hm.dako.chat.connection.EndOfFileException;
 
 /**
@@ -50,12 +51,12 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 	@Override
 	protected void sendLoginListUpdateEvent(ChatPDU pdu) {
 
-		// Liste der eingeloggten bzw. sich einloggenden User ermitteln
-		Vector<String> clientList = clients.getRegisteredClientNameList();
+		// Nur der geaenderte User (eventUserName) und der neue Stand der Userliste
+		// werden uebertragen, die Clients fuehren ihre Liste selbst nach
+		pdu.setUserListVersion(clients.nextUserListVersion());
 
-		//log.debug("Aktuelle Clientliste, die an die Clients uebertragen wird: " + clientList);
-
-		pdu.setClients(clientList);
+		// Event nur einmal kodieren und an alle Clients verteilen
+		EncodedPdu event = new EncodedPdu(pdu);
 
 		Vector<String> clientList2 = clients.getClientNameList();
 		for (String s : new Vector<String>(clientList2)) {
@@ -65,7 +66,7 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 			try {
 				if (client != null) {
 
-					client.getConnection().send(pdu);
+					client.getConnection().send(event, null);
 					//log.debug(							"Login- oder Logout-Event-PDU an " + client.getUserName() + " gesendet");
 					clients.incrNumberOfSentChatEvents(client.getUserName());
 					eventCounter.getAndIncrement();
@@ -106,8 +107,9 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 			pdu = ChatPDU.createLoginEventPdu(userName, receivedPdu);
 			sendLoginListUpdateEvent(pdu);
 
-			// Login Response senden
+			// Login Response mit der vollstaendigen Userliste senden
 			ChatPDU responsePdu = ChatPDU.createLoginResponsePdu(userName, receivedPdu);
+			clients.setUserListSnapshot(responsePdu);
 
 			try {
 				clients.getClient(userName).getConnection().send(responsePdu);
@@ -131,7 +133,8 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 				//log.debug("Login-Response-PDU an " + receivedPdu.getUserName()						+ " mit Fehlercode " + ChatPDU.LOGIN_ERROR + " gesendet");
 			} catch (Exception e) {
 				//log.debug("Senden einer Login-Response-PDU an " + receivedPdu.getUserName()						+ " nicth moeglich");
-				ExceptionHandler.logExceptionAndTerminate(e);
+				ExceptionHandler.logException(e);
+				finished = true;
 			}
 		}
 	}
@@ -180,18 +183,20 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 		if (!clients.existsClient(receivedPdu.getUserName())) {
 			//log.debug("User nicht in Clientliste: " + receivedPdu.getUserName());
 		} else {
-			// Liste der betroffenen Clients ermitteln
-			Vector<String> sendList = clients.getClientNameList();
+			// Betroffene Clients sind die Mitglieder des Chat-Raums der Nachricht
+			List<String> sendList = clients.getRoomMemberList(receivedPdu.getRoomOrDefault());
 			ChatPDU pdu = ChatPDU.createChatMessageEventPdu(userName, receivedPdu);
+			// Gemeinsamen Event-Rumpf nur einmal kodieren, je Empfaenger wird nur der
+			// User-Name vorangestellt
+			EncodedPdu event = new EncodedPdu(pdu);
 
-			// Event an Clients senden
-			for (String s : new Vector<String>(sendList)) {
+			// Event an Clients senden (die Mitgliederliste ist unveraenderlich)
+			for (String s : sendList) {
 				client = clients.getClient(s);
 				try {
 					if ((client != null)
 							&& (client.getStatus() != ClientConversationStatus.UNREGISTERED)) {
-						pdu.setUserName(client.getUserName());
-						client.getConnection().send(pdu);
+						client.getConnection().send(event, client.getUserName());
 						//log.debug("Chat-Event-PDU an " + client.getUserName() + " gesendet");
 						clients.incrNumberOfSentChatEvents(client.getUserName());
 						eventCounter.getAndIncrement();
@@ -210,6 +215,9 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 						client.getNumberOfReceivedChatMessages(), receivedPdu.getClientThreadName(),
 						(System.nanoTime() - client.getStartTime()));
 
+				// Response ueber die Sequenznummer dem Request zuordnen
+				responsePdu.setSequenceNumber(receivedPdu.getSequenceNumber());
+
 				if (responsePdu.getServerTime() / 1000000 > 100) {
 					//log.debug(Thread.currentThread().getName()+ ", Benoetigte Serverzeit vor dem Senden der Response-Nachricht > 100 ms: "+ responsePdu.getServerTime() + " ns = "+ responsePdu.getServerTime() / 1000000 + " ms");
 				}
@@ -219,7 +227,9 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 					//log.debug(							"Chat-Message-Response-PDU an " + receivedPdu.getUserName() + " gesendet");
 				} catch (Exception e) {
 					//log.debug("Senden einer Chat-Message-Response-PDU an " + client.getUserName()							+ " nicht moeglich");
-					ExceptionHandler.logExceptionAndTerminate(e);
+					// Nur diese Session beenden, nicht den Server
+					ExceptionHandler.logException(e);
+					finished = true;
 				}
 			}
 			//log.debug("Aktuelle Laenge der Clientliste: " + clients.size());
@@ -324,33 +334,15 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 		// Warten auf naechste Nachricht
 		ChatPDU receivedPdu = null;
 
-		// Nach einer Minute wird geprueft, ob Client noch eingeloggt ist
-		final int RECEIVE_TIMEOUT = 60000;
-
+		// Ohne Timeout warten: Sendet der Client laenger als die Leerlaufzeit
+		// nichts (auch keinen Heartbeat), baut der IdleSessionReaper die
+		// Verbindung ab und der Empfang endet mit einem Fehler
 		try {
-			receivedPdu = (ChatPDU) connection.receive(RECEIVE_TIMEOUT);
+			receivedPdu = (ChatPDU) receiver.receive();
 			// Nachricht empfangen
 			// Zeitmessung fuer Serverbearbeitungszeit starten
 			startTime = System.nanoTime();
-
-		} catch (ConnectionTimeoutException e) {
-
-			// Wartezeit beim Empfang abgelaufen, pruefen, ob der Client
-			// ueberhaupt noch etwas sendet
-			//log.debug("Timeout beim Empfangen, " + RECEIVE_TIMEOUT + " ms ohne Nachricht vom Client");
-
-			if (clients.getClient(userName) != null) {
-				if (clients.getClient(userName)
-						.getStatus() == ClientConversationStatus.UNREGISTERING) {
-					// Worker-Thread wartet auf eine Nachricht vom Client, aber es
-					// kommt nichts mehr an
-					//log.error("Client ist im Zustand UNREGISTERING und bekommt aber keine Nachricht mehr");
-					// Zur Sicherheit eine Logout-Response-PDU an Client senden und
-					// dann Worker-Thread beenden
-					finished = true;
-				}
-			}
-			return;
+			lastActivity = startTime;
 
 		} catch (EndOfFileException e) {
 			//log.debug("End of File beim Empfang, vermutlich Verbindungsabbau des Partners");
@@ -388,6 +380,21 @@ public class SimpleChatWorkerThreadImpl extends AbstractWorkerThread {
 				logoutRequestAction(receivedPdu);
 				break;
 
+			case HEARTBEAT:
+				// Client lebt noch, Aktivitaet ist bereits vermerkt
+				break;
+
+			case ROOM_JOIN_REQUEST:
+			case ROOM_LEAVE_REQUEST:
+				// Client tritt einem Chat-Raum bei oder verlaesst ihn
+				roomRequestAction(receivedPdu);
+				break;
+
+			case USER_LIST_REQUEST:
+				// Client fordert nach einer Luecke die vollstaendige Userliste an
+				userListRequestAction(receivedPdu);
+				break;
+
 			default:
 				//log.debug("Falsche PDU empfangen von Client: " + receivedPdu.getUserName()+ ", PduType: " + receivedPdu.getPduType());
 				break;
@@ -0,0 +1,77 @@
+package edu.hm.dako.chat.tcp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.hm.dako.chat.connection.FlushPolicy;
+
+/**
+ * Entscheidet fuer eine blockierende Verbindung, ob nach dem Schreiben einer
+ * Nachricht der Ausgabestrom geleert wird.
+ * <p/>
+ * Bei {@link FlushPolicy#OnIdle} meldet sich jeder Sender vor dem Sperren des
+ * Ausgabestroms an und nach Erhalt der Sperre wieder ab. Nur wer danach keinen
+ * weiteren wartenden Sender sieht, leert den Strom. Die Nachrichten der
+ * wartenden Sender werden so zusammen mit der eigenen in einem Schreibaufruf
+ * gesendet. Ein Sender, der sich erst nach dem Abmelden anmeldet, leert den
+ * Strom selbst, es bleibt also nie eine Nachricht im Puffer liegen.
+ *
+ * @author Mandl
+ */
+final class FlushControl {
+
+	// Puffergroesse in Byte, wenn keine Schwelle angegeben ist
+	static final int DEFAULT_FLUSH_THRESHOLD = 8192;
+
+	private final FlushPolicy policy;
+
+	// Anzahl der Sender, die auf die Sperre des Ausgabestroms warten
+	private final AtomicInteger waitingSenders = new AtomicInteger(0);
+
+	FlushControl(FlushPolicy policy) {
+		this.policy = (policy == null) ? FlushPolicy.Immediate : policy;
+	}
+
+	/**
+	 * @param flushThreshold
+	 *          Angegebene Schwelle in Byte, 0: Standardwert
+	 * @return Groesse des Ausgabepuffers in Byte
+	 */
+	static int bufferSize(int flushThreshold) {
+		return (flushThreshold > 0) ? flushThreshold : DEFAULT_FLUSH_THRESHOLD;
+	}
+
+	/**
+	 * @return true, wenn Nachrichten im Ausgabestrom gepuffert werden
+	 */
+	boolean isBuffered() {
+		return policy != FlushPolicy.Immediate;
+	}
+
+	/**
+	 * Sender vor dem Sperren des Ausgabestroms anmelden
+	 */
+	void beforeLock() {
+		if (policy == FlushPolicy.OnIdle) {
+			waitingSenders.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Sender nach Erhalt der Sperre abmelden, muss nach {@link #beforeLock()}
+	 * genau einmal aufgerufen werden
+	 *
+	 * @return true, wenn der Sender nach dem Schreiben den Ausgabestrom leeren
+	 *         soll
+	 */
+	boolean afterLock() {
+		switch (policy) {
+		case OnIdle:
+			return waitingSenders.decrementAndGet() == 0;
+		case OnDrain:
+			// Die Ausgangswarteschlange leert den Strom, wenn sie leer ist
+			return false;
+		default:
+			return true;
+		}
+	}
+}
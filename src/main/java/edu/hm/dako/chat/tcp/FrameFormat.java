@@ -0,0 +1,146 @@
+package edu.hm.dako.chat.tcp;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.connection.PduCodec;
+
+/**
+ * Rahmenformat fuer rahmenbasierte Verbindungen. Jeder Rahmen besteht aus einer 4 Byte
+ * langen Laengenangabe (Big Endian), einem Byte fuer die Rahmenart und den Nutzdaten.
+ * Anders als beim langlebigen ObjectOutputStream der {@link TcpConnection} ist jeder
+ * Rahmen fuer sich dekodierbar, was ein nicht-blockierendes Einlesen ermoeglicht.
+ *
+ * Rahmenarten:
+ *
+ * <pre>
+ * PLAIN:     mit dem {@link PduCodec} kodierte Nachricht
+ * ADDRESSED: Empfaengername (2 Byte Laenge, UTF-8) und gemeinsam kodierter PDU-Rumpf
+ * </pre>
+ *
+ * Bei ADDRESSED-Rahmen wird der Empfaengername nach dem Dekodieren als User-Name in
+ * die PDU eingetragen. Damit kann ein Event einmal kodiert und an beliebig viele
+ * Empfaenger gesendet werden.
+ *
+ * @author Peter Mandl
+ */
+final class FrameFormat {
+
+	// Laenge des Rahmenkopfes (Laengenangabe) in Byte
+	static final int HEADER_LENGTH = 4;
+
+	// Maximale Groesse eines Rahmens, groessere Angaben deuten auf einen Protokollfehler
+	static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	// Rahmenarten
+	static final byte PLAIN = 0;
+	static final byte ADDRESSED = 1;
+
+	private FrameFormat() {
+	}
+
+	/**
+	 * Baut einen Rahmen fuer eine einzeln kodierte Nachricht
+	 *
+	 * @param payload
+	 *          Kodierte Nachricht
+	 * @return Rahmen (im Lesemodus)
+	 */
+	static ByteBuffer plainFrame(byte[] payload) {
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + 1 + payload.length);
+		frame.putInt(1 + payload.length);
+		frame.put(PLAIN);
+		frame.put(payload);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Baut einen Rahmen aus Empfaengername und gemeinsam kodiertem PDU-Rumpf
+	 *
+	 * @param recipient
+	 *          Name des Empfaengers
+	 * @param body
+	 *          Einmal kodierter PDU-Rumpf
+	 * @return Rahmen (im Lesemodus)
+	 * @throws IOException
+	 *           Empfaengername zu lang
+	 */
+	static ByteBuffer addressedFrame(String recipient, byte[] body) throws IOException {
+		byte[] name = recipient.getBytes(StandardCharsets.UTF_8);
+		if (name.length > 0xFFFF) {
+			throw new IOException("Empfaengername zu lang: " + name.length);
+		}
+		int length = 1 + 2 + name.length + body.length;
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + length);
+		frame.putInt(length);
+		frame.put(ADDRESSED);
+		frame.putShort((short) name.length);
+		frame.put(name);
+		frame.put(body);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Dekodiert den Inhalt eines Rahmens (ohne Laengenangabe)
+	 *
+	 * @param codec
+	 *          Kodierung der Nachrichten
+	 * @param data
+	 *          Puffer mit dem Rahmeninhalt
+	 * @param offset
+	 *          Beginn des Rahmeninhalts im Puffer
+	 * @param length
+	 *          Laenge des Rahmeninhalts
+	 * @return Empfangene Nachricht
+	 * @throws IOException
+	 *           Rahmen nicht dekodierbar
+	 */
+	static Serializable decode(PduCodec codec, byte[] data, int offset, int length)
+			throws IOException {
+		if (length < 1) {
+			throw new IOException("Leerer Rahmen");
+		}
+		switch (data[offset]) {
+
+		case PLAIN:
+			return codec.decode(data, offset + 1, length - 1);
+
+		case ADDRESSED:
+			if (length < 3) {
+				throw new IOException("Rahmen zu kurz: " + length);
+			}
+			int nameLength = ((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF);
+			int bodyOffset = offset + 3 + nameLength;
+			int bodyLength = length - 3 - nameLength;
+			if (bodyLength < 0) {
+				throw new IOException("Ungueltige Namenslaenge im Rahmen: " + nameLength);
+			}
+			String recipient = new String(data, offset + 3, nameLength, StandardCharsets.UTF_8);
+			ChatPDU pdu = (ChatPDU) codec.decode(data, bodyOffset, bodyLength);
+			pdu.setUserName(recipient);
+			return pdu;
+
+		default:
+			throw new IOException("Unbekannte Rahmenart: " + data[offset]);
+		}
+	}
+
+	/**
+	 * Prueft eine empfangene Laengenangabe
+	 *
+	 * @param length
+	 *          Gelesene Laenge
+	 * @throws IOException
+	 *           Laenge ausserhalb des zulaessigen Bereichs
+	 */
+	static void checkLength(int length) throws IOException {
+		if ((length < 0) || (length > MAX_FRAME_LENGTH)) {
+			throw new IOException("Ungueltige Rahmenlaenge: " + length);
+		}
+	}
+}
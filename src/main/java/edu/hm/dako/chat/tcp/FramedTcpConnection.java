@@ -0,0 +1,225 @@
+package edu.hm.dako.chat.tcp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.ConnectionTimeoutException;
+import edu.hm.dako.chat.connection.EncodedPdu;
+import edu.hm.dako.chat.connection.EndOfFileException;
+import edu.hm.dako.chat.connection.FlushPolicy;
+import edu.hm.dako.chat.connection.PduCodec;
+
+/**
+ * Blockierende TCP-Verbindung mit laengenpraefixierten Rahmen. Wird fuer die
+ * Kommunikation mit dem NIO-Server und fuer alle Verbindungen mit einem anderen Codec
+ * als der Java-Serialisierung genutzt. Die Nachrichten werden nicht ueber einen
+ * durchgehenden ObjectStream, sondern rahmenweise kodiert.
+ *
+ * @author Peter Mandl
+ *
+ */
+public class FramedTcpConnection implements Connection {
+
+	private static Log log = LogFactory.getLog(FramedTcpConnection.class);
+
+	// Ein- und Ausgabestrom der Verbindung
+	private DataOutputStream out;
+	private DataInputStream in;
+
+	// Verwendetes TCP-Socket
+	private Socket socket;
+
+	// Aktuell eingestellter Empfangs-Timeout des Sockets (0: unbegrenzt), damit
+	// die Socket-Option nur bei einer Aenderung gesetzt wird
+	private int currentTimeout = 0;
+
+	// Kodierung der Nachrichten
+	private final PduCodec codec;
+
+	// Zeitpunkt des Leerens des Ausgabestroms
+	private final FlushControl flushControl;
+
+	public FramedTcpConnection(Socket socket, int sendBufferSize, int receiveBufferSize,
+			boolean keepAlive, boolean TcpNoDelay, PduCodec codec) {
+		this(socket, sendBufferSize, receiveBufferSize, keepAlive, TcpNoDelay, codec,
+				FlushPolicy.Immediate, 0);
+	}
+
+	/**
+	 * Verbindung, die Rahmen gemaess der Flush-Strategie puffert
+	 *
+	 * @param flushPolicy
+	 *          Zeitpunkt des Leerens des Ausgabestroms
+	 * @param flushThreshold
+	 *          Groesse des Puffers in Byte, bei deren Erreichen unabhaengig von der
+	 *          Strategie geschrieben wird, 0: Standardwert
+	 */
+	public FramedTcpConnection(Socket socket, int sendBufferSize, int receiveBufferSize,
+			boolean keepAlive, boolean TcpNoDelay, PduCodec codec, FlushPolicy flushPolicy,
+			int flushThreshold) {
+		this.socket = socket;
+		this.codec = codec;
+		this.flushControl = new FlushControl(flushPolicy);
+
+		try {
+			socket.setReceiveBufferSize(receiveBufferSize);
+			socket.setSendBufferSize(sendBufferSize);
+			socket.setTcpNoDelay(TcpNoDelay);
+			socket.setKeepAlive(keepAlive);
+
+			out = new DataOutputStream(new BufferedOutputStream(
+					TcpWriteStatistics.counting(socket.getOutputStream()),
+					FlushControl.bufferSize(flushThreshold)));
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+		} catch (SocketException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Serializable receive(int timeout)
+			throws Exception, ConnectionTimeoutException, EndOfFileException {
+
+		if (!socket.isConnected()) {
+			throw new EndOfFileException(new Exception());
+		}
+
+		setReceiveTimeout(timeout);
+
+		try {
+			return readFrame();
+
+		} catch (java.net.SocketTimeoutException e) {
+			throw new ConnectionTimeoutException(e);
+		} catch (java.io.EOFException e) {
+			throw new EndOfFileException(e);
+		} catch (Exception e) {
+			throw new EndOfFileException(e);
+		}
+	}
+
+	@Override
+	public Serializable receive() throws Exception {
+
+		if (!socket.isConnected()) {
+			throw new EndOfFileException(new Exception());
+		}
+		try {
+			setReceiveTimeout(0);
+			return readFrame();
+		} catch (Exception e) {
+			throw new IOException();
+		}
+	}
+
+	/**
+	 * Setzt den Empfangs-Timeout des Sockets nur, wenn er sich aendert. Beim
+	 * Empfang ohne Timeout wird die Socket-Option so nicht je Nachricht
+	 * veraendert. Wird nur vom empfangenden Thread aufgerufen.
+	 * 
+	 * @param timeout
+	 *          Timeout in ms, 0: unbegrenzt
+	 * @throws SocketException
+	 */
+	private void setReceiveTimeout(int timeout) throws SocketException {
+		if (timeout != currentTimeout) {
+			socket.setSoTimeout(timeout);
+			currentTimeout = timeout;
+		}
+	}
+
+	@Override
+	public void send(Serializable message) throws Exception {
+
+		if (socket.isClosed() || !socket.isConnected()) {
+			throw new IOException();
+		}
+
+		try {
+			// Kodieren ausserhalb der Sperre
+			writeFrame(FrameFormat.plainFrame(codec.encode(message)));
+		} catch (Exception e) {
+			throw new IOException();
+		}
+	}
+
+	@Override
+	public void send(EncodedPdu pdu, String recipient) throws Exception {
+
+		if (socket.isClosed() || !socket.isConnected()) {
+			throw new IOException();
+		}
+
+		try {
+			if (recipient == null) {
+				writeFrame(FrameFormat.plainFrame(pdu.getBody(codec)));
+			} else {
+				writeFrame(FrameFormat.addressedFrame(recipient, pdu.getBody(codec)));
+			}
+		} catch (Exception e) {
+			throw new IOException();
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			out.flush();
+			socket.close();
+		} catch (Exception e) {
+			throw new IOException(new IOException());
+		}
+	}
+
+	/**
+	 * Schreibt einen vollstaendigen Rahmen auf den Ausgabestrom und leert ihn
+	 * gemaess der Flush-Strategie
+	 *
+	 * @param frame
+	 *          Rahmen (im Lesemodus)
+	 * @throws IOException
+	 */
+	private void writeFrame(ByteBuffer frame) throws IOException {
+		flushControl.beforeLock();
+		synchronized (this) {
+			boolean flush = flushControl.afterLock();
+			out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+			if (flush) {
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Liest einen vollstaendigen Rahmen vom Eingabestrom
+	 *
+	 * @return Dekodierte Nachricht
+	 * @throws IOException
+	 */
+	private Serializable readFrame() throws IOException {
+		int length = in.readInt();
+		FrameFormat.checkLength(length);
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		return FrameFormat.decode(codec, payload, 0, length);
+	}
+}
@@ -0,0 +1,37 @@
+package edu.hm.dako.chat.tcp;
+
+import java.net.Socket;
+
+import edu.hm.dako.chat.connection.PduCodec;
+import edu.hm.dako.chat.connection.SerializationPduCodec;
+
+/**
+ * Erzeugen von rahmenbasierten TCP-Verbindungen zum Server
+ *
+ * @author Peter Mandl
+ *
+ */
+public class FramedTcpConnectionFactory extends TcpConnectionFactory {
+
+	// Kodierung der Nachrichten
+	private final PduCodec codec;
+
+	public FramedTcpConnectionFactory() {
+		this(new SerializationPduCodec());
+	}
+
+	/**
+	 * @param codec
+	 *          Kodierung der Nachrichten
+	 */
+	public FramedTcpConnectionFactory(PduCodec codec) {
+		this.codec = codec;
+	}
+
+	@Override
+	protected FramedTcpConnection createConnection(Socket socket, int sendBufferSize,
+			int receiveBufferSize) {
+		return new FramedTcpConnection(socket, sendBufferSize, receiveBufferSize, false,
+				tcpNoDelay, codec, flushPolicy, flushThreshold);
+	}
+}
@@ -0,0 +1,469 @@
+package edu.hm.dako.chat.tcp;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.connection.DroppedPduHandler;
+import edu.hm.dako.chat.connection.EncodedPdu;
+import edu.hm.dako.chat.connection.MessageHandler;
+import edu.hm.dako.chat.connection.MessageSender;
+import edu.hm.dako.chat.connection.OverflowPolicy;
+import edu.hm.dako.chat.connection.PduCodec;
+
+/**
+ * Serverseitige, nicht-blockierende TCP-Verbindung, die von einem
+ * {@link NioTcpEventLoop} bedient wird. Der Empfang erfolgt ausschliesslich ueber den
+ * Event-Loop, der vollstaendige Rahmen an den {@link MessageHandler} der Verbindung
+ * weiterreicht; die Verbindung ist deshalb nur ein {@link MessageSender} und keine
+ * Connection mit blockierendem receive. Gesendet werden kann aus beliebigen Threads: Was nicht sofort in den
+ * Sendepuffer des Sockets passt, wird zwischengespeichert und vom Event-Loop
+ * nachgeschoben, sobald das Socket wieder schreibbereit ist.
+ *
+ * Fasst der Event-Loop die Schreibaufrufe zusammen, werden Rahmen, die im Loop-Thread
+ * selbst gesendet werden (Antworten und Events der Sessions), bis zum Ende des
+ * aktuellen Selector-Durchlaufs zurueckgehalten und dann mit einem sammelnden
+ * Schreibaufruf gesendet.
+ *
+ * Die Anzahl ausstehender Rahmen ist begrenzt (siehe
+ * {@link NioTcpServerSocket#setOutboundLimit}), damit ein Empfaenger, der nicht
+ * liest, den Speicher des Servers nicht beliebig belegt. Bei Erreichen der Grenze
+ * wird das aelteste noch nicht begonnene Event verworfen und dem
+ * {@link DroppedPduHandler} gemeldet oder die Verbindung abgebaut. Responses werden
+ * nie verworfen, sie duerfen die Grenze ueberschreiten.
+ *
+ * @author Peter Mandl
+ *
+ */
+public class NioTcpConnection implements MessageSender {
+
+	private static Log log = LogFactory.getLog(NioTcpConnection.class);
+
+	// Anfangsgroesse des Puffers fuer unvollstaendig empfangene Rahmen
+	private static final int INITIAL_INBOUND_SIZE = 1024;
+
+	// Maximale Anzahl Rahmen je sammelndem Schreibaufruf
+	private static final int MAX_GATHER = 64;
+
+	private final SocketChannel channel;
+	private final NioTcpEventLoop eventLoop;
+	private final PduCodec codec;
+	private SelectionKey key;
+
+	// Handler fuer empfangene Nachrichten, wird beim Registrieren gesetzt
+	private MessageHandler handler;
+
+	// Unvollstaendig empfangener Rahmen (im Schreibmodus), null solange keine
+	// Restdaten vorliegen. Leerlaufende Verbindungen belegen so keinen Puffer.
+	private ByteBuffer inbound;
+
+	// Noch nicht gesendete Rahmen
+	private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<ByteBuffer>();
+
+	// Rahmen fuer den sammelnden Schreibaufruf, nur unter der Sperre von
+	// pendingWrites verwendet
+	private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+	// Kennzeichen, ob OP_WRITE beim Event-Loop angemeldet ist
+	private boolean writeInterest = false;
+
+	// Kennzeichen, ob die Verbindung zum Senden am Ende des Selector-Durchlaufs
+	// vorgemerkt ist, und Anzahl der seither zurueckgehaltenen Bytes
+	private boolean writeDeferred = false;
+	private int deferredBytes = 0;
+
+	private boolean closed = false;
+	private boolean closeNotified = false;
+
+	// Kennzeichen, ob die Verbindung wegen voller Ausgangswarteschlange abgebaut
+	// wird, weitere Rahmen werden abgewiesen
+	private boolean disconnecting = false;
+
+	// Anzahl wegen voller Ausgangswarteschlange verworfener Rahmen
+	private long droppedFrames = 0;
+
+	// Ausstehende Rahmen, die Events enthalten und verworfen werden duerfen,
+	// nur bei OverflowPolicy.DropOldest gefuellt
+	private final IdentityHashMap<ByteBuffer, EncodedPdu> eventFrames = new IdentityHashMap<ByteBuffer, EncodedPdu>();
+
+	// Empfaenger der Meldungen ueber verworfene Events, null: keine Meldung
+	private volatile DroppedPduHandler droppedPduHandler;
+
+	NioTcpConnection(SocketChannel channel, NioTcpEventLoop eventLoop, PduCodec codec) {
+		this.channel = channel;
+		this.eventLoop = eventLoop;
+		this.codec = codec;
+	}
+
+	void setKey(SelectionKey key) {
+		this.key = key;
+	}
+
+	SelectionKey getKey() {
+		return key;
+	}
+
+	void setHandler(MessageHandler handler) {
+		this.handler = handler;
+	}
+
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @param handler
+	 *          Empfaenger der Meldungen ueber verworfene Events, null: keine Meldung
+	 */
+	public void setDroppedPduHandler(DroppedPduHandler handler) {
+		this.droppedPduHandler = handler;
+	}
+
+	@Override
+	public void send(Serializable message) throws Exception {
+		write(FrameFormat.plainFrame(codec.encode(message)), null);
+	}
+
+	@Override
+	public void send(EncodedPdu pdu, String recipient) throws Exception {
+		if (recipient == null) {
+			write(FrameFormat.plainFrame(pdu.getBody(codec)), pdu);
+		} else {
+			write(FrameFormat.addressedFrame(recipient, pdu.getBody(codec)), pdu);
+		}
+	}
+
+	/**
+	 * Ohne Wirkung, zurueckgehaltene Rahmen sendet der Event-Loop am Ende des
+	 * Selector-Durchlaufs
+	 */
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * Rahmen direkt senden, bis zum Ende des Selector-Durchlaufs zurueckhalten oder,
+	 * falls der Sendepuffer des Sockets voll ist, fuer den Event-Loop vormerken
+	 *
+	 * @param frame
+	 *          Rahmen (im Lesemodus)
+	 * @param event
+	 *          Im Rahmen enthaltenes Event, null: Response
+	 * @throws IOException
+	 */
+	private void write(ByteBuffer frame, EncodedPdu event) throws IOException {
+		EncodedPdu dropped;
+		synchronized (pendingWrites) {
+			dropped = writeLocked(frame, event);
+		}
+		// Erst nach Freigabe der Sperre melden, der Handler sendet ggf. selbst
+		DroppedPduHandler handler = droppedPduHandler;
+		if ((dropped != null) && (handler != null)) {
+			handler.pduDropped(dropped);
+		}
+	}
+
+	/**
+	 * Senden unter der Sperre von pendingWrites
+	 *
+	 * @return Verworfenes Event, null: keines
+	 * @throws IOException
+	 */
+	private EncodedPdu writeLocked(ByteBuffer frame, EncodedPdu event) throws IOException {
+		if (closed || disconnecting) {
+			throw new IOException();
+		}
+		EncodedPdu dropped;
+		if (eventLoop.isCoalescingThread()) {
+			dropped = enqueue(frame, event);
+			if ((dropped != null) && (dropped == event)) {
+				// Neues Event verworfen, nichts zu senden
+				return dropped;
+			}
+			deferredBytes += frame.remaining();
+			if (deferredBytes >= eventLoop.getFlushThreshold()) {
+				// Schwelle erreicht, nicht bis zum Ende des Durchlaufs warten
+				writeDeferred();
+			} else if (!writeDeferred && !writeInterest) {
+				writeDeferred = true;
+				eventLoop.deferWrite(this);
+			}
+			return dropped;
+		}
+		if (pendingWrites.isEmpty()) {
+			// Direkt senden, solange nichts mehr aussteht
+			TcpWriteStatistics.record(channel.write(frame));
+			if (!frame.hasRemaining()) {
+				return null;
+			}
+		}
+		dropped = enqueue(frame, event);
+		if ((dropped != null) && (dropped == event)) {
+			return dropped;
+		}
+		if (!writeInterest) {
+			writeInterest = true;
+			eventLoop.enableWrite(this);
+		}
+		return dropped;
+	}
+
+	/**
+	 * Rahmen an die ausstehenden Rahmen anhaengen, nur unter der Sperre von
+	 * pendingWrites aufzurufen. Ist die Obergrenze erreicht, wird bei
+	 * {@link OverflowPolicy#DropOldest} das aelteste noch nicht begonnene Event
+	 * verworfen, ist keines vorhanden, das neue Event. Responses werden immer
+	 * angehaengt. Bei den anderen Strategien wird die Verbindung abgebaut. Warten
+	 * ({@link OverflowPolicy#Block}) ist nicht moeglich, da die Sender selbst
+	 * Event-Loop-Threads sind.
+	 *
+	 * @param frame
+	 *          Rahmen (im Lesemodus)
+	 * @param event
+	 *          Im Rahmen enthaltenes Event, null: Response
+	 * @return Verworfenes Event, null: keines. Ist es das neue Event, wurde der Rahmen
+	 *         nicht angehaengt.
+	 * @throws IOException
+	 *           Obergrenze erreicht, Verbindung wird abgebaut
+	 */
+	private EncodedPdu enqueue(ByteBuffer frame, EncodedPdu event) throws IOException {
+		EncodedPdu dropped = null;
+		boolean dropping = (eventLoop.getOverflowPolicy() == OverflowPolicy.DropOldest);
+		int capacity = eventLoop.getOutboundCapacity();
+		if ((capacity > 0) && (pendingWrites.size() >= capacity)) {
+			if (dropping) {
+				dropped = dropOldestEvent();
+				if ((dropped == null) && (event != null)) {
+					droppedFrames++;
+					return event;
+				}
+				if (dropped != null) {
+					droppedFrames++;
+				}
+			} else {
+				droppedFrames++;
+				//log.debug("Ausgangswarteschlange voll, Verbindung wird abgebaut");
+				disconnecting = true;
+				pendingWrites.clear();
+				eventFrames.clear();
+				deferredBytes = 0;
+				eventLoop.disconnect(this);
+				throw new IOException("Ausgangswarteschlange voll, Verbindung abgebaut");
+			}
+		}
+		pendingWrites.add(frame);
+		if (dropping && (event != null)) {
+			eventFrames.put(frame, event);
+		}
+		return dropped;
+	}
+
+	/**
+	 * Aeltestes ausstehendes Event verwerfen. Ein teilweise gesendeter Rahmen muss
+	 * vollstaendig gesendet werden und bleibt erhalten.
+	 *
+	 * @return Verworfenes Event, null: nur Responses ausstehend
+	 */
+	private EncodedPdu dropOldestEvent() {
+		Iterator<ByteBuffer> it = pendingWrites.iterator();
+		while (it.hasNext()) {
+			ByteBuffer frame = it.next();
+			EncodedPdu event;
+			if ((frame.position() == 0) && ((event = eventFrames.remove(frame)) != null)) {
+				it.remove();
+				deferredBytes = Math.max(0, deferredBytes - frame.remaining());
+				return event;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return Anzahl der wegen voller Ausgangswarteschlange verworfenen Rahmen
+	 */
+	public long getNumberOfDroppedFrames() {
+		synchronized (pendingWrites) {
+			return droppedFrames;
+		}
+	}
+
+	/**
+	 * @return Anzahl der noch nicht vollstaendig gesendeten Rahmen
+	 */
+	int getNumberOfPendingFrames() {
+		synchronized (pendingWrites) {
+			return pendingWrites.size();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (pendingWrites) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			pendingWrites.clear();
+			eventFrames.clear();
+		}
+		// Schliessen des Kanals meldet auch den Key beim Selector ab
+		channel.close();
+	}
+
+	/**
+	 * Ausstehende Rahmen senden, wird vom Event-Loop bei OP_WRITE aufgerufen
+	 *
+	 * @throws IOException
+	 */
+	void writePending() throws IOException {
+		synchronized (pendingWrites) {
+			if (!writeGathering()) {
+				// Sendepuffer des Sockets wieder voll
+				return;
+			}
+			writeInterest = false;
+			if (key.isValid()) {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+	}
+
+	/**
+	 * Zurueckgehaltene Rahmen senden, wird vom Event-Loop am Ende des
+	 * Selector-Durchlaufs oder beim Erreichen der Schwelle aufgerufen. Was nicht in
+	 * den Sendepuffer des Sockets passt, wird ueber OP_WRITE nachgeschoben.
+	 *
+	 * @throws IOException
+	 */
+	void writeDeferred() throws IOException {
+		synchronized (pendingWrites) {
+			writeDeferred = false;
+			deferredBytes = 0;
+			if (closed || writeInterest) {
+				// Bereits geschlossen bzw. OP_WRITE uebernimmt das Senden
+				return;
+			}
+			if (!writeGathering() && key.isValid()) {
+				writeInterest = true;
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+	}
+
+	/**
+	 * Ausstehende Rahmen mit sammelnden Schreibaufrufen senden, nur unter der Sperre
+	 * von pendingWrites aufzurufen
+	 *
+	 * @return true, wenn alle Rahmen gesendet wurden, false bei vollem Sendepuffer
+	 * @throws IOException
+	 */
+	private boolean writeGathering() throws IOException {
+		while (!pendingWrites.isEmpty()) {
+			int count = 0;
+			long remaining = 0;
+			for (ByteBuffer frame : pendingWrites) {
+				gather[count++] = frame;
+				remaining += frame.remaining();
+				if (count == MAX_GATHER) {
+					break;
+				}
+			}
+			long written = channel.write(gather, 0, count);
+			TcpWriteStatistics.record(written);
+			Arrays.fill(gather, 0, count, null);
+
+			while (!pendingWrites.isEmpty() && !pendingWrites.peek().hasRemaining()) {
+				eventFrames.remove(pendingWrites.poll());
+			}
+			if (written < remaining) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Empfangene Bytes an unvollstaendige Restdaten anhaengen, alle vollstaendigen Rahmen
+	 * dekodieren und an den Handler uebergeben. Wird nur vom Event-Loop aufgerufen.
+	 *
+	 * @param data
+	 *          Neu empfangene Bytes (im Lesemodus)
+	 * @throws Exception
+	 */
+	void processInbound(ByteBuffer data) throws Exception {
+
+		ByteBuffer source = data;
+		if (inbound != null) {
+			ensureInboundCapacity(data.remaining());
+			inbound.put(data);
+			inbound.flip();
+			source = inbound;
+		}
+
+		while (source.remaining() >= FrameFormat.HEADER_LENGTH) {
+			int length = source.getInt(source.position());
+			FrameFormat.checkLength(length);
+			if (source.remaining() < FrameFormat.HEADER_LENGTH + length) {
+				break;
+			}
+			source.position(source.position() + FrameFormat.HEADER_LENGTH);
+			byte[] payload = new byte[length];
+			source.get(payload);
+			handler.handleMessage(FrameFormat.decode(codec, payload, 0, length));
+		}
+
+		if (!source.hasRemaining()) {
+			inbound = null;
+		} else if (source == inbound) {
+			inbound.compact();
+		} else {
+			inbound = ByteBuffer.allocate(Math.max(INITIAL_INBOUND_SIZE, source.remaining()));
+			inbound.put(source);
+		}
+	}
+
+	/**
+	 * Meldet den Verbindungsabbau genau einmal an den Handler
+	 */
+	void notifyClosed() {
+		synchronized (pendingWrites) {
+			if (closeNotified) {
+				return;
+			}
+			closeNotified = true;
+		}
+		if (handler != null) {
+			handler.connectionClosed();
+		}
+	}
+
+	/**
+	 * Vergroessert den Puffer fuer Restdaten bei Bedarf
+	 *
+	 * @param additional
+	 *          Anzahl zusaetzlich aufzunehmender Bytes
+	 */
+	private void ensureInboundCapacity(int additional) {
+		if (inbound.remaining() < additional) {
+			ByteBuffer larger = ByteBuffer
+					.allocate(Math.max(inbound.capacity() * 2, inbound.position() + additional));
+			inbound.flip();
+			larger.put(inbound);
+			inbound = larger;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "NioTcpConnection " + channel;
+	}
+}
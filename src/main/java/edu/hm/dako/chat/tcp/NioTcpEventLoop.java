@@ -0,0 +1,307 @@
+package edu.hm.dako.chat.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.connection.MessageHandlerFactory;
+import edu.hm.dako.chat.connection.OverflowPolicy;
+import edu.hm.dako.chat.connection.PduCodec;
+
+/**
+ * Event-Loop fuer nicht-blockierende Verbindungen: Ein Thread bedient ueber einen
+ * Selector beliebig viele Verbindungen. Aufgaben anderer Threads (Registrieren neuer
+ * Verbindungen, Anmelden von OP_WRITE) werden ueber eine Warteschlange an den
+ * Loop-Thread uebergeben, damit nur dieser den Selector veraendert.
+ *
+ * Optional werden die im Loop-Thread gesendeten Rahmen je Verbindung bis zum Ende
+ * eines Selector-Durchlaufs gesammelt und mit einem Schreibaufruf gesendet.
+ *
+ * @author Peter Mandl
+ *
+ */
+class NioTcpEventLoop implements Runnable {
+
+	private static Log log = LogFactory.getLog(NioTcpEventLoop.class);
+
+	// Groesse des gemeinsamen Lesepuffers
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private final Selector selector;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	// Ein Lesepuffer fuer alle Verbindungen dieses Loops
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+	// Kodierung der Nachrichten aller Verbindungen dieses Loops
+	private final PduCodec codec;
+
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	// true: Schreibaufrufe im Loop-Thread zusammenfassen
+	private volatile boolean coalesceWrites = false;
+
+	// Zurueckgehaltene Bytes je Verbindung, ab denen sofort gesendet wird
+	private volatile int flushThreshold = FlushControl.DEFAULT_FLUSH_THRESHOLD;
+
+	// Maximale Anzahl ausstehender Rahmen je Verbindung (0 = unbegrenzt) und
+	// Verhalten bei Erreichen der Grenze
+	private volatile int outboundCapacity = 0;
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.Disconnect;
+
+	// Verbindungen mit zurueckgehaltenen Rahmen, nur im Loop-Thread verwendet
+	private final ArrayList<NioTcpConnection> deferredWrites = new ArrayList<NioTcpConnection>();
+
+	NioTcpEventLoop(String name, PduCodec codec) throws IOException {
+		this.codec = codec;
+		selector = Selector.open();
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Neue Verbindung uebernehmen und beim Selector anmelden
+	 *
+	 * @param channel
+	 *          Akzeptierter Kanal
+	 * @param handlerFactory
+	 *          Factory fuer den Handler der Verbindung
+	 */
+	void register(final SocketChannel channel, final MessageHandlerFactory handlerFactory) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				NioTcpConnection connection = new NioTcpConnection(channel, NioTcpEventLoop.this,
+						codec);
+				try {
+					channel.configureBlocking(false);
+					connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+					connection.setHandler(handlerFactory.createHandler(connection));
+				} catch (Exception e) {
+					ExceptionHandler.logException(e);
+					closeConnection(connection);
+				}
+			}
+		});
+	}
+
+	/**
+	 * OP_WRITE fuer eine Verbindung anmelden, die nicht alles direkt senden konnte
+	 *
+	 * @param connection
+	 *          Verbindung mit ausstehenden Rahmen
+	 */
+	void enableWrite(final NioTcpConnection connection) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				SelectionKey key = connection.getKey();
+				if (key != null && key.isValid()) {
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Zusammenfassen der Schreibaufrufe einstellen
+	 *
+	 * @param coalesceWrites
+	 *          true: Rahmen bis zum Ende des Selector-Durchlaufs zurueckhalten
+	 * @param flushThreshold
+	 *          Zurueckgehaltene Bytes je Verbindung, ab denen sofort gesendet wird,
+	 *          0: Standardwert
+	 */
+	void setWriteOptions(boolean coalesceWrites, int flushThreshold) {
+		this.coalesceWrites = coalesceWrites;
+		this.flushThreshold = FlushControl.bufferSize(flushThreshold);
+	}
+
+	/**
+	 * @return true, wenn der aufrufende Thread der Loop-Thread ist und Rahmen
+	 *         zurueckgehalten werden sollen
+	 */
+	boolean isCoalescingThread() {
+		return coalesceWrites && (Thread.currentThread() == thread);
+	}
+
+	int getFlushThreshold() {
+		return flushThreshold;
+	}
+
+	/**
+	 * Obergrenze der ausstehenden Rahmen je Verbindung einstellen
+	 *
+	 * @param capacity
+	 *          Maximale Anzahl ausstehender Rahmen, 0: unbegrenzt
+	 * @param overflowPolicy
+	 *          Verhalten bei Erreichen der Grenze
+	 */
+	void setOutboundLimit(int capacity, OverflowPolicy overflowPolicy) {
+		this.outboundCapacity = Math.max(0, capacity);
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	int getOutboundCapacity() {
+		return outboundCapacity;
+	}
+
+	OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Verbindung im Loop-Thread abbauen und den Abbau an ihren Handler melden, z.B.
+	 * bei voller Ausgangswarteschlange. Kann aus beliebigen Threads aufgerufen werden.
+	 *
+	 * @param connection
+	 *          Abzubauende Verbindung
+	 */
+	void disconnect(final NioTcpConnection connection) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				closeConnection(connection);
+			}
+		});
+	}
+
+	/**
+	 * Verbindung zum Senden am Ende des Selector-Durchlaufs vormerken, nur im
+	 * Loop-Thread aufzurufen
+	 *
+	 * @param connection
+	 *          Verbindung mit zurueckgehaltenen Rahmen
+	 */
+	void deferWrite(NioTcpConnection connection) {
+		deferredWrites.add(connection);
+	}
+
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	private void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				runTasks();
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					NioTcpConnection connection = (NioTcpConnection) key.attachment();
+					try {
+						if (key.isValid() && key.isWritable()) {
+							connection.writePending();
+						}
+						if (key.isValid() && key.isReadable()) {
+							read(connection);
+						}
+					} catch (Exception e) {
+						//log.debug("Verbindung abgebaut: " + e.getMessage());
+						closeConnection(connection);
+					}
+				}
+				writeDeferred();
+			}
+		} catch (ClosedSelectorException e) {
+			// Server wird beendet
+		} catch (IOException e) {
+			ExceptionHandler.logException(e);
+		} finally {
+			closeAll();
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Zurueckgehaltene Rahmen aller vorgemerkten Verbindungen senden. Beim Abbau einer
+	 * Verbindung koennen weitere Verbindungen vorgemerkt werden, daher ueber den Index.
+	 */
+	private void writeDeferred() {
+		for (int i = 0; i < deferredWrites.size(); i++) {
+			NioTcpConnection connection = deferredWrites.get(i);
+			try {
+				connection.writeDeferred();
+			} catch (IOException e) {
+				//log.debug("Verbindung abgebaut: " + e.getMessage());
+				closeConnection(connection);
+			}
+		}
+		deferredWrites.clear();
+	}
+
+	/**
+	 * Daten einer Verbindung lesen, bis der Kanal leer ist
+	 *
+	 * @param connection
+	 *          Lesebereite Verbindung
+	 * @throws Exception
+	 */
+	private void read(NioTcpConnection connection) throws Exception {
+		int n;
+		do {
+			readBuffer.clear();
+			n = connection.getChannel().read(readBuffer);
+			if (n > 0) {
+				readBuffer.flip();
+				connection.processInbound(readBuffer);
+			}
+		} while (n == READ_BUFFER_SIZE);
+
+		if (n < 0) {
+			// Partner hat die Verbindung geschlossen
+			closeConnection(connection);
+		}
+	}
+
+	private void closeConnection(NioTcpConnection connection) {
+		connection.notifyClosed();
+		try {
+			connection.close();
+		} catch (IOException e) {
+			// Ignorieren
+		}
+	}
+
+	private void closeAll() {
+		try {
+			for (SelectionKey key : selector.keys()) {
+				closeConnection((NioTcpConnection) key.attachment());
+			}
+			selector.close();
+		} catch (Exception e) {
+			// Ignorieren
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package edu.hm.dako.chat.tcp;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.common.ExceptionHandler;
+import edu.hm.dako.chat.connection.FlushPolicy;
+import edu.hm.dako.chat.connection.MessageHandlerFactory;
+import edu.hm.dako.chat.connection.OverflowPolicy;
+import edu.hm.dako.chat.connection.PduCodec;
+import edu.hm.dako.chat.connection.SerializationPduCodec;
+
+/**
+ * Server-Socket auf Basis von Java NIO. Ein Acceptor-Thread nimmt Verbindungen an und
+ * verteilt sie reihum auf eine feste Anzahl von Event-Loops (standardmaessig einer je
+ * Prozessorkern). Damit ist die Threadanzahl des Servers unabhaengig von der Anzahl der
+ * angemeldeten Clients.
+ *
+ * Die Nachrichten werden als Rahmen mit vorangestellter Laenge uebertragen, Clients
+ * muessen daher {@link FramedTcpConnection} verwenden.
+ *
+ * @author Peter Mandl
+ */
+public class NioTcpServerSocket {
+
+	private static Log log = LogFactory.getLog(NioTcpServerSocket.class);
+
+	private final ServerSocketChannel serverChannel;
+	private final NioTcpEventLoop[] eventLoops;
+	private final int sendBufferSize;
+	private final int receiveBufferSize;
+	private int nextLoop = 0;
+
+	// Socket-Option TCP_NODELAY der angenommenen Verbindungen
+	private boolean tcpNoDelay = true;
+
+	/**
+	 * Erzeugt ein NIO-Serversocket mit einem Event-Loop je Prozessorkern
+	 *
+	 * @param port
+	 *          Portnummer, die verwendet werden soll
+	 * @param sendBufferSize
+	 *          Groesse des Sendepuffers in Byte
+	 * @param receiveBufferSize
+	 *          Groesse des Empfangspuffers in Byte
+	 * @exception BindException
+	 *              Port schon belegt
+	 * @exception IOException
+	 *              I/O-Fehler bei der Socket-Erzeugung
+	 */
+	public NioTcpServerSocket(int port, int sendBufferSize, int receiveBufferSize)
+			throws BindException, IOException {
+		this(port, sendBufferSize, receiveBufferSize, new SerializationPduCodec());
+	}
+
+	/**
+	 * Erzeugt ein NIO-Serversocket mit einem Event-Loop je Prozessorkern
+	 *
+	 * @param port
+	 *          Portnummer, die verwendet werden soll
+	 * @param sendBufferSize
+	 *          Groesse des Sendepuffers in Byte
+	 * @param receiveBufferSize
+	 *          Groesse des Empfangspuffers in Byte
+	 * @param codec
+	 *          Kodierung der Nachrichten
+	 * @exception BindException
+	 *              Port schon belegt
+	 * @exception IOException
+	 *              I/O-Fehler bei der Socket-Erzeugung
+	 */
+	public NioTcpServerSocket(int port, int sendBufferSize, int receiveBufferSize,
+			PduCodec codec) throws BindException, IOException {
+		this(port, sendBufferSize, receiveBufferSize,
+				Runtime.getRuntime().availableProcessors(), codec);
+	}
+
+	/**
+	 * Erzeugt ein NIO-Serversocket mit vorgegebener Anzahl an Event-Loops
+	 *
+	 * @param port
+	 *          Portnummer, die verwendet werden soll
+	 * @param sendBufferSize
+	 *          Groesse des Sendepuffers in Byte
+	 * @param receiveBufferSize
+	 *          Groesse des Empfangspuffers in Byte
+	 * @param numberOfEventLoops
+	 *          Anzahl der Event-Loop-Threads
+	 * @param codec
+	 *          Kodierung der Nachrichten
+	 * @exception BindException
+	 *              Port schon belegt
+	 * @exception IOException
+	 *              I/O-Fehler bei der Socket-Erzeugung
+	 */
+	public NioTcpServerSocket(int port, int sendBufferSize, int receiveBufferSize,
+			int numberOfEventLoops, PduCodec codec) throws BindException, IOException {
+
+		this.sendBufferSize = sendBufferSize;
+		this.receiveBufferSize = receiveBufferSize;
+
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+			//log.debug("Port " + port + " auf dem Rechner schon in Benutzung: " + e);
+			serverChannel.close();
+			throw e;
+		}
+
+		eventLoops = new NioTcpEventLoop[Math.max(1, numberOfEventLoops)];
+		for (int i = 0; i < eventLoops.length; i++) {
+			eventLoops[i] = new NioTcpEventLoop("NioEventLoop-" + (i + 1), codec);
+		}
+	}
+
+	/**
+	 * Sendeverhalten der angenommenen Verbindungen einstellen, vor {@link #start}
+	 * aufzurufen. Bei OnIdle und OnDrain sammeln die Event-Loops die Rahmen jeder
+	 * Verbindung bis zum Ende eines Selector-Durchlaufs.
+	 *
+	 * @param tcpNoDelay
+	 *          true: Nagle-Algorithmus ausschalten
+	 * @param flushPolicy
+	 *          Zeitpunkt des Sendens
+	 * @param flushThreshold
+	 *          Gesammelte Bytes je Verbindung, ab denen sofort gesendet wird, 0:
+	 *          Standardwert
+	 */
+	public void setWriteOptions(boolean tcpNoDelay, FlushPolicy flushPolicy,
+			int flushThreshold) {
+		this.tcpNoDelay = tcpNoDelay;
+		for (NioTcpEventLoop loop : eventLoops) {
+			loop.setWriteOptions(flushPolicy != FlushPolicy.Immediate, flushThreshold);
+		}
+	}
+
+	/**
+	 * Ausgangswarteschlange der angenommenen Verbindungen begrenzen, vor
+	 * {@link #start} aufzurufen. Bei voller Warteschlange wird mit
+	 * {@link OverflowPolicy#DropOldest} der aelteste noch nicht begonnene Rahmen
+	 * verworfen, sonst die Verbindung abgebaut. {@link OverflowPolicy#Block} wird
+	 * wie {@link OverflowPolicy#Disconnect} behandelt: Die Sender sind
+	 * Event-Loop-Threads, ein Warten wuerde alle Verbindungen des Loops anhalten.
+	 *
+	 * @param capacity
+	 *          Maximale Anzahl ausstehender Rahmen je Verbindung, 0: unbegrenzt
+	 * @param overflowPolicy
+	 *          Verhalten bei voller Warteschlange
+	 */
+	public void setOutboundLimit(int capacity, OverflowPolicy overflowPolicy) {
+		for (NioTcpEventLoop loop : eventLoops) {
+			loop.setOutboundLimit(capacity, overflowPolicy);
+		}
+	}
+
+	/**
+	 * Startet die Event-Loops und nimmt in einem eigenen Thread Verbindungen an
+	 *
+	 * @param handlerFactory
+	 *          Factory, die fuer jede neue Verbindung einen Handler liefert
+	 */
+	public void start(final MessageHandlerFactory handlerFactory) {
+
+		for (NioTcpEventLoop loop : eventLoops) {
+			loop.start();
+		}
+
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (serverChannel.isOpen()) {
+					try {
+						SocketChannel channel = serverChannel.accept();
+						configure(channel);
+						eventLoops[nextLoop].register(channel, handlerFactory);
+						nextLoop = (nextLoop + 1) % eventLoops.length;
+					} catch (ClosedChannelException e) {
+						// Serversocket wurde geschlossen
+					} catch (IOException e) {
+						if (serverChannel.isOpen()) {
+							ExceptionHandler.logException(e);
+						}
+					}
+				}
+			}
+		}, "NioAcceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	private void configure(SocketChannel channel) throws IOException {
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+		channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+		channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+	}
+
+	/**
+	 * Schliesst das Serversocket und beendet alle Event-Loops samt ihrer Verbindungen
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		//log.debug("NIO-Serversocket wird geschlossen");
+		serverChannel.close();
+		for (NioTcpEventLoop loop : eventLoops) {
+			loop.shutdown();
+		}
+	}
+
+	public boolean isClosed() {
+		return !serverChannel.isOpen();
+	}
+}
@@ -0,0 +1,108 @@
+package edu.hm.dako.chat.tcp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Erfasst die offenen {@link TcpConnection}s eines Prozesses und den Umfang
+ * der Referenztabellen ihrer Ausgabestroeme. Die Werte werden im Dauertest des
+ * Benchmarkings periodisch ausgewertet, um das Wachstum des Speichers je
+ * Verbindung zu beobachten.
+ *
+ * @author Mandl
+ */
+public final class ObjectStreamStatistics {
+
+	// Offene Verbindungen, nicht geschlossene Verbindungen werden mit dem
+	// Verbindungsobjekt freigegeben
+	private static final Map<TcpConnection, Boolean> connections = Collections
+			.synchronizedMap(new WeakHashMap<TcpConnection, Boolean>());
+
+	private static final AtomicLong numberOfResets = new AtomicLong(0);
+
+	private ObjectStreamStatistics() {
+	}
+
+	static void register(TcpConnection connection) {
+		connections.put(connection, Boolean.TRUE);
+	}
+
+	static void unregister(TcpConnection connection) {
+		connections.remove(connection);
+	}
+
+	/**
+	 * Zuruecksetzen einer Referenztabelle erfassen
+	 */
+	static void recordReset() {
+		numberOfResets.incrementAndGet();
+	}
+
+	private static List<TcpConnection> getConnections() {
+		synchronized (connections) {
+			return new ArrayList<TcpConnection>(connections.keySet());
+		}
+	}
+
+	/**
+	 * @return Anzahl offener Verbindungen
+	 */
+	public static int getNumberOfConnections() {
+		return connections.size();
+	}
+
+	/**
+	 * @return Summe der seit dem letzten Zuruecksetzen gesendeten Objekte ueber
+	 *         alle offenen Verbindungen
+	 */
+	public static long getRetainedObjects() {
+		long sum = 0;
+		for (TcpConnection connection : getConnections()) {
+			sum += connection.getObjectsSinceReset();
+		}
+		return sum;
+	}
+
+	/**
+	 * @return Groesste Anzahl seit dem letzten Zuruecksetzen gesendeter Objekte
+	 *         einer offenen Verbindung
+	 */
+	public static long getMaxRetainedObjects() {
+		long max = 0;
+		for (TcpConnection connection : getConnections()) {
+			max = Math.max(max, connection.getObjectsSinceReset());
+		}
+		return max;
+	}
+
+	/**
+	 * @return Summe der seit dem letzten Zuruecksetzen gesendeten Byte ueber alle
+	 *         offenen Verbindungen
+	 */
+	public static long getRetainedBytes() {
+		long sum = 0;
+		for (TcpConnection connection : getConnections()) {
+			sum += connection.getBytesSinceReset();
+		}
+		return sum;
+	}
+
+	/**
+	 * @return Anzahl der Zuruecksetzungen seit dem letzten Zuruecksetzen des
+	 *         Zaehlers
+	 */
+	public static long getNumberOfResets() {
+		return numberOfResets.get();
+	}
+
+	/**
+	 * Zaehler der Zuruecksetzungen zuruecksetzen, z.B. vor einem Benchmark-Lauf
+	 */
+	public static void reset() {
+		numberOfResets.set(0);
+	}
+}
@@ -1,8 +1,11 @@
 package edu.hm.dako.chat.tcp;
 
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.Socket;
 import java.net.SocketException;
@@ -12,10 +15,20 @@ import org.apache.commons.logging.LogFactory;
 
 import edu.hm.dako.chat.connection.Connection;
 import edu.hm.dako.chat.connection.ConnectionTimeoutException;
+import edu.hm.dako.chat.connection.EncodedPdu;
 import edu.hm.dako.chat.connection.EndOfFileException;
+import edu.hm.dako.chat.connection.FlushPolicy;
 
 /**
  * Implementierung der TCP-Verbindung
+ * <p/>
+ * Der durchgehende ObjectOutputStream merkt sich jedes gesendete Objekt in
+ * seiner Referenztabelle, damit er es bei erneutem Senden als Rueckverweis
+ * uebertragen kann; der ObjectInputStream des Partners ebenso. Ohne
+ * Zuruecksetzen waechst die Tabelle mit der Dauer der Session, und ein nach
+ * dem Senden veraendertes Objekt kaeme beim erneuten Senden veraltet an. Die
+ * Tabelle wird daher nach einer einstellbaren Anzahl Objekte bzw. Byte
+ * zurueckgesetzt (siehe {@link #setResetPolicy(int, long)}).
  * 
  * @author Peter Mandl
  *
@@ -24,6 +37,9 @@ public class TcpConnection implements Connection {
 
 	private static Log log = LogFactory.getLog(TcpConnection.class);
 
+	// Standardwert: Referenztabelle nach 1000 gesendeten Objekten zuruecksetzen
+	public static final int DEFAULT_RESET_OBJECTS = 1000;
+
 	// Ein- und Ausgabestrom der Verbindung
 	private ObjectOutputStream out;
 	private ObjectInputStream in;
@@ -31,6 +47,26 @@ public class TcpConnection implements Connection {
 	// Verwendetes TCP-Socket
 	private Socket socket;
 
+	// Aktuell eingestellter Empfangs-Timeout des Sockets (0: unbegrenzt), damit
+	// die Socket-Option nur bei einer Aenderung gesetzt wird
+	private int currentTimeout = 0;
+
+	// Zeitpunkt des Leerens des Ausgabestroms
+	private final FlushControl flushControl;
+
+	// Zaehlt die vom Ausgabestrom geschriebenen Byte (vor der Pufferung)
+	private CountingOutputStream outCounter;
+
+	// Referenztabelle nach so vielen Objekten bzw. Byte zuruecksetzen, 0: nicht
+	// nach diesem Kriterium
+	private int resetObjects = DEFAULT_RESET_OBJECTS;
+	private long resetBytes = 0;
+
+	// Seit dem letzten Zuruecksetzen gesendete Objekte und Byte, Aenderung nur
+	// unter der Sperre des Ausgabestroms
+	private volatile int objectsSinceReset = 0;
+	private volatile long bytesSinceReset = 0;
+
 	/**
 	 * Zur Information: Standardgroesse des Empfangspuffers einer TCP-Verbindung:
 	 * 8192 Byte. Standardgroesse des Sendepuffers einer TCP-Verbindung: 8192
@@ -38,7 +74,25 @@ public class TcpConnection implements Connection {
 	 */
 	public TcpConnection(Socket socket, int sendBufferSize, int receiveBufferSize,
 			boolean keepAlive, boolean TcpNoDelay) {
+		this(socket, sendBufferSize, receiveBufferSize, keepAlive, TcpNoDelay,
+				FlushPolicy.Immediate, 0);
+	}
+
+	/**
+	 * Verbindung, die Nachrichten gemaess der Flush-Strategie puffert
+	 * 
+	 * @param flushPolicy
+	 *          Zeitpunkt des Leerens des Ausgabestroms
+	 * @param flushThreshold
+	 *          Groesse des Puffers in Byte, bei deren Erreichen unabhaengig von
+	 *          der Strategie geschrieben wird (nicht bei Immediate), 0:
+	 *          Standardwert
+	 */
+	public TcpConnection(Socket socket, int sendBufferSize, int receiveBufferSize,
+			boolean keepAlive, boolean TcpNoDelay, FlushPolicy flushPolicy,
+			int flushThreshold) {
 		this.socket = socket;
+		this.flushControl = new FlushControl(flushPolicy);
 
 		//log.debug(Thread.currentThread().getName()+ ": Verbindung mit neuem Client aufgebaut, Remote-TCP-Port " + socket.getPort());
 
@@ -47,7 +101,19 @@ public class TcpConnection implements Connection {
 			// Achtung: Erst Ausgabestrom, dann Eingabestrom erzeugen, sonst Fehler
 			// beim Verbindungsaufbau, siehe API-Beschreibung
 
-			out = new ObjectOutputStream(socket.getOutputStream());
+			if (flushControl.isBuffered()) {
+				outCounter = new CountingOutputStream(new BufferedOutputStream(
+						TcpWriteStatistics.counting(socket.getOutputStream()),
+						FlushControl.bufferSize(flushThreshold)));
+				out = new ObjectOutputStream(outCounter);
+				// Kopf des Objektstroms sofort senden, der Partner wartet beim Erzeugen
+				// seines Eingabestroms darauf
+				out.flush();
+			} else {
+				outCounter = new CountingOutputStream(
+						TcpWriteStatistics.counting(socket.getOutputStream()));
+				out = new ObjectOutputStream(outCounter);
+			}
 			in = new ObjectInputStream(socket.getInputStream());
 
 			//log.debug("Standardgroesse des Empfangspuffers der Verbindung: "+ socket.getReceiveBufferSize() + " Byte");
@@ -82,6 +148,60 @@ public class TcpConnection implements Connection {
 		}
 	}
 
+	/**
+	 * Erzeugt eine Verbindung, stellt das Zuruecksetzen der Referenztabelle ein
+	 * und meldet sie erst danach bei der {@link ObjectStreamStatistics} an, damit
+	 * keine Referenz auf ein unfertiges Objekt herausgegeben wird. Nur so
+	 * erzeugte Verbindungen werden in der Statistik erfasst.
+	 * 
+	 * @param resetObjects
+	 *          Zuruecksetzen nach so vielen gesendeten Objekten, 0: nie
+	 * @param resetBytes
+	 *          Zuruecksetzen nach so vielen gesendeten Byte, 0: nie
+	 * @return Verbindung
+	 */
+	static TcpConnection open(Socket socket, int sendBufferSize, int receiveBufferSize,
+			boolean keepAlive, boolean tcpNoDelay, FlushPolicy flushPolicy,
+			int flushThreshold, int resetObjects, long resetBytes) {
+		TcpConnection connection = new TcpConnection(socket, sendBufferSize,
+				receiveBufferSize, keepAlive, tcpNoDelay, flushPolicy, flushThreshold);
+		connection.setResetPolicy(resetObjects, resetBytes);
+		ObjectStreamStatistics.register(connection);
+		return connection;
+	}
+
+	/**
+	 * Zuruecksetzen der Referenztabelle des Ausgabestroms einstellen. Beide
+	 * Kriterien wirken unabhaengig voneinander, sind beide 0, wird nie
+	 * zurueckgesetzt.
+	 * 
+	 * @param resetObjects
+	 *          Zuruecksetzen nach so vielen gesendeten Objekten, 0: nie
+	 * @param resetBytes
+	 *          Zuruecksetzen nach so vielen gesendeten Byte, 0: nie
+	 */
+	public void setResetPolicy(int resetObjects, long resetBytes) {
+		synchronized (out) {
+			this.resetObjects = Math.max(0, resetObjects);
+			this.resetBytes = Math.max(0, resetBytes);
+		}
+	}
+
+	/**
+	 * @return Seit dem letzten Zuruecksetzen der Referenztabelle gesendete
+	 *         Objekte (Untergrenze fuer die Groesse der Tabelle)
+	 */
+	public int getObjectsSinceReset() {
+		return objectsSinceReset;
+	}
+
+	/**
+	 * @return Seit dem letzten Zuruecksetzen der Referenztabelle gesendete Byte
+	 */
+	public long getBytesSinceReset() {
+		return bytesSinceReset;
+	}
+
 	@Override
 	public Serializable receive(int timeout)
 			throws Exception, ConnectionTimeoutException, EndOfFileException {
@@ -91,11 +211,10 @@ public class TcpConnection implements Connection {
 			throw new EndOfFileException(new Exception());
 		}
 
-		socket.setSoTimeout(timeout);
+		setReceiveTimeout(timeout);
 
 		try {
 			Object message = in.readObject();
-			socket.setSoTimeout(0);
 			return (Serializable) message;
 
 		} catch (java.net.SocketTimeoutException e) {
@@ -117,7 +236,7 @@ public class TcpConnection implements Connection {
 			throw new EndOfFileException(new Exception());
 		}
 		try {
-			socket.setSoTimeout(0);
+			setReceiveTimeout(0);
 			Object message = in.readObject();
 			return (Serializable) message;
 		} catch (Exception e) {
@@ -127,6 +246,22 @@ public class TcpConnection implements Connection {
 		}
 	}
 
+	/**
+	 * Setzt den Empfangs-Timeout des Sockets nur, wenn er sich aendert. Beim
+	 * Empfang ohne Timeout wird die Socket-Option so nicht je Nachricht
+	 * veraendert. Wird nur vom empfangenden Thread aufgerufen.
+	 * 
+	 * @param timeout
+	 *          Timeout in ms, 0: unbegrenzt
+	 * @throws SocketException
+	 */
+	private void setReceiveTimeout(int timeout) throws SocketException {
+		if (timeout != currentTimeout) {
+			socket.setSoTimeout(timeout);
+			currentTimeout = timeout;
+		}
+	}
+
 	@Override
 	public void send(Serializable message) throws Exception {
 
@@ -140,8 +275,28 @@ public class TcpConnection implements Connection {
 		}
 
 		try {
-			out.writeObject(message);
-			out.flush();
+			// Client-Thread, Message-Listener-Thread und Heartbeat senden ueber
+			// dieselbe Verbindung
+			flushControl.beforeLock();
+			synchronized (out) {
+				boolean flush = flushControl.afterLock();
+				long before = outCounter.count;
+				out.writeObject(message);
+				objectsSinceReset++;
+				bytesSinceReset += outCounter.count - before;
+				if (((resetObjects > 0) && (objectsSinceReset >= resetObjects))
+						|| ((resetBytes > 0) && (bytesSinceReset >= resetBytes))) {
+					// Der Partner setzt seine Tabelle beim Lesen der Markierung ebenfalls
+					// zurueck
+					out.reset();
+					objectsSinceReset = 0;
+					bytesSinceReset = 0;
+					ObjectStreamStatistics.recordReset();
+				}
+				if (flush) {
+					out.flush();
+				}
+			}
 		} catch (Exception e) {
 			//log.debug("Exception beim Sendeversuch an " + socket.getInetAddress());
 			//log.debug(e.getMessage());
@@ -149,8 +304,25 @@ public class TcpConnection implements Connection {
 		}
 	}
 
+	/**
+	 * Der durchgehende ObjectStream kann keine vorkodierten Rahmen uebertragen, die PDU
+	 * wird daher je Empfaenger als eigenes Objekt serialisiert.
+	 */
+	@Override
+	public void send(EncodedPdu pdu, String recipient) throws Exception {
+		send(pdu.toPdu(recipient));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		synchronized (out) {
+			out.flush();
+		}
+	}
+
 	@Override
 	public synchronized void close() throws IOException {
+		ObjectStreamStatistics.unregister(this);
 		try {
 			out.flush();
 			//log.debug("Verbindungssocket wird geschlossen, lokaler Port: "					+ socket.getLocalPort() + ", entfernter Port: " + socket.getPort());
@@ -161,4 +333,29 @@ public class TcpConnection implements Connection {
 			throw new IOException(new IOException());
 		}
 	}
+
+	/**
+	 * Zaehlt die geschriebenen Byte, Zugriff nur unter der Sperre des
+	 * Ausgabestroms
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
 }
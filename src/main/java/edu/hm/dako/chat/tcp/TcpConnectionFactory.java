@@ -4,12 +4,14 @@ import java.io.IOException;
 import java.net.BindException;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import edu.hm.dako.chat.connection.Connection;
 import edu.hm.dako.chat.connection.ConnectionFactory;
+import edu.hm.dako.chat.connection.FlushPolicy;
 
 /**
  * Erzeugen von TCP-Verbindungen zum Server
@@ -25,10 +27,83 @@ public class TcpConnectionFactory implements ConnectionFactory {
 	// unternimmt, bevor er abbricht
 	private static final int MAX_CONNECTION_ATTEMPTS = 50;
 
+	// Wartezeit in ms vor dem ersten erneuten Versuch
+	private static final int CONNECTION_RETRY_DELAY = 100;
+
 	// Zaehlt die Verbindungsaufbauversuche, bis eine Verbindung vom Server
 	// angenommen wird
 	private long connectionTryCounter = 0;
 
+	// Socket-Option TCP_NODELAY der erzeugten Verbindungen
+	protected boolean tcpNoDelay = true;
+
+	// Zeitpunkt des Leerens des Ausgabestroms und Puffergroesse in Byte
+	protected FlushPolicy flushPolicy = FlushPolicy.Immediate;
+	protected int flushThreshold = 0;
+
+	// Zuruecksetzen der Referenztabelle der Objektstroeme
+	protected int resetObjects = TcpConnection.DEFAULT_RESET_OBJECTS;
+	protected long resetBytes = 0;
+
+	// Verbindungsaufbauversuche und Wartezeiten in ms dazwischen: Die
+	// Wartezeit verdoppelt sich je Versuch bis zur Obergrenze
+	private int maxConnectionAttempts = MAX_CONNECTION_ATTEMPTS;
+	private int initialRetryDelay = CONNECTION_RETRY_DELAY;
+	private int maxRetryDelay = CONNECTION_RETRY_DELAY;
+
+	/**
+	 * Sendeverhalten der erzeugten Verbindungen einstellen. Client-Verbindungen
+	 * haben keine Ausgangswarteschlange, OnDrain wirkt daher wie OnIdle.
+	 *
+	 * @param tcpNoDelay
+	 *          true: Nagle-Algorithmus ausschalten
+	 * @param flushPolicy
+	 *          Zeitpunkt des Leerens des Ausgabestroms
+	 * @param flushThreshold
+	 *          Puffergroesse in Byte, 0: Standardwert
+	 */
+	public void setWriteOptions(boolean tcpNoDelay, FlushPolicy flushPolicy,
+			int flushThreshold) {
+		this.tcpNoDelay = tcpNoDelay;
+		this.flushPolicy = (flushPolicy == FlushPolicy.OnDrain) ? FlushPolicy.OnIdle
+				: flushPolicy;
+		this.flushThreshold = flushThreshold;
+	}
+
+	/**
+	 * Zuruecksetzen der Referenztabelle der Objektstroeme der erzeugten
+	 * Verbindungen einstellen (ohne Wirkung bei rahmenbasierten Verbindungen)
+	 *
+	 * @param resetObjects
+	 *          Zuruecksetzen nach so vielen gesendeten Objekten, 0: nie
+	 * @param resetBytes
+	 *          Zuruecksetzen nach so vielen gesendeten Byte, 0: nie
+	 */
+	public void setResetPolicy(int resetObjects, long resetBytes) {
+		this.resetObjects = resetObjects;
+		this.resetBytes = resetBytes;
+	}
+
+	/**
+	 * Wiederholung des Verbindungsaufbaus einstellen. Die Wartezeit vor einem
+	 * erneuten Versuch verdoppelt sich je Versuch bis zur Obergrenze und wird
+	 * zufaellig um bis zur Haelfte verkuerzt, damit viele gleichzeitig
+	 * abgewiesene Clients nicht wieder gleichzeitig anfragen. Voreinstellung:
+	 * 50 Versuche im Abstand von 100 ms.
+	 *
+	 * @param maxAttempts
+	 *          Maximale Anzahl Versuche, mindestens 1
+	 * @param initialDelay
+	 *          Wartezeit in ms vor dem zweiten Versuch
+	 * @param maxDelay
+	 *          Obergrenze der Wartezeit in ms
+	 */
+	public void setConnectRetryPolicy(int maxAttempts, int initialDelay, int maxDelay) {
+		this.maxConnectionAttempts = Math.max(1, maxAttempts);
+		this.initialRetryDelay = Math.max(1, initialDelay);
+		this.maxRetryDelay = Math.max(this.initialRetryDelay, maxDelay);
+	}
+
 	/**
 	 * Baut eine Verbindung zum Server auf. Der Verbindungsaufbau wird mehrmals
 	 * versucht.
@@ -36,21 +111,22 @@ public class TcpConnectionFactory implements ConnectionFactory {
 	public Connection connectToServer(String remoteServerAddress, int serverPort,
 			int localPort, int sendBufferSize, int receiveBufferSize) throws IOException {
 
-		TcpConnection connection = null;
+		Connection connection = null;
 		boolean connected = false;
 
 		// Es wird "localhost" fuer die lokale IP-Adresse verwendet
 		InetAddress localAddress = null;
 
 		int attempts = 0;
-		while ((!connected) && (attempts < MAX_CONNECTION_ATTEMPTS)) {
+		long retryDelay = initialRetryDelay;
+		while ((!connected) && (attempts < maxConnectionAttempts)) {
 			try {
 
 				connectionTryCounter++;
 
-				connection = new TcpConnection(
+				connection = createConnection(
 						new Socket(remoteServerAddress, serverPort, localAddress, localPort),
-						sendBufferSize, receiveBufferSize, false, true);
+						sendBufferSize, receiveBufferSize);
 				connected = true;
 
 			} catch (BindException e) {
@@ -62,17 +138,22 @@ public class TcpConnectionFactory implements ConnectionFactory {
 
 				//log.error("IOException beim Verbindungsaufbau: " + e.getMessage());
 
-				// Ein wenig warten und erneut versuchen
+				// Ein wenig warten und erneut versuchen, vor jedem weiteren Versuch
+				// doppelt so lange
 				attempts++;
-				try {
-					Thread.sleep(100);
-				} catch (Exception e2) {
+				if (attempts < maxConnectionAttempts) {
+					try {
+						Thread.sleep(retryDelay
+								- ThreadLocalRandom.current().nextLong(retryDelay / 2 + 1));
+					} catch (Exception e2) {
+					}
+					retryDelay = Math.min(2 * retryDelay, maxRetryDelay);
 				}
 
 			} catch (Exception e) {
 				//log.error("Sonstige Exception beim Verbindungsaufbau " + e.getMessage());
 			}
-			if (attempts >= MAX_CONNECTION_ATTEMPTS) {
+			if (attempts >= maxConnectionAttempts) {
 				throw new IOException();
 			}
 		}
@@ -80,4 +161,21 @@ public class TcpConnectionFactory implements ConnectionFactory {
 		//log.debug("Anzahl der Verbindungsaufbauversuche fuer die Verbindung zum Server: " + connectionTryCounter);
 		return connection;
 	}
+
+	/**
+	 * Erzeugt das Verbindungsobjekt fuer ein bereits verbundenes Socket
+	 *
+	 * @param socket
+	 *          Verbundenes TCP-Socket
+	 * @param sendBufferSize
+	 *          Groesse des Sendepuffers in Byte
+	 * @param receiveBufferSize
+	 *          Groesse des Empfangspuffers in Byte
+	 * @return Verbindung zum Server
+	 */
+	protected Connection createConnection(Socket socket, int sendBufferSize,
+			int receiveBufferSize) {
+		return TcpConnection.open(socket, sendBufferSize, receiveBufferSize, false,
+				tcpNoDelay, flushPolicy, flushThreshold, resetObjects, resetBytes);
+	}
 }
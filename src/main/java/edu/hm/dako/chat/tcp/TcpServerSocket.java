@@ -7,6 +7,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.FlushPolicy;
+import edu.hm.dako.chat.connection.PduCodec;
 import edu.hm.dako.chat.connection.ServerSocketInterface;
 
 /**
@@ -22,6 +24,20 @@ public class TcpServerSocket implements ServerSocketInterface {
 	int sendBufferSize;
 	int receiveBufferSize;
 
+	// Kodierung der Nachrichten, null fuer durchgehende Java-Serialisierung
+	private final PduCodec codec;
+
+	// Socket-Option TCP_NODELAY der angenommenen Verbindungen
+	private boolean tcpNoDelay = true;
+
+	// Zeitpunkt des Leerens des Ausgabestroms und Puffergroesse in Byte
+	private FlushPolicy flushPolicy = FlushPolicy.Immediate;
+	private int flushThreshold = 0;
+
+	// Zuruecksetzen der Referenztabelle der Objektstroeme (ohne Codec)
+	private int resetObjects = TcpConnection.DEFAULT_RESET_OBJECTS;
+	private long resetBytes = 0;
+
 	/**
 	 * Erzeugt ein TCP-Serversocket und bindet es an einen Port.
 	 *
@@ -38,7 +54,30 @@ public class TcpServerSocket implements ServerSocketInterface {
 	 */
 	public TcpServerSocket(int port, int sendBufferSize, int receiveBufferSize)
 			throws BindException, IOException {
+		this(port, sendBufferSize, receiveBufferSize, null);
+	}
 
+	/**
+	 * Erzeugt ein TCP-Serversocket, dessen Verbindungen die Nachrichten rahmenweise mit
+	 * dem angegebenen Codec kodieren.
+	 *
+	 * @param port
+	 *          Portnummer, die verwendet werden soll
+	 * @param sendBufferSize
+	 *          Groesse des Sendepuffers in Byte
+	 * @param receiveBufferSize
+	 *          Groesse des Empfangspuffers in Byte
+	 * @param codec
+	 *          Kodierung der Nachrichten, null fuer {@link TcpConnection}
+	 * @exception BindException
+	 *              Port schon belegt
+	 * @exception IOException
+	 *              I/O-Fehler bei der Socket-Erzeugung
+	 */
+	public TcpServerSocket(int port, int sendBufferSize, int receiveBufferSize,
+			PduCodec codec) throws BindException, IOException {
+
+		this.codec = codec;
 		this.sendBufferSize = sendBufferSize;
 		this.receiveBufferSize = receiveBufferSize;
 		try {
@@ -52,10 +91,46 @@ public class TcpServerSocket implements ServerSocketInterface {
 		}
 	}
 
+	/**
+	 * Sendeverhalten der angenommenen Verbindungen einstellen, vor dem ersten
+	 * accept aufzurufen
+	 *
+	 * @param tcpNoDelay
+	 *          true: Nagle-Algorithmus ausschalten
+	 * @param flushPolicy
+	 *          Zeitpunkt des Leerens des Ausgabestroms
+	 * @param flushThreshold
+	 *          Puffergroesse in Byte, 0: Standardwert
+	 */
+	public void setWriteOptions(boolean tcpNoDelay, FlushPolicy flushPolicy,
+			int flushThreshold) {
+		this.tcpNoDelay = tcpNoDelay;
+		this.flushPolicy = flushPolicy;
+		this.flushThreshold = flushThreshold;
+	}
+
+	/**
+	 * Zuruecksetzen der Referenztabelle der Objektstroeme einstellen (nur ohne
+	 * Codec), vor dem ersten accept aufzurufen
+	 *
+	 * @param resetObjects
+	 *          Zuruecksetzen nach so vielen gesendeten Objekten, 0: nie
+	 * @param resetBytes
+	 *          Zuruecksetzen nach so vielen gesendeten Byte, 0: nie
+	 */
+	public void setResetPolicy(int resetObjects, long resetBytes) {
+		this.resetObjects = resetObjects;
+		this.resetBytes = resetBytes;
+	}
+
 	@Override
 	public Connection accept() throws IOException {
-		return new TcpConnection(serverSocket.accept(), sendBufferSize, receiveBufferSize,
-				false, true);
+		if (codec != null) {
+			return new FramedTcpConnection(serverSocket.accept(), sendBufferSize,
+					receiveBufferSize, false, tcpNoDelay, codec, flushPolicy, flushThreshold);
+		}
+		return TcpConnection.open(serverSocket.accept(), sendBufferSize, receiveBufferSize,
+				false, tcpNoDelay, flushPolicy, flushThreshold, resetObjects, resetBytes);
 	}
 
 	@Override
@@ -0,0 +1,80 @@
+package edu.hm.dako.chat.tcp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zaehlt die Schreibaufrufe auf TCP-Sockets und die dabei geschriebenen Bytes
+ * aller Verbindungen eines Prozesses. Jeder Schreibaufruf entspricht einem
+ * Systemaufruf und bei gesetztem TCP_NODELAY meist einem eigenen TCP-Segment.
+ * Die Zaehler werden fuer den Vergleich der Flush-Strategien im Benchmarking
+ * ausgewertet.
+ *
+ * @author Mandl
+ */
+public final class TcpWriteStatistics {
+
+	private static final AtomicLong numberOfWrites = new AtomicLong(0);
+	private static final AtomicLong numberOfBytes = new AtomicLong(0);
+
+	private TcpWriteStatistics() {
+	}
+
+	/**
+	 * Schreibaufruf erfassen
+	 *
+	 * @param bytes
+	 *          Anzahl geschriebener Bytes
+	 */
+	static void record(long bytes) {
+		numberOfWrites.incrementAndGet();
+		numberOfBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * Ausgabestrom eines Sockets mit Zaehlung der Schreibaufrufe umschliessen
+	 *
+	 * @param out
+	 *          Ausgabestrom des Sockets
+	 * @return Zaehlender Ausgabestrom
+	 */
+	static OutputStream counting(OutputStream out) {
+		return new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				record(1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				record(len);
+			}
+		};
+	}
+
+	/**
+	 * @return Anzahl der Schreibaufrufe seit dem letzten Zuruecksetzen
+	 */
+	public static long getNumberOfWrites() {
+		return numberOfWrites.get();
+	}
+
+	/**
+	 * @return Anzahl der geschriebenen Bytes seit dem letzten Zuruecksetzen
+	 */
+	public static long getNumberOfBytes() {
+		return numberOfBytes.get();
+	}
+
+	/**
+	 * Zaehler zuruecksetzen, z.B. vor einem Benchmark-Lauf
+	 */
+	public static void reset() {
+		numberOfWrites.set(0);
+		numberOfBytes.set(0);
+	}
+}
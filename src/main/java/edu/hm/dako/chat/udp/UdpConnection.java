@@ -0,0 +1,548 @@
+package edu.hm.dako.chat.udp;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.ConnectionTimeoutException;
+import edu.hm.dako.chat.connection.EncodedPdu;
+import edu.hm.dako.chat.connection.EndOfFileException;
+import edu.hm.dako.chat.connection.PduCodec;
+
+/**
+ * Zuverlaessige Verbindung ueber UDP. Jede Nachricht wird mit dem {@link PduCodec}
+ * kodiert und als ein Datagramm mit fortlaufender Sequenznummer gesendet.
+ * <p/>
+ * Datagrammformat: Art (1 Byte), Sequenznummer (8 Byte, Big Endian), Nutzdaten.
+ *
+ * <pre>
+ * DATA: kodierte Nachricht
+ * ACK:  Bestaetigung des Datagramms mit der angegebenen Sequenznummer
+ * FIN:  Verbindungsabbau, wird wie eine Nachricht gesichert und geordnet zugestellt
+ * </pre>
+ *
+ * Der Empfaenger bestaetigt jedes DATA- und FIN-Datagramm einzeln, verwirft Duplikate
+ * und stellt die Nachrichten in der Reihenfolge ihrer Sequenznummern zu. Der Sender
+ * haelt hoechstens {@link #SEND_WINDOW} unbestaetigte Datagramme und wiederholt ein
+ * Datagramm nach Ablauf der Antwortzeit, die sich mit jeder Wiederholung verdoppelt.
+ * Ist die maximale Anzahl Wiederholungen erreicht, gilt die Verbindung als
+ * abgebrochen.
+ * <p/>
+ * Die Datagramme werden von einem Empfangsthread des Sockets (Client: je Verbindung,
+ * Server: einer fuer alle Verbindungen) an {@link #datagramReceived} uebergeben.
+ * Dekodiert wird erst beim Abholen im empfangenden Thread.
+ *
+ * @author Mandl
+ */
+public class UdpConnection implements Connection {
+
+	private static Log log = LogFactory.getLog(UdpConnection.class);
+
+	// Datagrammarten
+	static final byte DATA = 0;
+	static final byte ACK = 1;
+	static final byte FIN = 2;
+
+	// Laenge des Datagrammkopfes: Art und Sequenznummer
+	static final int HEADER_LENGTH = 9;
+
+	// Maximale Groesse eines UDP-Datagramms (IPv4)
+	static final int MAX_DATAGRAM_LENGTH = 65507;
+
+	// Maximale Anzahl unbestaetigter Datagramme je Verbindung
+	private static final int SEND_WINDOW = 32;
+
+	// Groesster zulaessiger Vorlauf einer Sequenznummer gegenueber der erwarteten,
+	// weiter vorauseilende Datagramme werden ohne Bestaetigung verworfen
+	private static final int MAX_REORDER = 4 * SEND_WINDOW;
+
+	// Groesste Verdopplung der Antwortzeit bei Wiederholungen
+	private static final int MAX_BACKOFF_SHIFT = 6;
+
+	// Kennzeichnet das Verbindungsende in der Empfangswarteschlange
+	private static final byte[] END_OF_STREAM = new byte[0];
+
+	// Gemeinsamer Timer fuer die Wiederholungen aller Verbindungen eines Prozesses
+	private static ScheduledThreadPoolExecutor retransmitTimer;
+
+	private final DatagramSocket socket;
+	private final SocketAddress remoteAddress;
+	private final PduCodec codec;
+
+	// Antwortzeit in ms bis zur ersten Wiederholung und maximale Anzahl
+	// Wiederholungen je Datagramm
+	private final int responseTimeout;
+	private final int maxRetries;
+
+	// Wird aufgerufen, sobald die Verbindung vollstaendig abgebaut ist
+	private final Runnable finishedListener;
+
+	// Wird bei jeder Wiederholung aufgerufen, null: keine Meldung
+	private volatile Runnable retransmissionListener;
+
+	// Anteil der ausgehenden Datagramme, die zum Test verworfen werden
+	private volatile double simulatedLossRate = 0;
+
+	// Sendeseite: naechste Sequenznummer (unter sendLock) und unbestaetigte Datagramme
+	private final Object sendLock = new Object();
+	private long nextSendSequence = 0;
+	private final Map<Long, Pending> unacknowledged = new ConcurrentHashMap<Long, Pending>();
+	private final Semaphore sendWindow = new Semaphore(SEND_WINDOW);
+
+	// Empfangsseite, nur im Empfangsthread verwendet
+	private long nextExpectedSequence = 0;
+	private final TreeMap<Long, byte[]> outOfOrder = new TreeMap<Long, byte[]>();
+	private boolean peerClosed = false;
+
+	// Zugestellte, noch nicht abgeholte Nachrichten
+	private final LinkedBlockingQueue<byte[]> delivered = new LinkedBlockingQueue<byte[]>();
+
+	private volatile boolean closing = false;
+	private volatile boolean failed = false;
+	private final AtomicBoolean finished = new AtomicBoolean(false);
+
+	// Anzahl Wiederholungen und verworfener Duplikate
+	private final AtomicLong numberOfRetransmissions = new AtomicLong(0);
+	private long numberOfDuplicates = 0;
+
+	/**
+	 * @param socket
+	 *          Socket, ueber das gesendet wird
+	 * @param remoteAddress
+	 *          Adresse des Partners
+	 * @param codec
+	 *          Kodierung der Nachrichten
+	 * @param responseTimeout
+	 *          Wartezeit in ms auf die Bestaetigung bis zur ersten Wiederholung
+	 * @param maxRetries
+	 *          Maximale Anzahl Wiederholungen je Datagramm
+	 * @param finishedListener
+	 *          Wird aufgerufen, sobald die Verbindung abgebaut oder abgebrochen ist
+	 */
+	UdpConnection(DatagramSocket socket, SocketAddress remoteAddress, PduCodec codec,
+			int responseTimeout, int maxRetries, Runnable finishedListener) {
+		if (responseTimeout <= 0) {
+			throw new IllegalArgumentException("Ungueltige Antwortzeit: " + responseTimeout);
+		}
+		this.socket = socket;
+		this.remoteAddress = remoteAddress;
+		this.codec = codec;
+		this.responseTimeout = responseTimeout;
+		this.maxRetries = Math.max(0, maxRetries);
+		this.finishedListener = finishedListener;
+	}
+
+	void setRetransmissionListener(Runnable retransmissionListener) {
+		this.retransmissionListener = retransmissionListener;
+	}
+
+	void setSimulatedLossRate(double simulatedLossRate) {
+		this.simulatedLossRate = simulatedLossRate;
+	}
+
+	@Override
+	public Serializable receive(int timeout) throws Exception {
+		byte[] payload = delivered.poll(timeout, TimeUnit.MILLISECONDS);
+		if (payload == null) {
+			throw new ConnectionTimeoutException(new Exception());
+		}
+		return decode(payload);
+	}
+
+	@Override
+	public Serializable receive() throws Exception {
+		return decode(delivered.take());
+	}
+
+	@Override
+	public void send(Serializable message) throws Exception {
+		byte[] payload = codec.encode(message);
+		if (payload.length > MAX_DATAGRAM_LENGTH - HEADER_LENGTH) {
+			throw new IOException("Nachricht zu gross fuer ein Datagramm: " + payload.length);
+		}
+
+		// Blockiert, solange das Sendefenster voll ist
+		sendWindow.acquire();
+		try {
+			sendSequenced(DATA, payload);
+		} catch (IOException e) {
+			sendWindow.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Die PDU wird je Empfaenger als eigenes Datagramm kodiert
+	 */
+	@Override
+	public void send(EncodedPdu pdu, String recipient) throws Exception {
+		send(pdu.toPdu(recipient));
+	}
+
+	/**
+	 * Ohne Wirkung, jede Nachricht wird sofort als Datagramm gesendet
+	 */
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * Baut die Verbindung ab: Der Partner erhaelt nach allen bereits gesendeten
+	 * Nachrichten ein gesichertes FIN. Die Verbindung ist beendet, sobald das FIN
+	 * bestaetigt oder die Wiederholungen erschoepft sind.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (sendLock) {
+			if (closing || failed) {
+				return;
+			}
+			closing = true;
+			// Das FIN belegt keinen Platz im Sendefenster, damit close nicht blockiert
+			sendSequenced(FIN, new byte[0]);
+		}
+	}
+
+	/**
+	 * @return Anzahl der wiederholt gesendeten Datagramme
+	 */
+	public long getNumberOfRetransmissions() {
+		return numberOfRetransmissions.get();
+	}
+
+	/**
+	 * @return Anzahl der empfangenen und verworfenen Duplikate
+	 */
+	public long getNumberOfDuplicates() {
+		return numberOfDuplicates;
+	}
+
+	/**
+	 * Empfangenes Datagramm verarbeiten, wird nur vom Empfangsthread des Sockets
+	 * aufgerufen
+	 *
+	 * @param data
+	 *          Puffer mit dem Datagramm
+	 * @param offset
+	 *          Beginn des Datagramms im Puffer
+	 * @param length
+	 *          Laenge des Datagramms
+	 */
+	void datagramReceived(byte[] data, int offset, int length) {
+		if (length < HEADER_LENGTH) {
+			//log.debug("Datagramm zu kurz: " + length);
+			return;
+		}
+		byte type = data[offset];
+		long sequence = readSequence(data, offset);
+
+		switch (type) {
+
+		case ACK:
+			acknowledged(sequence);
+			break;
+
+		case DATA:
+		case FIN:
+			if (sequence >= nextExpectedSequence + MAX_REORDER) {
+				// Ausserhalb des zulaessigen Bereichs, der Sender wiederholt es
+				return;
+			}
+			transmit(control(ACK, sequence));
+			if ((sequence < nextExpectedSequence) || outOfOrder.containsKey(sequence)) {
+				// Wiederholung eines bereits empfangenen Datagramms
+				numberOfDuplicates++;
+				return;
+			}
+			byte[] payload = (type == FIN) ? END_OF_STREAM
+					: Arrays.copyOfRange(data, offset + HEADER_LENGTH, offset + length);
+			if (sequence == nextExpectedSequence) {
+				deliver(payload);
+				byte[] next;
+				while ((next = outOfOrder.remove(nextExpectedSequence)) != null) {
+					deliver(next);
+				}
+			} else {
+				outOfOrder.put(sequence, payload);
+			}
+			break;
+
+		default:
+			//log.debug("Unbekannte Datagrammart: " + type);
+			break;
+		}
+	}
+
+	/**
+	 * Verbindung ohne Abbauprotokoll beenden, z.B. beim Schliessen des Server-Sockets
+	 */
+	void abort() {
+		fail();
+	}
+
+	/**
+	 * @return true, wenn das Datagramm eine neue Verbindung eroeffnet (erste Nachricht)
+	 */
+	static boolean isConnectionStart(byte[] data, int offset, int length) {
+		return (length >= HEADER_LENGTH) && (data[offset] == DATA)
+				&& (readSequence(data, offset) == 0);
+	}
+
+	/**
+	 * Datagramm ohne zugehoerige Verbindung beantworten: Nur ein wiederholtes FIN
+	 * einer bereits abgebauten Verbindung wird bestaetigt, damit der Partner das
+	 * Wiederholen einstellt. DATA-Datagramme werden ohne Bestaetigung verworfen, da
+	 * sonst eine Nachricht als zugestellt gaelte, die nie ein Empfaenger gesehen hat.
+	 * Ist die Verbindung noch nicht angelegt (z.B. erstes Datagramm verloren), wird
+	 * das Datagramm vom Partner wiederholt.
+	 *
+	 * @param socket
+	 *          Socket, ueber das geantwortet wird
+	 * @param remoteAddress
+	 *          Adresse des Partners
+	 */
+	static void answerStray(DatagramSocket socket, SocketAddress remoteAddress,
+			byte[] data, int offset, int length) {
+		if ((length < HEADER_LENGTH) || (data[offset] != FIN)) {
+			return;
+		}
+		byte[] ack = control(ACK, readSequence(data, offset));
+		try {
+			socket.send(new DatagramPacket(ack, ack.length, remoteAddress));
+		} catch (IOException e) {
+			// Ignorieren
+		}
+	}
+
+	/**
+	 * Datagramm mit der naechsten Sequenznummer senden und die Wiederholung planen
+	 *
+	 * @param type
+	 *          DATA oder FIN
+	 * @param payload
+	 *          Nutzdaten
+	 * @throws IOException
+	 *           Verbindung bereits abgebaut oder abgebrochen
+	 */
+	private void sendSequenced(byte type, byte[] payload) throws IOException {
+		synchronized (sendLock) {
+			// Nach dem FIN keine Nachrichten mehr
+			if ((closing && (type == DATA)) || failed) {
+				throw new IOException();
+			}
+			long sequence = nextSendSequence++;
+			byte[] datagram = new byte[HEADER_LENGTH + payload.length];
+			datagram[0] = type;
+			writeSequence(datagram, sequence);
+			System.arraycopy(payload, 0, datagram, HEADER_LENGTH, payload.length);
+
+			Pending pending = new Pending(sequence, type, datagram);
+			unacknowledged.put(sequence, pending);
+			transmit(datagram);
+			schedule(pending);
+		}
+	}
+
+	/**
+	 * Wiederholung eines Datagramms nach Ablauf der Antwortzeit planen
+	 */
+	private void schedule(final Pending pending) {
+		long delay = (long) responseTimeout << Math.min(pending.retries, MAX_BACKOFF_SHIFT);
+		pending.timer = getRetransmitTimer().schedule(new Runnable() {
+			@Override
+			public void run() {
+				retransmit(pending);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Unbestaetigtes Datagramm wiederholen oder die Verbindung abbrechen, laeuft im
+	 * Timer-Thread
+	 */
+	private void retransmit(Pending pending) {
+		if (finished.get() || (unacknowledged.get(pending.sequence) != pending)) {
+			// Inzwischen bestaetigt
+			return;
+		}
+		if (pending.retries >= maxRetries) {
+			//log.debug("Keine Bestaetigung nach " + pending.retries + " Wiederholungen, Verbindung zu " + remoteAddress + " abgebrochen");
+			fail();
+			return;
+		}
+		pending.retries++;
+		numberOfRetransmissions.incrementAndGet();
+		Runnable listener = retransmissionListener;
+		if (listener != null) {
+			listener.run();
+		}
+		transmit(pending.datagram);
+		schedule(pending);
+	}
+
+	/**
+	 * Bestaetigung eines gesendeten Datagramms verarbeiten
+	 */
+	private void acknowledged(long sequence) {
+		Pending pending = unacknowledged.remove(sequence);
+		if (pending == null) {
+			// Bestaetigung einer Wiederholung
+			return;
+		}
+		ScheduledFuture<?> timer = pending.timer;
+		if (timer != null) {
+			timer.cancel(false);
+		}
+		if (pending.type == FIN) {
+			finish();
+		} else {
+			sendWindow.release();
+		}
+	}
+
+	private void deliver(byte[] payload) {
+		nextExpectedSequence++;
+		if (peerClosed) {
+			return;
+		}
+		if (payload == END_OF_STREAM) {
+			peerClosed = true;
+		}
+		delivered.add(payload);
+	}
+
+	private Serializable decode(byte[] payload) throws Exception {
+		if (payload == END_OF_STREAM) {
+			// Auch weitere Empfangsversuche sollen das Verbindungsende sehen
+			delivered.add(END_OF_STREAM);
+			throw new EndOfFileException(new Exception());
+		}
+		return codec.decode(payload, 0, payload.length);
+	}
+
+	/**
+	 * Verbindung wegen ausbleibender Bestaetigungen abbrechen
+	 */
+	private void fail() {
+		failed = true;
+		// Wartende Sender und Empfaenger wecken
+		sendWindow.release(SEND_WINDOW);
+		finish();
+	}
+
+	/**
+	 * Verbindung endgueltig beenden
+	 */
+	private void finish() {
+		if (!finished.compareAndSet(false, true)) {
+			return;
+		}
+		for (Pending pending : unacknowledged.values()) {
+			ScheduledFuture<?> timer = pending.timer;
+			if (timer != null) {
+				timer.cancel(false);
+			}
+		}
+		unacknowledged.clear();
+		delivered.add(END_OF_STREAM);
+		if (finishedListener != null) {
+			finishedListener.run();
+		}
+	}
+
+	private void transmit(byte[] datagram) {
+		double lossRate = simulatedLossRate;
+		if ((lossRate > 0) && (ThreadLocalRandom.current().nextDouble() < lossRate)) {
+			// Verlust simulieren
+			return;
+		}
+		try {
+			socket.send(new DatagramPacket(datagram, datagram.length, remoteAddress));
+		} catch (IOException e) {
+			// Wie ein verlorenes Datagramm behandeln, die Wiederholung greift
+			//log.debug("Senden an " + remoteAddress + " fehlgeschlagen: " + e);
+		}
+	}
+
+	private static byte[] control(byte type, long sequence) {
+		byte[] datagram = new byte[HEADER_LENGTH];
+		datagram[0] = type;
+		writeSequence(datagram, sequence);
+		return datagram;
+	}
+
+	private static void writeSequence(byte[] datagram, long sequence) {
+		for (int i = 0; i < 8; i++) {
+			datagram[1 + i] = (byte) (sequence >>> (56 - 8 * i));
+		}
+	}
+
+	private static long readSequence(byte[] data, int offset) {
+		long sequence = 0;
+		for (int i = 0; i < 8; i++) {
+			sequence = (sequence << 8) | (data[offset + 1 + i] & 0xFF);
+		}
+		return sequence;
+	}
+
+	private static synchronized ScheduledThreadPoolExecutor getRetransmitTimer() {
+		if (retransmitTimer == null) {
+			retransmitTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "UdpRetransmitTimer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			// Bestaetigte Datagramme nicht bis zum Ablauf im Timer halten
+			retransmitTimer.setRemoveOnCancelPolicy(true);
+		}
+		return retransmitTimer;
+	}
+
+	@Override
+	public String toString() {
+		return "UdpConnection " + remoteAddress;
+	}
+
+	/**
+	 * Gesendetes, noch nicht bestaetigtes Datagramm
+	 */
+	private static final class Pending {
+
+		final long sequence;
+		final byte type;
+		final byte[] datagram;
+
+		// Anzahl bisheriger Wiederholungen und geplante Wiederholung, nur im
+		// sendenden Thread bzw. im Timer-Thread veraendert
+		volatile int retries = 0;
+		volatile ScheduledFuture<?> timer;
+
+		Pending(long sequence, byte type, byte[] datagram) {
+			this.sequence = sequence;
+			this.type = type;
+			this.datagram = datagram;
+		}
+	}
+}
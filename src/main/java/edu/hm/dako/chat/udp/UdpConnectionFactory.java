@@ -0,0 +1,121 @@
+package edu.hm.dako.chat.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.ConnectionFactory;
+import edu.hm.dako.chat.connection.PduCodec;
+import edu.hm.dako.chat.connection.SerializationPduCodec;
+
+/**
+ * Erzeugen von UDP-Verbindungen zum Server. Jede Verbindung erhaelt ein eigenes
+ * Datagramm-Socket und einen Empfangsthread. Ein Verbindungsaufbau findet nicht
+ * statt: Der Server legt die Verbindung beim Empfang der ersten Nachricht an.
+ *
+ * @author Mandl
+ */
+public class UdpConnectionFactory implements ConnectionFactory {
+
+	private static Log log = LogFactory.getLog(UdpConnectionFactory.class);
+
+	// Kodierung der Nachrichten
+	private final PduCodec codec;
+
+	// Wartezeit in ms auf eine Bestaetigung bis zur ersten Wiederholung und
+	// maximale Anzahl Wiederholungen je Datagramm
+	private final int responseTimeout;
+	private final int maxRetries;
+
+	// Wird bei jeder Wiederholung aufgerufen, null: keine Meldung
+	private Runnable retransmissionListener;
+
+	// Anteil der ausgehenden Datagramme, die zum Test verworfen werden
+	private double simulatedLossRate = 0;
+
+	public UdpConnectionFactory(int responseTimeout, int maxRetries) {
+		this(new SerializationPduCodec(), responseTimeout, maxRetries);
+	}
+
+	/**
+	 * @param codec
+	 *          Kodierung der Nachrichten
+	 * @param responseTimeout
+	 *          Wartezeit in ms auf eine Bestaetigung bis zur ersten Wiederholung
+	 * @param maxRetries
+	 *          Maximale Anzahl Wiederholungen je Datagramm
+	 */
+	public UdpConnectionFactory(PduCodec codec, int responseTimeout, int maxRetries) {
+		this.codec = codec;
+		this.responseTimeout = responseTimeout;
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * @param retransmissionListener
+	 *          Wird bei jeder Wiederholung eines Datagramms aufgerufen (im
+	 *          Timer-Thread)
+	 */
+	public void setRetransmissionListener(Runnable retransmissionListener) {
+		this.retransmissionListener = retransmissionListener;
+	}
+
+	/**
+	 * @param simulatedLossRate
+	 *          Anteil verworfener ausgehender Datagramme zwischen 0 und 1 (nur fuer
+	 *          Tests)
+	 */
+	public void setSimulatedLossRate(double simulatedLossRate) {
+		this.simulatedLossRate = simulatedLossRate;
+	}
+
+	@Override
+	public Connection connectToServer(String remoteServerAddress, int serverPort,
+			int localPort, int sendBufferSize, int receiveBufferSize) throws IOException {
+
+		final DatagramSocket socket = new DatagramSocket(localPort);
+		socket.setSendBufferSize(sendBufferSize);
+		socket.setReceiveBufferSize(receiveBufferSize);
+		InetSocketAddress serverAddress = new InetSocketAddress(remoteServerAddress,
+				serverPort);
+
+		final UdpConnection connection = new UdpConnection(socket, serverAddress, codec,
+				responseTimeout, maxRetries, new Runnable() {
+					@Override
+					public void run() {
+						// Beendet auch den Empfangsthread
+						socket.close();
+					}
+				});
+		connection.setRetransmissionListener(retransmissionListener);
+		connection.setSimulatedLossRate(simulatedLossRate);
+
+		Thread receiver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				byte[] buffer = new byte[UdpConnection.MAX_DATAGRAM_LENGTH];
+				DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+				while (!socket.isClosed()) {
+					try {
+						packet.setLength(buffer.length);
+						socket.receive(packet);
+						connection.datagramReceived(buffer, packet.getOffset(),
+								packet.getLength());
+					} catch (IOException e) {
+						// Socket geschlossen oder Fehler beim Empfang eines Datagramms
+					}
+				}
+			}
+		}, "UdpReceiver-" + socket.getLocalPort());
+		receiver.setDaemon(true);
+		receiver.start();
+
+		//log.debug("UDP-Verbindung zum Server " + serverAddress + " ueber lokalen Port " + socket.getLocalPort());
+		return connection;
+	}
+}
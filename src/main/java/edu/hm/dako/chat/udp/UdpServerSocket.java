@@ -0,0 +1,193 @@
+package edu.hm.dako.chat.udp;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.hm.dako.chat.connection.Connection;
+import edu.hm.dako.chat.connection.PduCodec;
+import edu.hm.dako.chat.connection.ServerSocketInterface;
+
+/**
+ * Server-Socket auf UDP-Basis. Alle Clients kommunizieren ueber ein einziges
+ * Datagramm-Socket. Ein Empfangsthread ordnet die Datagramme anhand der Adresse des
+ * Absenders der jeweiligen {@link UdpConnection} zu. Das erste Datagramm eines neuen
+ * Absenders (Sequenznummer 0) eroeffnet eine Verbindung, die ueber
+ * {@link #accept()} an den Server uebergeben wird. Der Empfangsthread wird erst
+ * mit {@link #start()} nach der Konstruktion gestartet.
+ *
+ * @author Mandl
+ */
+public class UdpServerSocket implements ServerSocketInterface {
+
+	private static Log log = LogFactory.getLog(UdpServerSocket.class);
+
+	// Intervall in ms, in dem accept prueft, ob das Socket geschlossen wurde
+	private static final int ACCEPT_POLL_INTERVAL = 100;
+
+	private final DatagramSocket socket;
+	private final PduCodec codec;
+	private final int responseTimeout;
+	private final int maxRetries;
+
+	// Anteil der ausgehenden Datagramme, die zum Test verworfen werden
+	private volatile double simulatedLossRate = 0;
+
+	// Verbindungen je Absenderadresse
+	private final ConcurrentHashMap<SocketAddress, UdpConnection> connections = new ConcurrentHashMap<SocketAddress, UdpConnection>();
+
+	// Neue, noch nicht angenommene Verbindungen
+	private final LinkedBlockingQueue<UdpConnection> newConnections = new LinkedBlockingQueue<UdpConnection>();
+
+	/**
+	 * Erzeugt ein UDP-Serversocket und bindet es an einen Port
+	 *
+	 * @param port
+	 *          Portnummer, die verwendet werden soll
+	 * @param sendBufferSize
+	 *          Groesse des Sendepuffers in Byte
+	 * @param receiveBufferSize
+	 *          Groesse des Empfangspuffers in Byte
+	 * @param codec
+	 *          Kodierung der Nachrichten
+	 * @param responseTimeout
+	 *          Wartezeit in ms auf eine Bestaetigung bis zur ersten Wiederholung
+	 * @param maxRetries
+	 *          Maximale Anzahl Wiederholungen je Datagramm
+	 * @exception BindException
+	 *              Port schon belegt
+	 * @exception IOException
+	 *              I/O-Fehler bei der Socket-Erzeugung
+	 */
+	public UdpServerSocket(int port, int sendBufferSize, int receiveBufferSize,
+			PduCodec codec, int responseTimeout, int maxRetries)
+			throws BindException, IOException {
+		this.codec = codec;
+		this.responseTimeout = responseTimeout;
+		this.maxRetries = maxRetries;
+
+		socket = new DatagramSocket(port);
+		socket.setSendBufferSize(sendBufferSize);
+		socket.setReceiveBufferSize(receiveBufferSize);
+	}
+
+	/**
+	 * Empfangsthread starten. Erst danach werden Datagramme angenommen, daher
+	 * vorher alle Einstellungen (z.B. setSimulatedLossRate) vornehmen.
+	 */
+	public void start() {
+		Thread receiver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				receiveDatagrams();
+			}
+		}, "UdpServerReceiver");
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	/**
+	 * Verlust ausgehender Datagramme fuer Tests simulieren, gilt fuer danach
+	 * angenommene Verbindungen und ist daher vor {@link #start()} einzustellen
+	 *
+	 * @param simulatedLossRate
+	 *          Anteil verworfener Datagramme zwischen 0 und 1
+	 */
+	public void setSimulatedLossRate(double simulatedLossRate) {
+		this.simulatedLossRate = simulatedLossRate;
+	}
+
+	@Override
+	public Connection accept() throws Exception {
+		while (!socket.isClosed()) {
+			UdpConnection connection = newConnections.poll(ACCEPT_POLL_INTERVAL,
+					TimeUnit.MILLISECONDS);
+			if (connection != null) {
+				return connection;
+			}
+		}
+		throw new SocketException("Socket geschlossen");
+	}
+
+	/**
+	 * Schliesst das Socket, noch bestehende Verbindungen werden abgebrochen
+	 */
+	@Override
+	public void close() throws IOException {
+		//log.debug("UDP-Serversocket wird geschlossen, lokaler Port: " + socket.getLocalPort());
+		socket.close();
+		for (UdpConnection connection : connections.values()) {
+			connection.abort();
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+
+	/**
+	 * Empfangsschleife: Datagramme an die Verbindung des Absenders weiterreichen
+	 */
+	private void receiveDatagrams() {
+		byte[] buffer = new byte[UdpConnection.MAX_DATAGRAM_LENGTH];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+		while (!socket.isClosed()) {
+			try {
+				packet.setLength(buffer.length);
+				socket.receive(packet);
+			} catch (IOException e) {
+				if (!socket.isClosed()) {
+					//log.debug("Fehler beim Empfang eines Datagramms: " + e);
+				}
+				continue;
+			}
+
+			SocketAddress sender = packet.getSocketAddress();
+			UdpConnection connection = connections.get(sender);
+			if (connection == null) {
+				if (!UdpConnection.isConnectionStart(buffer, packet.getOffset(),
+						packet.getLength())) {
+					UdpConnection.answerStray(socket, sender, buffer, packet.getOffset(),
+							packet.getLength());
+					continue;
+				}
+				connection = createConnection(sender);
+				connections.put(sender, connection);
+				newConnections.add(connection);
+			}
+			connection.datagramReceived(buffer, packet.getOffset(), packet.getLength());
+		}
+	}
+
+	/**
+	 * Neue Verbindung zu einem Client anlegen, die sich nach dem Abbau aus der
+	 * Zuordnung austraegt. Solange sie eingetragen ist, wird fuer denselben Absender
+	 * keine weitere Verbindung angelegt.
+	 *
+	 * @param sender
+	 *          Adresse des Clients
+	 * @return Verbindung
+	 */
+	private UdpConnection createConnection(final SocketAddress sender) {
+		UdpConnection connection = new UdpConnection(socket, sender, codec, responseTimeout,
+				maxRetries, new Runnable() {
+					@Override
+					public void run() {
+						connections.remove(sender);
+					}
+				});
+		connection.setSimulatedLossRate(simulatedLossRate);
+		return connection;
+	}
+}
@@ -0,0 +1,113 @@
+package edu.hm.dako.chat.benchmarking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+/**
+ * Durchlaufen des Parameterraums einer Benchmark-Reihe: Reihenfolge der
+ * Kombinationen, Randbedingungen und Spalten der Ergebnisdatei
+ *
+ * @author Mandl
+ */
+public class ParameterGridTest {
+
+	@Test
+	public void lastDimensionChangesFastest() {
+		ParameterGrid grid = new ParameterGrid();
+		grid.addDimension("numberOfClients", "Clients", Arrays.asList(1, 2), null);
+		grid.addDimension("messageLength", "Laenge", Arrays.asList(10, 20, 30), null);
+
+		List<String> visited = new ArrayList<String>();
+		for (ParameterGrid.Combination combination : grid) {
+			visited.add(combination.getColumnValues());
+		}
+		assertEquals(Arrays.asList("1;10", "1;20", "1;30", "2;10", "2;20", "2;30"),
+				visited);
+		assertEquals(6, grid.fullSize());
+		assertEquals(6, grid.size());
+		assertEquals("Clients;Laenge", grid.getColumnNames());
+	}
+
+	@Test
+	public void constraintsSkipCombinations() {
+		ParameterGrid grid = new ParameterGrid();
+		grid.addDimension("numberOfClients", "Clients", Arrays.asList(1, 2, 4), null);
+		grid.addDimension("messageLength", null, Arrays.asList(10, 20), null);
+		grid.addConstraint(new Predicate<ParameterGrid.Combination>() {
+			@Override
+			public boolean test(ParameterGrid.Combination combination) {
+				return !combination.get("numberOfClients").equals(2);
+			}
+		});
+
+		assertEquals(6, grid.fullSize());
+		assertEquals(4, grid.size());
+		for (ParameterGrid.Combination combination : grid) {
+			assertFalse(combination.get("numberOfClients").equals(2));
+		}
+
+		// Dimension ohne eigene Spalte erscheint nicht in der Ergebnisdatei
+		assertEquals("Clients", grid.getColumnNames());
+	}
+
+	@Test
+	public void applyToSetsInputParameters() {
+		ParameterGrid grid = new ParameterGrid();
+		grid.addDimension("numberOfClients", "Clients", Arrays.asList(3),
+				new BiConsumer<UserInterfaceInputParameters, Object>() {
+					@Override
+					public void accept(UserInterfaceInputParameters parm, Object value) {
+						parm.setNumberOfClients((Integer) value);
+					}
+				});
+		grid.addDimension("messageLength", "Laenge", Arrays.asList(50, 60),
+				new BiConsumer<UserInterfaceInputParameters, Object>() {
+					@Override
+					public void accept(UserInterfaceInputParameters parm, Object value) {
+						parm.setMessageLength((Integer) value);
+					}
+				});
+
+		Iterator<ParameterGrid.Combination> i = grid.iterator();
+		UserInterfaceInputParameters parm = new UserInterfaceInputParameters();
+		i.next().applyTo(parm);
+		assertEquals(3, parm.getNumberOfClients());
+		assertEquals(50, parm.getMessageLength());
+
+		ParameterGrid.Combination last = i.next();
+		last.applyTo(parm);
+		assertEquals(60, parm.getMessageLength());
+		assertEquals("messageLength=60", last.describe());
+
+		assertFalse(i.hasNext());
+		try {
+			i.next();
+			fail("Kombination nach dem Ende geliefert");
+		} catch (NoSuchElementException e) {
+			// erwartet
+		}
+	}
+
+	@Test
+	public void dimensionWithoutValuesIsRejected() {
+		ParameterGrid grid = new ParameterGrid();
+		try {
+			grid.addDimension("thinkTime", "Denkzeit", Collections.emptyList(), null);
+			fail("Dimension ohne Werte nicht erkannt");
+		} catch (IllegalArgumentException e) {
+			// erwartet
+		}
+	}
+}
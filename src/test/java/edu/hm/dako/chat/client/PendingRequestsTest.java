@@ -0,0 +1,198 @@
+package edu.hm.dako.chat.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Zuordnung von Responses zu offenen Requests ueber die Sequenznummer und
+ * Warten auf freie Plaetze im Fenster
+ *
+ * @author Mandl
+ */
+public class PendingRequestsTest {
+
+	@Test
+	public void outOfOrderResponsesMatchTheirRequests() {
+		PendingRequests pending = new PendingRequests(4);
+		final List<PendingRequests.Request> answered = new ArrayList<PendingRequests.Request>();
+		final List<Long> serverTimes = new ArrayList<Long>();
+		pending.setResponseHandler(new PendingRequests.ResponseHandler() {
+			@Override
+			public void responseReceived(PendingRequests.Request request, long serverTime,
+					long receiveTime) {
+				answered.add(request);
+				serverTimes.add(serverTime);
+				assertTrue(receiveTime >= request.getSendTime());
+			}
+		});
+
+		long now = System.nanoTime();
+		for (long seq = 1; seq <= 4; seq++) {
+			pending.add(seq, now + seq, (seq == 2) ? now - 1000 : 0);
+		}
+		assertEquals(4, pending.size());
+
+		long[] order = { 3, 1, 4, 2 };
+		for (long seq : order) {
+			assertTrue(pending.complete(seq, seq * 10));
+		}
+		assertEquals(0, pending.size());
+		for (int i = 0; i < order.length; i++) {
+			PendingRequests.Request request = answered.get(i);
+			assertEquals(order[i], request.getSequenceNumber());
+			assertEquals(now + order[i], request.getSendTime());
+			assertEquals(order[i] * 10, (long) serverTimes.get(i));
+		}
+
+		// Geplanter Sendezeitpunkt nur bei offener Schleife, sonst Sendezeitpunkt
+		assertEquals(now - 1000, answered.get(3).getIntendedSendTime());
+		assertEquals(answered.get(0).getSendTime(), answered.get(0).getIntendedSendTime());
+	}
+
+	@Test
+	public void unknownAndDuplicateResponsesAreIgnored() {
+		PendingRequests pending = new PendingRequests(2);
+		pending.add(7, System.nanoTime(), 0);
+		assertFalse(pending.complete(8, 0));
+		assertTrue(pending.complete(7, 0));
+		assertFalse(pending.complete(7, 0));
+		assertEquals(0, pending.size());
+	}
+
+	@Test
+	public void awaitSlotWakesUpOnResponse() throws Exception {
+		final PendingRequests pending = new PendingRequests(2);
+		pending.add(1, System.nanoTime(), 0);
+		pending.add(2, System.nanoTime(), 0);
+
+		CountDownLatch slotFree = awaitSlotInThread(pending);
+		assertFalse("Fenster voll, Sender darf nicht weiterlaufen",
+				slotFree.await(200, TimeUnit.MILLISECONDS));
+
+		// Eine Response, die nicht die aelteste ist, gibt ebenfalls einen Platz frei
+		pending.complete(2, 0);
+		assertTrue(slotFree.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void awaitSlotWakesUpOnLargerWindow() throws Exception {
+		PendingRequests pending = new PendingRequests(1);
+		pending.add(1, System.nanoTime(), 0);
+
+		CountDownLatch slotFree = awaitSlotInThread(pending);
+		assertFalse(slotFree.await(200, TimeUnit.MILLISECONDS));
+		pending.setWindow(2);
+		assertTrue(slotFree.await(5, TimeUnit.SECONDS));
+		assertEquals(2, pending.getWindow());
+	}
+
+	@Test
+	public void awaitEmptyWaitsForAllResponses() throws Exception {
+		final PendingRequests pending = new PendingRequests(8);
+		for (long seq = 1; seq <= 8; seq++) {
+			pending.add(seq, System.nanoTime(), 0);
+		}
+		assertFalse(pending.awaitEmpty(50));
+
+		Thread listener = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (long seq = 8; seq >= 1; seq--) {
+					pending.complete(seq, 0);
+					Thread.yield();
+				}
+			}
+		});
+		listener.start();
+		assertTrue(pending.awaitEmpty(5000));
+		listener.join();
+	}
+
+	@Test
+	public void slotIsReleasedAfterResponseHandler() throws Exception {
+		final PendingRequests pending = new PendingRequests(1);
+		final CountDownLatch handlerEntered = new CountDownLatch(1);
+		final CountDownLatch handlerRelease = new CountDownLatch(1);
+		pending.setResponseHandler(new PendingRequests.ResponseHandler() {
+			@Override
+			public void responseReceived(PendingRequests.Request request, long serverTime,
+					long receiveTime) {
+				handlerEntered.countDown();
+				try {
+					handlerRelease.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// Test beendet
+				}
+			}
+		});
+		pending.add(1, System.nanoTime(), 0);
+
+		Thread listener = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				pending.complete(1, 0);
+			}
+		});
+		listener.start();
+		assertTrue(handlerEntered.await(5, TimeUnit.SECONDS));
+
+		// Solange der Handler laeuft, ist der Request noch offen
+		CountDownLatch slotFree = awaitSlotInThread(pending);
+		assertFalse(slotFree.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(1, pending.size());
+
+		handlerRelease.countDown();
+		assertTrue(slotFree.await(5, TimeUnit.SECONDS));
+		listener.join();
+		assertEquals(0, pending.size());
+	}
+
+	@Test
+	public void invalidWindowIsRejected() {
+		try {
+			new PendingRequests(0);
+			fail("Fenstergroesse 0 nicht erkannt");
+		} catch (IllegalArgumentException e) {
+			// erwartet
+		}
+		PendingRequests pending = new PendingRequests(1);
+		try {
+			pending.setWindow(-1);
+			fail("Negative Fenstergroesse nicht erkannt");
+		} catch (IllegalArgumentException e) {
+			assertEquals(1, pending.getWindow());
+		}
+	}
+
+	/**
+	 * Startet einen Sender, der auf einen freien Platz im Fenster wartet
+	 *
+	 * @return Latch, das nach dem Warten heruntergezaehlt wird
+	 */
+	private static CountDownLatch awaitSlotInThread(final PendingRequests pending) {
+		final CountDownLatch slotFree = new CountDownLatch(1);
+		Thread sender = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					pending.awaitSlot();
+					slotFree.countDown();
+				} catch (InterruptedException e) {
+					// Test beendet
+				}
+			}
+		});
+		sender.setDaemon(true);
+		sender.start();
+		return slotFree;
+	}
+}
@@ -0,0 +1,103 @@
+package edu.hm.dako.chat.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.PduType;
+
+/**
+ * Nachfuehren der clientseitigen Userliste aus Login- und Logout-Events und
+ * Anforderung der vollstaendigen Liste bei bestehender Luecke
+ *
+ * @author Mandl
+ */
+public class UserListTest {
+
+	private static final long GAP_TIMEOUT = 100;
+
+	@Test
+	public void outOfOrderEventsAreAppliedInOrder() {
+		UserList list = new UserList(GAP_TIMEOUT);
+		list.applySnapshot(1, Arrays.asList("a"));
+
+		assertFalse(list.applyEvent(event(PduType.LOGIN_EVENT, "c", 3)));
+		assertEquals(Arrays.asList("a"), list.getUsers());
+		assertFalse(list.applyEvent(event(PduType.LOGIN_EVENT, "b", 2)));
+		assertEquals(Arrays.asList("a", "b", "c"), list.getUsers());
+
+		// Bereits enthaltener Stand wird ignoriert
+		assertFalse(list.applyEvent(event(PduType.LOGOUT_EVENT, "b", 2)));
+		assertEquals(Arrays.asList("a", "b", "c"), list.getUsers());
+		assertFalse(list.checkGap());
+	}
+
+	@Test
+	public void manyHeldBackEventsRequestSnapshot() {
+		UserList list = new UserList(60000);
+		list.applySnapshot(1, Arrays.asList("a"));
+
+		// Stand 2 fehlt, alle spaeteren Events werden zurueckgehalten
+		boolean requested = false;
+		for (int v = 3; v < 3 + 8; v++) {
+			requested = list.applyEvent(event(PduType.LOGIN_EVENT, "u" + v, v));
+		}
+		assertTrue(requested);
+
+		// Keine zweite Anforderung, solange die erste noch offen ist
+		assertFalse(list.applyEvent(event(PduType.LOGIN_EVENT, "u11", 11)));
+	}
+
+	@Test
+	public void persistingGapRequestsSnapshotAfterTimeout() throws Exception {
+		UserList list = new UserList(GAP_TIMEOUT);
+		list.applySnapshot(1, Arrays.asList("a"));
+
+		// Ein einzelnes spaeteres Event, danach keine weiteren Events
+		assertFalse(list.applyEvent(event(PduType.LOGIN_EVENT, "c", 3)));
+		assertFalse(list.checkGap());
+
+		Thread.sleep(2 * GAP_TIMEOUT);
+		assertTrue(list.checkGap());
+		assertFalse(list.checkGap());
+
+		// Ohne Antwort wird nach der Wartezeit erneut angefordert
+		Thread.sleep(2 * GAP_TIMEOUT);
+		assertTrue(list.checkGap());
+
+		// Vollstaendige Liste schliesst die Luecke
+		list.applySnapshot(2, Arrays.asList("a", "b"));
+		assertEquals(Arrays.asList("a", "b", "c"), list.getUsers());
+		Thread.sleep(2 * GAP_TIMEOUT);
+		assertFalse(list.checkGap());
+	}
+
+	@Test
+	public void progressRestartsGapTimeout() throws Exception {
+		UserList list = new UserList(GAP_TIMEOUT);
+		list.applySnapshot(1, Arrays.asList("a"));
+
+		assertFalse(list.applyEvent(event(PduType.LOGIN_EVENT, "b", 3)));
+		assertFalse(list.applyEvent(event(PduType.LOGIN_EVENT, "d", 5)));
+		Thread.sleep(2 * GAP_TIMEOUT);
+
+		// Stand 2 trifft ein, die Luecke vor Stand 5 beginnt neu
+		assertFalse(list.applyEvent(event(PduType.LOGIN_EVENT, "x", 2)));
+		assertFalse(list.checkGap());
+		Thread.sleep(2 * GAP_TIMEOUT);
+		assertTrue(list.checkGap());
+	}
+
+	private static ChatPDU event(PduType type, String user, long version) {
+		ChatPDU pdu = new ChatPDU();
+		pdu.setPduType(type);
+		pdu.setEventUserName(user);
+		pdu.setUserListVersion(version);
+		return pdu;
+	}
+}
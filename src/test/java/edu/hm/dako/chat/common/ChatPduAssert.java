@@ -0,0 +1,64 @@
+package edu.hm.dako.chat.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Feldweiser Vergleich von Chat-PDUs fuer die Tests der Kodierungen (ChatPDU
+ * hat kein equals)
+ *
+ * @author Mandl
+ */
+public final class ChatPduAssert {
+
+	private ChatPduAssert() {
+	}
+
+	/**
+	 * Prueft, ob alle Felder zweier PDUs uebereinstimmen. Nicht belegte und leere
+	 * Sammel-Confirm-Listen gelten als gleich.
+	 *
+	 * @param expected
+	 *          Erwartete PDU
+	 * @param actual
+	 *          Zu pruefende PDU
+	 */
+	public static void assertPduEquals(ChatPDU expected, ChatPDU actual) {
+		String type = String.valueOf(expected.getPduType());
+		assertEquals(type, expected.getPduType(), actual.getPduType());
+		assertEquals(type, expected.getUserName(), actual.getUserName());
+		assertEquals(type, expected.getEventUserName(), actual.getEventUserName());
+		assertEquals(type, expected.getClientThreadName(), actual.getClientThreadName());
+		assertEquals(type, expected.getServerThreadName(), actual.getServerThreadName());
+		assertEquals(type, expected.getMessage(), actual.getMessage());
+		assertEquals(type, expected.getRoom(), actual.getRoom());
+		assertEquals(type, expected.getClients(), actual.getClients());
+		assertEquals(type, expected.getSequenceNumber(), actual.getSequenceNumber());
+		assertEquals(type, expected.getServerTime(), actual.getServerTime());
+		assertEquals(type, expected.getClientStatus(), actual.getClientStatus());
+		assertEquals(type, expected.getErrorCode(), actual.getErrorCode());
+		assertEquals(type, expected.getUserListVersion(), actual.getUserListVersion());
+		assertEquals(type, expected.getNumberOfReceivedChatMessages(),
+				actual.getNumberOfReceivedChatMessages());
+		assertEquals(type, expected.getNumberOfSentEvents(), actual.getNumberOfSentEvents());
+		assertEquals(type, expected.getNumberOfReceivedConfirms(),
+				actual.getNumberOfReceivedConfirms());
+		assertEquals(type, expected.getNumberOfLostConfirms(), actual.getNumberOfLostConfirms());
+		assertEquals(type, expected.getNumberOfRetries(), actual.getNumberOfRetries());
+
+		int confirmed = expected.getNumberOfConfirmedEvents();
+		assertEquals(type, confirmed, actual.getNumberOfConfirmedEvents());
+		String[] expectedNames = new String[confirmed];
+		String[] actualNames = new String[confirmed];
+		long[] expectedNumbers = new long[confirmed];
+		long[] actualNumbers = new long[confirmed];
+		for (int i = 0; i < confirmed; i++) {
+			expectedNames[i] = expected.getConfirmedEventUserName(i);
+			actualNames[i] = actual.getConfirmedEventUserName(i);
+			expectedNumbers[i] = expected.getConfirmedSequenceNumber(i);
+			actualNumbers[i] = actual.getConfirmedSequenceNumber(i);
+		}
+		assertArrayEquals(type, expectedNames, actualNames);
+		assertArrayEquals(type, expectedNumbers, actualNumbers);
+	}
+}
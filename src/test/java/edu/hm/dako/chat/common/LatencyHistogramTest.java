@@ -0,0 +1,197 @@
+package edu.hm.dako.chat.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.junit.Test;
+
+/**
+ * Kennzahlen und Percentile des Latenz-Histogramms im Vergleich zu einer
+ * Referenz auf dem sortierten Array aller Werte
+ *
+ * @author Mandl
+ */
+public class LatencyHistogramTest {
+
+	private static final int PRECISION_BITS = LatencyHistogram.DEFAULT_PRECISION_BITS;
+
+	// Zulaessiger relativer Fehler eines Percentils
+	private static final double RELATIVE_ERROR = 1.0 / (1 << PRECISION_BITS);
+
+	private static final double[] PERCENTILES = { 0.1, 1, 10, 25, 50, 75, 90, 95, 99,
+			99.9, 100 };
+
+	@Test
+	public void emptyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getVariance(), 0);
+		assertEquals(0, histogram.getPercentile(50), 0);
+	}
+
+	@Test
+	public void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[1 << PRECISION_BITS];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = values.length - 1 - i;
+			histogram.recordValue(values[i]);
+		}
+		double[] sorted = sorted(values);
+		for (double p : PERCENTILES) {
+			assertEquals("p" + p, reference(sorted, p), histogram.getPercentile(p), 1e-9);
+		}
+	}
+
+	@Test
+	public void bucketBoundaryPercentiles() {
+		// Werte direkt unter, auf und ueber jeder Zweierpotenz liegen als Median
+		// zwischen einem kleinen und einem grossen Wert
+		for (int k = 1; k < 42; k++) {
+			for (long value = (1L << k) - 1; value <= (1L << k) + 1; value++) {
+				LatencyHistogram histogram = new LatencyHistogram();
+				histogram.recordValue(0);
+				histogram.recordValue(value);
+				histogram.recordValue(1L << 42);
+				double median = histogram.getPercentile(50);
+				assertEquals("Wert " + value, value, median, value * RELATIVE_ERROR);
+				if (value < (1 << PRECISION_BITS)) {
+					assertEquals("Wert " + value, value, median, 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void valuesAboveTrackableRangeKeepExactMax() {
+		LatencyHistogram histogram = new LatencyHistogram(PRECISION_BITS, 1000);
+		histogram.recordValue(10);
+		histogram.recordValue(5000);
+		histogram.recordValue(-3);
+		assertEquals(0, histogram.getMin());
+		assertEquals(5000, histogram.getMax());
+		assertEquals(5000, histogram.getPercentile(100), 0);
+	}
+
+	@Test
+	public void statisticsMatchSortedReference() {
+		Random random = new Random(4711);
+		for (int run = 0; run < 20; run++) {
+			int n = 1 + random.nextInt(5000);
+			long[] values = new long[n];
+			LatencyHistogram histogram = new LatencyHistogram();
+			for (int i = 0; i < n; i++) {
+				// Log-normal verteilte Latenzen um 1 ms mit langen Ausreissern
+				values[i] = (long) Math.exp(13.8 + random.nextGaussian() * 1.5);
+				histogram.recordValue(values[i]);
+			}
+			assertMatches(values, histogram);
+		}
+	}
+
+	@Test
+	public void mergeEqualsSingleHistogram() {
+		Random random = new Random(815);
+		long[] values = new long[10000];
+		LatencyHistogram all = new LatencyHistogram();
+		LatencyHistogram[] parts = new LatencyHistogram[4];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = new LatencyHistogram();
+		}
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) (random.nextDouble() * random.nextDouble() * 1e8);
+			all.recordValue(values[i]);
+			// Ungleich grosse Teile, ein Teil bleibt leer
+			parts[Math.min(i % 7, 2)].recordValue(values[i]);
+		}
+
+		LatencyHistogram merged = new LatencyHistogram();
+		for (LatencyHistogram part : parts) {
+			merged.add(part);
+		}
+
+		assertEquals(all.getTotalCount(), merged.getTotalCount());
+		assertEquals(all.getMin(), merged.getMin());
+		assertEquals(all.getMax(), merged.getMax());
+		assertEquals(all.getMean(), merged.getMean(), all.getMean() * 1e-12);
+		assertEquals(all.getVariance(), merged.getVariance(), all.getVariance() * 1e-9);
+		for (double p : PERCENTILES) {
+			assertEquals("p" + p, all.getPercentile(p), merged.getPercentile(p), 0);
+		}
+		assertMatches(values, merged);
+	}
+
+	@Test
+	public void mergeRejectsDifferentConfiguration() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		try {
+			histogram.add(new LatencyHistogram(PRECISION_BITS + 1,
+					LatencyHistogram.DEFAULT_HIGHEST_TRACKABLE_VALUE));
+			fail("Unterschiedliche Genauigkeit nicht erkannt");
+		} catch (IllegalArgumentException e) {
+			// erwartet
+		}
+	}
+
+	@Test
+	public void resetClearsAllValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.recordValue(100);
+		histogram.recordValue(1000000);
+		histogram.reset();
+		histogram.recordValue(500);
+		assertEquals(1, histogram.getTotalCount());
+		assertEquals(500, histogram.getMin());
+		assertEquals(500, histogram.getMax());
+		assertEquals(500, histogram.getMean(), 0);
+		assertEquals(500, histogram.getPercentile(50), 0);
+	}
+
+	private static void assertMatches(long[] values, LatencyHistogram histogram) {
+		double[] sorted = sorted(values);
+		double sum = 0;
+		for (double value : sorted) {
+			sum += value;
+		}
+		double mean = sum / sorted.length;
+		double squares = 0;
+		for (double value : sorted) {
+			squares += (value - mean) * (value - mean);
+		}
+		double variance = (sorted.length < 2) ? 0 : squares / (sorted.length - 1);
+
+		assertEquals(values.length, histogram.getTotalCount());
+		assertEquals((long) sorted[0], histogram.getMin());
+		assertEquals((long) sorted[sorted.length - 1], histogram.getMax());
+		assertEquals(mean, histogram.getMean(), mean * 1e-9);
+		assertEquals(variance, histogram.getVariance(), variance * 1e-9);
+
+		for (double p : PERCENTILES) {
+			double expected = reference(sorted, p);
+			double actual = histogram.getPercentile(p);
+			assertTrue("p" + p + ": erwartet " + expected + ", ermittelt " + actual,
+					Math.abs(expected - actual) <= expected * RELATIVE_ERROR + 1);
+		}
+	}
+
+	private static double reference(double[] sorted, double p) {
+		return new Percentile().evaluate(sorted, p);
+	}
+
+	private static double[] sorted(long[] values) {
+		double[] sorted = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			sorted[i] = values[i];
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
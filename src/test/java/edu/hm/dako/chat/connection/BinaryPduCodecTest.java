@@ -0,0 +1,168 @@
+package edu.hm.dako.chat.connection;
+
+import static edu.hm.dako.chat.common.ChatPduAssert.assertPduEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.ClientConversationStatus;
+import edu.hm.dako.chat.common.PduType;
+
+/**
+ * Hin- und Rueckkodierung aller PDU-Typen mit der Binaerkodierung, verglichen
+ * mit der Java-Serialisierung als Referenz
+ *
+ * @author Mandl
+ */
+public class BinaryPduCodecTest {
+
+	private final PduCodec binary = new BinaryPduCodec();
+	private final PduCodec serialization = new SerializationPduCodec();
+
+	/**
+	 * Alle Felder belegt, mit Nicht-ASCII-Zeichen und Grenzwerten der Varints
+	 */
+	private static ChatPDU fullPdu(PduType type) {
+		ChatPDU pdu = new ChatPDU();
+		pdu.setPduType(type);
+		pdu.setUserName("Jürgen-Ößmann");
+		pdu.setEventUserName("用户-ΑΒΓ");
+		pdu.setClientThreadName("Client-1");
+		pdu.setServerThreadName("Worker-😀");
+		pdu.setMessage("Grüße aus München");
+		pdu.setRoom("Raum-é");
+		pdu.setClients(new Vector<String>(Arrays.asList("Anna", "Bärbel", "")));
+		pdu.setSequenceNumber(Long.MAX_VALUE);
+		pdu.setServerTime(-1);
+		pdu.setClientStatus(ClientConversationStatus.REGISTERED);
+		pdu.setErrorCode(ChatPDU.ROOM_ERROR);
+		pdu.setUserListVersion(1L << 35);
+		pdu.setNumberOfReceivedChatMessages(127);
+		pdu.setNumberOfSentEvents(128);
+		pdu.setNumberOfReceivedEventConfirms(16384);
+		pdu.setNumberOfLostEventConfirms(Long.MIN_VALUE);
+		pdu.setNumberOfRetries(3);
+		pdu.setConfirmedEvents(new Vector<String>(Arrays.asList("Anna", "Zoë")),
+				new long[] { 0, Long.MAX_VALUE });
+		return pdu;
+	}
+
+	/**
+	 * Nur der Typ belegt, alle optionalen Felder null bzw. 0
+	 */
+	private static ChatPDU emptyPdu(PduType type) {
+		ChatPDU pdu = new ChatPDU();
+		pdu.setPduType(type);
+		pdu.setClientStatus(null);
+		return pdu;
+	}
+
+	/**
+	 * Leere Zeichenketten und Listen (belegt, aber ohne Inhalt)
+	 */
+	private static ChatPDU blankPdu(PduType type) {
+		ChatPDU pdu = new ChatPDU();
+		pdu.setPduType(type);
+		pdu.setUserName("");
+		pdu.setEventUserName("");
+		pdu.setMessage("");
+		pdu.setRoom("");
+		pdu.setClients(new Vector<String>());
+		return pdu;
+	}
+
+	private static List<ChatPDU> allPdus() {
+		List<ChatPDU> pdus = new ArrayList<ChatPDU>();
+		for (PduType type : PduType.values()) {
+			pdus.add(fullPdu(type));
+			pdus.add(emptyPdu(type));
+			pdus.add(blankPdu(type));
+		}
+		return pdus;
+	}
+
+	@Test
+	public void roundTripMatchesSerialization() throws Exception {
+		for (ChatPDU pdu : allPdus()) {
+			ChatPDU reference = roundTrip(serialization, pdu);
+			ChatPDU decoded = roundTrip(binary, pdu);
+			assertPduEquals(pdu, decoded);
+			assertPduEquals(reference, decoded);
+		}
+	}
+
+	@Test
+	public void decodesAtOffset() throws Exception {
+		ChatPDU pdu = fullPdu(PduType.CHAT_MESSAGE_EVENT);
+		byte[] encoded = binary.encode(pdu);
+		byte[] buffer = new byte[encoded.length + 10];
+		System.arraycopy(encoded, 0, buffer, 7, encoded.length);
+		assertPduEquals(pdu, (ChatPDU) binary.decode(buffer, 7, encoded.length));
+	}
+
+	@Test
+	public void factoryPdusRoundTrip() throws Exception {
+		ChatPDU request = new ChatPDU(PduType.CHAT_MESSAGE_REQUEST, "Hallo");
+		request.setUserName("Anna");
+		request.setSequenceNumber(42);
+
+		ChatPDU[] pdus = {
+				ChatPDU.createLoginEventPdu("Anna", request),
+				ChatPDU.createChatMessageEventPdu("Anna", request),
+				ChatPDU.createChatMessageEventConfirm("Ben",
+						ChatPDU.createChatMessageEventPdu("Anna", request)),
+				ChatPDU.createChatMessageEventConfirmBatch("Ben",
+						new Vector<String>(Arrays.asList("Anna", "Carl")), new long[] { 42, 7 }),
+				ChatPDU.createUserListResponsePdu(request),
+				ChatPDU.createRoomResponsePdu(request, ChatPDU.ROOM_ERROR) };
+		for (ChatPDU pdu : pdus) {
+			assertPduEquals(roundTrip(serialization, pdu), roundTrip(binary, pdu));
+		}
+	}
+
+	@Test
+	public void binaryIsSmallerThanSerialization() throws Exception {
+		for (ChatPDU pdu : allPdus()) {
+			assertTrue(String.valueOf(pdu.getPduType()),
+					binary.encode(pdu).length < serialization.encode(pdu).length);
+		}
+	}
+
+	@Test
+	public void rejectsTruncatedPdu() throws Exception {
+		byte[] encoded = binary.encode(fullPdu(PduType.LOGIN_RESPONSE));
+		for (int length = 0; length < encoded.length; length++) {
+			try {
+				binary.decode(encoded, 0, length);
+				fail("Abgeschnittene PDU der Laenge " + length + " dekodiert");
+			} catch (IOException e) {
+				// erwartet
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsUnknownPduType() throws Exception {
+		byte[] encoded = binary.encode(emptyPdu(PduType.HEARTBEAT));
+		encoded[0] = (byte) 0x7F;
+		binary.decode(encoded, 0, encoded.length);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherMessages() throws Exception {
+		binary.encode("keine PDU");
+	}
+
+	private static ChatPDU roundTrip(PduCodec codec, ChatPDU pdu) throws IOException {
+		byte[] encoded = codec.encode(pdu);
+		return (ChatPDU) codec.decode(encoded, 0, encoded.length);
+	}
+}
@@ -0,0 +1,134 @@
+package edu.hm.dako.chat.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.PduType;
+
+/**
+ * Verwerfen bei voller Ausgangswarteschlange: Nur Events werden verworfen und
+ * gemeldet, Responses werden immer gesendet
+ *
+ * @author Mandl
+ */
+public class OutboundQueueConnectionTest {
+
+	private static final int CAPACITY = 8;
+
+	private final ExecutorService writerPool = Executors.newCachedThreadPool();
+
+	// Haelt den Writer-Thread im Senden fest, bis der Test ihn freigibt
+	private final CountDownLatch released = new CountDownLatch(1);
+
+	private final List<ChatPDU> sent = new ArrayList<ChatPDU>();
+
+	@After
+	public void tearDown() {
+		released.countDown();
+		writerPool.shutdownNow();
+	}
+
+	@Test
+	public void dropOldestDropsAndReportsOnlyEvents() throws Exception {
+		OutboundQueueConnection connection = new OutboundQueueConnection(
+				new BlockedConnection(), writerPool, CAPACITY, OverflowPolicy.DropOldest);
+		final List<Long> dropped = new ArrayList<Long>();
+		connection.setDroppedPduHandler(new DroppedPduHandler() {
+			@Override
+			public void pduDropped(EncodedPdu pdu) {
+				assertEquals(PduType.CHAT_MESSAGE_EVENT, pdu.getPdu().getPduType());
+				dropped.add(pdu.getPdu().getSequenceNumber());
+			}
+		});
+
+		// Erstes Event belegt den Writer-Thread, danach laeuft die Warteschlange voll.
+		// Es bleiben weniger Responses offen als Platz ist (wie beim begrenzten
+		// Fenster des Clients), sonst wartet der Sender.
+		int responses = 0;
+		for (int i = 1; i <= 100; i++) {
+			if (i % 20 == 0) {
+				connection.send(pdu(PduType.CHAT_MESSAGE_RESPONSE, i));
+				responses++;
+			} else {
+				connection.send(new EncodedPdu(pdu(PduType.CHAT_MESSAGE_EVENT, i)), "Empfaenger");
+			}
+		}
+		assertEquals(connection.getNumberOfDroppedMessages(), dropped.size());
+		for (int i = 1; i < dropped.size(); i++) {
+			assertTrue(dropped.get(i - 1) < dropped.get(i));
+		}
+
+		released.countDown();
+		connection.close();
+		synchronized (sent) {
+			long end = System.currentTimeMillis() + 5000;
+			while ((sent.size() + dropped.size() < 100) && (System.currentTimeMillis() < end)) {
+				sent.wait(100);
+			}
+			assertEquals(100, sent.size() + dropped.size());
+			int sentResponses = 0;
+			for (ChatPDU pdu : sent) {
+				if (pdu.getPduType() == PduType.CHAT_MESSAGE_RESPONSE) {
+					sentResponses++;
+				}
+			}
+			assertEquals(responses, sentResponses);
+		}
+	}
+
+	private static ChatPDU pdu(PduType type, long sequenceNumber) {
+		ChatPDU pdu = new ChatPDU(type, "Nachricht " + sequenceNumber);
+		pdu.setSequenceNumber(sequenceNumber);
+		return pdu;
+	}
+
+	/**
+	 * Verbindung, deren Senden bis zur Freigabe durch den Test blockiert
+	 */
+	private class BlockedConnection implements Connection {
+
+		@Override
+		public void send(Serializable message) throws Exception {
+			released.await(10, TimeUnit.SECONDS);
+			synchronized (sent) {
+				sent.add((ChatPDU) message);
+				sent.notifyAll();
+			}
+		}
+
+		@Override
+		public void send(EncodedPdu pdu, String recipient) throws Exception {
+			send(pdu.toPdu(recipient));
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public Serializable receive(int timeout) {
+			return null;
+		}
+
+		@Override
+		public Serializable receive() {
+			return null;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
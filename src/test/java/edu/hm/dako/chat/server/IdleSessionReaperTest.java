@@ -0,0 +1,158 @@
+package edu.hm.dako.chat.server;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.connection.EncodedPdu;
+import edu.hm.dako.chat.connection.MessageSender;
+
+/**
+ * Beenden stiller Sessions durch den IdleSessionReaper mit kurzer Leerlaufzeit
+ * (Takt 20 ms)
+ *
+ * @author Mandl
+ */
+public class IdleSessionReaperTest {
+
+	private static final int IDLE_TIMEOUT = 200;
+
+	private final IdleSessionReaper reaper = new IdleSessionReaper(IDLE_TIMEOUT);
+
+	@After
+	public void tearDown() {
+		reaper.stopThread();
+	}
+
+	@Test
+	public void silentSessionExpires() throws Exception {
+		reaper.start();
+		TestSession session = new TestSession();
+		long start = System.nanoTime();
+		reaper.register(session);
+
+		assertTrue("Stille Session nicht beendet", session.closed.await(5, TimeUnit.SECONDS));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("Vorzeitig beendet nach " + elapsedMillis + " ms",
+				elapsedMillis >= IDLE_TIMEOUT);
+	}
+
+	@Test
+	public void activityRearmsSession() throws Exception {
+		reaper.start();
+		TestSession session = new TestSession();
+		reaper.register(session);
+
+		// Drei Leerlaufzeiten lang regelmaessig Aktivitaet melden
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(3 * IDLE_TIMEOUT);
+		while (System.nanoTime() < end) {
+			session.lastActivity = System.nanoTime();
+			assertFalse("Aktive Session beendet", session.closed.await(IDLE_TIMEOUT / 4,
+					TimeUnit.MILLISECONDS));
+		}
+
+		// Danach still: Session wird beendet
+		long silentSince = System.nanoTime();
+		assertTrue(session.closed.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - silentSince >= TimeUnit.MILLISECONDS
+				.toNanos(IDLE_TIMEOUT / 2));
+	}
+
+	@Test
+	public void finishedSessionIsDroppedBeforeExpiry() throws Exception {
+		reaper.start();
+		TestSession session = new TestSession();
+		reaper.register(session);
+
+		// Abmelden durch Beenden der Session vor Ablauf der Leerlaufzeit
+		session.finished = true;
+		assertFalse("Beendete Session erneut abgebaut",
+				session.closed.await(3 * IDLE_TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void noExpiryBeforeStartAndAfterStop() throws Exception {
+		TestSession session = new TestSession();
+		reaper.register(session);
+		assertFalse(session.closed.await(2 * IDLE_TIMEOUT, TimeUnit.MILLISECONDS));
+
+		reaper.start();
+		reaper.stopThread();
+		TestSession later = new TestSession();
+		reaper.register(later);
+		assertFalse(later.closed.await(2 * IDLE_TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void startTwiceIsRejected() {
+		reaper.start();
+		try {
+			reaper.start();
+			fail("Zweiter Start nicht erkannt");
+		} catch (IllegalStateException e) {
+			// erwartet
+		}
+	}
+
+	/**
+	 * Session ohne Empfang, zaehlt nur das Schliessen der Verbindung
+	 */
+	private static class TestSession extends AbstractWorkerThread {
+
+		final CountDownLatch closed;
+
+		TestSession() {
+			this(new CountDownLatch(1));
+		}
+
+		private TestSession(final CountDownLatch closed) {
+			super(new MessageSender() {
+				@Override
+				public void send(Serializable message) {
+				}
+
+				@Override
+				public void send(EncodedPdu pdu, String recipient) {
+				}
+
+				@Override
+				public void flush() {
+				}
+
+				@Override
+				public void close() {
+					closed.countDown();
+				}
+			}, null, new SharedServerCounter(), null);
+			this.closed = closed;
+		}
+
+		@Override
+		protected void sendLoginListUpdateEvent(ChatPDU pdu) {
+		}
+
+		@Override
+		protected void loginRequestAction(ChatPDU receivedPdu) {
+		}
+
+		@Override
+		protected void logoutRequestAction(ChatPDU receivedPdu) {
+		}
+
+		@Override
+		protected void chatMessageRequestAction(ChatPDU receivedPdu) {
+		}
+
+		@Override
+		protected void handleIncomingMessage() {
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package edu.hm.dako.chat.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.hm.dako.chat.common.ClientConversationStatus;
+import edu.hm.dako.chat.common.ClientListEntry;
+
+/**
+ * Nebenlaeufiges Anlegen, Bestaetigen und Loeschen von Event-Wartelisten in der
+ * Clientliste
+ *
+ * @author Mandl
+ */
+public class SharedChatClientListTest {
+
+	private static final int CLIENTS = 8;
+	private static final int EVENTS = 200;
+
+	private final SharedChatClientList clients = SharedChatClientList.getInstance();
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		clients.deleteAll();
+		executor = Executors.newFixedThreadPool(CLIENTS);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		clients.deleteAll();
+	}
+
+	@Test
+	public void concurrentConfirmsEmptyAllWaitLists() throws Exception {
+		for (int i = 0; i < CLIENTS; i++) {
+			createClient(userName(i));
+		}
+
+		final CyclicBarrier created = new CyclicBarrier(CLIENTS);
+		final AtomicInteger completed = new AtomicInteger();
+		List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < CLIENTS; i++) {
+			final String userName = userName(i);
+			workers.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (long eventId = 1; eventId <= EVENTS; eventId++) {
+						assertEquals(CLIENTS, clients.createWaitList(userName, eventId, null));
+						created.await(10, TimeUnit.SECONDS);
+
+						// Confirm dieses Clients fuer die Events aller Clients, waehrend
+						// schnellere Threads bereits das naechste Event anlegen
+						for (int j = 0; j < CLIENTS; j++) {
+							if (clients.deleteWaitListEntry(userName(j), eventId, userName)) {
+								completed.incrementAndGet();
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		runAll(workers);
+
+		// Jede Warteliste wird genau einmal vollstaendig
+		assertEquals(CLIENTS * EVENTS, completed.get());
+		for (int i = 0; i < CLIENTS; i++) {
+			assertEquals(0, clients.getWaitListSize(userName(i)));
+			clients.finish(userName(i));
+			assertTrue(clients.deletable(userName(i)));
+		}
+		assertEquals(CLIENTS, clients.gcClientList().size());
+		assertEquals(0, clients.size());
+	}
+
+	@Test
+	public void replacedAndDeletedWaitListsReleaseReferences() throws Exception {
+		for (int i = 0; i < CLIENTS; i++) {
+			createClient(userName(i));
+		}
+
+		List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < CLIENTS; i++) {
+			final String userName = userName(i);
+			workers.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int n = 0; n < EVENTS; n++) {
+						// Ersetzen einer offenen Warteliste zum selben Event
+						clients.createWaitList(userName, 1);
+						clients.createWaitList(userName, 1);
+						clients.deleteWaitListEntry(userName, 1, userName);
+						clients.createWaitList(userName, 2);
+						clients.deleteWaitList(userName);
+					}
+					return null;
+				}
+			});
+		}
+		runAll(workers);
+
+		for (int i = 0; i < CLIENTS; i++) {
+			assertEquals(0, clients.getWaitListSize(userName(i)));
+			clients.finish(userName(i));
+			assertTrue(clients.deletable(userName(i)));
+		}
+		assertEquals(CLIENTS, clients.gcClientList().size());
+	}
+
+	@Test
+	public void slotsOfDeletedClientsAreReused() throws Exception {
+		final AtomicInteger maxSlot = new AtomicInteger(-1);
+		List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < CLIENTS; i++) {
+			final int worker = i;
+			workers.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int n = 0; n < EVENTS; n++) {
+						String userName = "user" + worker + "-" + n;
+						ClientListEntry entry = createClient(userName);
+						int slot = entry.getSlot();
+						int max;
+						while (slot > (max = maxSlot.get()) && !maxSlot.compareAndSet(max, slot)) {
+							// erneut versuchen
+						}
+
+						int recipients = clients.createWaitList(userName, n, null);
+						assertTrue(recipients >= 1);
+						clients.deleteWaitListEntry(userName, n, userName);
+						clients.finish(userName);
+						clients.deleteClientWithoutCondition(userName);
+						assertEquals(-1, entry.getSlot());
+					}
+					return null;
+				}
+			});
+		}
+		runAll(workers);
+
+		// Es sind nie mehr Clients gleichzeitig angemeldet als Threads laufen, also
+		// werden auch nicht mehr Slots vergeben
+		assertTrue("Hoechster Slot " + maxSlot.get(), maxSlot.get() < CLIENTS);
+		assertEquals(0, clients.size());
+
+		ClientListEntry entry = createClient("late");
+		assertTrue(entry.getSlot() < CLIENTS);
+		assertEquals(1, clients.createWaitList("late", 1, null));
+		assertTrue(clients.deleteWaitListEntry("late", 1, "late"));
+	}
+
+	@Test
+	public void forcedDeleteCompletesWaitListsOfOtherClients() {
+		for (int i = 0; i < 3; i++) {
+			createClient(userName(i));
+		}
+
+		// user0 wartet auf alle, user1 bestaetigt, user2 bestaetigt nie
+		assertEquals(3, clients.createWaitList(userName(0), 7, null));
+		assertEquals(3, clients.createWaitList(userName(1), 8, null));
+		clients.deleteWaitListEntry(userName(0), 7, userName(0));
+		clients.deleteWaitListEntry(userName(0), 7, userName(1));
+		clients.deleteWaitListEntry(userName(1), 8, userName(1));
+
+		List<SharedChatClientList.CompletedWaitList> completed = clients
+				.deleteClientWithoutCondition(userName(2));
+		assertEquals(1, completed.size());
+		assertEquals(userName(0), completed.get(0).getUserName());
+		assertEquals(7, completed.get(0).getEventId());
+		assertEquals(0, clients.getWaitListSize(userName(0)));
+
+		// user1 wartet noch auf user0
+		assertEquals(1, clients.getWaitListSize(userName(1), 8));
+		assertTrue(clients.deleteWaitListEntry(userName(1), 8, userName(0)));
+
+		// Eigene Wartelisten des geloeschten Clients werden nicht gemeldet
+		assertEquals(2, clients.createWaitList(userName(0), 9, null));
+		assertTrue(clients.deleteClientWithoutCondition(userName(0)).isEmpty());
+	}
+
+	private ClientListEntry createClient(String userName) {
+		ClientListEntry entry = new ClientListEntry(userName, null);
+		entry.setStatus(ClientConversationStatus.REGISTERED);
+		clients.createClient(userName, entry);
+		return entry;
+	}
+
+	private void runAll(List<Callable<Void>> workers) throws Exception {
+		for (Future<Void> result : executor.invokeAll(workers, 60, TimeUnit.SECONDS)) {
+			result.get();
+		}
+	}
+
+	private static String userName(int i) {
+		return "user" + i;
+	}
+}
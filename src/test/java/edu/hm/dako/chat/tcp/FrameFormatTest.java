@@ -0,0 +1,84 @@
+package edu.hm.dako.chat.tcp;
+
+import static edu.hm.dako.chat.common.ChatPduAssert.assertPduEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.PduType;
+import edu.hm.dako.chat.connection.BinaryPduCodec;
+import edu.hm.dako.chat.connection.EncodedPdu;
+import edu.hm.dako.chat.connection.PduCodec;
+import edu.hm.dako.chat.connection.SerializationPduCodec;
+
+/**
+ * Rahmenformat der rahmenbasierten Verbindungen: PLAIN- und ADDRESSED-Rahmen mit
+ * beiden Kodierungen
+ *
+ * @author Mandl
+ */
+public class FrameFormatTest {
+
+	private static ChatPDU event() {
+		ChatPDU request = new ChatPDU(PduType.CHAT_MESSAGE_REQUEST, "Grüße");
+		request.setUserName("Anna");
+		request.setSequenceNumber(5);
+		return ChatPDU.createChatMessageEventPdu("Anna", request);
+	}
+
+	@Test
+	public void plainFrameRoundTrip() throws Exception {
+		for (PduCodec codec : new PduCodec[] { new BinaryPduCodec(),
+				new SerializationPduCodec() }) {
+			ChatPDU pdu = event();
+			assertPduEquals(pdu, decodeFrame(codec, FrameFormat.plainFrame(codec.encode(pdu))));
+		}
+	}
+
+	@Test
+	public void addressedFrameSetsRecipient() throws Exception {
+		for (PduCodec codec : new PduCodec[] { new BinaryPduCodec(),
+				new SerializationPduCodec() }) {
+			EncodedPdu shared = new EncodedPdu(event());
+			for (String recipient : new String[] { "Ben", "Zoë-用户", "" }) {
+				ChatPDU decoded = decodeFrame(codec,
+						FrameFormat.addressedFrame(recipient, shared.getBody(codec)));
+				assertPduEquals(shared.toPdu(recipient), decoded);
+			}
+			// Der gemeinsame Rumpf bleibt unveraendert
+			assertEquals("Anna", shared.getPdu().getUserName());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsInvalidNameLength() throws Exception {
+		ByteBuffer frame = FrameFormat.addressedFrame("Ben",
+				new BinaryPduCodec().encode(event()));
+		frame.putShort(FrameFormat.HEADER_LENGTH + 1, (short) 0x7FFF);
+		decodeFrame(new BinaryPduCodec(), frame);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsUnknownFrameType() throws Exception {
+		ByteBuffer frame = FrameFormat.plainFrame(new BinaryPduCodec().encode(event()));
+		frame.put(FrameFormat.HEADER_LENGTH, (byte) 9);
+		decodeFrame(new BinaryPduCodec(), frame);
+	}
+
+	/**
+	 * Laengenangabe pruefen und Rahmeninhalt dekodieren, wie es die Verbindungen
+	 * beim Empfang tun
+	 */
+	private static ChatPDU decodeFrame(PduCodec codec, ByteBuffer frame) throws IOException {
+		int length = frame.getInt();
+		FrameFormat.checkLength(length);
+		assertEquals(length, frame.remaining());
+		byte[] content = new byte[length];
+		frame.get(content);
+		return (ChatPDU) FrameFormat.decode(codec, content, 0, length);
+	}
+}
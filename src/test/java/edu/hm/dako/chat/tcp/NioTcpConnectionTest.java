@@ -0,0 +1,186 @@
+package edu.hm.dako.chat.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import edu.hm.dako.chat.common.ChatPDU;
+import edu.hm.dako.chat.common.PduType;
+import edu.hm.dako.chat.connection.BinaryPduCodec;
+import edu.hm.dako.chat.connection.DroppedPduHandler;
+import edu.hm.dako.chat.connection.EncodedPdu;
+import edu.hm.dako.chat.connection.MessageHandler;
+import edu.hm.dako.chat.connection.MessageHandlerFactory;
+import edu.hm.dako.chat.connection.MessageSender;
+import edu.hm.dako.chat.connection.OverflowPolicy;
+
+/**
+ * Begrenzung der ausstehenden Rahmen einer NIO-Verbindung, deren Partner nicht
+ * liest. Verworfen werden nur Events, nie Responses.
+ *
+ * @author Mandl
+ */
+public class NioTcpConnectionTest {
+
+	private static final int CAPACITY = 16;
+
+	private NioTcpServerSocket serverSocket;
+	private Socket client;
+
+	private final AtomicReference<MessageSender> serverConnection = new AtomicReference<MessageSender>();
+	private final CountDownLatch connected = new CountDownLatch(1);
+	private final CountDownLatch closed = new CountDownLatch(1);
+
+	@After
+	public void tearDown() throws Exception {
+		if (client != null) {
+			client.close();
+		}
+		if (serverSocket != null) {
+			serverSocket.close();
+		}
+	}
+
+	@Test
+	public void dropOldestBoundsPendingFrames() throws Exception {
+		NioTcpConnection connection = connectSlowReader(OverflowPolicy.DropOldest);
+		final List<Long> dropped = new ArrayList<Long>();
+		connection.setDroppedPduHandler(new DroppedPduHandler() {
+			@Override
+			public void pduDropped(EncodedPdu pdu) {
+				dropped.add(pdu.getPdu().getSequenceNumber());
+			}
+		});
+
+		for (int i = 0; i < 5000; i++) {
+			connection.send(new EncodedPdu(event(i)), "Langsam");
+		}
+		assertTrue(connection.getNumberOfPendingFrames() <= CAPACITY);
+		assertTrue(connection.getNumberOfDroppedFrames() > 0);
+		assertEquals(1, closed.getCount());
+
+		// Jedes verworfene Event wird gemeldet, die aeltesten zuerst
+		assertEquals(connection.getNumberOfDroppedFrames(), dropped.size());
+		for (int i = 1; i < dropped.size(); i++) {
+			assertTrue(dropped.get(i - 1) < dropped.get(i));
+		}
+	}
+
+	@Test
+	public void dropOldestNeverDropsResponses() throws Exception {
+		NioTcpConnection connection = connectSlowReader(OverflowPolicy.DropOldest);
+		final AtomicInteger dropped = new AtomicInteger();
+		connection.setDroppedPduHandler(new DroppedPduHandler() {
+			@Override
+			public void pduDropped(EncodedPdu pdu) {
+				assertEquals(PduType.CHAT_MESSAGE_EVENT, pdu.getPdu().getPduType());
+				dropped.incrementAndGet();
+			}
+		});
+
+		// Responses und Events abwechselnd, bis die Grenze weit ueberschritten ist
+		int responses = 0;
+		for (int i = 0; i < 5000; i++) {
+			if (i % 2 == 0) {
+				connection.send(event(i));
+				responses++;
+			} else {
+				connection.send(new EncodedPdu(event(i)), "Langsam");
+			}
+		}
+		assertEquals(connection.getNumberOfDroppedFrames(), dropped.get());
+		assertTrue(dropped.get() <= 5000 - responses);
+
+		// Alle nicht gesendeten Responses stehen noch aus, die Grenze gilt nur fuer
+		// Events
+		assertTrue(connection.getNumberOfPendingFrames() > CAPACITY);
+		assertEquals(1, closed.getCount());
+	}
+
+	@Test
+	public void disconnectClosesSlowReader() throws Exception {
+		NioTcpConnection connection = connectSlowReader(OverflowPolicy.Disconnect);
+
+		int sent = 0;
+		try {
+			for (; sent < 5000; sent++) {
+				connection.send(event(sent));
+			}
+			fail("Verbindung trotz voller Ausgangswarteschlange nicht abgebaut");
+		} catch (IOException e) {
+			// erwartet
+		}
+		assertEquals(0, connection.getNumberOfPendingFrames());
+		assertEquals(1, connection.getNumberOfDroppedFrames());
+		assertTrue("Abbau nicht an den Handler gemeldet", closed.await(5, TimeUnit.SECONDS));
+
+		try {
+			connection.send(event(sent));
+			fail("Senden nach dem Abbau moeglich");
+		} catch (IOException e) {
+			// erwartet
+		}
+	}
+
+	/**
+	 * NIO-Serversocket mit kleinen Puffern starten und einen Client verbinden, der
+	 * nie liest
+	 */
+	private NioTcpConnection connectSlowReader(OverflowPolicy policy) throws Exception {
+		ServerSocket probe = new ServerSocket(0);
+		int port = probe.getLocalPort();
+		probe.close();
+
+		serverSocket = new NioTcpServerSocket(port, 4096, 4096, 1, new BinaryPduCodec());
+		serverSocket.setOutboundLimit(CAPACITY, policy);
+		serverSocket.start(new MessageHandlerFactory() {
+			@Override
+			public MessageHandler createHandler(MessageSender connection) {
+				serverConnection.set(connection);
+				connected.countDown();
+				return new MessageHandler() {
+					@Override
+					public void handleMessage(Serializable message) {
+					}
+
+					@Override
+					public void connectionClosed() {
+						closed.countDown();
+					}
+				};
+			}
+		});
+
+		client = new Socket();
+		client.setReceiveBufferSize(4096);
+		client.connect(new InetSocketAddress("127.0.0.1", port));
+		assertTrue(connected.await(5, TimeUnit.SECONDS));
+		return (NioTcpConnection) serverConnection.get();
+	}
+
+	private static ChatPDU event(int i) {
+		StringBuilder message = new StringBuilder();
+		for (int k = 0; k < 100; k++) {
+			message.append("Nachricht ");
+		}
+		ChatPDU pdu = new ChatPDU(PduType.CHAT_MESSAGE_EVENT, message.toString());
+		pdu.setUserName("Langsam");
+		pdu.setSequenceNumber(i + 1);
+		return pdu;
+	}
+}